@@ -1,21 +1,40 @@
 package mil.nga.geopackage.test;
 
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.Color;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.MessageDigest;
 import java.sql.SQLException;
 
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.GeoPackageManager;
 import mil.nga.geopackage.factory.GeoPackageFactory;
+import mil.nga.geopackage.io.BitmapConverter;
 import mil.nga.geopackage.io.ContextIOUtils;
-
+import mil.nga.geopackage.io.GeoPackageExportFilter;
+import mil.nga.geopackage.io.GeoPackageIOUtils;
+import mil.nga.geopackage.test.tiles.TestTileServer;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.UrlTileGenerator;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -306,6 +325,79 @@ public class GeoPackageManagerTest extends BaseTestCase {
                 .databaseSet().contains(TestConstants.IMPORT_DB_NAME));
     }
 
+    /**
+     * Test importing a GeoPackage stream with a header check, checksum, and
+     * quick check validation
+     *
+     * @throws Exception upon error
+     */
+    @Test
+    public void testImportChecksum() throws Exception {
+
+        GeoPackageManager manager = GeoPackageFactory.getManager(activity);
+        boolean integrityValidation = manager.isImportIntegrityValidation();
+        boolean quickCheck = manager.isImportQuickCheck();
+        manager.setImportIntegrityValidation(true);
+        manager.setImportQuickCheck(true);
+
+        try {
+
+            TestUtils.copyAssetFileToInternalStorage(activity, testContext,
+                    TestConstants.IMPORT_DB_FILE_NAME);
+            File importFile = new File(TestUtils.getAssetFileInternalStorageLocation(
+                    activity, TestConstants.IMPORT_DB_FILE_NAME));
+            byte[] bytes = GeoPackageIOUtils.streamBytes(new FileInputStream(importFile));
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder checksum = new StringBuilder();
+            for (byte b : digest.digest(bytes)) {
+                checksum.append(String.format("%02x", b));
+            }
+
+            // Checksum mismatch
+            try {
+                manager.importGeoPackage(TestConstants.IMPORT_DB_NAME,
+                        new ByteArrayInputStream(bytes), false, null,
+                        "0000");
+                fail("Imported with a checksum mismatch");
+            } catch (GeoPackageException e) {
+                // Expected
+            }
+            assertFalse(manager.exists(TestConstants.IMPORT_DB_NAME));
+
+            // Invalid header is rejected before copying
+            byte[] invalid = new byte[bytes.length];
+            System.arraycopy(bytes, 0, invalid, 0, bytes.length);
+            invalid[0] = 'X';
+            try {
+                manager.importGeoPackage(TestConstants.IMPORT_DB_NAME,
+                        new ByteArrayInputStream(invalid), false, null, null);
+                fail("Imported with an invalid header");
+            } catch (GeoPackageException e) {
+                // Expected
+            }
+            assertFalse(manager.exists(TestConstants.IMPORT_DB_NAME));
+            assertFalse(activity.getDatabasePath(TestConstants.IMPORT_DB_NAME)
+                    .exists());
+
+            // Matching checksum
+            assertTrue(manager.importGeoPackage(TestConstants.IMPORT_DB_NAME,
+                    new ByteArrayInputStream(bytes), false, null,
+                    checksum.toString().toUpperCase()));
+            assertTrue(manager.exists(TestConstants.IMPORT_DB_NAME));
+            GeoPackage geoPackage = manager.open(TestConstants.IMPORT_DB_NAME);
+            assertNotNull(geoPackage);
+            geoPackage.close();
+
+            assertTrue(manager.delete(TestConstants.IMPORT_DB_NAME));
+            assertTrue(importFile.delete());
+
+        } finally {
+            manager.setImportIntegrityValidation(integrityValidation);
+            manager.setImportQuickCheck(quickCheck);
+        }
+    }
+
     /**
      * Test exporting a GeoPackage database to a file
      *
@@ -411,6 +503,97 @@ public class GeoPackageManagerTest extends BaseTestCase {
         assertTrue("Import file could not be deleted", importFile.delete());
     }
 
+    /**
+     * Test exporting a GeoPackage database with an online backup, filtering
+     * tables and zoom levels
+     *
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testExportOnline() throws IOException, SQLException {
+
+        GeoPackageManager manager = GeoPackageFactory.getManager(activity);
+        assertTrue("Database failed to create",
+                manager.create(TestConstants.TEST_DB_NAME));
+
+        // Generate two tile tables
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+        byte[] tile = BitmapConverter.toBytes(bitmap, CompressFormat.PNG);
+        bitmap.recycle();
+        GeoPackage geoPackage = manager.open(TestConstants.TEST_DB_NAME);
+        TestTileServer server = new TestTileServer(tile);
+        try {
+            for (String table : new String[]{"tiles_a", "tiles_b"}) {
+                UrlTileGenerator tileGenerator = new UrlTileGenerator(activity,
+                        geoPackage, table, server.getUrl() + "/{z}/{x}/{y}.png",
+                        0, 2, TileBoundingBoxUtils.getWebMercatorBoundingBox(0, 0, 0),
+                        ProjectionFactory
+                                .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR));
+                tileGenerator.setXYZTiles(true);
+                assertEquals(21, tileGenerator.generateTiles());
+            }
+        } finally {
+            server.close();
+        }
+
+        File exportDirectory = ContextIOUtils.getInternalFile(activity, null);
+        File exportedFile = new File(exportDirectory, "online_export."
+                + TestConstants.GEO_PACKAGE_EXTENSION);
+        File filteredFile = new File(exportDirectory, "online_export_filtered."
+                + TestConstants.GEO_PACKAGE_EXTENSION);
+        exportedFile.delete();
+        filteredFile.delete();
+
+        // Export while the GeoPackage remains open
+        assertTrue(manager.exportGeoPackage(TestConstants.TEST_DB_NAME,
+                exportedFile, null));
+        try {
+            manager.exportGeoPackage(TestConstants.TEST_DB_NAME, exportedFile,
+                    null);
+            fail("Exported over an existing file");
+        } catch (GeoPackageException e) {
+            // Expected
+        }
+
+        GeoPackageExportFilter filter = new GeoPackageExportFilter();
+        filter.addTable("tiles_a");
+        filter.setZoomRange(1L, null);
+        assertTrue(manager.exportGeoPackage(TestConstants.TEST_DB_NAME,
+                filteredFile, filter, null));
+        geoPackage.close();
+
+        assertTrue(manager.importGeoPackage(TestConstants.IMPORT_DB_NAME,
+                exportedFile, true));
+        GeoPackage exported = manager.open(TestConstants.IMPORT_DB_NAME);
+        try {
+            assertEquals(21, exported.getTileDao("tiles_a").count());
+            assertEquals(21, exported.getTileDao("tiles_b").count());
+        } finally {
+            exported.close();
+        }
+
+        assertTrue(manager.importGeoPackage(TestConstants.IMPORT_DB_NAME,
+                filteredFile, true));
+        exported = manager.open(TestConstants.IMPORT_DB_NAME);
+        try {
+            assertFalse(exported.isTable("tiles_b"));
+            TileDao tileDao = exported.getTileDao("tiles_a");
+            assertEquals(20, tileDao.count());
+            assertEquals(0, tileDao.count(0));
+            assertEquals(1, tileDao.getMinZoom());
+            assertNull(tileDao.getTileMatrix(0));
+        } finally {
+            exported.close();
+        }
+
+        assertTrue(manager.delete(TestConstants.TEST_DB_NAME));
+        assertTrue(manager.delete(TestConstants.IMPORT_DB_NAME));
+        assertTrue(exportedFile.delete());
+        assertTrue(filteredFile.delete());
+    }
+
     /**
      * Test importing a database from a GeoPackage file as an external link
      */
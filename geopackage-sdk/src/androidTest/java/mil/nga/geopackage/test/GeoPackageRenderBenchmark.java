@@ -0,0 +1,239 @@
+package mil.nga.geopackage.test;
+
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Random;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageManager;
+import mil.nga.geopackage.benchmark.BenchmarkResults;
+import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
+import mil.nga.geopackage.factory.GeoPackageFactory;
+import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.schema.TableColumnKey;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.features.DefaultFeatureTiles;
+import mil.nga.geopackage.tiles.features.FeatureTileGenerator;
+import mil.nga.geopackage.tiles.features.FeatureTiles;
+import mil.nga.geopackage.tiles.retriever.TileCreator;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.sf.GeometryType;
+import mil.nga.sf.Point;
+import mil.nga.sf.proj.Projection;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Device benchmarks of the rendering and native index paths not runnable on
+ * the JVM: feature tile drawing, tile creation with and without reprojection,
+ * and RTree index builds. Results are logged and written as JSON to the app
+ * files directory in the same format as the JVM benchmark suite.
+ *
+ * @author osbornb
+ */
+public class GeoPackageRenderBenchmark extends BaseTestCase {
+
+    private static final String LOG_NAME = GeoPackageRenderBenchmark.class.getSimpleName();
+    private static final String GEOPACKAGE_NAME = "render_benchmark";
+    private static final String FEATURE_TABLE = "features";
+    private static final String TILE_TABLE = "tiles";
+    private static final String OUTPUT_FILE = "geopackage-render-benchmark.json";
+    private static final int FEATURES = 5000;
+    private static final int MAX_ZOOM = 3;
+    private static final int TILE_REQUESTS = 100;
+    private static final int TILE_SIZE = 256;
+
+    /**
+     * GeoPackage manager
+     */
+    private GeoPackageManager manager;
+
+    /**
+     * GeoPackage
+     */
+    private GeoPackage geoPackage;
+
+    /**
+     * Constructor
+     */
+    public GeoPackageRenderBenchmark() {
+
+    }
+
+    /**
+     * Create the GeoPackage
+     */
+    @Before
+    public void createGeoPackage() {
+        manager = GeoPackageFactory.getManager(activity);
+        manager.delete(GEOPACKAGE_NAME);
+        manager.create(GEOPACKAGE_NAME);
+        geoPackage = manager.open(GEOPACKAGE_NAME);
+    }
+
+    /**
+     * Close and delete the GeoPackage
+     */
+    @After
+    public void deleteGeoPackage() {
+        if (geoPackage != null) {
+            geoPackage.close();
+        }
+        manager.delete(GEOPACKAGE_NAME);
+    }
+
+    /**
+     * Run the benchmarks and write the results
+     *
+     * @throws SQLException upon error
+     * @throws IOException  upon error
+     */
+    @Test
+    public void testBenchmarks() throws SQLException, IOException {
+
+        BenchmarkResults results = new BenchmarkResults("device");
+        Random random = new Random(FEATURES);
+
+        FeatureDao featureDao = createFeatures(random);
+
+        FeatureIndexManager indexManager = new FeatureIndexManager(activity,
+                geoPackage, featureDao);
+        indexManager.setContinueOnError(false);
+        try {
+            long start = System.nanoTime();
+            int indexed = indexManager.index(FeatureIndexType.RTREE, true);
+            results.record("index_build_rtree", indexed, start);
+            assertEquals(FEATURES, indexed);
+        } finally {
+            indexManager.close();
+        }
+
+        FeatureTiles featureTiles = new DefaultFeatureTiles(activity,
+                geoPackage, featureDao);
+
+        int tiles = 0;
+        long start = System.nanoTime();
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            int count = 1 << zoom;
+            for (int x = 0; x < count; x++) {
+                for (int y = 0; y < count; y++) {
+                    featureTiles.drawTileBytes(x, y, zoom);
+                    tiles++;
+                }
+            }
+        }
+        results.record("feature_tile_draw", tiles, start);
+
+        Projection webMercator = ProjectionFactory.getProjection(
+                ProjectionConstants.AUTHORITY_EPSG,
+                ProjectionConstants.EPSG_WEB_MERCATOR);
+        Projection wgs84 = ProjectionFactory.getProjection(
+                ProjectionConstants.AUTHORITY_EPSG,
+                ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+
+        BoundingBox webMercatorBoundingBox = new BoundingBox(
+                -ProjectionConstants.WEB_MERCATOR_HALF_WORLD_WIDTH,
+                -ProjectionConstants.WEB_MERCATOR_HALF_WORLD_WIDTH,
+                ProjectionConstants.WEB_MERCATOR_HALF_WORLD_WIDTH,
+                ProjectionConstants.WEB_MERCATOR_HALF_WORLD_WIDTH);
+        FeatureTileGenerator generator = new FeatureTileGenerator(activity,
+                geoPackage, TILE_TABLE, featureTiles, 0, MAX_ZOOM,
+                webMercatorBoundingBox, webMercator);
+        start = System.nanoTime();
+        int generated = generator.generateTiles();
+        results.record("feature_tile_generate", generated, start);
+        assertTrue(generated > 0);
+
+        TileDao tileDao = geoPackage.getTileDao(TILE_TABLE);
+
+        TileCreator tileCreator = new TileCreator(tileDao, TILE_SIZE,
+                TILE_SIZE, webMercator);
+        start = System.nanoTime();
+        for (int i = 0; i < TILE_REQUESTS; i++) {
+            int zoom = random.nextInt(MAX_ZOOM + 1);
+            int count = 1 << zoom;
+            assertNotNull(tileCreator.getTile(TileBoundingBoxUtils
+                    .getWebMercatorBoundingBox(random.nextInt(count),
+                            random.nextInt(count), zoom)));
+        }
+        results.record("tile_create", TILE_REQUESTS, start);
+
+        tileCreator = new TileCreator(tileDao, TILE_SIZE, TILE_SIZE, wgs84);
+        start = System.nanoTime();
+        for (int i = 0; i < TILE_REQUESTS; i++) {
+            double minLongitude = -170 + random.nextDouble() * 300;
+            double minLatitude = -80 + random.nextDouble() * 120;
+            assertNotNull(tileCreator.getTile(new BoundingBox(minLongitude,
+                    minLatitude, minLongitude + 40, minLatitude + 40)));
+        }
+        results.record("tile_create_reprojected", TILE_REQUESTS, start);
+
+        for (BenchmarkResults.Result result : results.getResults()) {
+            Log.i(LOG_NAME, result.toString());
+        }
+        File output = new File(activity.getFilesDir(), OUTPUT_FILE);
+        results.write(output);
+        Log.i(LOG_NAME, "Results: " + output.getAbsolutePath());
+    }
+
+    /**
+     * Create a feature table of random points
+     *
+     * @param random random
+     * @return feature DAO
+     * @throws SQLException upon error
+     */
+    private FeatureDao createFeatures(Random random) throws SQLException {
+
+        GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setId(new TableColumnKey(FEATURE_TABLE, "geom"));
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        geometryColumns = geoPackage.createFeatureTableWithMetadata(
+                geometryColumns, new BoundingBox(-170, -80, 170, 80),
+                srs.getId());
+
+        FeatureDao featureDao = geoPackage.getFeatureDao(geometryColumns);
+        featureDao.beginTransaction();
+        try {
+            for (int i = 0; i < FEATURES; i++) {
+                FeatureRow row = featureDao.newRow();
+                GeoPackageGeometryData geometryData = new GeoPackageGeometryData(
+                        srs.getSrsId());
+                geometryData.setGeometry(new Point(
+                        -170 + random.nextDouble() * 340,
+                        -80 + random.nextDouble() * 160));
+                row.setGeometry(geometryData);
+                featureDao.create(row);
+            }
+            featureDao.endTransaction(true);
+        } catch (RuntimeException e) {
+            featureDao.endTransaction(false);
+            throw e;
+        }
+
+        return featureDao;
+    }
+
+}
@@ -0,0 +1,276 @@
+package mil.nga.geopackage.test.db;
+
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.Color;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageManager;
+import mil.nga.geopackage.db.GeoPackageConnectionPool;
+import mil.nga.geopackage.db.GeoPackageDatabase;
+import mil.nga.geopackage.factory.GeoPackageFactory;
+import mil.nga.geopackage.io.BitmapConverter;
+import mil.nga.geopackage.test.BaseTestCase;
+import mil.nga.geopackage.test.tiles.TestTileServer;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.UrlTileGenerator;
+import mil.nga.geopackage.tiles.retriever.GeoPackageTileRetriever;
+import mil.nga.geopackage.tiles.user.TileCursor;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileRow;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test GeoPackage read connection pools and multi-threaded tile render
+ * throughput with and without a pool
+ *
+ * @author osbornb
+ */
+public class GeoPackageConnectionPoolTest extends BaseTestCase {
+
+    private static final String LOG_NAME = GeoPackageConnectionPoolTest.class.getSimpleName();
+    private static final String GEOPACKAGE_NAME = "connection_pool";
+    private static final String TABLE_NAME = "tiles";
+    private static final int MAX_ZOOM = 3;
+    private static final int TILE_COUNT = 85;
+
+    /**
+     * GeoPackage manager
+     */
+    private GeoPackageManager manager;
+
+    /**
+     * Constructor
+     */
+    public GeoPackageConnectionPoolTest() {
+
+    }
+
+    /**
+     * Create the tile GeoPackage
+     *
+     * @throws Exception upon error
+     */
+    @Before
+    public void createGeoPackage() throws Exception {
+
+        manager = GeoPackageFactory.getManager(activity);
+        manager.delete(GEOPACKAGE_NAME);
+        manager.create(GEOPACKAGE_NAME);
+
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+        byte[] tile = BitmapConverter.toBytes(bitmap, CompressFormat.PNG);
+        bitmap.recycle();
+
+        GeoPackage geoPackage = manager.open(GEOPACKAGE_NAME);
+        TestTileServer server = new TestTileServer(tile);
+        try {
+            UrlTileGenerator tileGenerator = new UrlTileGenerator(activity,
+                    geoPackage, TABLE_NAME, server.getUrl() + "/{z}/{x}/{y}.png",
+                    0, MAX_ZOOM, TileBoundingBoxUtils.getWebMercatorBoundingBox(0, 0, 0),
+                    ProjectionFactory
+                            .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR));
+            tileGenerator.setXYZTiles(true);
+            assertEquals(TILE_COUNT, tileGenerator.generateTiles());
+        } finally {
+            server.close();
+            geoPackage.close();
+        }
+    }
+
+    /**
+     * Delete the tile GeoPackage
+     */
+    @After
+    public void deleteGeoPackage() {
+        manager.delete(GEOPACKAGE_NAME);
+    }
+
+    /**
+     * Test reads on pooled connections and writes on the writer connection
+     *
+     * @throws Exception upon error
+     */
+    @Test
+    public void testReadPool() throws Exception {
+
+        GeoPackage geoPackage = manager.open(GEOPACKAGE_NAME, true, 2);
+        GeoPackageConnectionPool pool = null;
+        try {
+
+            GeoPackageDatabase db = geoPackage.getConnection().getDb();
+            pool = db.getReadPool();
+            assertNotNull(pool);
+            assertEquals(2, pool.size());
+            assertTrue(db.getRead() == pool.getReader());
+
+            TileDao tileDao = geoPackage.getTileDao(TABLE_NAME);
+            assertEquals(TILE_COUNT, tileDao.count());
+
+            // Reads within a transaction see uncommitted writes
+            tileDao.beginTransaction();
+            try {
+                assertTrue(db.getRead() == db.getActive());
+                assertEquals(1, tileDao.deleteTile(0, 0, 0));
+                assertNull(tileDao.queryForTile(0, 0, 0));
+                assertEquals(TILE_COUNT - 1, count(tileDao));
+            } finally {
+                tileDao.endTransaction(false);
+            }
+            assertNotNull(tileDao.queryForTile(0, 0, 0));
+
+            // Committed writes are visible to the pooled connections
+            assertEquals(1, tileDao.deleteTile(0, 0, 0));
+            assertNull(tileDao.queryForTile(0, 0, 0));
+            assertEquals(TILE_COUNT - 1, count(tileDao));
+
+            // Pragmas read the writer connection state
+            Cursor cursor = db.rawQuery("PRAGMA foreign_keys", null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(1, cursor.getInt(0));
+            } finally {
+                cursor.close();
+            }
+
+            // Copies share a reference to the pool
+            GeoPackageDatabase copy = db.copy();
+            assertTrue(copy.getReadPool() == pool);
+            pool.close();
+            assertFalse(pool.isClosed());
+            assertEquals(TILE_COUNT - 1, count(tileDao));
+
+        } finally {
+            geoPackage.close();
+        }
+        assertTrue(pool.isClosed());
+
+        geoPackage = manager.open(GEOPACKAGE_NAME, true, 0);
+        try {
+            assertNull(geoPackage.getConnection().getDb().getReadPool());
+        } finally {
+            geoPackage.close();
+        }
+    }
+
+    /**
+     * Test multi-threaded tile render throughput with and without a read
+     * connection pool
+     *
+     * @throws Exception upon error
+     */
+    @Test
+    public void testTileRenderThroughput() throws Exception {
+        int threads = 4;
+        int passes = 5;
+        testTileRenderThroughput(0, threads, passes);
+        testTileRenderThroughput(threads, threads, passes);
+    }
+
+    /**
+     * Test multi-threaded tile render throughput
+     *
+     * @param readConnections pooled read connections
+     * @param threads         render threads
+     * @param passes          render passes over all tiles per thread
+     * @throws Exception upon error
+     */
+    private void testTileRenderThroughput(int readConnections, int threads,
+                                          final int passes) throws Exception {
+
+        final GeoPackage geoPackage = manager.open(GEOPACKAGE_NAME, false,
+                readConnections);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+
+            long start = System.nanoTime();
+
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        TileDao tileDao = geoPackage.getTileDao(TABLE_NAME);
+                        GeoPackageTileRetriever retriever = new GeoPackageTileRetriever(
+                                tileDao, 256, 256);
+                        int rendered = 0;
+                        for (int pass = 0; pass < passes; pass++) {
+                            for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+                                int tiles = 1 << zoom;
+                                for (int x = 0; x < tiles; x++) {
+                                    for (int y = 0; y < tiles; y++) {
+                                        if (retriever.getTile(x, y, zoom) != null) {
+                                            rendered++;
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                        return rendered;
+                    }
+                }));
+            }
+
+            int rendered = 0;
+            for (Future<Integer> future : futures) {
+                rendered += future.get();
+            }
+
+            long millis = (System.nanoTime() - start) / 1000000;
+            Log.i(LOG_NAME, "Read Connections: " + readConnections
+                    + ", Threads: " + threads + ", Tiles: " + rendered
+                    + ", Time: " + millis + " ms, Throughput: "
+                    + (rendered * 1000.0f / Math.max(millis, 1))
+                    + " tiles/s");
+
+            assertEquals(TILE_COUNT * threads * passes, rendered);
+
+        } finally {
+            executor.shutdown();
+            geoPackage.close();
+        }
+    }
+
+    /**
+     * Count the tile rows by iterating a query
+     *
+     * @param tileDao tile dao
+     * @return row count
+     */
+    private static int count(TileDao tileDao) {
+        int count = 0;
+        TileCursor cursor = tileDao.queryForAll();
+        try {
+            while (cursor.moveToNext()) {
+                TileRow row = cursor.getRow();
+                assertNotNull(row.getTileData());
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,107 @@
+package mil.nga.geopackage.test.db;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import mil.nga.geopackage.GeoPackageManager;
+import mil.nga.geopackage.db.metadata.GeoPackageMetadata;
+import mil.nga.geopackage.db.metadata.GeoPackageMetadataCatalog;
+import mil.nga.geopackage.db.metadata.GeoPackageMetadataDataSource;
+import mil.nga.geopackage.db.metadata.GeoPackageMetadataDb;
+import mil.nga.geopackage.factory.GeoPackageFactory;
+import mil.nga.geopackage.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the GeoPackage metadata catalog
+ *
+ * @author osbornb
+ */
+public class GeoPackageMetadataCatalogTest extends BaseTestCase {
+
+    private static final String PREFIX = "catalog_test_";
+
+    /**
+     * Constructor
+     */
+    public GeoPackageMetadataCatalogTest() {
+
+    }
+
+    /**
+     * Test manager calls answered by the catalog across creates, renames,
+     * deletes, and writes from other metadata connections
+     */
+    @Test
+    public void testCatalog() {
+
+        GeoPackageManager manager = GeoPackageFactory.getManager(activity);
+        GeoPackageMetadataCatalog catalog = GeoPackageMetadataCatalog
+                .getInstance(activity);
+
+        for (String name : manager.databasesLike(PREFIX + "%")) {
+            manager.delete(name);
+        }
+
+        int count = 5;
+        for (int i = 0; i < count; i++) {
+            assertTrue(manager.create(PREFIX + i));
+        }
+
+        List<String> names = manager.databasesLike(PREFIX + "%");
+        assertEquals(count, names.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(PREFIX + i, names.get(i));
+            assertTrue(manager.exists(PREFIX + i));
+            assertFalse(manager.isExternal(PREFIX + i));
+        }
+        assertEquals(count, manager.databasesLike(PREFIX.toUpperCase() + "_").size());
+        assertFalse(manager.databasesNotLike(PREFIX + "%").contains(PREFIX + "0"));
+
+        assertTrue(manager.rename(PREFIX + "0", PREFIX + "renamed"));
+        assertFalse(manager.exists(PREFIX + "0"));
+        assertTrue(manager.exists(PREFIX + "renamed"));
+        assertNotNull(catalog.get(PREFIX + "renamed"));
+        assertNull(catalog.get(PREFIX + "0"));
+
+        // Write through a separate metadata connection
+        String external = PREFIX + "external";
+        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(activity);
+        metadataDb.open();
+        try {
+            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
+            GeoPackageMetadata metadata = new GeoPackageMetadata();
+            metadata.setName(external);
+            metadata.setExternalPath(new File(activity.getCacheDir(),
+                    external + ".gpkg").getAbsolutePath());
+            dataSource.create(metadata);
+        } finally {
+            metadataDb.close();
+        }
+        assertTrue(catalog.isExternal(external));
+
+        // Missing external files are removed when listing
+        assertFalse(manager.databases().contains(external));
+        assertNull(catalog.get(external));
+
+        for (String name : manager.databasesLike(PREFIX + "%")) {
+            assertTrue(manager.delete(name));
+        }
+        assertTrue(manager.databasesLike(PREFIX + "%").isEmpty());
+
+        // Deleting the metadata database reopens the catalog connection
+        manager.create(PREFIX + "0");
+        activity.deleteDatabase(GeoPackageMetadataDb.DATABASE_NAME);
+        assertNull(catalog.get(PREFIX + "0"));
+        assertTrue(manager.exists(PREFIX + "0"));
+        assertTrue(manager.delete(PREFIX + "0"));
+    }
+
+}
@@ -0,0 +1,155 @@
+package mil.nga.geopackage.test.db;
+
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
+import mil.nga.geopackage.db.StatementCache;
+import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.schema.TableColumnKey;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.sf.GeometryType;
+import mil.nga.sf.Point;
+import mil.nga.sf.proj.ProjectionConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Statement Cache reuse of compiled CRUD statements and single row
+ * insert, update, and id lookup throughput on a feature table
+ *
+ * @author osbornb
+ */
+public class StatementCacheTest extends CreateGeoPackageTestCase {
+
+    private static final String LOG_NAME = StatementCacheTest.class.getSimpleName();
+
+    /**
+     * Constructor
+     */
+    public StatementCacheTest() {
+
+    }
+
+    /**
+     * Test repeated single row CRUD through cached statements
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testCrud() throws SQLException {
+
+        int count = 2000;
+
+        GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setId(new TableColumnKey("statement_cache", "geom"));
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        geometryColumns = geoPackage.createFeatureTableWithMetadata(
+                geometryColumns, new BoundingBox(-180, -90, 180, 90),
+                srs.getId());
+
+        FeatureDao dao = geoPackage.getFeatureDao(geometryColumns);
+        StatementCache<SQLiteStatement> cache = dao.getDb().getDb()
+                .getAndroidSQLiteDatabase().getStatementCache();
+        cache.clear();
+        int hits = cache.hitCount();
+
+        FeatureRow[] rows = new FeatureRow[count];
+
+        // Inserts
+        long start = System.nanoTime();
+        dao.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                rows[i] = dao.newRow();
+                rows[i].setGeometry(geometryData(srs.getSrsId(), i, i));
+                dao.create(rows[i]);
+            }
+            dao.endTransaction(true);
+        } catch (RuntimeException e) {
+            dao.endTransaction(false);
+            throw e;
+        }
+        log("Inserts", count, start);
+        assertTrue(cache.hitCount() - hits >= count - 1);
+
+        // Updates
+        start = System.nanoTime();
+        dao.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                rows[i].setGeometry(geometryData(srs.getSrsId(), -i, -i));
+                assertEquals(1, dao.update(rows[i]));
+            }
+            dao.endTransaction(true);
+        } catch (RuntimeException e) {
+            dao.endTransaction(false);
+            throw e;
+        }
+        log("Updates", count, start);
+        assertTrue(cache.hitCount() - hits >= 2 * count - 2);
+
+        // Id lookups
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            FeatureRow row = dao.queryForIdRow(rows[i].getId());
+            assertNotNull(row);
+            Point point = (Point) row.getGeometry().getGeometry();
+            assertEquals(-i, point.getX(), 0.0);
+        }
+        log("Id Lookups", count, start);
+
+        assertEquals(1, dao.deleteById(rows[0].getId()));
+        assertEquals(count - 1, dao.count());
+
+        // Schema statements clear the cache
+        assertTrue(cache.size() > 0);
+        dao.getDb().execSQL("CREATE INDEX statement_cache_geom ON statement_cache (geom)");
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Create point geometry data
+     *
+     * @param srsId srs id
+     * @param x     x coordinate
+     * @param y     y coordinate
+     * @return geometry data
+     */
+    private static GeoPackageGeometryData geometryData(long srsId, double x,
+                                                       double y) {
+        GeoPackageGeometryData geometryData = new GeoPackageGeometryData(srsId);
+        geometryData.setGeometry(new Point(x, y));
+        return geometryData;
+    }
+
+    /**
+     * Log the operation throughput
+     *
+     * @param operation operation
+     * @param count     operation count
+     * @param start     start nano time
+     */
+    private static void log(String operation, int count, long start) {
+        long millis = (System.nanoTime() - start) / 1000000;
+        Log.i(LOG_NAME, operation + ": " + count + ", Time: " + millis
+                + " ms, Throughput: " + (count * 1000.0f / Math.max(millis, 1))
+                + " per second");
+    }
+
+}
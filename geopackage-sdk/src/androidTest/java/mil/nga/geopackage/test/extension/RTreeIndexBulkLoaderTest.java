@@ -0,0 +1,199 @@
+package mil.nga.geopackage.test.extension;
+
+import android.util.Log;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
+import mil.nga.geopackage.extension.Extensions;
+import mil.nga.geopackage.extension.RTreeIndexBulkLoader;
+import mil.nga.geopackage.extension.RTreeIndexExtension;
+import mil.nga.geopackage.extension.RTreeIndexTableDao;
+import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.schema.TableColumnKey;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.sf.GeometryType;
+import mil.nga.sf.Point;
+import mil.nga.sf.proj.ProjectionConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test RTree Index bulk loading in each sort order and indexing feature
+ * writes after creation
+ *
+ * @author osbornb
+ */
+public class RTreeIndexBulkLoaderTest extends CreateGeoPackageTestCase {
+
+    private static final String LOG_NAME = RTreeIndexBulkLoaderTest.class.getSimpleName();
+    private static final String TABLE_NAME = "rtree_bulk_load";
+    private static final int GRID = 100;
+
+    /**
+     * Constructor
+     */
+    public RTreeIndexBulkLoaderTest() {
+
+    }
+
+    /**
+     * Test bulk loading the RTree index
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testBulkLoad() throws SQLException {
+
+        GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setId(new TableColumnKey(TABLE_NAME, "geom"));
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        geometryColumns = geoPackage.createFeatureTableWithMetadata(
+                geometryColumns, new BoundingBox(0, 0, GRID, GRID),
+                srs.getId());
+
+        FeatureDao featureDao = geoPackage.getFeatureDao(geometryColumns);
+        featureDao.beginTransaction();
+        try {
+            for (int x = 0; x < GRID; x++) {
+                for (int y = 0; y < GRID; y++) {
+                    FeatureRow row = featureDao.newRow();
+                    GeoPackageGeometryData geometryData = new GeoPackageGeometryData(
+                            srs.getSrsId());
+                    geometryData.setGeometry(new Point(x, y));
+                    row.setGeometry(geometryData);
+                    featureDao.create(row);
+                }
+            }
+            // Null geometries are not indexed
+            featureDao.create(featureDao.newRow());
+            featureDao.endTransaction(true);
+        } catch (RuntimeException e) {
+            featureDao.endTransaction(false);
+            throw e;
+        }
+
+        RTreeIndexExtension extension = new RTreeIndexExtension(geoPackage);
+        RTreeIndexTableDao tableDao = extension.getTableDao(featureDao);
+
+        for (RTreeIndexBulkLoader.SortOrder sortOrder : RTreeIndexBulkLoader.SortOrder
+                .values()) {
+
+            assertFalse(tableDao.has());
+
+            RTreeIndexBulkLoader loader = extension.getBulkLoader(featureDao);
+            loader.setSortOrder(sortOrder);
+            loader.setChunkLimit(333);
+            loader.setBatchSize(1000);
+            loader.setCreateTriggers(false);
+
+            long start = System.nanoTime();
+            Extensions created = loader.create();
+            long millis = (System.nanoTime() - start) / 1000000;
+            Log.i(LOG_NAME, "Sort Order: " + sortOrder + ", Entries: "
+                    + loader.getCount() + ", Time: " + millis + " ms");
+
+            assertNotNull(created);
+            assertTrue(tableDao.has());
+            assertEquals(GRID * GRID, loader.getCount());
+            assertEquals(GRID * GRID, tableDao.count());
+
+            assertEquals(100, tableDao.count(new BoundingBox(10, 10, 19.5, 19.5)));
+            assertEquals(GRID * GRID,
+                    tableDao.count(new BoundingBox(0, 0, GRID, GRID)));
+
+            tableDao.delete();
+        }
+
+    }
+
+    /**
+     * Test inserting and indexing features after creating the RTree index,
+     * which does not create the triggers calling undefined SQL functions
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testCreateInsert() throws SQLException {
+
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setId(new TableColumnKey(TABLE_NAME + "_insert",
+                "geom"));
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        geometryColumns = geoPackage.createFeatureTableWithMetadata(
+                geometryColumns, new BoundingBox(0, 0, GRID, GRID),
+                srs.getId());
+        FeatureDao featureDao = geoPackage.getFeatureDao(geometryColumns);
+        featureDao.create(createPointRow(featureDao, srs, 1, 1));
+
+        FeatureIndexManager indexManager = new FeatureIndexManager(activity,
+                geoPackage, featureDao);
+        try {
+            RTreeIndexTableDao tableDao = indexManager.getRTreeIndexTableDao();
+            assertNotNull(tableDao.create());
+            assertTrue(tableDao.has());
+            assertFalse(tableDao.hasTriggers());
+            assertEquals(1, tableDao.count());
+
+            FeatureRow row = createPointRow(featureDao, srs, 5, 5);
+            featureDao.create(row);
+            assertEquals(0, tableDao.count(new BoundingBox(4, 4, 6, 6)));
+            assertTrue(indexManager.index(FeatureIndexType.RTREE, row));
+            assertEquals(2, tableDao.count());
+            assertEquals(1, tableDao.count(new BoundingBox(4, 4, 6, 6)));
+
+            row.setGeometry(createPointRow(featureDao, srs, 8, 8)
+                    .getGeometry());
+            featureDao.update(row);
+            assertTrue(indexManager.index(FeatureIndexType.RTREE, row));
+            assertEquals(0, tableDao.count(new BoundingBox(4, 4, 6, 6)));
+            assertEquals(1, tableDao.count(new BoundingBox(7, 7, 9, 9)));
+
+            tableDao.delete();
+        } finally {
+            indexManager.close();
+        }
+    }
+
+    /**
+     * Create a point feature row
+     *
+     * @param featureDao feature DAO
+     * @param srs        spatial reference system
+     * @param x          x coordinate
+     * @param y          y coordinate
+     * @return feature row
+     */
+    private static FeatureRow createPointRow(FeatureDao featureDao,
+                                             SpatialReferenceSystem srs,
+                                             double x, double y) {
+        FeatureRow row = featureDao.newRow();
+        GeoPackageGeometryData geometryData = new GeoPackageGeometryData(
+                srs.getSrsId());
+        geometryData.setGeometry(new Point(x, y));
+        row.setGeometry(geometryData);
+        return row;
+    }
+
+}
@@ -0,0 +1,229 @@
+package mil.nga.geopackage.test.extension.dedup;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.Color;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import mil.nga.geopackage.extension.dedup.TileDedup;
+import mil.nga.geopackage.io.BitmapConverter;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.test.tiles.TestTileServer;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.UrlTileGenerator;
+import mil.nga.geopackage.tiles.user.TileCursor;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileRow;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Tile Dedup extension storing identical tiles once
+ *
+ * @author osbornb
+ */
+public class TileDedupTest extends CreateGeoPackageTestCase {
+
+    /**
+     * Tile bytes served
+     */
+    private byte[] tile;
+
+    /**
+     * Embedded tile server
+     */
+    private TestTileServer server;
+
+    /**
+     * Constructor
+     */
+    public TileDedupTest() {
+
+    }
+
+    /**
+     * Start the tile server
+     *
+     * @throws IOException upon error
+     */
+    @Before
+    public void startServer() throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+        tile = BitmapConverter.toBytes(bitmap, CompressFormat.PNG);
+        bitmap.recycle();
+        server = new TestTileServer(tile);
+    }
+
+    /**
+     * Stop the tile server
+     */
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    /**
+     * Test generating deduplicated tiles
+     *
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testGenerateDedup() throws IOException, SQLException {
+
+        String tableName = "dedup_tiles";
+        int count = generateTiles(tableName, true);
+        assertEquals(21, count);
+
+        TileDedup dedup = new TileDedup(geoPackage, tableName);
+        assertTrue(dedup.has());
+        assertEquals(1, dedup.count());
+        assertEquals(count, dedup.countReferences());
+
+        TileDao tileDao = geoPackage.getTileDao(tableName);
+        assertNotNull(tileDao.getDedup());
+        testResolved(tileDao, count);
+
+        // Restores the tile data
+        dedup.delete();
+        assertFalse(dedup.has());
+        tileDao = geoPackage.getTileDao(tableName);
+        assertNull(tileDao.getDedup());
+        testResolved(tileDao, count);
+    }
+
+    /**
+     * Test compacting an existing tile table
+     *
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testCompact() throws IOException, SQLException {
+
+        String tableName = "compact_tiles";
+        int count = generateTiles(tableName, false);
+
+        TileDedup dedup = new TileDedup(geoPackage, tableName);
+        assertFalse(dedup.has());
+        dedup.setBatchSize(4);
+        assertEquals(count, dedup.compact());
+        assertTrue(dedup.has());
+        assertEquals(1, dedup.count());
+        assertEquals(count, dedup.countReferences());
+
+        // Already compacted rows are not converted again
+        assertEquals(0, dedup.compact());
+
+        // Raw tile values hold references, rows resolve them
+        TileDao tileDao = geoPackage.getTileDao(tableName);
+        TileRow tileRow = tileDao.queryForTile(0, 0, 0);
+        assertTrue(TileDedup.isReference((byte[]) tileRow
+                .getValue(tileRow.getTileDataColumnIndex())));
+        testResolved(tileDao, count);
+
+        // Unreferenced blobs are deleted
+        assertEquals(1, tileDao.deleteTile(0, 0, 0));
+        assertEquals(0, dedup.deleteUnreferenced());
+        tileDao.delete(null, null);
+        assertEquals(1, dedup.deleteUnreferenced());
+        assertEquals(0, dedup.count());
+    }
+
+    /**
+     * Test copying and deleting deduplicated tile tables
+     *
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testCopyDelete() throws IOException, SQLException {
+
+        String tableName = "copy_dedup_tiles";
+        int count = generateTiles(tableName, true);
+
+        // Copies with extensions share the copied blob table
+        String copyTableName = tableName + "_copy";
+        geoPackage.copyTable(tableName, copyTableName);
+        TileDedup copyDedup = new TileDedup(geoPackage, copyTableName);
+        assertTrue(copyDedup.has());
+        assertEquals(1, copyDedup.count());
+        TileDao copyDao = geoPackage.getTileDao(copyTableName);
+        assertNotNull(copyDao.getDedup());
+        testResolved(copyDao, count);
+
+        // Copies without extensions restore the tile data
+        String restoredTableName = tableName + "_restored";
+        geoPackage.copyTableNoExtensions(tableName, restoredTableName);
+        assertFalse(new TileDedup(geoPackage, restoredTableName).has());
+        TileDao restoredDao = geoPackage.getTileDao(restoredTableName);
+        assertNull(restoredDao.getDedup());
+        testResolved(restoredDao, count);
+
+        // Deleting the tile tables drops the blob tables
+        TileDedup dedup = new TileDedup(geoPackage, tableName);
+        geoPackage.deleteTable(tableName);
+        assertFalse(dedup.has());
+        assertFalse(geoPackage.isTable(dedup.getTableName()));
+        testResolved(geoPackage.getTileDao(copyTableName), count);
+        geoPackage.deleteTable(copyTableName);
+        assertFalse(geoPackage.isTable(copyDedup.getTableName()));
+    }
+
+    /**
+     * Generate the tiles from the tile server
+     *
+     * @param tableName table name
+     * @param dedup     true to deduplicate tiles
+     * @return tile count
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    private int generateTiles(String tableName, boolean dedup)
+            throws IOException, SQLException {
+        UrlTileGenerator tileGenerator = new UrlTileGenerator(activity,
+                geoPackage, tableName, server.getUrl() + "/{z}/{x}/{y}.png",
+                0, 2, TileBoundingBoxUtils.getWebMercatorBoundingBox(0, 0, 0),
+                ProjectionFactory
+                        .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR));
+        tileGenerator.setXYZTiles(true);
+        tileGenerator.setDedup(dedup);
+        return tileGenerator.generateTiles();
+    }
+
+    /**
+     * Test the tile data of each row resolves to the served tile
+     *
+     * @param tileDao tile dao
+     * @param count   expected tile count
+     */
+    private void testResolved(TileDao tileDao, int count) {
+        int rows = 0;
+        TileCursor cursor = tileDao.queryForAll();
+        try {
+            while (cursor.moveToNext()) {
+                TileRow tileRow = cursor.getRow();
+                assertArrayEquals(tile, tileRow.getTileData());
+                rows++;
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(count, rows);
+    }
+
+}
@@ -5,10 +5,13 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
+import androidx.collection.LongSparseArray;
+
 import junit.framework.TestCase;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,6 +29,7 @@ import mil.nga.geopackage.extension.related.UserMappingTable;
 import mil.nga.geopackage.extension.related.dublin.DublinCoreType;
 import mil.nga.geopackage.extension.related.media.MediaDao;
 import mil.nga.geopackage.extension.related.media.MediaRow;
+import mil.nga.geopackage.extension.related.media.MediaThumbnails;
 import mil.nga.geopackage.extension.related.media.MediaTable;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
@@ -187,6 +191,45 @@ public class RelatedMediaUtils {
         TestCase.assertEquals(mediaRowId + 1, copyMediaRowId);
         TestCase.assertEquals(mediaCount, mediaDao.count());
 
+        // Test media bounds and thumbnails
+        MediaThumbnails thumbnails = new MediaThumbnails(geoPackage, mediaDao);
+        BitmapFactory.Options bounds = thumbnails.getBounds(mediaRowId);
+        TestCase.assertEquals(imageWidth, bounds.outWidth);
+        TestCase.assertEquals(imageHeight, bounds.outHeight);
+        TestCase.assertNull(thumbnails.getBounds(copyMediaRowId + 1));
+        int thumbnailSize = Math.max(1, Math.max(imageWidth, imageHeight) / 4);
+        Bitmap thumbnail = thumbnails.getThumbnail(mediaRowId, thumbnailSize);
+        TestCase.assertNotNull(thumbnail);
+        TestCase.assertEquals(thumbnailSize,
+                Math.max(thumbnail.getWidth(), thumbnail.getHeight()));
+        TestCase.assertTrue(thumbnails.has());
+        TestCase.assertEquals(1, thumbnails.count());
+        MediaThumbnails.clearCache();
+        thumbnail = thumbnails.getThumbnail(mediaRowCopy, thumbnailSize);
+        TestCase.assertEquals(thumbnailSize,
+                Math.max(thumbnail.getWidth(), thumbnail.getHeight()));
+        TestCase.assertEquals(2, thumbnails.count());
+        Bitmap cachedThumbnail = thumbnails.getThumbnail(copyMediaRowId,
+                thumbnailSize);
+        TestCase.assertNotSame(thumbnail, cachedThumbnail);
+        TestCase.assertTrue(thumbnail.sameAs(cachedThumbnail));
+        cachedThumbnail.recycle();
+        TestCase.assertTrue(thumbnail.sameAs(
+                thumbnails.getThumbnail(mediaRowCopy, thumbnailSize)));
+        byte[] copyData = mediaRowCopy.getData();
+        mediaRowCopy.setData(Arrays.copyOf(copyData, copyData.length + 1));
+        TestCase.assertEquals(1, mediaDao.update(mediaRowCopy));
+        cachedThumbnail = thumbnails.getThumbnail(copyMediaRowId,
+                thumbnailSize);
+        TestCase.assertNotNull(cachedThumbnail);
+        TestCase.assertTrue(thumbnail.sameAs(cachedThumbnail));
+        TestCase.assertEquals(2, thumbnails.count());
+        TestCase.assertNull(thumbnails.getThumbnail(copyMediaRowId + 1,
+                thumbnailSize));
+        TestCase.assertEquals(1, thumbnails.deleteThumbnails(mediaRowId));
+        thumbnails.delete();
+        TestCase.assertFalse(thumbnails.has());
+
         // Build the Feature ids
         FeatureDao featureDao = geoPackage.getFeatureDao(baseTableName);
         FeatureCursor featureCursor = featureDao.queryForAll();
@@ -331,6 +374,42 @@ public class RelatedMediaUtils {
             }
             featureCursor.close();
             TestCase.assertEquals(totalMappedCount, totalMapped);
+
+            // Test the batched mappings and related media of all features
+            List<Long> featureIdList = new ArrayList<>();
+            featureCursor = featureDao.queryForAll();
+            while (featureCursor.moveToNext()) {
+                featureIdList.add(featureCursor.getRow().getId());
+            }
+            featureCursor.close();
+            LongSparseArray<long[]> batchMappings = rte.getMappingsForBase(
+                    featureRelation, featureIdList);
+            LongSparseArray<List<MediaRow>> batchMedia = rte
+                    .getRelatedMediaForBase(featureRelation, featureIdList);
+            int batchMapped = 0;
+            for (long featureId : featureIdList) {
+                List<Long> mappedIds = rte.getMappingsForBase(featureRelation,
+                        featureId);
+                long[] batchIds = batchMappings.get(featureId);
+                List<MediaRow> mediaRows = batchMedia.get(featureId);
+                if (mappedIds.isEmpty()) {
+                    TestCase.assertNull(batchIds);
+                    TestCase.assertNull(mediaRows);
+                } else {
+                    TestCase.assertEquals(mappedIds.size(), batchIds.length);
+                    TestCase.assertEquals(mappedIds.size(), mediaRows.size());
+                    for (long batchId : batchIds) {
+                        TestCase.assertTrue(mappedIds.contains(batchId));
+                    }
+                    for (MediaRow mediaRow : mediaRows) {
+                        TestCase.assertTrue(mappedIds.contains(mediaRow.getId()));
+                        TestCase.assertEquals(contentType,
+                                mediaRow.getContentType());
+                    }
+                    batchMapped += batchIds.length;
+                }
+            }
+            TestCase.assertEquals(totalMappedCount, batchMapped);
         }
 
         // Get the relations starting from the media table
@@ -22,6 +22,7 @@ import mil.nga.geopackage.extension.style.FeatureStyle;
 import mil.nga.geopackage.extension.style.FeatureStyleExtension;
 import mil.nga.geopackage.extension.style.FeatureStyles;
 import mil.nga.geopackage.extension.style.FeatureTableStyles;
+import mil.nga.geopackage.extension.style.IconAtlas;
 import mil.nga.geopackage.extension.style.IconDao;
 import mil.nga.geopackage.extension.style.IconRow;
 import mil.nga.geopackage.extension.style.IconTable;
@@ -427,6 +428,8 @@ public class FeatureStylesUtils {
                 }
                 featureCursor.close();
 
+                validateIconAtlas(featureTableStyles);
+
             }
 
             List<String> tables = featureStyleExtension.getTables();
@@ -492,6 +495,63 @@ public class FeatureStylesUtils {
 
     }
 
+    private static void validateIconAtlas(
+            FeatureTableStyles featureTableStyles) {
+
+        IconAtlas iconAtlas = new IconAtlas();
+        int icons = iconAtlas.prewarm(featureTableStyles, 1.0f);
+        TestCase.assertTrue(icons > 0);
+        TestCase.assertTrue(iconAtlas.size() > 0);
+        TestCase.assertTrue(iconAtlas.size() <= iconAtlas.maxSize());
+
+        GeoPackage geoPackage = featureTableStyles.getGeoPackage();
+        IconRow iconRow = featureTableStyles.getTableIconDefault();
+        if (iconRow != null) {
+            Bitmap icon = iconAtlas.get(geoPackage, iconRow, 1.0f, 1.0f);
+            TestCase.assertNotNull(icon);
+            TestCase.assertSame(icon,
+                    iconAtlas.createIcon(geoPackage, iconRow, 1.0f));
+
+            Bitmap scaledIcon = iconAtlas.createIcon(geoPackage, iconRow,
+                    1.0f, 2.0f);
+            TestCase.assertNotNull(scaledIcon);
+            TestCase.assertNotSame(icon, scaledIcon);
+            TestCase.assertSame(scaledIcon,
+                    iconAtlas.createIcon(geoPackage, iconRow, 1.0f, 2.0f));
+
+            // Equal effective scales share the decoded icon
+            TestCase.assertSame(scaledIcon,
+                    iconAtlas.createIcon(geoPackage, iconRow, 2.0f, 1.0f));
+
+            // Re-queried icon rows of the same content share the icon
+            IconRow copiedIconRow = new IconRow(iconRow);
+            copiedIconRow.setData(iconRow.getData().clone());
+            TestCase.assertSame(icon,
+                    iconAtlas.get(geoPackage, copiedIconRow, 1.0f, 1.0f));
+
+            // Changed icon content is not served the cached icon
+            IconRow changedIconRow = new IconRow(iconRow);
+            Double width = iconRow.getWidth();
+            changedIconRow.setWidth(width != null ? width + 1.0 : 1.0);
+            TestCase.assertNull(iconAtlas.get(geoPackage, changedIconRow,
+                    1.0f, 1.0f));
+            byte[] changedData = iconRow.getData().clone();
+            changedData[changedData.length - 1]++;
+            copiedIconRow.setData(changedData);
+            TestCase.assertNull(iconAtlas.get(geoPackage, copiedIconRow,
+                    1.0f, 1.0f));
+
+            iconAtlas.remove(geoPackage, iconRow);
+            TestCase.assertNull(iconAtlas.get(geoPackage, iconRow, 1.0f,
+                    1.0f));
+            TestCase.assertNull(iconAtlas.get(geoPackage, iconRow, 1.0f,
+                    2.0f));
+        }
+
+        iconAtlas.clear();
+        TestCase.assertEquals(0, iconAtlas.size());
+    }
+
     private static void validateTableStyles(
             FeatureTableStyles featureTableStyles, StyleRow styleRow,
             Map<GeometryType, StyleRow> geometryTypeStyles,
@@ -37,6 +37,30 @@ public class FeatureIndexManagerCreateTest extends CreateGeoPackageTestCase {
 
     }
 
+    /**
+     * Test the feature writer
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testFeatureWriter() throws SQLException {
+
+        FeatureIndexManagerUtils.testFeatureWriter(activity, geoPackage);
+
+    }
+
+    /**
+     * Test the feature change tracker
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testChangeTracker() throws SQLException {
+
+        FeatureIndexManagerUtils.testChangeTracker(activity, geoPackage);
+
+    }
+
     /**
      * Test large index
      *
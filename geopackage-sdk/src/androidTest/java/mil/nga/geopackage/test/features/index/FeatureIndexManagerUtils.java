@@ -16,6 +16,9 @@ import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
 import mil.nga.geopackage.db.GeoPackageDataType;
+import mil.nga.geopackage.extension.RTreeIndexBulkLoader;
+import mil.nga.geopackage.extension.RTreeIndexTableDao;
+import mil.nga.geopackage.extension.index.FeatureChangeTracker;
 import mil.nga.geopackage.features.columns.GeometryColumns;
 import mil.nga.geopackage.features.index.FeatureIndexManager;
 import mil.nga.geopackage.features.index.FeatureIndexResults;
@@ -25,6 +28,7 @@ import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureRow;
 import mil.nga.geopackage.features.user.FeatureTable;
+import mil.nga.geopackage.features.user.FeatureWriter;
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
 import mil.nga.geopackage.schema.TableColumnKey;
 import mil.nga.geopackage.test.GeoPackageTestUtils;
@@ -591,6 +595,263 @@ public class FeatureIndexManagerUtils {
         }
     }
 
+    /**
+     * Test the feature writer batching writes and maintaining the GeoPackage,
+     * metadata, and trigger free RTree indexes at each commit
+     *
+     * @param activity   activity
+     * @param geoPackage GeoPackage
+     * @throws SQLException upon error
+     */
+    public static void testFeatureWriter(Activity activity, GeoPackage geoPackage)
+            throws SQLException {
+
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        FeatureDao featureDao = createPointTable(geoPackage, srs,
+                "feature_writer");
+
+        FeatureIndexManager featureIndexManager = new FeatureIndexManager(
+                activity, geoPackage, featureDao);
+        try {
+            indexWithoutTriggers(featureIndexManager);
+
+            int features = 250;
+            FeatureWriter writer = new FeatureWriter(featureDao,
+                    featureIndexManager);
+            TestCase.assertEquals(3, writer.getIndexTypes().size());
+            writer.setBatchSize(100);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < features; i++) {
+                ids.add(writer.create(createPointRow(featureDao, srs,
+                        -170 + i, 10)));
+            }
+            TestCase.assertTrue(writer.getCommits() >= 2);
+
+            // Move the first feature and delete the second
+            FeatureRow moved = featureDao.queryForIdRow(ids.get(0));
+            moved.setGeometry(createPointRow(featureDao, srs, 100.5, -45.5)
+                    .getGeometry());
+            TestCase.assertEquals(1, writer.update(moved));
+            TestCase.assertEquals(1, writer.delete(ids.get(1)));
+            writer.close();
+            TestCase.assertEquals(features + 2, writer.getCount());
+            TestCase.assertEquals(0, writer.getBatchCount());
+
+            BoundingBox movedBoundingBox = new BoundingBox(100, -46, 101, -45);
+            BoundingBox rowBoundingBox = new BoundingBox(-170.5, 9.5, -169.5,
+                    10.5);
+            for (FeatureIndexType type : new FeatureIndexType[]{
+                    FeatureIndexType.GEOPACKAGE, FeatureIndexType.METADATA,
+                    FeatureIndexType.RTREE}) {
+                featureIndexManager.setIndexLocation(type);
+                TestCase.assertEquals(features - 1,
+                        featureIndexManager.count(new BoundingBox(-180, -90,
+                                180, 90)));
+                TestCase.assertEquals(1,
+                        featureIndexManager.count(movedBoundingBox));
+                TestCase.assertEquals(0,
+                        featureIndexManager.count(rowBoundingBox));
+            }
+
+            // Rolled back writes are not indexed
+            writer = new FeatureWriter(featureDao, featureIndexManager);
+            writer.create(createPointRow(featureDao, srs, 0, 0));
+            writer.rollback();
+            writer.close();
+            TestCase.assertEquals(features - 1, featureDao.count());
+            TestCase.assertEquals(features - 1,
+                    featureIndexManager.count(new BoundingBox(-180, -90, 180,
+                            90)));
+
+            // A failed write rolls back the batch
+            writer = new FeatureWriter(featureDao, featureIndexManager);
+            FeatureRow row = createPointRow(featureDao, srs, 0, 0);
+            writer.create(row);
+            FeatureRow duplicate = createPointRow(featureDao, srs, 1, 1);
+            duplicate.setId(row.getId());
+            try {
+                writer.create(duplicate);
+                TestCase.fail("Duplicate feature id was created");
+            } catch (android.database.SQLException e) {
+                // Expected
+            }
+            TestCase.assertEquals(0, writer.getBatchCount());
+            TestCase.assertEquals(features - 1, featureDao.count());
+
+            // An unexpired batch remains open on flush
+            writer.setBatchTime(60000);
+            writer.create(createPointRow(featureDao, srs, 0, 0));
+            TestCase.assertFalse(writer.flush());
+            TestCase.assertEquals(1, writer.getBatchCount());
+            writer.close();
+            TestCase.assertEquals(features, featureDao.count());
+            TestCase.assertEquals(features,
+                    featureIndexManager.count(new BoundingBox(-180, -90, 180,
+                            90)));
+        } finally {
+            featureIndexManager.close();
+        }
+    }
+
+    /**
+     * Test the feature change tracker syncing out of band feature edits into
+     * the GeoPackage, metadata, and trigger free RTree indexes
+     *
+     * @param activity   activity
+     * @param geoPackage GeoPackage
+     * @throws SQLException upon error
+     */
+    public static void testChangeTracker(Activity activity,
+                                         GeoPackage geoPackage)
+            throws SQLException {
+
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        FeatureDao featureDao = createPointTable(geoPackage, srs,
+                "feature_changes");
+
+        int features = 100;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < features; i++) {
+            ids.add(featureDao.create(createPointRow(featureDao, srs,
+                    -170 + i, 10)));
+        }
+
+        FeatureIndexManager featureIndexManager = new FeatureIndexManager(
+                activity, geoPackage, featureDao);
+        try {
+            indexWithoutTriggers(featureIndexManager);
+            FeatureChangeTracker tracker = featureIndexManager
+                    .getFeatureChangeTracker();
+            TestCase.assertFalse(tracker.has());
+            TestCase.assertEquals(0, featureIndexManager.sync());
+            tracker.getOrCreate();
+            TestCase.assertTrue(tracker.has());
+            TestCase.assertFalse(featureIndexManager.getRTreeIndexTableDao()
+                    .hasTriggers());
+
+            // Edit outside of the indexes
+            int inserts = 10;
+            for (int i = 0; i < inserts; i++) {
+                featureDao.create(createPointRow(featureDao, srs, i, -10));
+            }
+            FeatureRow moved = featureDao.queryForIdRow(ids.get(0));
+            moved.setGeometry(createPointRow(featureDao, srs, 100.5, -45.5)
+                    .getGeometry());
+            TestCase.assertEquals(1, featureDao.update(moved));
+            TestCase.assertEquals(1, featureDao.deleteById(ids.get(1)));
+            TestCase.assertEquals(inserts + 2, tracker.count());
+
+            // Changes are kept until synced into every index
+            tracker.setBatchSize(5);
+            List<FeatureIndexType> syncTypes = new ArrayList<>();
+            syncTypes.add(FeatureIndexType.GEOPACKAGE);
+            TestCase.assertEquals(inserts + 2,
+                    tracker.sync(featureIndexManager, syncTypes));
+            TestCase.assertEquals(inserts + 2, tracker.count());
+
+            TestCase.assertEquals(inserts + 2, featureIndexManager.sync());
+            TestCase.assertEquals(0, tracker.count());
+            TestCase.assertEquals(0, featureIndexManager.sync());
+
+            long count = features + inserts - 1;
+            TestCase.assertEquals(count, featureDao.count());
+            BoundingBox movedBoundingBox = new BoundingBox(100, -46, 101, -45);
+            BoundingBox rowBoundingBox = new BoundingBox(-170.5, 9.5, -169.5,
+                    10.5);
+            BoundingBox insertBoundingBox = new BoundingBox(-0.5, -10.5,
+                    inserts, -9.5);
+            for (FeatureIndexType type : new FeatureIndexType[]{
+                    FeatureIndexType.GEOPACKAGE, FeatureIndexType.METADATA,
+                    FeatureIndexType.RTREE}) {
+                featureIndexManager.setIndexLocation(type);
+                TestCase.assertEquals(count, featureIndexManager.count(
+                        new BoundingBox(-180, -90, 180, 90)));
+                TestCase.assertEquals(1,
+                        featureIndexManager.count(movedBoundingBox));
+                TestCase.assertEquals(0,
+                        featureIndexManager.count(rowBoundingBox));
+                TestCase.assertEquals(inserts,
+                        featureIndexManager.count(insertBoundingBox));
+            }
+
+            tracker.delete();
+            TestCase.assertFalse(tracker.has());
+            featureDao.create(createPointRow(featureDao, srs, 0, 0));
+            TestCase.assertEquals(0, tracker.count());
+        } finally {
+            featureIndexManager.close();
+        }
+    }
+
+    /**
+     * Create a point feature table
+     *
+     * @param geoPackage GeoPackage
+     * @param srs        spatial reference system
+     * @param tableName  table name
+     * @return feature DAO
+     */
+    private static FeatureDao createPointTable(GeoPackage geoPackage,
+                                               SpatialReferenceSystem srs,
+                                               String tableName) {
+
+        GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setId(new TableColumnKey(tableName, "geom"));
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+
+        geometryColumns = geoPackage.createFeatureTableWithMetadata(
+                geometryColumns, new BoundingBox(-180, -90, 180, 90),
+                srs.getId());
+        return geoPackage.getFeatureDao(geometryColumns);
+    }
+
+    /**
+     * Index the GeoPackage and metadata indexes and bulk load an RTree index
+     * without triggers
+     *
+     * @param featureIndexManager feature index manager
+     */
+    private static void indexWithoutTriggers(
+            FeatureIndexManager featureIndexManager) {
+        featureIndexManager.setContinueOnError(false);
+        featureIndexManager.index(FeatureIndexType.GEOPACKAGE);
+        featureIndexManager.index(FeatureIndexType.METADATA);
+        RTreeIndexTableDao rTreeIndexTableDao = featureIndexManager
+                .getRTreeIndexTableDao();
+        RTreeIndexBulkLoader loader = rTreeIndexTableDao
+                .getRTreeIndexExtension()
+                .getBulkLoader(rTreeIndexTableDao.getFeatureDao());
+        loader.setCreateTriggers(false);
+        loader.create();
+        TestCase.assertFalse(rTreeIndexTableDao.hasTriggers());
+    }
+
+    /**
+     * Create a point feature row
+     *
+     * @param featureDao feature DAO
+     * @param srs        spatial reference system
+     * @param x          x coordinate
+     * @param y          y coordinate
+     * @return feature row
+     */
+    private static FeatureRow createPointRow(FeatureDao featureDao,
+                                             SpatialReferenceSystem srs,
+                                             double x, double y) {
+        FeatureRow row = featureDao.newRow();
+        GeoPackageGeometryData geometryData = new GeoPackageGeometryData(
+                srs.getSrsId());
+        geometryData.setGeometry(new Point(x, y));
+        row.setGeometry(geometryData);
+        return row;
+    }
+
     /**
      * Test large index
      *
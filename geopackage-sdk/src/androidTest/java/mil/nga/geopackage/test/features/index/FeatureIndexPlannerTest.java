@@ -0,0 +1,268 @@
+package mil.nga.geopackage.test.features.index;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
+import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexPlan;
+import mil.nga.geopackage.features.index.FeatureIndexPlanType;
+import mil.nga.geopackage.features.index.FeatureIndexPlanner;
+import mil.nga.geopackage.features.index.FeatureIndexResults;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.schema.TableColumnKey;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.GeometryType;
+import mil.nga.sf.Point;
+import mil.nga.sf.proj.ProjectionConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Feature Index Manager query planning
+ *
+ * @author osbornb
+ */
+public class FeatureIndexPlannerTest extends CreateGeoPackageTestCase {
+
+    private static final String TABLE_NAME = "index_planner";
+    private static final int GRID = 50;
+
+    /**
+     * Constructor
+     */
+    public FeatureIndexPlannerTest() {
+
+    }
+
+    /**
+     * Test planned queries and counts match unplanned results
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testPlanner() throws SQLException {
+
+        FeatureDao featureDao = createFeatures();
+
+        FeatureIndexManager manager = new FeatureIndexManager(activity,
+                geoPackage, featureDao);
+        manager.setContinueOnError(false);
+        try {
+
+            manager.index(FeatureIndexType.GEOPACKAGE);
+            manager.prioritizeQueryLocation(FeatureIndexType.GEOPACKAGE);
+            testPlans(manager, featureDao, FeatureIndexType.GEOPACKAGE);
+
+            manager.index(FeatureIndexType.RTREE);
+            manager.prioritizeQueryLocation(FeatureIndexType.RTREE);
+            testPlans(manager, featureDao, FeatureIndexType.RTREE);
+
+            // Features without geometries are not indexed or scanned
+            GeometryEnvelope all = new GeometryEnvelope(-1, -1, GRID, GRID);
+            featureDao.create(featureDao.newRow());
+            testPlan(manager, all, null, GRID * GRID,
+                    FeatureIndexPlanType.FULL_SCAN);
+
+            // Full scans are verified against the current counts after writes
+            FeatureRow row = featureDao.newRow();
+            row.setGeometry(featureDao.queryForIdRow(1).getGeometry());
+            featureDao.create(row);
+            assertFalse(manager.getQueryPlan(all, null).getType()
+                    == FeatureIndexPlanType.FULL_SCAN);
+            assertEquals(GRID * GRID, query(manager, all, null));
+
+        } finally {
+            manager.close();
+        }
+    }
+
+    /**
+     * Test interleaved feature writes and queries reuse the cached statistics
+     * until the index is written through the manager
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testStatisticsCache() throws SQLException {
+
+        FeatureDao featureDao = createFeatures();
+
+        FeatureIndexManager manager = new FeatureIndexManager(activity,
+                geoPackage, featureDao);
+        manager.setContinueOnError(false);
+        try {
+
+            manager.index(FeatureIndexType.RTREE);
+            manager.prioritizeQueryLocation(FeatureIndexType.RTREE);
+            FeatureIndexPlanner planner = manager.getPlanner();
+
+            GeometryEnvelope small = new GeometryEnvelope(10, 10, 19.5, 19.5);
+            assertEquals(100, query(manager, small, null));
+            int builds = planner.getBuildCount();
+            assertTrue(builds > 0);
+
+            for (int i = 0; i < 10; i++) {
+                FeatureRow row = featureDao.newRow();
+                row.setGeometry(featureDao.queryForIdRow(1).getGeometry());
+                featureDao.create(row);
+                assertEquals(100, query(manager, small, null));
+                assertEquals(FeatureIndexPlanType.SUBQUERY,
+                        manager.getLastPlan().getType());
+            }
+            assertEquals(builds, planner.getBuildCount());
+
+            // Index writes through the manager rebuild the statistics
+            manager.index(FeatureIndexType.RTREE, true);
+            assertEquals(100, query(manager, small, null));
+            assertEquals(builds + 1, planner.getBuildCount());
+
+        } finally {
+            manager.close();
+        }
+    }
+
+    /**
+     * Test the plans of the index type
+     *
+     * @param manager    feature index manager
+     * @param featureDao feature DAO
+     * @param type       feature index type
+     */
+    private void testPlans(FeatureIndexManager manager, FeatureDao featureDao,
+                           FeatureIndexType type) {
+
+        String where = featureDao.getIdColumnName() + " % 2 = 0";
+
+        // Every feature within the envelope
+        GeometryEnvelope all = new GeometryEnvelope(-1, -1, GRID, GRID);
+        FeatureIndexPlan plan = manager.getQueryPlan(all, null);
+        assertEquals(FeatureIndexPlanType.FULL_SCAN, plan.getType());
+        assertEquals(type, plan.getIndexType());
+        assertEquals(GRID * GRID, plan.getIndexCount());
+        testPlan(manager, all, null, GRID * GRID, FeatureIndexPlanType.FULL_SCAN);
+        testPlan(manager, all, where, GRID * GRID / 2, FeatureIndexPlanType.FULL_SCAN);
+
+        // Selective envelope of 10 by 10 features
+        GeometryEnvelope small = new GeometryEnvelope(10, 10, 19.5, 19.5);
+        plan = manager.getQueryPlan(small, null);
+        assertEquals(FeatureIndexPlanType.SUBQUERY, plan.getType());
+        assertTrue(plan.getEstimatedCount() > 0);
+        assertTrue(plan.getEstimatedCount() < GRID * GRID / 4);
+        assertEquals(FeatureIndexPlanType.ID_ONLY,
+                manager.getCountPlan(small, null).getType());
+        testPlan(manager, small, null, 100, FeatureIndexPlanType.SUBQUERY);
+        testPlan(manager, small, where, 50, FeatureIndexPlanType.SUBQUERY);
+
+        // Broad envelope of 40 by 40 features
+        GeometryEnvelope broad = new GeometryEnvelope(5, 5, 44.5, 44.5);
+        FeatureIndexPlanType broadType = type == FeatureIndexType.RTREE
+                ? FeatureIndexPlanType.JOIN : FeatureIndexPlanType.SUBQUERY;
+        assertEquals(broadType, manager.getQueryPlan(broad, null).getType());
+        testPlan(manager, broad, null, 1600, broadType);
+        testPlan(manager, broad, where, 800, broadType);
+    }
+
+    /**
+     * Test a planned query and count against the unplanned query and count
+     *
+     * @param manager  feature index manager
+     * @param envelope geometry envelope
+     * @param where    where clause
+     * @param expected expected count
+     * @param planType expected plan type of the query
+     */
+    private void testPlan(FeatureIndexManager manager,
+                          GeometryEnvelope envelope, String where, int expected,
+                          FeatureIndexPlanType planType) {
+
+        manager.setQueryPlanning(true);
+        assertEquals(expected, query(manager, envelope, where));
+        assertNotNull(manager.getLastPlan());
+        assertEquals(planType, manager.getLastPlan().getType());
+        assertEquals(expected, manager.count(envelope, where, null));
+
+        manager.setQueryPlanning(false);
+        assertEquals(expected, query(manager, envelope, where));
+        assertEquals(FeatureIndexPlanType.SUBQUERY,
+                manager.getLastPlan().getType());
+        assertEquals(expected, manager.count(envelope, where, null));
+        manager.setQueryPlanning(true);
+    }
+
+    /**
+     * Query and count the iterated feature rows
+     *
+     * @param manager  feature index manager
+     * @param envelope geometry envelope
+     * @param where    where clause
+     * @return row count
+     */
+    private static int query(FeatureIndexManager manager,
+                             GeometryEnvelope envelope, String where) {
+        int count = 0;
+        FeatureIndexResults results = manager.query(envelope, where, null);
+        try {
+            for (FeatureRow row : results) {
+                assertNotNull(row.getGeometry());
+                count++;
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
+
+    /**
+     * Create a feature table of a point grid
+     *
+     * @return feature DAO
+     * @throws SQLException upon error
+     */
+    private FeatureDao createFeatures() throws SQLException {
+
+        GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setId(new TableColumnKey(TABLE_NAME, "geom"));
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+        geometryColumns = geoPackage.createFeatureTableWithMetadata(
+                geometryColumns, new BoundingBox(0, 0, GRID, GRID),
+                srs.getId());
+
+        FeatureDao featureDao = geoPackage.getFeatureDao(geometryColumns);
+        featureDao.beginTransaction();
+        try {
+            for (int x = 0; x < GRID; x++) {
+                for (int y = 0; y < GRID; y++) {
+                    FeatureRow row = featureDao.newRow();
+                    GeoPackageGeometryData geometryData = new GeoPackageGeometryData(
+                            srs.getSrsId());
+                    geometryData.setGeometry(new Point(x, y));
+                    row.setGeometry(geometryData);
+                    featureDao.create(row);
+                }
+            }
+            featureDao.endTransaction(true);
+        } catch (RuntimeException e) {
+            featureDao.endTransaction(false);
+            throw e;
+        }
+
+        return featureDao;
+    }
+
+}
@@ -5,8 +5,15 @@ import android.database.sqlite.SQLiteException;
 
 import junit.framework.TestCase;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -24,8 +31,11 @@ import mil.nga.geopackage.features.user.FeatureColumn;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.FeatureRowView;
 import mil.nga.geopackage.features.user.FeatureTable;
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.io.FeatureJsonFormat;
+import mil.nga.geopackage.io.FeatureJsonWriter;
 import mil.nga.geopackage.test.TestUtils;
 import mil.nga.geopackage.test.geom.GeoPackageGeometryDataUtils;
 import mil.nga.geopackage.user.ColumnValue;
@@ -140,12 +150,16 @@ public class FeatureUtils {
 
                     FeatureRow featureRow = cursor.getRow();
                     validateFeatureRow(columns, featureRow);
+                    validateFeatureRowView(cursor.getRowView(), featureRow);
 
                     manualCount++;
                 }
                 TestCase.assertEquals(count, manualCount);
                 cursor.close();
 
+                // Stream all features as GeoJSON and NDJSON
+                validateJsonWriter(dao, count);
+
                 // Manually query for all and compare
                 cursor = (FeatureCursor) dao.getDatabaseConnection().query(dao.getTableName(),
                         null, null, null, null, null, null);
@@ -265,6 +279,107 @@ public class FeatureUtils {
 
     }
 
+    /**
+     * Validate streaming all features as a GeoJSON Feature Collection and as
+     * newline delimited GeoJSON
+     *
+     * @param dao   feature DAO
+     * @param count feature count
+     */
+    private static void validateJsonWriter(FeatureDao dao, int count) {
+        try {
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            FeatureJsonWriter writer = new FeatureJsonWriter(out);
+            FeatureCursor cursor = dao.queryForAll();
+            try {
+                TestCase.assertEquals(count, writer.write(cursor));
+            } finally {
+                cursor.close();
+            }
+            writer.close();
+            TestCase.assertEquals(count, writer.getCount());
+            JSONObject collection = new JSONObject(out.toString("UTF-8"));
+            TestCase.assertEquals("FeatureCollection",
+                    collection.getString("type"));
+            JSONArray features = collection.getJSONArray("features");
+            TestCase.assertEquals(count, features.length());
+            if (count > 0) {
+                JSONObject feature = features.getJSONObject(0);
+                TestCase.assertEquals("Feature", feature.getString("type"));
+                TestCase.assertTrue(feature.has("geometry"));
+                TestCase.assertFalse(feature.getJSONObject("properties")
+                        .has(dao.getGeometryColumnName()));
+            }
+
+            out = new ByteArrayOutputStream();
+            writer = new FeatureJsonWriter(out, FeatureJsonFormat.NDJSON);
+            writer.setIncludeGeometries(false);
+            cursor = dao.queryForAll();
+            try {
+                writer.write(cursor);
+            } finally {
+                cursor.close();
+            }
+            writer.close();
+            String[] lines = out.toString("UTF-8").split("\n");
+            TestCase.assertEquals(count, count > 0 ? lines.length : 0);
+            for (int i = 0; i < count; i++) {
+                JSONObject feature = new JSONObject(lines[i]);
+                TestCase.assertTrue(feature.isNull("geometry"));
+                TestCase.assertTrue(feature.has("id"));
+            }
+
+        } catch (IOException e) {
+            TestCase.fail("Failed to write features JSON: " + e.getMessage());
+        } catch (JSONException e) {
+            TestCase.fail("Invalid features JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Validate a feature row view against the feature row
+     *
+     * @param rowView
+     * @param featureRow
+     */
+    private static void validateFeatureRowView(FeatureRowView rowView,
+                                               FeatureRow featureRow) {
+        TestCase.assertEquals(featureRow.isValid(), rowView.isValid());
+        TestCase.assertEquals(featureRow.getId(), rowView.getId());
+        TestCase.assertEquals(featureRow.getGeometryColumnIndex(),
+                rowView.getGeometryIndex());
+
+        GeoPackageGeometryData geometryData = featureRow.getGeometry();
+        GeoPackageGeometryData viewGeometryData = rowView.getGeometry();
+        if (geometryData == null) {
+            TestCase.assertNull(viewGeometryData);
+            TestCase.assertNull(rowView.getGeometryBytes());
+        } else {
+            TestCase.assertNotNull(viewGeometryData);
+            TestCase.assertEquals(geometryData.getSrsId(),
+                    viewGeometryData.getSrsId());
+            TestCase.assertTrue(Arrays.equals(geometryData.getWkbBytes(),
+                    viewGeometryData.getWkbBytes()));
+        }
+
+        for (int i = 0; i < featureRow.columnCount(); i++) {
+            Object value = featureRow.getValue(i);
+            TestCase.assertEquals(value == null, rowView.isNull(i));
+            if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short) {
+                TestCase.assertEquals(((Number) value).longValue(),
+                        rowView.getLong(i));
+            } else if (value instanceof Double) {
+                TestCase.assertEquals(((Number) value).doubleValue(),
+                        rowView.getDouble(i), 0.0000001);
+            } else if (value instanceof byte[]) {
+                TestCase.assertTrue(Arrays.equals((byte[]) value,
+                        rowView.getBlob(i)));
+            }
+        }
+    }
+
     /**
      * Validate a feature row
      *
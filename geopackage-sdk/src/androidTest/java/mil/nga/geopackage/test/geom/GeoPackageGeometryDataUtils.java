@@ -1,8 +1,14 @@
 package mil.nga.geopackage.test.geom;
 
+import android.util.JsonWriter;
+
 import junit.framework.TestCase;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.ByteOrder;
 import java.sql.SQLException;
 import java.util.List;
@@ -16,6 +22,8 @@ import mil.nga.geopackage.features.columns.GeometryColumnsDao;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.GeometryEnvelopeReader;
+import mil.nga.geopackage.geom.GeometryJsonWriter;
 import mil.nga.sf.CircularString;
 import mil.nga.sf.CompoundCurve;
 import mil.nga.sf.CurvePolygon;
@@ -31,6 +39,7 @@ import mil.nga.sf.Point;
 import mil.nga.sf.Polygon;
 import mil.nga.sf.PolyhedralSurface;
 import mil.nga.sf.TIN;
+import mil.nga.sf.geojson.FeatureConverter;
 import mil.nga.sf.Triangle;
 import mil.nga.sf.proj.Projection;
 import mil.nga.sf.proj.ProjectionConstants;
@@ -131,6 +140,9 @@ public class GeoPackageGeometryDataUtils {
                                 geometryData.getBytes()));
                         compareGeometries(geometryData.getGeometry(),
                                 geometryDataAfterToBytes.getGeometry());
+
+                        validateEnvelopeReader(geometryData);
+                        validateJsonWriter(geometryData);
                     }
 
                 }
@@ -253,6 +265,88 @@ public class GeoPackageGeometryDataUtils {
 
     }
 
+    /**
+     * Validate the envelope read directly from the geometry bytes against the
+     * header or built envelope
+     *
+     * @param geometryData geometry data
+     */
+    private static void validateEnvelopeReader(
+            GeoPackageGeometryData geometryData) {
+
+        byte[] bytes = geometryData.getBytes();
+
+        TestCase.assertEquals(geometryData.getSrsId(),
+                GeometryEnvelopeReader.readSrsId(bytes));
+        TestCase.assertEquals(geometryData.isEmpty(),
+                GeometryEnvelopeReader.isEmpty(bytes));
+
+        GeometryEnvelope headerEnvelope = GeometryEnvelopeReader
+                .readHeaderEnvelope(bytes);
+        compareEnvelopes(geometryData.getEnvelope(), headerEnvelope);
+
+        GeometryEnvelope envelope = GeometryEnvelopeReader.readEnvelope(bytes);
+        if (geometryData.isEmpty()) {
+            TestCase.assertNull(envelope);
+        } else if (headerEnvelope != null) {
+            compareEnvelopes(headerEnvelope, envelope);
+        } else {
+            GeometryEnvelope builtEnvelope = geometryData.getOrBuildEnvelope();
+            if (builtEnvelope == null) {
+                TestCase.assertNull(envelope);
+            } else {
+                TestCase.assertNotNull(envelope);
+                TestCase.assertEquals(builtEnvelope.getMinX(), envelope.getMinX());
+                TestCase.assertEquals(builtEnvelope.getMaxX(), envelope.getMaxX());
+                TestCase.assertEquals(builtEnvelope.getMinY(), envelope.getMinY());
+                TestCase.assertEquals(builtEnvelope.getMaxY(), envelope.getMaxY());
+            }
+        }
+
+    }
+
+    /**
+     * Validate the GeoJSON geometry written directly from the geometry bytes
+     * against the converted geometry
+     *
+     * @param geometryData geometry data
+     * @throws IOException upon error
+     */
+    private static void validateJsonWriter(GeoPackageGeometryData geometryData)
+            throws IOException {
+
+        StringWriter writer = new StringWriter();
+        JsonWriter json = new JsonWriter(writer);
+        json.setLenient(true);
+        GeometryJsonWriter.write(json, geometryData.getBytes());
+        json.close();
+        String value = writer.toString();
+
+        Geometry geometry = geometryData.getGeometry();
+        if (geometryData.isEmpty() || geometry == null) {
+            TestCase.assertEquals("null", value);
+        } else {
+            try {
+                JSONObject geoJson = new JSONObject(value);
+                TestCase.assertTrue(geoJson.has("type"));
+                if (!geometry.hasM() && geometry.getGeometryType()
+                        .ordinal() <= GeometryType.GEOMETRYCOLLECTION.ordinal()) {
+                    JSONObject expected = new JSONObject(
+                            FeatureConverter.toStringValue(geometry));
+                    TestCase.assertEquals(expected.getString("type"),
+                            geoJson.getString("type"));
+                    String member = geometry.getGeometryType() == GeometryType.GEOMETRYCOLLECTION
+                            ? "geometries" : "coordinates";
+                    TestCase.assertEquals(expected.get(member).toString(),
+                            geoJson.get(member).toString());
+                }
+            } catch (JSONException e) {
+                TestCase.fail("Invalid GeoJSON geometry: " + value);
+            }
+        }
+
+    }
+
     /**
      * Compare two geometry envelopes and verify they are equal
      *
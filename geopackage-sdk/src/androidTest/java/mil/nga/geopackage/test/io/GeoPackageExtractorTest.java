@@ -0,0 +1,139 @@
+package mil.nga.geopackage.test.io;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.Color;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.GeoPackageManager;
+import mil.nga.geopackage.factory.GeoPackageFactory;
+import mil.nga.geopackage.io.BitmapConverter;
+import mil.nga.geopackage.io.ContextIOUtils;
+import mil.nga.geopackage.io.GeoPackageExtractor;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.test.TestConstants;
+import mil.nga.geopackage.test.tiles.TestTileServer;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.UrlTileGenerator;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.sf.proj.Projection;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test GeoPackage Extractor region and zoom level scoped extracts
+ *
+ * @author osbornb
+ */
+public class GeoPackageExtractorTest extends CreateGeoPackageTestCase {
+
+    /**
+     * Constructor
+     */
+    public GeoPackageExtractorTest() {
+
+    }
+
+    /**
+     * Test extracting tile tables
+     *
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testExtract() throws IOException, SQLException {
+
+        Projection webMercator = ProjectionFactory
+                .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR);
+
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+        byte[] tile = BitmapConverter.toBytes(bitmap, CompressFormat.PNG);
+        bitmap.recycle();
+
+        TestTileServer server = new TestTileServer(tile);
+        try {
+            for (String table : new String[]{"extract_a", "extract_b"}) {
+                UrlTileGenerator tileGenerator = new UrlTileGenerator(activity,
+                        geoPackage, table, server.getUrl() + "/{z}/{x}/{y}.png",
+                        0, 2, TileBoundingBoxUtils.getWebMercatorBoundingBox(0, 0, 0),
+                        webMercator);
+                tileGenerator.setXYZTiles(true);
+                assertEquals(21, tileGenerator.generateTiles());
+            }
+        } finally {
+            server.close();
+        }
+
+        File directory = ContextIOUtils.getInternalFile(activity, null);
+        File extractFile = new File(directory, "extract."
+                + TestConstants.GEO_PACKAGE_EXTENSION);
+        extractFile.delete();
+
+        // Region within the north west tile of zoom level 1
+        GeoPackageExtractor extractor = new GeoPackageExtractor(geoPackage);
+        extractor.setTables(Collections.singletonList("extract_a"));
+        extractor.setBoundingBox(new BoundingBox(-18000000, 11000000,
+                -12000000, 15000000), webMercator);
+        extractor.setZoomRange(1L, null);
+        TestGeoPackageProgress progress = new TestGeoPackageProgress();
+        extractor.setProgress(progress);
+        assertTrue(extractor.extract(extractFile));
+        assertEquals(progress.getMax().intValue(), progress.getProgress());
+
+        try {
+            extractor.extract(extractFile);
+            fail("Extracted over an existing file");
+        } catch (GeoPackageException e) {
+            // Expected
+        }
+
+        GeoPackageManager manager = GeoPackageFactory.getManager(activity);
+        assertTrue(manager.importGeoPackage(TestConstants.IMPORT_DB_NAME,
+                extractFile, true));
+        extractFile.delete();
+        GeoPackage extracted = manager.open(TestConstants.IMPORT_DB_NAME);
+        try {
+            assertFalse(extracted.isTable("extract_b"));
+            TileDao tileDao = extracted.getTileDao("extract_a");
+            assertEquals(2, tileDao.count());
+            assertEquals(1, tileDao.getMinZoom());
+            assertNull(tileDao.getTileMatrix(0));
+            assertNotNull(tileDao.queryForTile(0, 0, 1));
+            assertNotNull(tileDao.queryForTile(0, 0, 2));
+        } finally {
+            extracted.close();
+        }
+
+        // Full extract
+        assertTrue(new GeoPackageExtractor(geoPackage).extract(extractFile));
+        assertTrue(manager.importGeoPackage(TestConstants.IMPORT_DB_NAME,
+                extractFile, true));
+        extractFile.delete();
+        extracted = manager.open(TestConstants.IMPORT_DB_NAME);
+        try {
+            assertEquals(21, extracted.getTileDao("extract_a").count());
+            assertEquals(21, extracted.getTileDao("extract_b").count());
+        } finally {
+            extracted.close();
+        }
+        manager.delete(TestConstants.IMPORT_DB_NAME);
+    }
+
+}
@@ -0,0 +1,315 @@
+package mil.nga.geopackage.test.tiles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded keep-alive HTTP tile server for testing tile downloads
+ *
+ * Paths starting with /missing respond with 404, paths starting with
+ * /redirect respond with a 302 to the remaining path, and all other paths
+ * respond with the tile bytes after the configured number of 503 failures.
+ * When validators are enabled, tiles are served with an ETag of the tile
+ * version and If-None-Match requests of the current version respond with 304.
+ *
+ * @author osbornb
+ */
+public class TestTileServer {
+
+    /**
+     * Header charset
+     */
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    /**
+     * Tile bytes served
+     */
+    private volatile byte[] tile;
+
+    /**
+     * Tile version, changed with the tile bytes
+     */
+    private final AtomicInteger version = new AtomicInteger();
+
+    /**
+     * Serve ETag validators flag
+     */
+    private volatile boolean validators = true;
+
+    /**
+     * Not modified response count
+     */
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    /**
+     * Server socket
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * Open client sockets
+     */
+    private final Set<Socket> sockets = Collections
+            .synchronizedSet(new HashSet<Socket>());
+
+    /**
+     * Requested paths
+     */
+    private final List<String> paths = Collections
+            .synchronizedList(new ArrayList<String>());
+
+    /**
+     * Accepted connection count
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Remaining 503 failure responses
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Constructor, starts the server on a local ephemeral port
+     *
+     * @param tile tile bytes served
+     * @throws IOException upon failure
+     */
+    public TestTileServer(byte[] tile) throws IOException {
+        this.tile = tile;
+        serverSocket = new ServerSocket(0, 50,
+                InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the server URL base
+     *
+     * @return url, without a trailing slash
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * Set the number of 503 failure responses before tiles are served
+     *
+     * @param failures failure count
+     */
+    public void setFailures(int failures) {
+        this.failures.set(failures);
+    }
+
+    /**
+     * Set the tile bytes served, changing the tile version
+     *
+     * @param tile tile bytes
+     */
+    public void setTile(byte[] tile) {
+        this.tile = tile;
+        version.incrementAndGet();
+    }
+
+    /**
+     * Set whether ETag validators are served and honored
+     *
+     * @param validators true to serve validators
+     */
+    public void setValidators(boolean validators) {
+        this.validators = validators;
+    }
+
+    /**
+     * Get the number of not modified responses
+     *
+     * @return not modified count
+     */
+    public int getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * Get the number of requests received
+     *
+     * @return request count
+     */
+    public int getRequests() {
+        return paths.size();
+    }
+
+    /**
+     * Get the requested paths
+     *
+     * @return paths
+     */
+    public List<String> getPaths() {
+        synchronized (paths) {
+            return new ArrayList<>(paths);
+        }
+    }
+
+    /**
+     * Get the number of accepted connections
+     *
+     * @return connection count
+     */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Close the server and open connections
+     */
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing
+        }
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Closing
+                }
+            }
+            sockets.clear();
+        }
+    }
+
+    /**
+     * Accept connections until closed
+     */
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                sockets.add(socket);
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Server closed
+            }
+        }
+    }
+
+    /**
+     * Serve keep-alive requests on the connection until closed
+     *
+     * @param socket client socket
+     */
+    private void serve(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), CHARSET));
+            OutputStream output = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = reader.readLine()) != null) {
+                if (requestLine.isEmpty()) {
+                    continue;
+                }
+                String ifNoneMatch = null;
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    if (line.toLowerCase().startsWith("if-none-match:")) {
+                        ifNoneMatch = line.substring(line.indexOf(':') + 1)
+                                .trim();
+                    }
+                }
+                String path = requestLine.split(" ")[1];
+                paths.add(path);
+                respond(output, path, ifNoneMatch);
+            }
+        } catch (IOException e) {
+            // Connection closed
+        } finally {
+            sockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing
+            }
+        }
+    }
+
+    /**
+     * Write the response of the path
+     *
+     * @param output      output stream
+     * @param path        request path
+     * @param ifNoneMatch If-None-Match request header or null
+     * @throws IOException upon failure
+     */
+    private void respond(OutputStream output, String path, String ifNoneMatch)
+            throws IOException {
+        String eTag = "\"" + version.get() + "\"";
+        if (path.startsWith("/missing")) {
+            write(output, "404 Not Found", null, new byte[0]);
+        } else if (path.startsWith("/redirect")) {
+            write(output, "302 Found",
+                    "Location: " + path.substring("/redirect".length()),
+                    new byte[0]);
+        } else if (failures.getAndDecrement() > 0) {
+            write(output, "503 Service Unavailable", "Retry-After: 0",
+                    new byte[0]);
+        } else if (validators && eTag.equals(ifNoneMatch)) {
+            notModified.incrementAndGet();
+            write(output, "304 Not Modified", "ETag: " + eTag, new byte[0]);
+        } else if (validators) {
+            write(output, "200 OK", "Content-Type: image/png\r\nETag: "
+                    + eTag, tile);
+        } else {
+            write(output, "200 OK", "Content-Type: image/png", tile);
+        }
+    }
+
+    /**
+     * Write a response
+     *
+     * @param output output stream
+     * @param status status code and reason
+     * @param header additional header line or null
+     * @param body   response body
+     * @throws IOException upon failure
+     */
+    private static void write(OutputStream output, String status,
+                              String header, byte[] body) throws IOException {
+        StringBuilder response = new StringBuilder();
+        response.append("HTTP/1.1 ").append(status).append("\r\n");
+        if (header != null) {
+            response.append(header).append("\r\n");
+        }
+        response.append("Content-Length: ").append(body.length).append("\r\n");
+        response.append("\r\n");
+        output.write(response.toString().getBytes(CHARSET));
+        output.write(body);
+        output.flush();
+    }
+
+}
@@ -0,0 +1,116 @@
+package mil.nga.geopackage.test.tiles;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.Color;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import mil.nga.geopackage.io.BitmapConverter;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.TileDownsampleFilter;
+import mil.nga.geopackage.tiles.TilePyramidBuilder;
+import mil.nga.geopackage.tiles.UrlTileGenerator;
+import mil.nga.geopackage.tiles.matrix.TileMatrix;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileRow;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Test Tile Pyramid Builder overview tiles built from child tiles
+ *
+ * @author osbornb
+ */
+public class TilePyramidBuilderTest extends CreateGeoPackageTestCase {
+
+    /**
+     * Constructor
+     */
+    public TilePyramidBuilderTest() {
+
+    }
+
+    /**
+     * Test building overviews with each downsample filter
+     *
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testBuild() throws IOException, SQLException {
+        for (TileDownsampleFilter filter : TileDownsampleFilter.values()) {
+            testBuild(filter);
+        }
+    }
+
+    /**
+     * Test building overviews with the downsample filter
+     *
+     * @param filter downsample filter
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    private void testBuild(TileDownsampleFilter filter) throws IOException,
+            SQLException {
+
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+        byte[] tile = BitmapConverter.toBytes(bitmap, CompressFormat.PNG);
+        bitmap.recycle();
+
+        String tableName = "pyramid_" + filter.name().toLowerCase();
+        int baseZoom = 2;
+
+        TestTileServer server = new TestTileServer(tile);
+        try {
+            UrlTileGenerator tileGenerator = new UrlTileGenerator(activity,
+                    geoPackage, tableName, server.getUrl() + "/{z}/{x}/{y}.png",
+                    baseZoom, baseZoom,
+                    TileBoundingBoxUtils.getWebMercatorBoundingBox(0, 0, 0),
+                    ProjectionFactory
+                            .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR));
+            tileGenerator.setXYZTiles(true);
+            assertEquals(16, tileGenerator.generateTiles());
+        } finally {
+            server.close();
+        }
+
+        TileDao tileDao = geoPackage.getTileDao(tableName);
+        TilePyramidBuilder builder = new TilePyramidBuilder(geoPackage,
+                tileDao);
+        builder.setFilter(filter);
+        builder.setBatchSize(2);
+
+        assertEquals(5, builder.build(0, baseZoom));
+
+        tileDao = geoPackage.getTileDao(tableName);
+        assertEquals(0, tileDao.getMinZoom());
+        assertEquals(16, tileDao.count(baseZoom));
+        assertEquals(4, tileDao.count(1));
+        assertEquals(1, tileDao.count(0));
+
+        TileMatrix baseMatrix = tileDao.getTileMatrix(baseZoom);
+        TileMatrix overviewMatrix = tileDao.getTileMatrix(0);
+        assertEquals(1, overviewMatrix.getMatrixWidth());
+        assertEquals(1, overviewMatrix.getMatrixHeight());
+        assertEquals(baseMatrix.getPixelXSize() * 4,
+                overviewMatrix.getPixelXSize(), 0.0000001);
+
+        TileRow overview = tileDao.queryForTile(0, 0, 0);
+        assertNotNull(overview);
+        Bitmap overviewBitmap = overview.getTileDataBitmap();
+        assertNotNull(overviewBitmap);
+        assertEquals(256, overviewBitmap.getWidth());
+        assertEquals(Color.BLUE, overviewBitmap.getPixel(128, 128));
+        overviewBitmap.recycle();
+    }
+
+}
@@ -0,0 +1,272 @@
+package mil.nga.geopackage.test.tiles;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.Color;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.extension.refresh.TileRefresh;
+import mil.nga.geopackage.io.BitmapConverter;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.UrlTileFetcher;
+import mil.nga.geopackage.tiles.UrlTileGenerator;
+import mil.nga.geopackage.tiles.UrlTileTemplate;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test URL Tile Generator downloads from an embedded tile server
+ *
+ * @author osbornb
+ */
+public class UrlTileGeneratorTest extends CreateGeoPackageTestCase {
+
+    /**
+     * Tile bytes served
+     */
+    private byte[] tile;
+
+    /**
+     * Embedded tile server
+     */
+    private TestTileServer server;
+
+    /**
+     * Constructor
+     */
+    public UrlTileGeneratorTest() {
+
+    }
+
+    /**
+     * Start the tile server
+     *
+     * @throws IOException upon error
+     */
+    @Before
+    public void startServer() throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+        tile = BitmapConverter.toBytes(bitmap, CompressFormat.PNG);
+        bitmap.recycle();
+        server = new TestTileServer(tile);
+    }
+
+    /**
+     * Stop the tile server
+     */
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    /**
+     * Test compiling and rendering URL templates
+     */
+    @Test
+    public void testTemplate() {
+
+        UrlTileTemplate template = UrlTileTemplate
+                .compile("http://{s}.tiles.test/{z}/{x}/{y}.png?v={version}");
+        assertTrue(template.hasXYZ());
+        assertFalse(template.hasBoundingBox());
+        assertEquals("http://a.tiles.test/3/2/1.png?v={version}",
+                template.render(3, 2, 1));
+        assertEquals("http://b.tiles.test/3/2/2.png?v={version}",
+                template.render(3, 2, 2));
+        template.setTms(true);
+        assertEquals("http://a.tiles.test/3/2/6.png?v={version}",
+                template.render(3, 2, 1));
+
+        template = UrlTileTemplate.compile("{-y}/{q}/{quadkey}");
+        assertEquals("2/213/213", template.render(3, 3, 5));
+        assertEquals("0//", template.render(0, 0, 0));
+
+        template = UrlTileTemplate.compile(
+                "bbox={minLon},{minLat},{maxLon},{maxLat}");
+        assertFalse(template.hasXYZ());
+        assertTrue(template.hasBoundingBox());
+        assertEquals("bbox=-1.5,-2.5,3.5,4.5", template.render(0, 0, 0,
+                new BoundingBox(-1.5, -2.5, 3.5, 4.5)));
+
+        template = UrlTileTemplate.compile("http://tiles.test/static.png");
+        assertFalse(template.hasXYZ());
+        assertFalse(template.hasBoundingBox());
+        assertEquals("http://tiles.test/static.png", template.render(1, 1, 1));
+    }
+
+    /**
+     * Test fetching with retries and redirects
+     */
+    @Test
+    public void testFetcher() {
+
+        UrlTileFetcher fetcher = new UrlTileFetcher();
+        fetcher.setRetryDelay(10);
+
+        try {
+
+            assertArrayEquals(tile, fetcher.fetch(server.getUrl() + "/0/0/0.png"));
+            assertEquals(1, server.getRequests());
+
+            // Retried 503 responses
+            server.setFailures(2);
+            assertArrayEquals(tile, fetcher.fetch(server.getUrl() + "/0/0/0.png"));
+            assertEquals(4, server.getRequests());
+
+            // Followed redirect
+            assertArrayEquals(tile,
+                    fetcher.fetch(server.getUrl() + "/redirect/0/0/0.png"));
+            assertEquals(6, server.getRequests());
+
+            // Not found is not retried
+            try {
+                fetcher.fetch(server.getUrl() + "/missing/0/0/0.png");
+                fail("Missing tile was fetched");
+            } catch (GeoPackageException e) {
+                // Expected
+            }
+            assertEquals(7, server.getRequests());
+
+            // Retries exhausted
+            fetcher.setMaxRetries(1);
+            server.setFailures(3);
+            try {
+                fetcher.fetch(server.getUrl() + "/0/0/0.png");
+                fail("Failing tile was fetched");
+            } catch (GeoPackageException e) {
+                // Expected
+            }
+            assertEquals(9, server.getRequests());
+
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    /**
+     * Test generating tiles with concurrent prefetched downloads
+     *
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testGenerateTiles() throws IOException, SQLException {
+
+        int minZoom = 0;
+        int maxZoom = 3;
+
+        UrlTileGenerator tileGenerator = new UrlTileGenerator(activity,
+                geoPackage, "url_tiles", server.getUrl() + "/{z}/{x}/{y}.png",
+                minZoom, maxZoom,
+                TileBoundingBoxUtils.getWebMercatorBoundingBox(0, 0, 0),
+                ProjectionFactory
+                        .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR));
+        tileGenerator.setXYZTiles(true);
+        tileGenerator.getFetcher().setRetryDelay(10);
+        assertTrue(tileGenerator.getPrefetchCount() > 0);
+
+        // Intermittent failures are retried
+        server.setFailures(3);
+
+        int count = tileGenerator.generateTiles();
+        assertEquals(tileGenerator.getTileCount(), count);
+
+        TileDao tileDao = geoPackage.getTileDao("url_tiles");
+        assertEquals(count, tileDao.count());
+        assertEquals(count + 3, server.getRequests());
+        assertTrue(server.getConnections() <= server.getRequests());
+    }
+
+    /**
+     * Test conditionally refreshing generated tiles
+     *
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testRefreshTiles() throws IOException, SQLException {
+
+        String tableName = "refresh_tiles";
+
+        int tiles = refreshTiles(tableName);
+        assertTrue(tiles > 0);
+
+        TileRefresh tileRefresh = new TileRefresh(geoPackage, tableName);
+        assertTrue(tileRefresh.has());
+        assertEquals(tiles, tileRefresh.count());
+
+        TileDao tileDao = geoPackage.getTileDao(tableName);
+        assertEquals(tiles, tileDao.count());
+
+        // Not modified responses keep the existing tiles
+        assertEquals(0, refreshTiles(tableName));
+        assertEquals(tiles, server.getNotModified());
+        assertEquals(tiles, tileDao.count());
+
+        // Identical content hashes keep the existing tiles
+        server.setValidators(false);
+        assertEquals(0, refreshTiles(tableName));
+        assertEquals(tiles, tileDao.count());
+
+        // Changed tiles are rewritten
+        server.setValidators(true);
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.RED);
+        byte[] changedTile = BitmapConverter.toBytes(bitmap, CompressFormat.PNG);
+        bitmap.recycle();
+        server.setTile(changedTile);
+        assertEquals(tiles, refreshTiles(tableName));
+        assertEquals(tiles, tileDao.count());
+        assertEquals(tiles, tileRefresh.count());
+
+        // Missing tiles are downloaded without validators
+        int notModified = server.getNotModified();
+        assertEquals(1, tileDao.deleteTile(0, 0, 0));
+        assertEquals(1, refreshTiles(tableName));
+        assertEquals(notModified + tiles - 1, server.getNotModified());
+        assertEquals(tiles, tileDao.count());
+
+        // Deleting the tile table deletes the validators
+        geoPackage.deleteTable(tableName);
+        assertFalse(tileRefresh.has());
+        assertFalse(geoPackage.isTable(tileRefresh.getTableName()));
+    }
+
+    /**
+     * Generate or refresh the tiles of the table
+     *
+     * @param tableName table name
+     * @return tiles written
+     * @throws IOException  upon error
+     * @throws SQLException upon error
+     */
+    private int refreshTiles(String tableName) throws IOException,
+            SQLException {
+        UrlTileGenerator tileGenerator = new UrlTileGenerator(activity,
+                geoPackage, tableName, server.getUrl() + "/{z}/{x}/{y}.png",
+                0, 1, TileBoundingBoxUtils.getWebMercatorBoundingBox(0, 0, 0),
+                ProjectionFactory
+                        .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR));
+        tileGenerator.setXYZTiles(true);
+        tileGenerator.setRefresh(true);
+        return tileGenerator.generateTiles();
+    }
+
+}
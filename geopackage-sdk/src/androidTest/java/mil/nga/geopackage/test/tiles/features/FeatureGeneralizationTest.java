@@ -0,0 +1,115 @@
+package mil.nga.geopackage.test.tiles.features;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.extension.generalize.FeatureGeneralization;
+import mil.nga.geopackage.extension.generalize.GeneralizedFeature;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.features.DefaultFeatureTiles;
+import mil.nga.geopackage.tiles.features.FeatureTiles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test GeoPackage Feature Generalization, zoom level generalized features
+ *
+ * @author osbornb
+ */
+public class FeatureGeneralizationTest extends CreateGeoPackageTestCase {
+
+    /**
+     * Constructor
+     */
+    public FeatureGeneralizationTest() {
+
+    }
+
+    /**
+     * Test generating, querying, and drawing generalized features
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testFeatureGeneralization() throws SQLException {
+
+        FeatureDao featureDao = FeatureTileUtils.createFeatureDao(geoPackage);
+
+        FeatureTileUtils.insertFeatures(geoPackage, featureDao);
+
+        FeatureGeneralization generalization = new FeatureGeneralization(
+                geoPackage, featureDao);
+        assertFalse(generalization.has());
+
+        int count = generalization.generate(0, 3);
+        assertTrue(count > 0);
+        assertTrue(generalization.has());
+        assertTrue(geoPackage.isTable(generalization.getTableName()));
+        for (int zoom = 0; zoom <= 3; zoom++) {
+            assertTrue(generalization.hasZoom(zoom));
+        }
+        assertFalse(generalization.hasZoom(4));
+
+        BoundingBox world = TileBoundingBoxUtils.getWebMercatorBoundingBox(0,
+                0, 0);
+        List<GeneralizedFeature> features = generalization.query(0, world);
+        assertFalse(features.isEmpty());
+        assertEquals(features.size(), generalization.count(0, world));
+
+        for (GeneralizedFeature feature : features) {
+            assertNotNull(feature.getGeometry());
+            assertTrue(feature.getCount() > 0);
+        }
+
+        FeatureTiles featureTiles = new DefaultFeatureTiles(activity,
+                geoPackage, featureDao);
+        try {
+            assertNotNull(featureTiles.getGeneralization());
+            assertTrue(featureTiles.isGeneralizedQuery(0));
+            assertFalse(featureTiles.isGeneralizedQuery(4));
+
+            Bitmap bitmap = featureTiles.drawTile(0, 0, 0);
+            assertNotNull(bitmap);
+            bitmap.recycle();
+        } finally {
+            featureTiles.close();
+        }
+
+        // Feature changes after generation leave the pyramid stale
+        assertFalse(generalization.isStale());
+        assertNotNull(generalization.getLastGenerated());
+        FeatureTileUtils.updateLastChange(geoPackage, featureDao);
+        assertTrue(generalization.isStale());
+
+        featureTiles = new DefaultFeatureTiles(activity, geoPackage, featureDao);
+        try {
+            assertNotNull(featureTiles.getGeneralization());
+            assertFalse(featureTiles.isGeneralizedQuery(0));
+        } finally {
+            featureTiles.close();
+        }
+
+        // Regenerating a zoom level of a stale pyramid removes the other zoom levels
+        assertTrue(generalization.generate(0, 1) > 0);
+        assertFalse(generalization.isStale());
+        assertTrue(generalization.hasZoom(1));
+        assertFalse(generalization.hasZoom(2));
+
+        generalization.delete();
+        assertNull(generalization.getLastGenerated());
+        assertFalse(generalization.has());
+        assertFalse(geoPackage.isTable(generalization.getTableName()));
+    }
+
+}
@@ -3,6 +3,7 @@ package mil.nga.geopackage.test.tiles.features;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.sql.SQLException;
 
 import mil.nga.geopackage.test.CreateGeoPackageTestCase;
 
@@ -32,4 +33,16 @@ public class FeaturePreviewCreateTest extends CreateGeoPackageTestCase {
 
     }
 
+    /**
+     * Test the sampled feature sets
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testSample() throws SQLException {
+
+        FeaturePreviewUtils.testSample(activity, geoPackage);
+
+    }
+
 }
@@ -1,21 +1,41 @@
 package mil.nga.geopackage.test.tiles.features;
 
 import android.app.Activity;
+import android.content.Context;
 import android.graphics.Bitmap;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.extension.generalize.FeatureGeneralization;
+import mil.nga.geopackage.extension.generalize.GeneralizedFeature;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
 import mil.nga.geopackage.tiles.TileUtils;
+import mil.nga.geopackage.tiles.features.DefaultFeatureTiles;
 import mil.nga.geopackage.tiles.features.FeaturePreview;
 import mil.nga.geopackage.tiles.features.FeatureTiles;
+import mil.nga.sf.Geometry;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.Point;
+import mil.nga.sf.proj.Projection;
 import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+import mil.nga.sf.proj.ProjectionTransform;
+import mil.nga.sf.util.GeometryEnvelopeBuilder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test feature preview
@@ -84,6 +104,16 @@ public class FeaturePreviewUtils {
                 assertNotNull(imageManualLimit);
             }
 
+            preview.setLimit(null);
+            preview.setSampleGridSize(4);
+            preview.setSampleCellLimit(2);
+            preview.setTimeBudget(1000L);
+            Bitmap imageSample = preview.draw();
+            if (epsg) {
+                assertNotNull(imageSample);
+            }
+            preview.setSampleGridSize(null);
+
             preview.setBufferPercentage(0.15);
             preview.setLimit(null);
             preview.appendWhere(
@@ -106,6 +136,9 @@ public class FeaturePreviewUtils {
             if(imageManualLimit != null) {
                 imageManualLimit.recycle();
             }
+            if(imageSample != null) {
+                imageSample.recycle();
+            }
             if(imageManualWhere != null) {
                 imageManualWhere.recycle();
             }
@@ -115,4 +148,252 @@ public class FeaturePreviewUtils {
 
     }
 
+    /**
+     * Test the sampled feature sets of the unindexed, indexed, and
+     * generalized preview sample paths
+     *
+     * @param activity   activity
+     * @param geoPackage GeoPackage
+     * @throws SQLException upon error
+     */
+    public static void testSample(Activity activity, GeoPackage geoPackage)
+            throws SQLException {
+
+        FeatureDao featureDao = FeatureTileUtils.createFeatureDao(geoPackage);
+
+        // Sparse grid across the world and a dense cluster in one area
+        int count = 0;
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 20; y++) {
+                FeatureTileUtils.insertPoint(featureDao, -170.63 + x * 17.1,
+                        -70.59 + y * 7.3);
+                count++;
+            }
+        }
+        for (int x = 0; x < 15; x++) {
+            for (int y = 0; y < 20; y++) {
+                FeatureTileUtils.insertPoint(featureDao, 10.13 + x * 0.01,
+                        20.17 + y * 0.01);
+                count++;
+            }
+        }
+        FeatureTileUtils.updateLastChange(geoPackage, featureDao);
+
+        SampleFeatureTiles featureTiles = new SampleFeatureTiles(activity,
+                geoPackage, featureDao);
+        FeaturePreview preview = new FeaturePreview(geoPackage, featureTiles);
+        try {
+
+            // Unindexed fallback of a limited query
+            preview.setSampleGridSize(4);
+            preview.setSampleCellLimit(2);
+            draw(preview);
+            assertEquals(4 * 4 * 2, featureTiles.sample.size());
+
+            preview.setTimeBudget(0L);
+            draw(preview);
+            assertEquals(0, featureTiles.sample.size());
+            preview.setTimeBudget(null);
+
+            // Indexed features stratified per grid cell
+            FeatureIndexManager indexManager = new FeatureIndexManager(
+                    activity, geoPackage, featureDao);
+            indexManager.setIndexLocation(FeatureIndexType.GEOPACKAGE);
+            assertEquals(count, indexManager.index());
+            featureTiles.setIndexManager(indexManager);
+
+            draw(preview);
+            assertStratified(geoPackage, featureDao, featureTiles.sample, 4, 2);
+
+            preview.setTimeBudget(0L);
+            draw(preview);
+            assertEquals(0, featureTiles.sample.size());
+            preview.setTimeBudget(null);
+
+            // Generalized features stratified per grid cell
+            FeatureGeneralization generalization = new FeatureGeneralization(
+                    geoPackage, featureDao);
+            assertTrue(generalization.generate(0, 3) > 0);
+            featureTiles.setGeneralization(generalization);
+
+            preview.setSampleGridSize(2);
+            preview.setSampleCellLimit(1);
+            draw(preview);
+            assertTrue(featureTiles.generalized);
+            assertStratified(geoPackage, featureDao, featureTiles.sample, 2, 1);
+
+            preview.setTimeBudget(0L);
+            draw(preview);
+            assertTrue(featureTiles.generalized);
+            assertEquals(0, featureTiles.sample.size());
+
+        } finally {
+            preview.close();
+        }
+
+    }
+
+    /**
+     * Draw the preview, recycling the image
+     *
+     * @param preview feature preview
+     */
+    private static void draw(FeaturePreview preview) {
+        Bitmap image = preview.draw();
+        if (image != null) {
+            image.recycle();
+        }
+    }
+
+    /**
+     * Assert the sampled geometries are within the total limit, within the
+     * cell limit per grid cell, and spread across every grid cell holding
+     * features
+     *
+     * @param geoPackage GeoPackage
+     * @param featureDao feature DAO
+     * @param sample     sampled geometries
+     * @param gridSize   sample grid size
+     * @param cellLimit  sample cell limit
+     */
+    private static void assertStratified(GeoPackage geoPackage,
+                                         FeatureDao featureDao, List<Geometry> sample, int gridSize,
+                                         int cellLimit) {
+
+        Projection webMercator = ProjectionFactory
+                .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR);
+        BoundingBox boundingBox = geoPackage.getFeatureBoundingBox(
+                webMercator, featureDao.getTableName(), false);
+        if (boundingBox == null) {
+            boundingBox = geoPackage.getContentsBoundingBox(webMercator,
+                    featureDao.getTableName());
+        }
+        boundingBox = TileBoundingBoxUtils
+                .boundWebMercatorBoundingBox(boundingBox);
+        boundingBox = TileBoundingBoxUtils
+                .boundWebMercatorBoundingBox(boundingBox.squareExpand(0.0));
+        ProjectionTransform transform = featureDao.getProjection()
+                .getTransformation(webMercator);
+
+        int[] featureCells = new int[gridSize * gridSize];
+        FeatureCursor cursor = featureDao.query();
+        try {
+            while (cursor.moveToNext()) {
+                featureCells[cell(cursor.getGeometry().getGeometry(),
+                        boundingBox, transform, gridSize)]++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int[] sampleCells = new int[gridSize * gridSize];
+        for (Geometry geometry : sample) {
+            sampleCells[cell(geometry, boundingBox, transform, gridSize)]++;
+        }
+
+        assertTrue(sample.size() <= gridSize * gridSize * cellLimit);
+        int occupied = 0;
+        for (int i = 0; i < featureCells.length; i++) {
+            assertTrue(sampleCells[i] <= cellLimit);
+            if (featureCells[i] > 0) {
+                occupied++;
+                assertTrue(sampleCells[i] > 0);
+            }
+        }
+        assertTrue(occupied > 1);
+    }
+
+    /**
+     * Get the row major sample grid cell of the geometry center
+     *
+     * @param geometry    geometry
+     * @param boundingBox web mercator bounding box
+     * @param transform   transform to web mercator
+     * @param gridSize    sample grid size
+     * @return cell
+     */
+    private static int cell(Geometry geometry, BoundingBox boundingBox,
+                            ProjectionTransform transform, int gridSize) {
+        GeometryEnvelope envelope = GeometryEnvelopeBuilder
+                .buildEnvelope(geometry);
+        Point center = transform.transform(new Point(
+                (envelope.getMinX() + envelope.getMaxX()) / 2.0,
+                (envelope.getMinY() + envelope.getMaxY()) / 2.0));
+        int column = cellIndex((center.getX() - boundingBox.getMinLongitude())
+                / ((boundingBox.getMaxLongitude()
+                - boundingBox.getMinLongitude()) / gridSize), gridSize);
+        int row = cellIndex((center.getY() - boundingBox.getMinLatitude())
+                / ((boundingBox.getMaxLatitude()
+                - boundingBox.getMinLatitude()) / gridSize), gridSize);
+        return row * gridSize + column;
+    }
+
+    /**
+     * Get the grid cell index of a cell offset, clamped to the grid
+     *
+     * @param offset   cell offset
+     * @param gridSize sample grid size
+     * @return cell index
+     */
+    private static int cellIndex(double offset, int gridSize) {
+        return (int) Math.max(0, Math.min(gridSize - 1, Math.floor(offset)));
+    }
+
+    /**
+     * Feature tiles recording the drawn sample geometries
+     */
+    private static class SampleFeatureTiles extends DefaultFeatureTiles {
+
+        /**
+         * Drawn sample geometries
+         */
+        private final List<Geometry> sample = new ArrayList<>();
+
+        /**
+         * True when the sample was drawn from generalized features
+         */
+        private boolean generalized;
+
+        /**
+         * Constructor
+         *
+         * @param context    context
+         * @param geoPackage GeoPackage
+         * @param featureDao feature DAO
+         */
+        SampleFeatureTiles(Context context, GeoPackage geoPackage,
+                           FeatureDao featureDao) {
+            super(context, geoPackage, featureDao);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Bitmap drawTile(int zoom, BoundingBox boundingBox,
+                               List<FeatureRow> featureRows) {
+            sample.clear();
+            generalized = false;
+            for (FeatureRow featureRow : featureRows) {
+                sample.add(featureRow.getGeometry().getGeometry());
+            }
+            return super.drawTile(zoom, boundingBox, featureRows);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Bitmap drawGeneralizedTile(int zoom, BoundingBox boundingBox,
+                                          List<GeneralizedFeature> features) {
+            sample.clear();
+            generalized = true;
+            for (GeneralizedFeature feature : features) {
+                sample.add(feature.getGeometry());
+            }
+            return super.drawGeneralizedTile(zoom, boundingBox, features);
+        }
+
+    }
+
 }
@@ -5,16 +5,22 @@ import android.graphics.Bitmap;
 import org.junit.Test;
 
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import mil.nga.geopackage.db.FeatureIndexer;
+import mil.nga.geopackage.extension.style.FeatureStyle;
 import mil.nga.geopackage.features.index.FeatureIndexManager;
 import mil.nga.geopackage.features.index.FeatureIndexType;
 import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
 import mil.nga.geopackage.test.CreateGeoPackageTestCase;
 import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.features.DefaultFeatureTiles;
 import mil.nga.geopackage.tiles.features.FeatureTiles;
+import mil.nga.sf.GeometryType;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -85,6 +91,46 @@ public class FeatureTilesTest extends CreateGeoPackageTestCase {
         }
     }
 
+    /**
+     * Test feature tiles styled by a subclass overriding the feature row
+     * style method
+     *
+     * @throws java.sql.SQLException
+     */
+    @Test
+    public void testFeatureTilesRowStyle() throws SQLException {
+
+        FeatureDao featureDao = FeatureTileUtils.createFeatureDao(geoPackage);
+
+        int num = FeatureTileUtils.insertFeatures(geoPackage, featureDao);
+
+        final AtomicInteger styled = new AtomicInteger();
+        FeatureTiles featureTiles = new DefaultFeatureTiles(activity,
+                featureDao, activity.getResources().getDisplayMetrics().density) {
+            @Override
+            protected FeatureStyle getFeatureStyle(FeatureRow featureRow,
+                                                   GeometryType geometryType) {
+                assertTrue(featureRow.getId() > 0);
+                styled.incrementAndGet();
+                return super.getFeatureStyle(featureRow, geometryType);
+            }
+        };
+
+        try {
+            FeatureIndexManager indexManager = new FeatureIndexManager(activity, geoPackage, featureDao);
+            featureTiles.setIndexManager(indexManager);
+
+            indexManager.setIndexLocation(FeatureIndexType.GEOPACKAGE);
+            int indexed = indexManager.index();
+            assertEquals(num, indexed);
+
+            assertNotNull(featureTiles.drawTile(0, 0, 0));
+            assertTrue(styled.get() > 0);
+        } finally {
+            featureTiles.close();
+        }
+    }
+
     private void createTiles(FeatureTiles featureTiles, int minZoom, int maxZoom) {
         for (int i = minZoom; i <= maxZoom; i++) {
             createTiles(featureTiles, i);
@@ -0,0 +1,179 @@
+package mil.nga.geopackage.test.tiles.features;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.test.CreateGeoPackageTestCase;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.features.vector.FeatureVectorTiles;
+import mil.nga.geopackage.tiles.matrixset.TileMatrixSet;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.proj.ProjectionConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test GeoPackage Feature Vector Tiles, vector tiles encoded from features
+ *
+ * @author osbornb
+ */
+public class FeatureVectorTilesTest extends CreateGeoPackageTestCase {
+
+    /**
+     * Constructor
+     */
+    public FeatureVectorTilesTest() {
+
+    }
+
+    /**
+     * Test feature vector tiles queried through the index and by querying
+     * all features
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testFeatureVectorTiles() throws SQLException {
+
+        FeatureDao featureDao = FeatureTileUtils.createFeatureDao(geoPackage);
+
+        int num = FeatureTileUtils.insertFeatures(geoPackage, featureDao);
+
+        FeatureVectorTiles allVectorTiles = new FeatureVectorTiles(activity,
+                featureDao);
+        FeatureVectorTiles indexVectorTiles = new FeatureVectorTiles(activity,
+                featureDao);
+
+        try {
+
+            FeatureIndexManager indexManager = new FeatureIndexManager(
+                    activity, geoPackage, featureDao);
+            indexManager.setIndexLocation(FeatureIndexType.GEOPACKAGE);
+            int indexed = indexManager.index();
+            assertEquals(num, indexed);
+            indexVectorTiles.setIndexManager(indexManager);
+
+            assertTrue(indexVectorTiles.isIndexQuery());
+            assertFalse(allVectorTiles.isIndexQuery());
+
+            for (int zoom = 0; zoom <= 3; zoom++) {
+                int tilesPerSide = TileBoundingBoxUtils.tilesPerSide(zoom);
+                for (int x = 0; x < tilesPerSide; x++) {
+                    for (int y = 0; y < tilesPerSide; y++) {
+
+                        byte[] indexTile = indexVectorTiles.drawTileBytes(x, y,
+                                zoom);
+                        byte[] allTile = allVectorTiles.drawTileBytes(x, y,
+                                zoom);
+
+                        // Tile layers field tag
+                        if (indexTile != null) {
+                            assertEquals(0x1A, indexTile[0] & 0xFF);
+                        }
+                        if (allTile != null) {
+                            assertEquals(0x1A, allTile[0] & 0xFF);
+                        }
+                    }
+                }
+            }
+
+            // Zoom 0 contains all features
+            assertNotNull(indexVectorTiles.drawTileBytes(0, 0, 0));
+            assertNotNull(allVectorTiles.drawTileBytes(0, 0, 0));
+
+        } finally {
+            allVectorTiles.close();
+            indexVectorTiles.close();
+        }
+    }
+
+    /**
+     * Test caching feature vector tiles, including empty tiles, and cache
+     * invalidation
+     *
+     * @throws SQLException upon error
+     */
+    @Test
+    public void testFeatureVectorTilesCache() throws SQLException {
+
+        FeatureDao featureDao = FeatureTileUtils.createFeatureDao(geoPackage);
+        FeatureTileUtils.insertFeatures(geoPackage, featureDao);
+
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WEB_MERCATOR);
+        BoundingBox worldBoundingBox = TileBoundingBoxUtils
+                .getWebMercatorBoundingBox(0, 0, 0);
+        TileMatrixSet tileMatrixSet = geoPackage.createTileTableWithMetadata(
+                "vector_tile_cache", worldBoundingBox, srs.getSrsId(),
+                worldBoundingBox, srs.getSrsId());
+        TileDao cacheTileDao = geoPackage.getTileDao(tileMatrixSet);
+
+        FeatureVectorTiles vectorTiles = new FeatureVectorTiles(activity,
+                featureDao);
+        try {
+            vectorTiles.setCacheTileDao(cacheTileDao);
+
+            int zoom = 3;
+            int tilesPerSide = TileBoundingBoxUtils.tilesPerSide(zoom);
+            int emptyTiles = 0;
+            for (int x = 0; x < tilesPerSide; x++) {
+                for (int y = 0; y < tilesPerSide; y++) {
+                    if (vectorTiles.drawTileBytes(x, y, zoom) == null) {
+                        emptyTiles++;
+                    }
+                }
+            }
+            assertTrue(emptyTiles > 0);
+            int tiles = tilesPerSide * tilesPerSide;
+            assertEquals(tiles, cacheTileDao.count());
+
+            // Cached empty tiles are still returned as no tile
+            int cachedEmptyTiles = 0;
+            for (int x = 0; x < tilesPerSide; x++) {
+                for (int y = 0; y < tilesPerSide; y++) {
+                    if (vectorTiles.drawTileBytes(x, y, zoom) == null) {
+                        cachedEmptyTiles++;
+                    }
+                }
+            }
+            assertEquals(emptyTiles, cachedEmptyTiles);
+            assertEquals(tiles, cacheTileDao.count());
+
+            // Invalidate the tiles around an edited feature
+            GeometryEnvelope envelope = new GeometryEnvelope(-1, -1, 1, 1);
+            int invalidated = vectorTiles.invalidate(envelope);
+            assertTrue(invalidated > 0);
+            assertTrue(invalidated < tiles);
+            assertEquals(tiles - invalidated, cacheTileDao.count());
+
+            // A feature contents last change clears the cache
+            FeatureTileUtils.updateLastChange(geoPackage, featureDao);
+            assertNotNull(vectorTiles.drawTileBytes(0, 0, 0));
+            assertEquals(1, cacheTileDao.count());
+            assertNotNull(vectorTiles.drawTileBytes(0, 0, 0));
+            assertEquals(1, cacheTileDao.count());
+
+            // Tiles over the max features are not encoded
+            assertEquals(1, vectorTiles.invalidate());
+            vectorTiles.setMaxFeaturesPerTile(1);
+            assertNull(vectorTiles.drawTileBytes(0, 0, 0));
+            assertEquals(1, cacheTileDao.count());
+
+        } finally {
+            vectorTiles.close();
+        }
+    }
+
+}
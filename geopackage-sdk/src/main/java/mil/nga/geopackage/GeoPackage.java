@@ -182,4 +182,14 @@ public interface GeoPackage extends GeoPackageCore {
      */
     public Cursor quickCheck();
 
+    /**
+     * Reset the cached tile dedup extension state of the tile table, read
+     * again when the next tile DAO of the table is created. Called when the
+     * extension is created or deleted.
+     *
+     * @param table tile table name
+     * @since 3.5.1
+     */
+    public void resetTileDedup(String table);
+
 }
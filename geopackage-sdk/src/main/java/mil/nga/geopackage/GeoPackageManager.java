@@ -13,6 +13,7 @@ import java.net.URL;
 import java.util.List;
 import java.util.Set;
 
+import mil.nga.geopackage.io.GeoPackageExportFilter;
 import mil.nga.geopackage.io.GeoPackageProgress;
 
 /**
@@ -318,6 +319,22 @@ public interface GeoPackageManager {
     public boolean importGeoPackage(String database, InputStream stream,
                                     boolean override, GeoPackageProgress progress);
 
+    /**
+     * Import a GeoPackage stream, verifying the SHA-256 checksum computed
+     * while copying
+     *
+     * @param database database name to save as
+     * @param stream   GeoPackage stream to import
+     * @param override true to override existing
+     * @param progress progress tracker
+     * @param checksum expected hex encoded SHA-256 checksum of the stream,
+     *                 null to not verify
+     * @return true if created successfully
+     * @since 3.5.1
+     */
+    public boolean importGeoPackage(String database, InputStream stream,
+                                    boolean override, GeoPackageProgress progress, String checksum);
+
     /**
      * Import a GeoPackage file
      *
@@ -437,6 +454,39 @@ public interface GeoPackageManager {
      */
     public void exportGeoPackage(String database, Uri uri, ContentValues contentValues) throws IOException;
 
+    /**
+     * Export a GeoPackage database to a file with an online backup, taken
+     * from a separate read connection so concurrent readers and write ahead
+     * log writers are not blocked. The exported file is compacted.
+     *
+     * @param database database name
+     * @param file     export file, must not exist
+     * @param progress progress tracker
+     * @return true if exported, false if cancelled
+     * @since 3.5.1
+     */
+    public boolean exportGeoPackage(String database, File file,
+                                    GeoPackageProgress progress);
+
+    /**
+     * Export the selected tables and tile zoom levels of a GeoPackage
+     * database to a file. Without filtering, an online backup is taken from a
+     * separate read connection so concurrent readers and write ahead log
+     * writers are not blocked. With filtering, only the selected tables, their
+     * related tables, and the rows within the zoom level ranges are copied
+     * into the new file, each table in its own statement so writers are only
+     * blocked per table. The exported file is compacted.
+     *
+     * @param database database name
+     * @param file     export file, must not exist
+     * @param filter   export filter, null to export all tables
+     * @param progress progress tracker
+     * @return true if exported, false if cancelled
+     * @since 3.5.1
+     */
+    public boolean exportGeoPackage(String database, File file,
+                                    GeoPackageExportFilter filter, GeoPackageProgress progress);
+
     /**
      * Open the database
      *
@@ -455,6 +505,22 @@ public interface GeoPackageManager {
      */
     public GeoPackage open(String database, boolean writable);
 
+    /**
+     * Open the database with a pool of read only connections for queries.
+     * Queries outside of transactions run on the read connection bound to
+     * the calling thread while writes use the single writer connection.
+     * Write ahead logging is enabled on writable connections so reads do
+     * not block on writes.
+     *
+     * @param database        database name
+     * @param writable        true to open as writable, false as read only
+     * @param readConnections number of pooled read connections, 0 to query
+     *                        on the writer connection
+     * @return open GeoPackage
+     * @since 3.5.1
+     */
+    public GeoPackage open(String database, boolean writable, int readConnections);
+
     /**
      * Is import database header validation enabled.
      * This causes a small time increase when importing a database to check the header bytes.
@@ -495,6 +561,28 @@ public interface GeoPackageManager {
      */
     public void setImportIntegrityValidation(boolean enabled);
 
+    /**
+     * Is import database integrity validation performed with a quick check.
+     * The quick check skips index content verification and is much faster
+     * than the full integrity check on large databases.
+     * Off by default.
+     *
+     * @return true if enabled
+     * @since 3.5.1
+     */
+    public boolean isImportQuickCheck();
+
+    /**
+     * Set the import database integrity validation quick check setting.
+     * The quick check skips index content verification and is much faster
+     * than the full integrity check on large databases.
+     * Off by default.
+     *
+     * @param enabled true to enable, false to disable
+     * @since 3.5.1
+     */
+    public void setImportQuickCheck(boolean enabled);
+
     /**
      * Is open database header validation enabled.
      * This causes a small time increase when opening a database to check the header bytes.
@@ -553,6 +641,25 @@ public interface GeoPackageManager {
      */
     public void setSqliteWriteAheadLogging(boolean enabled);
 
+    /**
+     * Get the number of pooled read connections used when opening
+     * GeoPackages. 0 (no pool) by default.
+     *
+     * @return read connections
+     * @since 3.5.1
+     */
+    public int getSqliteReadConnections();
+
+    /**
+     * Set the number of pooled read connections used when opening
+     * GeoPackages. 0 (no pool) by default.
+     *
+     * @param readConnections read connections, 0 to query on the writer
+     *                        connection
+     * @since 3.5.1
+     */
+    public void setSqliteReadConnections(int readConnections);
+
     /**
      * Validate the database header and integrity.
      *
@@ -5,6 +5,7 @@ import android.database.Cursor;
 import android.database.SQLException;
 
 import org.sqlite.database.sqlite.SQLiteDatabase;
+import org.sqlite.database.sqlite.SQLiteStatement;
 
 /**
  * Android Bindings SQLiteDatabase
@@ -19,6 +20,63 @@ public class AndroidBindingsSQLiteDatabase implements GeoPackageSQLiteDatabase {
      */
     private SQLiteDatabase db;
 
+    /**
+     * Compiled insert, update, and delete statement cache
+     */
+    private final StatementCache<SQLiteStatement> statements = new StatementCache<SQLiteStatement>() {
+
+        @Override
+        protected SQLiteStatement compile(String sql) {
+            return db.compileStatement(sql);
+        }
+
+        @Override
+        protected void close(SQLiteStatement statement) {
+            statement.close();
+        }
+
+        @Override
+        protected void clearBindings(SQLiteStatement statement) {
+            statement.clearBindings();
+        }
+
+        @Override
+        protected void bindNull(SQLiteStatement statement, int index) {
+            statement.bindNull(index);
+        }
+
+        @Override
+        protected void bindLong(SQLiteStatement statement, int index, long value) {
+            statement.bindLong(index, value);
+        }
+
+        @Override
+        protected void bindDouble(SQLiteStatement statement, int index, double value) {
+            statement.bindDouble(index, value);
+        }
+
+        @Override
+        protected void bindString(SQLiteStatement statement, int index, String value) {
+            statement.bindString(index, value);
+        }
+
+        @Override
+        protected void bindBlob(SQLiteStatement statement, int index, byte[] value) {
+            statement.bindBlob(index, value);
+        }
+
+        @Override
+        protected long executeInsert(SQLiteStatement statement) {
+            return statement.executeInsert();
+        }
+
+        @Override
+        protected int executeUpdateDelete(SQLiteStatement statement) {
+            return statement.executeUpdateDelete();
+        }
+
+    };
+
     /**
      * Constructor
      */
@@ -41,6 +99,7 @@ public class AndroidBindingsSQLiteDatabase implements GeoPackageSQLiteDatabase {
      * @param db connection
      */
     public void setDb(SQLiteDatabase db) {
+        statements.clear();
         this.db = db;
     }
 
@@ -53,12 +112,23 @@ public class AndroidBindingsSQLiteDatabase implements GeoPackageSQLiteDatabase {
         return db;
     }
 
+    /**
+     * Get the compiled insert, update, and delete statement cache
+     *
+     * @return statement cache
+     * @since 3.5.1
+     */
+    public StatementCache<SQLiteStatement> getStatementCache() {
+        return statements;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void execSQL(String sql) throws SQLException {
         db.execSQL(sql);
+        statements.clear();
     }
 
     /**
@@ -112,7 +182,7 @@ public class AndroidBindingsSQLiteDatabase implements GeoPackageSQLiteDatabase {
      */
     @Override
     public int delete(String table, String whereClause, String[] whereArgs) {
-        return db.delete(CoreSQLUtils.quoteWrap(table), whereClause, whereArgs);
+        return statements.delete(table, whereClause, whereArgs);
     }
 
     /**
@@ -128,6 +198,7 @@ public class AndroidBindingsSQLiteDatabase implements GeoPackageSQLiteDatabase {
      */
     @Override
     public void close() {
+        statements.clear();
         if (db != null) {
             db.close();
         }
@@ -182,7 +253,13 @@ public class AndroidBindingsSQLiteDatabase implements GeoPackageSQLiteDatabase {
      */
     @Override
     public int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
-        return db.update(CoreSQLUtils.quoteWrap(table), SQLUtils.quoteWrap(values), whereClause, whereArgs);
+        int updated;
+        if (values.size() > 0) {
+            updated = statements.update(table, values, whereClause, whereArgs);
+        } else {
+            updated = db.update(CoreSQLUtils.quoteWrap(table), SQLUtils.quoteWrap(values), whereClause, whereArgs);
+        }
+        return updated;
     }
 
     /**
@@ -190,7 +267,13 @@ public class AndroidBindingsSQLiteDatabase implements GeoPackageSQLiteDatabase {
      */
     @Override
     public long insertOrThrow(String table, String nullColumnHack, ContentValues values) throws SQLException {
-        return db.insertOrThrow(CoreSQLUtils.quoteWrap(table), nullColumnHack, SQLUtils.quoteWrap(values));
+        long id;
+        if (values.size() > 0) {
+            id = statements.insert(table, values);
+        } else {
+            id = db.insertOrThrow(CoreSQLUtils.quoteWrap(table), nullColumnHack, SQLUtils.quoteWrap(values));
+        }
+        return id;
     }
 
     /**
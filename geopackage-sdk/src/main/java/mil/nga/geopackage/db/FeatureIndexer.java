@@ -4,6 +4,8 @@ import android.content.Context;
 import android.database.Cursor;
 import android.util.Log;
 
+import androidx.collection.LongSparseArray;
+
 import java.util.Date;
 import java.util.Map;
 
@@ -19,6 +21,7 @@ import mil.nga.geopackage.features.index.FeatureIndexMetadataResults;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.FeatureRowView;
 import mil.nga.geopackage.features.user.FeatureRowSync;
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
 import mil.nga.geopackage.io.GeoPackageProgress;
@@ -153,7 +156,7 @@ public class FeatureIndexer {
     public boolean index(FeatureRow row) {
 
         long geoPackageId = geometryMetadataDataSource.getGeoPackageId(featureDao.getDatabase());
-        boolean indexed = index(geoPackageId, row, true);
+        boolean indexed = index(geoPackageId, row.getId(), row.getGeometry(), true);
 
         // Update the last indexed time
         updateLastIndexed(db, geoPackageId);
@@ -161,6 +164,28 @@ public class FeatureIndexer {
         return indexed;
     }
 
+    /**
+     * Index the geometry envelopes by geometry id in a single transaction,
+     * deleting the index of ids with null envelopes. The last indexed time is
+     * updated once. This method assumes that indexing has been completed and
+     * maintained as the last indexed time is updated.
+     *
+     * @param envelopes geometry envelopes by geometry id
+     * @return number of geometries indexed
+     * @since 3.5.1
+     */
+    public int index(LongSparseArray<GeometryEnvelope> envelopes) {
+
+        long geoPackageId = geometryMetadataDataSource.getGeoPackageId(featureDao.getDatabase());
+        int count = geometryMetadataDataSource.createOrUpdate(geoPackageId,
+                featureDao.getTableName(), envelopes);
+
+        // Update the last indexed time
+        updateLastIndexed(db, geoPackageId);
+
+        return count;
+    }
+
     /**
      * Index the feature table
      *
@@ -180,10 +205,12 @@ public class FeatureIndexer {
         long offset = 0;
         int chunkCount = 0;
 
+        String[] columns = featureDao.getIdAndGeometryColumnNames();
+
         // Index all features
         while (chunkCount >= 0) {
 
-            FeatureCursor cursor = featureDao.queryForChunk(chunkLimit, offset);
+            FeatureCursor cursor = featureDao.queryForChunk(columns, chunkLimit, offset);
             chunkCount = indexRows(metadata.getGeoPackageId(), cursor);
 
             if (chunkCount > 0) {
@@ -212,6 +239,8 @@ public class FeatureIndexer {
 
         int count = -1;
 
+        FeatureRowView row = cursor.getRowView();
+
         try {
             while ((progress == null || progress.isActive())
                     && cursor.moveToNext()) {
@@ -219,9 +248,9 @@ public class FeatureIndexer {
                     count++;
                 }
                 try {
-                    FeatureRow row = cursor.getRow();
                     if (row.isValid()) {
-                        boolean indexed = index(geoPackageId, row, false);
+                        boolean indexed = index(geoPackageId, row.getId(),
+                                row.getGeometryEnvelope(), false);
                         if (indexed) {
                             count++;
                         }
@@ -242,22 +271,22 @@ public class FeatureIndexer {
     }
 
     /**
-     * Index the feature row
+     * Index the feature geometry
      *
      * @param geoPackageId   GeoPackage id
-     * @param row            feature row
+     * @param geomId         feature geometry id
+     * @param geomData       feature geometry data
      * @param possibleUpdate possible update flag
      * @return true if indexed
      */
-    private boolean index(long geoPackageId, FeatureRow row, boolean possibleUpdate) {
+    private boolean index(long geoPackageId, long geomId, GeoPackageGeometryData geomData, boolean possibleUpdate) {
 
-        boolean indexed = false;
+        GeometryEnvelope envelope = null;
 
-        GeoPackageGeometryData geomData = row.getGeometry();
         if (geomData != null) {
 
             // Get the envelope
-            GeometryEnvelope envelope = geomData.getEnvelope();
+            envelope = geomData.getEnvelope();
 
             // If no envelope, build one from the geometry
             if (envelope == null) {
@@ -266,17 +295,33 @@ public class FeatureIndexer {
                     envelope = GeometryEnvelopeBuilder.buildEnvelope(geometry);
                 }
             }
+        }
 
-            // Create the new index row
-            if (envelope != null) {
-                GeometryMetadata metadata = geometryMetadataDataSource.populate(geoPackageId, featureDao.getTableName(), row.getId(), envelope);
-                if (possibleUpdate) {
-                    geometryMetadataDataSource.createOrUpdate(metadata);
-                } else {
-                    geometryMetadataDataSource.create(metadata);
-                }
-                indexed = true;
+        return index(geoPackageId, geomId, envelope, possibleUpdate);
+    }
+
+    /**
+     * Index the feature geometry envelope
+     *
+     * @param geoPackageId   GeoPackage id
+     * @param geomId         feature geometry id
+     * @param envelope       feature geometry envelope
+     * @param possibleUpdate possible update flag
+     * @return true if indexed
+     */
+    private boolean index(long geoPackageId, long geomId, GeometryEnvelope envelope, boolean possibleUpdate) {
+
+        boolean indexed = false;
+
+        // Create the new index row
+        if (envelope != null) {
+            GeometryMetadata metadata = geometryMetadataDataSource.populate(geoPackageId, featureDao.getTableName(), geomId, envelope);
+            if (possibleUpdate) {
+                geometryMetadataDataSource.createOrUpdate(metadata);
+            } else {
+                geometryMetadataDataSource.create(metadata);
             }
+            indexed = true;
         }
 
         return indexed;
@@ -1462,10 +1507,11 @@ public class FeatureIndexer {
     private int count(FeatureIndexerIdQuery idQuery, String where, String[] whereArgs) {
         int count = 0;
         if (idQuery.aboveMaxArguments(whereArgs)) {
-            FeatureCursor cursor = featureDao.query(where, whereArgs);
+            FeatureCursor cursor = featureDao.query(
+                    new String[]{featureDao.getIdColumnName()}, where, whereArgs);
+            FeatureRowView featureRow = cursor.getRowView();
             try {
                 while (cursor.moveToNext()) {
-                    FeatureRow featureRow = cursor.getRow();
                     if (idQuery.hasId(featureRow.getId())) {
                         count++;
                     }
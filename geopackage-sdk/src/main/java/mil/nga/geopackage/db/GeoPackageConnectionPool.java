@@ -0,0 +1,176 @@
+package mil.nga.geopackage.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.factory.GeoPackageCursorFactory;
+
+/**
+ * GeoPackage read connection pool of read only connections for query work,
+ * each thread bound to one pooled connection. Writes, reads within a
+ * transaction, and PRAGMA statements remain on the single writer connection.
+ * Requires write ahead logging on the writer for reads to proceed alongside
+ * writes. The pool is reference counted, shared by database copies and closed
+ * when the last reference is released.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class GeoPackageConnectionPool {
+
+    /**
+     * Read only connections
+     */
+    private final List<AndroidSQLiteDatabase> readers;
+
+    /**
+     * Next connection to bind to a thread
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Connection bound to each thread
+     */
+    private final ThreadLocal<AndroidSQLiteDatabase> threadReader = new ThreadLocal<>();
+
+    /**
+     * Reference count
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * Closed flag
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Open a read connection pool
+     *
+     * @param path          database path
+     * @param size          number of read connections
+     * @param cursorFactory cursor factory
+     * @return connection pool
+     */
+    public static GeoPackageConnectionPool open(String path, int size,
+                                                GeoPackageCursorFactory cursorFactory) {
+        if (size < 1) {
+            throw new GeoPackageException(
+                    "Read connection pool size must be at least 1, size: "
+                            + size);
+        }
+        List<AndroidSQLiteDatabase> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < size; i++) {
+                SQLiteDatabase reader = SQLiteDatabase.openDatabase(path,
+                        cursorFactory, SQLiteDatabase.OPEN_READONLY
+                                | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+                readers.add(new AndroidSQLiteDatabase(reader));
+            }
+        } catch (RuntimeException e) {
+            for (AndroidSQLiteDatabase reader : readers) {
+                reader.close();
+            }
+            throw new GeoPackageException(
+                    "Failed to open read connection pool: " + path, e);
+        }
+        return new GeoPackageConnectionPool(readers);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param readers read only connections
+     */
+    public GeoPackageConnectionPool(List<AndroidSQLiteDatabase> readers) {
+        this.readers = Collections.unmodifiableList(
+                new ArrayList<>(readers));
+    }
+
+    /**
+     * Get the number of read connections
+     *
+     * @return size
+     */
+    public int size() {
+        return readers.size();
+    }
+
+    /**
+     * Get the read connections
+     *
+     * @return read connections
+     */
+    public List<AndroidSQLiteDatabase> getReaders() {
+        return readers;
+    }
+
+    /**
+     * Get the read connection bound to the current thread, binding the next
+     * connection in turn on first use by a thread
+     *
+     * @return read connection
+     */
+    public AndroidSQLiteDatabase getReader() {
+        AndroidSQLiteDatabase reader = threadReader.get();
+        if (reader == null) {
+            int index = (next.getAndIncrement() & Integer.MAX_VALUE)
+                    % readers.size();
+            reader = readers.get(index);
+            threadReader.set(reader);
+        }
+        return reader;
+    }
+
+    /**
+     * Is the pool closed
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Acquire an additional reference to the pool, released with
+     * {@link #close()}
+     *
+     * @return this pool
+     */
+    public GeoPackageConnectionPool acquireReference() {
+        int count;
+        do {
+            count = references.get();
+            if (count <= 0) {
+                throw new GeoPackageException(
+                        "Read connection pool is closed");
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    /**
+     * Release a reference to the pool, closing the read connections when the
+     * last reference is released
+     */
+    public void close() {
+        if (references.decrementAndGet() != 0) {
+            return;
+        }
+        closed = true;
+        for (AndroidSQLiteDatabase reader : readers) {
+            try {
+                reader.close();
+            } catch (Exception e) {
+                Log.w(GeoPackageConnectionPool.class.getSimpleName(),
+                        "Failed to close read connection", e);
+            }
+        }
+    }
+
+}
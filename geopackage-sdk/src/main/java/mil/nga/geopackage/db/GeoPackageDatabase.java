@@ -6,6 +6,8 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
+import java.util.Locale;
+
 import mil.nga.geopackage.factory.GeoPackageCursorFactory;
 
 /**
@@ -46,6 +48,11 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
      */
     private boolean bindingsWritable = false;
 
+    /**
+     * Read connection pool for queries outside of transactions
+     */
+    private GeoPackageConnectionPool readPool;
+
     /**
      * Constructor
      *
@@ -95,6 +102,9 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
         this.bindingsWritable = database.bindingsWritable;
         this.cursorFactory = database.cursorFactory;
         this.useBindings = database.useBindings;
+        if (database.readPool != null && !database.readPool.isClosed()) {
+            this.readPool = database.readPool.acquireReference();
+        }
     }
 
     /**
@@ -113,6 +123,46 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
         return active;
     }
 
+    /**
+     * Get the connection for queries, the pooled read connection of the
+     * current thread when a read pool is set, using the standard connection,
+     * and not within a transaction on the current thread
+     *
+     * @return query connection
+     * @since 3.5.1
+     */
+    public GeoPackageSQLiteDatabase getRead() {
+        GeoPackageSQLiteDatabase read = null;
+        if (readPool != null && !useBindings && !readPool.isClosed()
+                && !db.inTransaction()) {
+            read = readPool.getReader();
+        } else {
+            read = getActive();
+        }
+        return read;
+    }
+
+    /**
+     * Get the read connection pool
+     *
+     * @return read connection pool, null when queries use the active connection
+     * @since 3.5.1
+     */
+    public GeoPackageConnectionPool getReadPool() {
+        return readPool;
+    }
+
+    /**
+     * Set the read connection pool, the reference released when the database
+     * is closed
+     *
+     * @param readPool read connection pool, null to query on the active connection
+     * @since 3.5.1
+     */
+    public void setReadPool(GeoPackageConnectionPool readPool) {
+        this.readPool = readPool;
+    }
+
     /**
      * Get the Android SQLite Database connection
      *
@@ -302,7 +352,27 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
      */
     @Override
     public Cursor rawQuery(String sql, String[] selectionArgs) {
-        return getActive().rawQuery(sql, selectionArgs);
+        GeoPackageSQLiteDatabase read = null;
+        if (isPragma(sql)) {
+            // Pragmas read connection state, query the writer
+            read = getActive();
+        } else {
+            read = getRead();
+        }
+        return read.rawQuery(sql, selectionArgs);
+    }
+
+    /**
+     * Determine if the SQL is or queries a PRAGMA statement, including table
+     * valued pragma functions
+     *
+     * @param sql SQL statement
+     * @return true if a pragma
+     */
+    private static boolean isPragma(String sql) {
+        String trimmed = sql.trim();
+        return trimmed.regionMatches(true, 0, "PRAGMA", 0, 6)
+                || trimmed.toLowerCase(Locale.US).contains("pragma_");
     }
 
     /**
@@ -312,6 +382,10 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
     public void close() {
         db.close();
         bindingsDb.close();
+        if (readPool != null) {
+            readPool.close();
+            readPool = null;
+        }
     }
 
     /**
@@ -321,7 +395,7 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
     public Cursor query(String table, String[] columns, String selection,
                         String[] selectionArgs, String groupBy, String having,
                         String orderBy) {
-        return getActive().query(table, columns, selection, selectionArgs, groupBy, having, orderBy);
+        return getRead().query(table, columns, selection, selectionArgs, groupBy, having, orderBy);
     }
 
     /**
@@ -331,7 +405,7 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
     public Cursor query(String table, String[] columns, String[] columnsAs, String selection,
                         String[] selectionArgs, String groupBy, String having,
                         String orderBy) {
-        return getActive().query(table, columns, columnsAs, selection, selectionArgs, groupBy, having, orderBy);
+        return getRead().query(table, columns, columnsAs, selection, selectionArgs, groupBy, having, orderBy);
     }
 
     /**
@@ -341,7 +415,7 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
     public Cursor query(String table, String[] columns, String selection,
                         String[] selectionArgs, String groupBy, String having,
                         String orderBy, String limit) {
-        return getActive().query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+        return getRead().query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
     }
 
     /**
@@ -351,7 +425,7 @@ public class GeoPackageDatabase implements GeoPackageSQLiteDatabase {
     public Cursor query(String table, String[] columns, String[] columnsAs, String selection,
                         String[] selectionArgs, String groupBy, String having,
                         String orderBy, String limit) {
-        return getActive().query(table, columns, columnsAs, selection, selectionArgs, groupBy, having, orderBy, limit);
+        return getRead().query(table, columns, columnsAs, selection, selectionArgs, groupBy, having, orderBy, limit);
     }
 
     /**
@@ -0,0 +1,465 @@
+package mil.nga.geopackage.db;
+
+import android.content.ContentValues;
+import android.util.LruCache;
+
+import java.util.Arrays;
+
+/**
+ * Connection LRU cache of compiled insert, update, and delete statements keyed
+ * by table, operation, column set, and where clause. Cached statements are
+ * bound positionally on each execution, skipping SQL building, identifier
+ * quoting, and statement compilation for repeated single row writes.
+ *
+ * @param <TStatement> compiled statement type
+ * @author osbornb
+ * @since 3.5.1
+ */
+public abstract class StatementCache<TStatement> {
+
+    /**
+     * Default number of cached statements per connection
+     */
+    public static final int DEFAULT_CACHE_SIZE = 32;
+
+    /**
+     * Insert operation key prefix
+     */
+    private static final String INSERT = "INSERT";
+
+    /**
+     * Update operation key prefix
+     */
+    private static final String UPDATE = "UPDATE";
+
+    /**
+     * Delete operation key prefix
+     */
+    private static final String DELETE = "DELETE";
+
+    /**
+     * Cached statement entry
+     *
+     * @param <TStatement> compiled statement type
+     */
+    private static class Entry<TStatement> {
+
+        /**
+         * Statement sql
+         */
+        final String sql;
+
+        /**
+         * Compiled statement
+         */
+        final TStatement statement;
+
+        /**
+         * Closed flag, set when evicted or cleared
+         */
+        boolean closed = false;
+
+        /**
+         * Constructor
+         *
+         * @param sql       statement sql
+         * @param statement compiled statement
+         */
+        Entry(String sql, TStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+    }
+
+    /**
+     * Statements by key
+     */
+    private final LruCache<String, Entry<TStatement>> statements;
+
+    /**
+     * Constructor
+     */
+    public StatementCache() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param size max number of cached statements
+     */
+    public StatementCache(int size) {
+        statements = new LruCache<String, Entry<TStatement>>(size) {
+            @Override
+            protected void entryRemoved(boolean evicted, String key,
+                                        Entry<TStatement> oldValue,
+                                        Entry<TStatement> newValue) {
+                synchronized (oldValue) {
+                    oldValue.closed = true;
+                    close(oldValue.statement);
+                }
+            }
+        };
+    }
+
+    /**
+     * Insert a row
+     *
+     * @param table  table name
+     * @param values content values, not empty
+     * @return row id
+     */
+    public long insert(String table, ContentValues values) {
+        String[] columns = columns(values);
+        String key = key(INSERT, table, columns, null);
+        Entry<TStatement> entry = statements.get(key);
+        if (entry == null) {
+            StringBuilder sql = new StringBuilder();
+            sql.append("INSERT INTO ").append(CoreSQLUtils.quoteWrap(table))
+                    .append(" (");
+            StringBuilder params = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                    params.append(", ");
+                }
+                sql.append(CoreSQLUtils.quoteWrap(columns[i]));
+                params.append("?");
+            }
+            sql.append(") VALUES (").append(params).append(")");
+            entry = put(key, sql.toString());
+        }
+        synchronized (entry) {
+            TStatement statement = statement(entry);
+            try {
+                bind(statement, values, columns, null);
+                return executeInsert(statement);
+            } finally {
+                release(entry, statement);
+            }
+        }
+    }
+
+    /**
+     * Update rows
+     *
+     * @param table       table name
+     * @param values      content values, not empty
+     * @param whereClause where clause
+     * @param whereArgs   where arguments
+     * @return updated rows
+     */
+    public int update(String table, ContentValues values, String whereClause,
+                      String[] whereArgs) {
+        String[] columns = columns(values);
+        String key = key(UPDATE, table, columns, whereClause);
+        Entry<TStatement> entry = statements.get(key);
+        if (entry == null) {
+            StringBuilder sql = new StringBuilder();
+            sql.append("UPDATE ").append(CoreSQLUtils.quoteWrap(table))
+                    .append(" SET ");
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(CoreSQLUtils.quoteWrap(columns[i])).append(" = ?");
+            }
+            if (whereClause != null && !whereClause.isEmpty()) {
+                sql.append(" WHERE ").append(whereClause);
+            }
+            entry = put(key, sql.toString());
+        }
+        synchronized (entry) {
+            TStatement statement = statement(entry);
+            try {
+                bind(statement, values, columns, whereArgs);
+                return executeUpdateDelete(statement);
+            } finally {
+                release(entry, statement);
+            }
+        }
+    }
+
+    /**
+     * Delete rows
+     *
+     * @param table       table name
+     * @param whereClause where clause
+     * @param whereArgs   where arguments
+     * @return deleted rows
+     */
+    public int delete(String table, String whereClause, String[] whereArgs) {
+        String key = key(DELETE, table, null, whereClause);
+        Entry<TStatement> entry = statements.get(key);
+        if (entry == null) {
+            StringBuilder sql = new StringBuilder();
+            sql.append("DELETE FROM ").append(CoreSQLUtils.quoteWrap(table));
+            if (whereClause != null && !whereClause.isEmpty()) {
+                sql.append(" WHERE ").append(whereClause);
+            }
+            entry = put(key, sql.toString());
+        }
+        synchronized (entry) {
+            TStatement statement = statement(entry);
+            try {
+                bind(statement, null, null, whereArgs);
+                return executeUpdateDelete(statement);
+            } finally {
+                release(entry, statement);
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached statements
+     *
+     * @return cached statements
+     */
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Get the number of statement cache hits
+     *
+     * @return hits
+     */
+    public int hitCount() {
+        return statements.hitCount();
+    }
+
+    /**
+     * Get the number of statement cache misses
+     *
+     * @return misses
+     */
+    public int missCount() {
+        return statements.missCount();
+    }
+
+    /**
+     * Close and remove all cached statements, such as after schema changes
+     */
+    public void clear() {
+        statements.evictAll();
+    }
+
+    /**
+     * Compile the statement
+     *
+     * @param sql statement sql
+     * @return compiled statement
+     */
+    protected abstract TStatement compile(String sql);
+
+    /**
+     * Close the statement
+     *
+     * @param statement compiled statement
+     */
+    protected abstract void close(TStatement statement);
+
+    /**
+     * Clear the statement bindings
+     *
+     * @param statement compiled statement
+     */
+    protected abstract void clearBindings(TStatement statement);
+
+    /**
+     * Bind a null value
+     *
+     * @param statement compiled statement
+     * @param index     1 based parameter index
+     */
+    protected abstract void bindNull(TStatement statement, int index);
+
+    /**
+     * Bind a long value
+     *
+     * @param statement compiled statement
+     * @param index     1 based parameter index
+     * @param value     value
+     */
+    protected abstract void bindLong(TStatement statement, int index,
+                                     long value);
+
+    /**
+     * Bind a double value
+     *
+     * @param statement compiled statement
+     * @param index     1 based parameter index
+     * @param value     value
+     */
+    protected abstract void bindDouble(TStatement statement, int index,
+                                       double value);
+
+    /**
+     * Bind a string value
+     *
+     * @param statement compiled statement
+     * @param index     1 based parameter index
+     * @param value     value
+     */
+    protected abstract void bindString(TStatement statement, int index,
+                                       String value);
+
+    /**
+     * Bind a blob value
+     *
+     * @param statement compiled statement
+     * @param index     1 based parameter index
+     * @param value     value
+     */
+    protected abstract void bindBlob(TStatement statement, int index,
+                                     byte[] value);
+
+    /**
+     * Execute an insert statement
+     *
+     * @param statement compiled statement
+     * @return row id
+     */
+    protected abstract long executeInsert(TStatement statement);
+
+    /**
+     * Execute an update or delete statement
+     *
+     * @param statement compiled statement
+     * @return affected rows
+     */
+    protected abstract int executeUpdateDelete(TStatement statement);
+
+    /**
+     * Compile and cache the statement
+     *
+     * @param key statement key
+     * @param sql statement sql
+     * @return cached entry
+     */
+    private Entry<TStatement> put(String key, String sql) {
+        Entry<TStatement> entry = new Entry<>(sql, compile(sql));
+        statements.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Get the statement of the entry, compiling a single use statement when
+     * the entry was closed by eviction after it was retrieved
+     *
+     * @param entry cached entry
+     * @return statement
+     */
+    private TStatement statement(Entry<TStatement> entry) {
+        TStatement statement = entry.statement;
+        if (entry.closed) {
+            statement = compile(entry.sql);
+        }
+        return statement;
+    }
+
+    /**
+     * Release the statement after execution, clearing the bindings of cached
+     * statements and closing single use statements
+     *
+     * @param entry     cached entry
+     * @param statement executed statement
+     */
+    private void release(Entry<TStatement> entry, TStatement statement) {
+        if (statement == entry.statement) {
+            clearBindings(statement);
+        } else {
+            close(statement);
+        }
+    }
+
+    /**
+     * Bind the content values in column order followed by the where
+     * arguments as strings
+     *
+     * @param statement compiled statement
+     * @param values    content values
+     * @param columns   ordered columns
+     * @param whereArgs where arguments
+     */
+    private void bind(TStatement statement, ContentValues values,
+                      String[] columns, String[] whereArgs) {
+        int index = 1;
+        if (columns != null) {
+            for (String column : columns) {
+                bind(statement, index++, values.get(column));
+            }
+        }
+        if (whereArgs != null) {
+            for (String whereArg : whereArgs) {
+                if (whereArg == null) {
+                    bindNull(statement, index++);
+                } else {
+                    bindString(statement, index++, whereArg);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bind the value by type
+     *
+     * @param statement compiled statement
+     * @param index     1 based parameter index
+     * @param value     value
+     */
+    private void bind(TStatement statement, int index, Object value) {
+        if (value == null) {
+            bindNull(statement, index);
+        } else if (value instanceof Double || value instanceof Float) {
+            bindDouble(statement, index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            bindLong(statement, index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            bindLong(statement, index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            bindBlob(statement, index, (byte[]) value);
+        } else {
+            bindString(statement, index, value.toString());
+        }
+    }
+
+    /**
+     * Get the content values columns in a stable order
+     *
+     * @param values content values
+     * @return sorted columns
+     */
+    private static String[] columns(ContentValues values) {
+        String[] columns = values.keySet().toArray(new String[values.size()]);
+        Arrays.sort(columns);
+        return columns;
+    }
+
+    /**
+     * Build the statement key
+     *
+     * @param operation   operation
+     * @param table       table name
+     * @param columns     ordered columns
+     * @param whereClause where clause
+     * @return key
+     */
+    private static String key(String operation, String table,
+                              String[] columns, String whereClause) {
+        StringBuilder key = new StringBuilder(operation);
+        key.append('\u0000').append(table);
+        if (columns != null) {
+            for (String column : columns) {
+                key.append('\u0000').append(column);
+            }
+        }
+        key.append('\u0001');
+        if (whereClause != null) {
+            key.append(whereClause);
+        }
+        return key.toString();
+    }
+
+}
@@ -0,0 +1,437 @@
+package mil.nga.geopackage.db.metadata;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * GeoPackage metadata catalog keeping a single long lived metadata database
+ * connection and an in memory index of GeoPackage names and external paths.
+ * Reads are answered from memory, writes go through the open connection and
+ * update the index. Writes made by other metadata connections mark the index
+ * stale so it is reloaded on next access, and the connection is reopened when
+ * the metadata database file is deleted.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class GeoPackageMetadataCatalog {
+
+    /**
+     * Metadata modification version, incremented on every metadata write and
+     * database creation
+     */
+    private static final AtomicLong version = new AtomicLong();
+
+    /**
+     * Shared catalog instance
+     */
+    private static GeoPackageMetadataCatalog instance;
+
+    /**
+     * Get the shared catalog of the application
+     *
+     * @param context context
+     * @return catalog
+     */
+    public static synchronized GeoPackageMetadataCatalog getInstance(Context context) {
+        if (instance == null) {
+            instance = new GeoPackageMetadataCatalog(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Mark catalogs as stale after a metadata write or database creation
+     */
+    static void modified() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Application context
+     */
+    private final Context context;
+
+    /**
+     * Metadata database file
+     */
+    private final File databaseFile;
+
+    /**
+     * Open metadata database
+     */
+    private GeoPackageMetadataDb metadataDb;
+
+    /**
+     * Metadata data source of the open database
+     */
+    private GeoPackageMetadataDataSource dataSource;
+
+    /**
+     * Modification version of the loaded index
+     */
+    private long loadedVersion = -1;
+
+    /**
+     * Metadata by GeoPackage name, sorted by name
+     */
+    private final TreeMap<String, GeoPackageMetadata> names = new TreeMap<>();
+
+    /**
+     * External metadata by external path
+     */
+    private final Map<String, GeoPackageMetadata> externalPaths = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param context application context
+     */
+    private GeoPackageMetadataCatalog(Context context) {
+        this.context = context;
+        this.databaseFile = context.getDatabasePath(GeoPackageMetadataDb.DATABASE_NAME);
+    }
+
+    /**
+     * Get the GeoPackage metadata by name
+     *
+     * @param database database name
+     * @return metadata copy or null
+     */
+    public synchronized GeoPackageMetadata get(String database) {
+        verify();
+        return copy(names.get(database));
+    }
+
+    /**
+     * Get the external GeoPackage metadata by external path
+     *
+     * @param path external path
+     * @return metadata copy or null
+     */
+    public synchronized GeoPackageMetadata getExternalAtPath(String path) {
+        verify();
+        return copy(externalPaths.get(path));
+    }
+
+    /**
+     * Determine if the metadata exists
+     *
+     * @param database database name
+     * @return true if exists
+     */
+    public synchronized boolean exists(String database) {
+        verify();
+        return names.containsKey(database);
+    }
+
+    /**
+     * Determine if the GeoPackage is external
+     *
+     * @param database database name
+     * @return true if external
+     */
+    public synchronized boolean isExternal(String database) {
+        verify();
+        GeoPackageMetadata metadata = names.get(database);
+        return metadata != null && metadata.isExternal();
+    }
+
+    /**
+     * Get all external GeoPackage metadata
+     *
+     * @return external metadata copies
+     */
+    public synchronized List<GeoPackageMetadata> getAllExternal() {
+        verify();
+        List<GeoPackageMetadata> externals = new ArrayList<>();
+        for (GeoPackageMetadata metadata : names.values()) {
+            if (metadata.isExternal()) {
+                externals.add(copy(metadata));
+            }
+        }
+        return externals;
+    }
+
+    /**
+     * Get the names matching the SQL like pattern, sorted by name
+     *
+     * @param like SQL like pattern
+     * @return names
+     */
+    public List<String> getNamesLike(String like) {
+        return getNamesLike(like, false);
+    }
+
+    /**
+     * Get the names not matching the SQL like pattern, sorted by name
+     *
+     * @param notLike SQL like pattern
+     * @return names
+     */
+    public List<String> getNamesNotLike(String notLike) {
+        return getNamesLike(notLike, true);
+    }
+
+    /**
+     * Get the names matching or not matching the SQL like pattern, sorted by
+     * name
+     *
+     * @param like    SQL like pattern
+     * @param notLike true to match names not like the pattern
+     * @return names
+     */
+    private synchronized List<String> getNamesLike(String like, boolean notLike) {
+        verify();
+        Pattern pattern = likePattern(like);
+        List<String> matches = new ArrayList<>();
+        for (String name : names.keySet()) {
+            if (pattern.matcher(name).matches() != notLike) {
+                matches.add(name);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Get the external GeoPackage names whose files exist, deleting the
+     * metadata of missing files in a single transaction
+     *
+     * @return existing external names
+     */
+    public synchronized List<String> getExistingExternal() {
+        verify();
+        List<String> existing = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (GeoPackageMetadata metadata : names.values()) {
+            if (metadata.isExternal()) {
+                if (new File(metadata.getExternalPath()).exists()) {
+                    existing.add(metadata.getName());
+                } else {
+                    missing.add(metadata.getName());
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            delete(missing);
+        }
+        return existing;
+    }
+
+    /**
+     * Create the GeoPackage metadata
+     *
+     * @param metadata GeoPackage metadata
+     */
+    public synchronized void create(GeoPackageMetadata metadata) {
+        verify();
+        long before = version.get();
+        dataSource.create(metadata);
+        index(copy(metadata));
+        written(before, 1);
+    }
+
+    /**
+     * Delete the GeoPackage metadata
+     *
+     * @param database database name
+     * @return true if deleted
+     */
+    public synchronized boolean delete(String database) {
+        verify();
+        long before = version.get();
+        boolean deleted = dataSource.delete(database);
+        unindex(database);
+        written(before, 1);
+        return deleted;
+    }
+
+    /**
+     * Delete the GeoPackage metadata of the names in a single transaction
+     *
+     * @param databases database names
+     * @return number deleted
+     */
+    public synchronized int delete(Collection<String> databases) {
+        verify();
+        int deleted = 0;
+        long before = version.get();
+        metadataDb.getDb().beginTransaction();
+        try {
+            for (String database : databases) {
+                if (dataSource.delete(database)) {
+                    deleted++;
+                }
+            }
+            metadataDb.getDb().endTransaction(true);
+        } catch (RuntimeException e) {
+            metadataDb.getDb().endTransaction(false);
+            loadedVersion = -1;
+            throw e;
+        }
+        for (String database : databases) {
+            unindex(database);
+        }
+        written(before, databases.size());
+        return deleted;
+    }
+
+    /**
+     * Rename the GeoPackage metadata
+     *
+     * @param database    database name
+     * @param newDatabase new database name
+     * @return true if renamed
+     */
+    public synchronized boolean rename(String database, String newDatabase) {
+        verify();
+        long before = version.get();
+        boolean renamed = dataSource.rename(database, newDatabase);
+        if (renamed) {
+            GeoPackageMetadata metadata = unindex(database);
+            if (metadata != null) {
+                metadata.setName(newDatabase);
+                index(metadata);
+            }
+        }
+        written(before, 1);
+        return renamed;
+    }
+
+    /**
+     * Close the metadata connection. The catalog reopens on next access.
+     */
+    public synchronized void close() {
+        if (metadataDb != null) {
+            metadataDb.close();
+            metadataDb = null;
+            dataSource = null;
+        }
+        loadedVersion = -1;
+    }
+
+    /**
+     * Verify the connection is open on the current metadata database file and
+     * the index is current, reloading when not
+     */
+    private void verify() {
+        if (metadataDb == null || loadedVersion != version.get()
+                || !databaseFile.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * Reopen the metadata connection and load the index
+     */
+    private void load() {
+        close();
+        metadataDb = new GeoPackageMetadataDb(context);
+        metadataDb.open();
+        dataSource = new GeoPackageMetadataDataSource(metadataDb);
+        long current = version.get();
+        names.clear();
+        externalPaths.clear();
+        for (GeoPackageMetadata metadata : dataSource.getAll()) {
+            index(metadata);
+        }
+        loadedVersion = current;
+    }
+
+    /**
+     * Keep the loaded index current after writes of this catalog when no
+     * other writes occurred concurrently
+     *
+     * @param before version before the writes
+     * @param writes maximum number of writes made
+     */
+    private void written(long before, int writes) {
+        long current = version.get();
+        if (loadedVersion == before && current - before <= writes) {
+            loadedVersion = current;
+        }
+    }
+
+    /**
+     * Add the metadata to the index
+     *
+     * @param metadata GeoPackage metadata
+     */
+    private void index(GeoPackageMetadata metadata) {
+        names.put(metadata.getName(), metadata);
+        if (metadata.isExternal()) {
+            externalPaths.put(metadata.getExternalPath(), metadata);
+        }
+    }
+
+    /**
+     * Remove the metadata from the index
+     *
+     * @param database database name
+     * @return removed metadata or null
+     */
+    private GeoPackageMetadata unindex(String database) {
+        GeoPackageMetadata metadata = names.remove(database);
+        if (metadata != null && metadata.isExternal()) {
+            externalPaths.remove(metadata.getExternalPath());
+        }
+        return metadata;
+    }
+
+    /**
+     * Copy the metadata so callers can not modify the index
+     *
+     * @param metadata GeoPackage metadata
+     * @return copy or null
+     */
+    private static GeoPackageMetadata copy(GeoPackageMetadata metadata) {
+        GeoPackageMetadata copy = null;
+        if (metadata != null) {
+            copy = new GeoPackageMetadata();
+            copy.setId(metadata.getId());
+            copy.setName(metadata.getName());
+            copy.setExternalPath(metadata.getExternalPath());
+        }
+        return copy;
+    }
+
+    /**
+     * Build the pattern of a SQLite like pattern, matching % as any
+     * characters, _ as a single character, and ASCII characters case
+     * insensitively
+     *
+     * @param like SQL like pattern
+     * @return pattern
+     */
+    private static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(),
+                Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
+}
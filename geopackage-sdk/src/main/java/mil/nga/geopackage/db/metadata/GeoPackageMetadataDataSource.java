@@ -58,6 +58,7 @@ public class GeoPackageMetadataDataSource {
                             + metadata.getExternalPath());
         }
         metadata.setId(insertId);
+        GeoPackageMetadataCatalog.modified();
     }
 
     /**
@@ -89,6 +90,9 @@ public class GeoPackageMetadataDataSource {
         int deleteCount = db.delete(
                 GeoPackageMetadata.TABLE_NAME,
                 whereClause, whereArgs);
+        if (deleteCount > 0) {
+            GeoPackageMetadataCatalog.modified();
+        }
         return deleteCount > 0;
     }
 
@@ -122,6 +126,9 @@ public class GeoPackageMetadataDataSource {
         int updateCount = db.update(
                 GeoPackageMetadata.TABLE_NAME, values,
                 whereClause, whereArgs);
+        if (updateCount > 0) {
+            GeoPackageMetadataCatalog.modified();
+        }
         return updateCount > 0;
     }
 
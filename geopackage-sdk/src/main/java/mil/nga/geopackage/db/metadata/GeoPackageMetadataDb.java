@@ -46,6 +46,7 @@ public class GeoPackageMetadataDb extends SQLiteOpenHelper {
         db.execSQL(GeoPackageMetadata.CREATE_SQL);
         db.execSQL(TableMetadata.CREATE_SQL);
         db.execSQL(GeometryMetadata.CREATE_SQL);
+        GeoPackageMetadataCatalog.modified();
     }
 
     /**
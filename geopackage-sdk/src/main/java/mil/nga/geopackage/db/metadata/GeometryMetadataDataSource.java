@@ -4,6 +4,8 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 
+import androidx.collection.LongSparseArray;
+
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.db.GeoPackageDatabase;
@@ -248,6 +250,40 @@ public class GeometryMetadataDataSource {
         return deleteCount > 0;
     }
 
+    /**
+     * Create or update the geometry metadata of the envelopes by geometry id
+     * in a single transaction, deleting the metadata of ids with null
+     * envelopes
+     *
+     * @param geoPackageId GeoPackage id
+     * @param tableName    table name
+     * @param envelopes    geometry envelopes by geometry id
+     * @return number of geometries created or updated
+     * @since 3.5.1
+     */
+    public int createOrUpdate(long geoPackageId, String tableName,
+                              LongSparseArray<GeometryEnvelope> envelopes) {
+        int count = 0;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < envelopes.size(); i++) {
+                long geomId = envelopes.keyAt(i);
+                GeometryEnvelope envelope = envelopes.valueAt(i);
+                if (envelope == null) {
+                    delete(geoPackageId, tableName, geomId);
+                } else if (createOrUpdate(populate(geoPackageId, tableName,
+                        geomId, envelope))) {
+                    count++;
+                }
+            }
+            db.endTransaction(true);
+        } catch (RuntimeException e) {
+            db.endTransaction(false);
+            throw e;
+        }
+        return count;
+    }
+
     /**
      * Create the geometry metadata or update if it already exists
      *
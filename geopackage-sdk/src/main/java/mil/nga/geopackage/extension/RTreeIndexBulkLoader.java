@@ -0,0 +1,586 @@
+package mil.nga.geopackage.extension;
+
+import android.database.Cursor;
+
+import org.sqlite.database.sqlite.SQLiteDatabase;
+import org.sqlite.database.sqlite.SQLiteStatement;
+
+import java.util.Arrays;
+
+import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.geom.GeometryEnvelopeReader;
+import mil.nga.geopackage.io.GeoPackageProgress;
+import mil.nga.sf.GeometryEnvelope;
+
+/**
+ * RTree Index bulk loader, creating the RTree index of a feature table without
+ * user defined SQL functions. Ids and geometries are read through a keyset
+ * cursor, envelopes are computed from the geometry bytes, and the entries are
+ * sorted by Hilbert curve or Sort-Tile-Recursive order before being inserted
+ * in large transactional batches so RTree nodes pack tightly.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class RTreeIndexBulkLoader {
+
+    /**
+     * Entry sort order
+     */
+    public enum SortOrder {
+
+        /**
+         * Hilbert curve order of the envelope centers
+         */
+        HILBERT,
+
+        /**
+         * Sort-Tile-Recursive order, vertical slices by center x each sorted
+         * by center y
+         */
+        STR;
+
+    }
+
+    /**
+     * Default feature rows read per keyset query
+     */
+    public static final int DEFAULT_CHUNK_LIMIT = 1000;
+
+    /**
+     * Default entries inserted per transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    /**
+     * Default RTree node capacity used to size Sort-Tile-Recursive slices,
+     * 2 dimensional entries per node of a 4096 byte page
+     */
+    public static final int DEFAULT_NODE_CAPACITY = 167;
+
+    /**
+     * Hilbert curve order, bits per dimension
+     */
+    private static final int HILBERT_ORDER = 16;
+
+    /**
+     * Bits of the entry position packed into sort keys
+     */
+    private static final int POSITION_BITS = 31;
+
+    /**
+     * Position mask of packed sort keys
+     */
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+    /**
+     * RTree index extension
+     */
+    private final RTreeIndexExtension rTree;
+
+    /**
+     * Feature DAO
+     */
+    private final FeatureDao featureDao;
+
+    /**
+     * Sort order
+     */
+    private SortOrder sortOrder = SortOrder.HILBERT;
+
+    /**
+     * Feature rows read per keyset query
+     */
+    private int chunkLimit = DEFAULT_CHUNK_LIMIT;
+
+    /**
+     * Entries inserted per transaction
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * RTree node capacity
+     */
+    private int nodeCapacity = DEFAULT_NODE_CAPACITY;
+
+    /**
+     * Create the RTree triggers maintaining the index on feature writes,
+     * disabled by default as the triggers call RTree SQL functions not
+     * defined on Android connections
+     */
+    private boolean createTriggers = false;
+
+    /**
+     * Progress
+     */
+    private GeoPackageProgress progress;
+
+    /**
+     * Number of indexed entries from the last create
+     */
+    private int count = 0;
+
+    /**
+     * Entry ids
+     */
+    private long[] ids;
+
+    /**
+     * Entry envelopes, min x, max x, min y, max y per entry
+     */
+    private double[] envelopes;
+
+    /**
+     * Constructor
+     *
+     * @param rTree      RTree index extension
+     * @param featureDao feature DAO
+     */
+    public RTreeIndexBulkLoader(RTreeIndexExtension rTree,
+                                FeatureDao featureDao) {
+        this.rTree = rTree;
+        this.featureDao = featureDao;
+    }
+
+    /**
+     * Get the sort order
+     *
+     * @return sort order
+     */
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    /**
+     * Set the sort order
+     *
+     * @param sortOrder sort order
+     */
+    public void setSortOrder(SortOrder sortOrder) {
+        this.sortOrder = sortOrder;
+    }
+
+    /**
+     * Get the feature rows read per keyset query
+     *
+     * @return chunk limit
+     */
+    public int getChunkLimit() {
+        return chunkLimit;
+    }
+
+    /**
+     * Set the feature rows read per keyset query
+     *
+     * @param chunkLimit chunk limit
+     */
+    public void setChunkLimit(int chunkLimit) {
+        this.chunkLimit = chunkLimit;
+    }
+
+    /**
+     * Get the entries inserted per transaction
+     *
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the entries inserted per transaction
+     *
+     * @param batchSize batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the RTree node capacity used to size Sort-Tile-Recursive slices
+     *
+     * @return node capacity
+     */
+    public int getNodeCapacity() {
+        return nodeCapacity;
+    }
+
+    /**
+     * Set the RTree node capacity used to size Sort-Tile-Recursive slices
+     *
+     * @param nodeCapacity node capacity
+     */
+    public void setNodeCapacity(int nodeCapacity) {
+        this.nodeCapacity = nodeCapacity;
+    }
+
+    /**
+     * Is creating the RTree triggers enabled
+     *
+     * @return true if creating triggers
+     */
+    public boolean isCreateTriggers() {
+        return createTriggers;
+    }
+
+    /**
+     * Set whether to create the RTree triggers. The triggers call the RTree
+     * SQL functions and maintain the index on feature writes by connections
+     * defining the functions. Once created, feature writes on Android
+     * connections fail. Without triggers, the index is maintained through
+     * the {@link mil.nga.geopackage.features.index.FeatureIndexManager}
+     * index and sync methods.
+     *
+     * @param createTriggers true to create triggers
+     */
+    public void setCreateTriggers(boolean createTriggers) {
+        this.createTriggers = createTriggers;
+    }
+
+    /**
+     * Get the progress
+     *
+     * @return progress
+     */
+    public GeoPackageProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Set the progress, progressed by each inserted batch of entries
+     *
+     * @param progress progress
+     */
+    public void setProgress(GeoPackageProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Get the number of entries indexed by the last create
+     *
+     * @return count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Create and bulk load the RTree index
+     *
+     * @return extension, null if cancelled
+     */
+    public Extensions create() {
+
+        String tableName = featureDao.getTableName();
+        String geometryColumnName = featureDao.getGeometryColumnName();
+        String idColumnName = featureDao.getIdColumnName();
+        String rTreeTableName = rTree.getRTreeTableName(tableName,
+                geometryColumnName);
+
+        count = 0;
+        read(idColumnName, geometryColumnName);
+
+        Extensions extension = null;
+        if (isActive()) {
+
+            int[] order = sort();
+
+            rTree.createRTreeIndex(tableName, geometryColumnName);
+            boolean loaded = false;
+            try {
+                loaded = insert(rTreeTableName, order);
+            } finally {
+                if (!loaded) {
+                    rTree.getGeoPackage().getConnection().getDb()
+                            .getBindingsDb().execSQL("DROP TABLE IF EXISTS "
+                            + CoreSQLUtils.quoteWrap(rTreeTableName));
+                }
+            }
+
+            if (loaded) {
+                extension = rTree.getOrCreateExtension(tableName,
+                        geometryColumnName);
+                if (createTriggers) {
+                    rTree.createAllTriggers(tableName, geometryColumnName,
+                            idColumnName);
+                }
+            }
+        }
+
+        ids = null;
+        envelopes = null;
+
+        return extension;
+    }
+
+    /**
+     * Read the ids and envelopes of the non empty feature geometries with a
+     * keyset cursor
+     *
+     * @param idColumnName       id column name
+     * @param geometryColumnName geometry column name
+     */
+    private void read(String idColumnName, String geometryColumnName) {
+
+        GeoPackageConnection connection = rTree.getGeoPackage().getConnection();
+
+        String id = CoreSQLUtils.quoteWrap(idColumnName);
+        String sql = "SELECT " + id + ", "
+                + CoreSQLUtils.quoteWrap(geometryColumnName) + " FROM "
+                + CoreSQLUtils.quoteWrap(featureDao.getTableName()) + " WHERE "
+                + id + " > ? ORDER BY " + id + " LIMIT " + chunkLimit;
+
+        ids = new long[Math.max(chunkLimit, 16)];
+        envelopes = new double[ids.length * 4];
+
+        long lastId = Long.MIN_VALUE;
+        int read = chunkLimit;
+        while (read == chunkLimit && isActive()) {
+            read = 0;
+            Cursor cursor = connection.rawQuery(sql,
+                    new String[]{String.valueOf(lastId)});
+            try {
+                while (cursor.moveToNext()) {
+                    read++;
+                    lastId = cursor.getLong(0);
+                    if (!cursor.isNull(1)) {
+                        GeometryEnvelope envelope = GeometryEnvelopeReader
+                                .readEnvelope(cursor.getBlob(1));
+                        if (envelope != null) {
+                            add(lastId, envelope);
+                        }
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Add an entry
+     *
+     * @param id       feature id
+     * @param envelope geometry envelope
+     */
+    private void add(long id, GeometryEnvelope envelope) {
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            envelopes = Arrays.copyOf(envelopes, count * 8);
+        }
+        ids[count] = id;
+        int index = count * 4;
+        envelopes[index] = envelope.getMinX();
+        envelopes[index + 1] = envelope.getMaxX();
+        envelopes[index + 2] = envelope.getMinY();
+        envelopes[index + 3] = envelope.getMaxY();
+        count++;
+    }
+
+    /**
+     * Sort the entries by the sort order
+     *
+     * @return entry positions in insertion order
+     */
+    private int[] sort() {
+
+        int[] order = new int[count];
+        if (count == 0) {
+            return order;
+        }
+
+        // Extent of the envelope centers
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            double x = centerX(i);
+            double y = centerY(i);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+
+        long[] keys = new long[count];
+
+        switch (sortOrder) {
+
+            case HILBERT:
+                int cells = 1 << HILBERT_ORDER;
+                for (int i = 0; i < count; i++) {
+                    long d = hilbert(cells,
+                            (int) quantize(centerX(i), minX, maxX, cells),
+                            (int) quantize(centerY(i), minY, maxY, cells));
+                    keys[i] = (d << POSITION_BITS) | i;
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < count; i++) {
+                    order[i] = (int) (keys[i] & POSITION_MASK);
+                }
+                break;
+
+            case STR:
+                long range = 1L << 32;
+                for (int i = 0; i < count; i++) {
+                    keys[i] = (quantize(centerX(i), minX, maxX, range) << POSITION_BITS) | i;
+                }
+                Arrays.sort(keys);
+                int capacity = Math.max(nodeCapacity, 1);
+                int leaves = (int) Math.ceil(count / (double) capacity);
+                int slices = (int) Math.ceil(Math.sqrt(leaves));
+                int sliceSize = slices * capacity;
+                for (int start = 0; start < count; start += sliceSize) {
+                    int end = Math.min(start + sliceSize, count);
+                    long[] slice = new long[end - start];
+                    for (int i = start; i < end; i++) {
+                        int position = (int) (keys[i] & POSITION_MASK);
+                        slice[i - start] = (quantize(centerY(position), minY,
+                                maxY, range) << POSITION_BITS) | position;
+                    }
+                    Arrays.sort(slice);
+                    for (int i = start; i < end; i++) {
+                        order[i] = (int) (slice[i - start] & POSITION_MASK);
+                    }
+                }
+                break;
+
+            default:
+                for (int i = 0; i < count; i++) {
+                    order[i] = i;
+                }
+        }
+
+        return order;
+    }
+
+    /**
+     * Insert the entries in order into the RTree table in transactional
+     * batches
+     *
+     * @param rTreeTableName RTree table name
+     * @param order          entry positions in insertion order
+     * @return true if loaded, false if cancelled
+     */
+    private boolean insert(String rTreeTableName, int[] order) {
+
+        SQLiteDatabase db = rTree.getGeoPackage().getConnection().getDb()
+                .getBindingsDb();
+        SQLiteStatement statement = db.compileStatement("INSERT INTO "
+                + CoreSQLUtils.quoteWrap(rTreeTableName)
+                + " (id, minx, maxx, miny, maxy) VALUES (?, ?, ?, ?, ?)");
+        try {
+            int batch = Math.max(batchSize, 1);
+            for (int start = 0; start < order.length; start += batch) {
+                if (!isActive()) {
+                    return false;
+                }
+                int end = Math.min(start + batch, order.length);
+                db.beginTransaction();
+                try {
+                    for (int i = start; i < end; i++) {
+                        int position = order[i];
+                        int index = position * 4;
+                        statement.bindLong(1, ids[position]);
+                        statement.bindDouble(2, envelopes[index]);
+                        statement.bindDouble(3, envelopes[index + 1]);
+                        statement.bindDouble(4, envelopes[index + 2]);
+                        statement.bindDouble(5, envelopes[index + 3]);
+                        statement.executeInsert();
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                if (progress != null) {
+                    progress.addProgress(end - start);
+                }
+            }
+        } finally {
+            statement.close();
+        }
+
+        return isActive();
+    }
+
+    /**
+     * Get the envelope center x of the entry
+     *
+     * @param position entry position
+     * @return center x
+     */
+    private double centerX(int position) {
+        int index = position * 4;
+        return (envelopes[index] + envelopes[index + 1]) / 2.0;
+    }
+
+    /**
+     * Get the envelope center y of the entry
+     *
+     * @param position entry position
+     * @return center y
+     */
+    private double centerY(int position) {
+        int index = position * 4;
+        return (envelopes[index + 2] + envelopes[index + 3]) / 2.0;
+    }
+
+    /**
+     * Quantize the value within the range into a cell
+     *
+     * @param value value
+     * @param min   range min
+     * @param max   range max
+     * @param cells number of cells
+     * @return cell
+     */
+    private static long quantize(double value, double min, double max,
+                                 long cells) {
+        long cell = 0;
+        if (max > min) {
+            cell = (long) ((value - min) / (max - min) * (cells - 1));
+            cell = Math.max(0, Math.min(cells - 1, cell));
+        }
+        return cell;
+    }
+
+    /**
+     * Get the distance along the Hilbert curve of the cell
+     *
+     * @param n curve size, power of 2
+     * @param x cell x
+     * @param y cell y
+     * @return Hilbert distance
+     */
+    private static long hilbert(int n, int x, int y) {
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Determine if the progress is active
+     *
+     * @return true if active
+     */
+    private boolean isActive() {
+        return progress == null || progress.isActive();
+    }
+
+}
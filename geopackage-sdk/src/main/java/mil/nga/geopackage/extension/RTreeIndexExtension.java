@@ -9,7 +9,8 @@ import mil.nga.geopackage.user.custom.UserCustomTable;
 
 /**
  * RTree Index Extension
- * TODO User defined functions are not currently supported for Android
+ * TODO User defined functions are not currently supported for Android, RTree
+ * indexes are created with the {@link RTreeIndexBulkLoader}
  *
  * @author osbornb
  * @since 2.0.1
@@ -71,6 +72,33 @@ public class RTreeIndexExtension extends RTreeIndexCoreExtension {
         return new RTreeIndexTableDao(this, userCustomDao, featureDao);
     }
 
+    /**
+     * Get a RTree Index bulk loader for the feature table, creating the RTree
+     * index without the user defined SQL functions
+     *
+     * @param featureDao feature DAO
+     * @return bulk loader
+     * @since 3.5.1
+     */
+    public RTreeIndexBulkLoader getBulkLoader(FeatureDao featureDao) {
+        return new RTreeIndexBulkLoader(this, featureDao);
+    }
+
+    /**
+     * Get or create the extension row for the feature table geometry column
+     * without creating or loading the RTree index table
+     *
+     * @param tableName          feature table name
+     * @param geometryColumnName geometry column name
+     * @return extension
+     * @since 3.5.1
+     */
+    public Extensions getOrCreateExtension(String tableName,
+                                           String geometryColumnName) {
+        return getOrCreate(EXTENSION_NAME, tableName, geometryColumnName,
+                DEFINITION, ExtensionScopeType.WRITE_ONLY);
+    }
+
     /**
      * {@inheritDoc}
      */
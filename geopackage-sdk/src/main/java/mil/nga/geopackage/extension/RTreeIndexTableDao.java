@@ -1,5 +1,12 @@
 package mil.nga.geopackage.extension;
 
+import android.database.Cursor;
+
+import androidx.collection.LongSparseArray;
+
+import org.sqlite.database.sqlite.SQLiteDatabase;
+import org.sqlite.database.sqlite.SQLiteStatement;
+
 import java.util.List;
 import java.util.Map;
 
@@ -10,6 +17,8 @@ import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureRow;
 import mil.nga.geopackage.io.GeoPackageProgress;
+import mil.nga.geopackage.user.UserQuery;
+import mil.nga.geopackage.user.UserQueryParamType;
 import mil.nga.geopackage.user.custom.UserCustomCursor;
 import mil.nga.geopackage.user.custom.UserCustomDao;
 import mil.nga.geopackage.user.custom.UserCustomRow;
@@ -25,6 +34,21 @@ import mil.nga.sf.proj.ProjectionTransform;
  */
 public class RTreeIndexTableDao extends UserCustomDao {
 
+    /**
+     * RTree alias of join queries
+     */
+    private static final String JOIN_RTREE_ALIAS = "r";
+
+    /**
+     * Feature table alias of join queries
+     */
+    private static final String JOIN_FEATURE_ALIAS = "f";
+
+    /**
+     * RTree id column alias of join queries, distinct from feature columns
+     */
+    private static final String JOIN_ID_COLUMN = "rtree_join_id";
+
     /**
      * RTree index extension
      */
@@ -99,17 +123,21 @@ public class RTreeIndexTableDao extends UserCustomDao {
     }
 
     /**
-     * Create the RTree extension for the feature table
+     * Create the RTree extension for the feature table, bulk loading the
+     * index in sorted order. The RTree triggers are not created as they call
+     * SQL functions not defined on Android connections, the index is
+     * maintained through the
+     * {@link mil.nga.geopackage.features.index.FeatureIndexManager} index and
+     * sync methods.
      *
      * @return extension
      */
     public Extensions create() {
         Extensions extension = null;
         if (!has()) {
-            extension = rTree.create(featureDao.getTable());
-            if (progress != null) {
-                progress.addProgress(count());
-            }
+            RTreeIndexBulkLoader loader = rTree.getBulkLoader(featureDao);
+            loader.setProgress(progress);
+            extension = loader.create();
         }
         return extension;
     }
@@ -121,6 +149,77 @@ public class RTreeIndexTableDao extends UserCustomDao {
         rTree.delete(featureDao.getTable());
     }
 
+    /**
+     * Determine if the RTree triggers maintaining the index on feature table
+     * changes exist
+     *
+     * @return true if has triggers
+     * @since 3.5.1
+     */
+    public boolean hasTriggers() {
+        String prefix = getTableName() + "_";
+        Cursor cursor = rTree.getGeoPackage().rawQuery(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND tbl_name = ? AND substr(name, 1, ?) = ?",
+                new String[]{featureDao.getTableName(),
+                        String.valueOf(prefix.length()), prefix});
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) > 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Index the geometry envelopes by feature id in a single transaction,
+     * replacing existing entries and deleting the entries of ids with null
+     * envelopes. Used to maintain the RTree when the triggers do not exist.
+     *
+     * @param envelopes geometry envelopes by feature id
+     * @return number of geometries indexed
+     * @since 3.5.1
+     */
+    public int index(LongSparseArray<GeometryEnvelope> envelopes) {
+
+        int count = 0;
+
+        String rTreeTableName = CoreSQLUtils.quoteWrap(getTableName());
+        SQLiteDatabase db = rTree.getGeoPackage().getConnection().getDb()
+                .getBindingsDb();
+        SQLiteStatement delete = db.compileStatement("DELETE FROM "
+                + rTreeTableName + " WHERE id = ?");
+        SQLiteStatement insert = db.compileStatement("INSERT INTO "
+                + rTreeTableName
+                + " (id, minx, maxx, miny, maxy) VALUES (?, ?, ?, ?, ?)");
+        try {
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < envelopes.size(); i++) {
+                    long id = envelopes.keyAt(i);
+                    delete.bindLong(1, id);
+                    delete.executeUpdateDelete();
+                    GeometryEnvelope envelope = envelopes.valueAt(i);
+                    if (envelope != null) {
+                        insert.bindLong(1, id);
+                        insert.bindDouble(2, envelope.getMinX());
+                        insert.bindDouble(3, envelope.getMaxX());
+                        insert.bindDouble(4, envelope.getMinY());
+                        insert.bindDouble(5, envelope.getMaxY());
+                        insert.executeInsert();
+                        count++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            delete.close();
+            insert.close();
+        }
+
+        return count;
+    }
+
     /**
      * Get the RTree index extension
      *
@@ -1309,6 +1408,120 @@ public class RTreeIndexTableDao extends UserCustomDao {
                 where, whereArgs);
     }
 
+    /**
+     * Query for features within the geometry envelope by joining the RTree
+     * entries to the feature rows. The RTree drives the join, avoiding the
+     * materialized id set of a subquery for broad envelopes.
+     *
+     * @param columns   columns
+     * @param envelope  geometry envelope
+     * @param where     where clause
+     * @param whereArgs where arguments
+     * @return feature cursor
+     * @since 3.5.1
+     */
+    public FeatureCursor queryFeaturesJoin(String[] columns,
+                                           GeometryEnvelope envelope, String where, String[] whereArgs) {
+        validateRTree();
+        StringBuilder select = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                select.append(", ");
+            }
+            select.append(JOIN_FEATURE_ALIAS).append(".")
+                    .append(CoreSQLUtils.quoteWrap(columns[i]));
+        }
+        UserQuery query = new UserQuery(
+                joinSQL(select.toString(), envelope, where),
+                joinArgs(envelope, whereArgs));
+        query.set(UserQueryParamType.COLUMNS, columns);
+        return featureDao.query(query);
+    }
+
+    /**
+     * Count the features within the geometry envelope by joining the RTree
+     * entries to the feature rows
+     *
+     * @param envelope  geometry envelope
+     * @param where     where clause
+     * @param whereArgs where arguments
+     * @return count
+     * @since 3.5.1
+     */
+    public int countFeaturesJoin(GeometryEnvelope envelope, String where,
+                                 String[] whereArgs) {
+        validateRTree();
+        int count = 0;
+        Cursor cursor = featureDao.getDatabaseConnection().rawQuery(
+                joinSQL("COUNT(*)", envelope, where),
+                joinArgs(envelope, whereArgs));
+        try {
+            if (cursor.moveToFirst()) {
+                count = cursor.getInt(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+
+    /**
+     * Build the RTree join SQL
+     *
+     * @param select   select expression
+     * @param envelope geometry envelope
+     * @param where    where clause
+     * @return sql
+     */
+    private String joinSQL(String select, GeometryEnvelope envelope,
+                           String where) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT ").append(select).append(" FROM (SELECT ")
+                .append(RTreeIndexExtension.COLUMN_ID).append(" AS ")
+                .append(CoreSQLUtils.quoteWrap(JOIN_ID_COLUMN))
+                .append(" FROM ").append(CoreSQLUtils.quoteWrap(getTableName()))
+                .append(" WHERE ")
+                .append(buildWhere(envelope.getMinX(), envelope.getMinY(),
+                        envelope.getMaxX(), envelope.getMaxY()))
+                .append(") AS ").append(JOIN_RTREE_ALIAS)
+                .append(" CROSS JOIN ");
+        String featureTable = CoreSQLUtils.quoteWrap(featureDao.getTableName());
+        if (where != null && !where.isEmpty()) {
+            // Scope the where clause to the feature table so its columns
+            // resolve as feature columns, flattened into the join by SQLite
+            sql.append("(SELECT * FROM ").append(featureTable)
+                    .append(" WHERE ").append(where).append(")");
+        } else {
+            sql.append(featureTable);
+        }
+        sql.append(" AS ").append(JOIN_FEATURE_ALIAS).append(" WHERE ")
+                .append(JOIN_FEATURE_ALIAS).append(".")
+                .append(CoreSQLUtils.quoteWrap(featureDao.getIdColumnName()))
+                .append(" = ").append(JOIN_RTREE_ALIAS).append(".")
+                .append(CoreSQLUtils.quoteWrap(JOIN_ID_COLUMN));
+        return sql.toString();
+    }
+
+    /**
+     * Build the RTree join SQL arguments
+     *
+     * @param envelope  geometry envelope
+     * @param whereArgs where arguments
+     * @return arguments
+     */
+    private String[] joinArgs(GeometryEnvelope envelope, String[] whereArgs) {
+        String[] boundsArgs = buildWhereArgs(envelope.getMinX(),
+                envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY());
+        String[] args = boundsArgs;
+        if (whereArgs != null && whereArgs.length > 0) {
+            args = new String[boundsArgs.length + whereArgs.length];
+            System.arraycopy(boundsArgs, 0, args, 0, boundsArgs.length);
+            System.arraycopy(whereArgs, 0, args, boundsArgs.length,
+                    whereArgs.length);
+        }
+        return args;
+    }
+
     /**
      * Validate that the RTree extension exists for the table and column
      */
@@ -0,0 +1,559 @@
+package mil.nga.geopackage.extension.dedup;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.util.LruCache;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageConstants;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.extension.BaseExtension;
+import mil.nga.geopackage.extension.ExtensionScopeType;
+import mil.nga.geopackage.extension.Extensions;
+import mil.nga.geopackage.io.HashUtils;
+import mil.nga.geopackage.tiles.user.TileTable;
+
+/**
+ * Tile Dedup extension, content addressed tile storage where identical tile
+ * payloads are stored once in a blob side table of the tile table and tile
+ * rows hold a fixed size reference to the shared blob
+ *
+ * Tile rows read through a {@link mil.nga.geopackage.tiles.user.TileDao}
+ * with the extension resolve references transparently. Readers without the
+ * extension see the reference bytes in place of the tile image, so the
+ * extension is registered with a read write scope.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class TileDedup extends BaseExtension {
+
+    /**
+     * Extension name without the author
+     */
+    public static final String NAME = "tile_dedup";
+
+    /**
+     * Extension, with author and name
+     */
+    public static final String EXTENSION_NAME = Extensions
+            .buildExtensionName(GeoPackageConstants.EXTENSION_AUTHOR, NAME);
+
+    /**
+     * Extension definition
+     */
+    public static final String DEFINITION = "Content addressed tile data stored once per unique payload and referenced from tile rows";
+
+    /**
+     * Blob table name prefix, followed by the tile table name
+     */
+    public static final String TABLE_NAME_PREFIX = "nga_tile_blobs_";
+
+    /**
+     * Blob id column name
+     */
+    public static final String COLUMN_ID = "id";
+
+    /**
+     * Content hash column name
+     */
+    public static final String COLUMN_HASH = "hash";
+
+    /**
+     * Tile data column name
+     */
+    public static final String COLUMN_DATA = "data";
+
+    /**
+     * Reference prefix bytes, not a valid start of any supported tile image
+     * format
+     */
+    private static final byte[] REFERENCE_PREFIX = new byte[]{0, 'G', 'P',
+            'D'};
+
+    /**
+     * Reference length, prefix followed by the blob id
+     */
+    public static final int REFERENCE_LENGTH = REFERENCE_PREFIX.length + 8;
+
+    /**
+     * Default number of resolved blobs cached
+     */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    /**
+     * Default number of tile rows converted per compaction transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * GeoPackage
+     */
+    private final GeoPackage geoPackage;
+
+    /**
+     * Tile table name
+     */
+    private final String tileTableName;
+
+    /**
+     * Blob table name
+     */
+    private final String tableName;
+
+    /**
+     * Resolved blob cache by blob id, shared tiles are by nature read
+     * repeatedly
+     */
+    private final LruCache<Long, byte[]> cache;
+
+    /**
+     * Tile rows converted per compaction transaction
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Constructor
+     *
+     * @param geoPackage    GeoPackage
+     * @param tileTableName tile table name
+     */
+    public TileDedup(GeoPackage geoPackage, String tileTableName) {
+        this(geoPackage, tileTableName, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param geoPackage    GeoPackage
+     * @param tileTableName tile table name
+     * @param cacheSize     number of resolved blobs cached
+     */
+    public TileDedup(GeoPackage geoPackage, String tileTableName,
+                     int cacheSize) {
+        super(geoPackage);
+        this.geoPackage = geoPackage;
+        this.tileTableName = tileTableName;
+        this.tableName = TABLE_NAME_PREFIX + tileTableName;
+        this.cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Get the tile table name
+     *
+     * @return tile table name
+     */
+    public String getTileTableName() {
+        return tileTableName;
+    }
+
+    /**
+     * Get the blob table name
+     *
+     * @return table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Get the tile rows converted per compaction transaction
+     *
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the tile rows converted per compaction transaction
+     *
+     * @param batchSize batch size
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new GeoPackageException(
+                    "Batch size must be at least 1, size: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Determine if the tile table has the extension
+     *
+     * @return true if has extension
+     */
+    public boolean has() {
+        return has(EXTENSION_NAME, tileTableName, null)
+                && geoPackage.isTable(tableName);
+    }
+
+    /**
+     * Get or create the extension and blob table
+     */
+    public void getOrCreate() {
+        getOrCreate(EXTENSION_NAME, tileTableName, null, DEFINITION,
+                ExtensionScopeType.READ_WRITE);
+        geoPackage.getConnection().execSQL("CREATE TABLE IF NOT EXISTS \""
+                + tableName + "\" ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_HASH + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_DATA + " BLOB NOT NULL)");
+        geoPackage.resetTileDedup(tileTableName);
+    }
+
+    /**
+     * Determine if the tile data is a blob reference
+     *
+     * @param tileData tile data
+     * @return true if a reference
+     */
+    public static boolean isReference(byte[] tileData) {
+        boolean reference = tileData != null
+                && tileData.length == REFERENCE_LENGTH;
+        for (int i = 0; reference && i < REFERENCE_PREFIX.length; i++) {
+            reference = tileData[i] == REFERENCE_PREFIX[i];
+        }
+        return reference;
+    }
+
+    /**
+     * Get the blob id of the reference
+     *
+     * @param reference blob reference
+     * @return blob id
+     */
+    public static long getBlobId(byte[] reference) {
+        if (!isReference(reference)) {
+            throw new GeoPackageException("Tile data is not a blob reference");
+        }
+        return ByteBuffer.wrap(reference, REFERENCE_PREFIX.length, 8)
+                .getLong();
+    }
+
+    /**
+     * Create the reference to the blob id
+     *
+     * @param blobId blob id
+     * @return blob reference
+     */
+    public static byte[] createReference(long blobId) {
+        ByteBuffer buffer = ByteBuffer.allocate(REFERENCE_LENGTH);
+        buffer.put(REFERENCE_PREFIX);
+        buffer.putLong(blobId);
+        return buffer.array();
+    }
+
+    /**
+     * Store the tile data, reusing the blob of identical previously stored
+     * data
+     *
+     * @param tileData tile data
+     * @return blob reference to save as the tile row data
+     */
+    public byte[] store(byte[] tileData) {
+        if (isReference(tileData)) {
+            return tileData;
+        }
+        return store(tileData, HashUtils.hash(tileData));
+    }
+
+    /**
+     * Store the tile data with an already computed content hash, reusing the
+     * blob of identical previously stored data
+     *
+     * @param tileData tile data
+     * @param hash     content hash of the tile data from
+     *                 {@link HashUtils#hash(byte[])}
+     * @return blob reference to save as the tile row data
+     */
+    public byte[] store(byte[] tileData, String hash) {
+        if (isReference(tileData)) {
+            return tileData;
+        }
+        Long blobId = queryBlobId(hash);
+        if (blobId == null) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_HASH, hash);
+            values.put(COLUMN_DATA, tileData);
+            blobId = geoPackage.getConnection().getDb().insertOrThrow(
+                    tableName, null, values);
+            cache.put(blobId, tileData);
+        }
+        return createReference(blobId);
+    }
+
+    /**
+     * Resolve the tile data, returning the shared blob of references and
+     * all other tile data as is
+     *
+     * @param tileData tile data
+     * @return resolved tile data
+     */
+    public byte[] resolve(byte[] tileData) {
+        if (!isReference(tileData)) {
+            return tileData;
+        }
+        long blobId = getBlobId(tileData);
+        byte[] data = cache.get(blobId);
+        if (data == null) {
+            Cursor cursor = geoPackage.rawQuery("SELECT " + COLUMN_DATA
+                            + " FROM \"" + tableName + "\" WHERE " + COLUMN_ID
+                            + " = ?",
+                    new String[]{String.valueOf(blobId)});
+            try {
+                if (cursor.moveToFirst()) {
+                    data = cursor.getBlob(0);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (data == null) {
+                throw new GeoPackageException("Missing tile blob. Table: "
+                        + tableName + ", Id: " + blobId);
+            }
+            cache.put(blobId, data);
+        }
+        return data;
+    }
+
+    /**
+     * Count the stored blobs
+     *
+     * @return count
+     */
+    public int count() {
+        return geoPackage.getConnection().count(tableName, null, null);
+    }
+
+    /**
+     * Count the tile rows referencing stored blobs
+     *
+     * @return count
+     */
+    public int countReferences() {
+        return geoPackage.getConnection().count(tileTableName,
+                referenceWhere(), null);
+    }
+
+    /**
+     * Compact the tile table, converting each tile row with stored tile data
+     * to a blob reference and deleting unreferenced blobs. Creates the
+     * extension if needed. Rows are converted in batches, each in a single
+     * transaction.
+     *
+     * @return number of tile rows converted
+     */
+    public int compact() {
+        getOrCreate();
+        int count = convert(tileTableName, true);
+        deleteUnreferenced();
+        return count;
+    }
+
+    /**
+     * Delete the blobs no longer referenced by a tile row
+     *
+     * @return deleted count
+     */
+    public int deleteUnreferenced() {
+
+        Set<Long> referenced = new HashSet<>();
+        Cursor cursor = geoPackage.rawQuery("SELECT "
+                + TileTable.COLUMN_TILE_DATA + " FROM \"" + tileTableName
+                + "\" WHERE " + referenceWhere(), null);
+        try {
+            while (cursor.moveToNext()) {
+                referenced.add(getBlobId(cursor.getBlob(0)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<Long> unreferenced = new ArrayList<>();
+        cursor = geoPackage.rawQuery("SELECT " + COLUMN_ID + " FROM \""
+                + tableName + "\"", null);
+        try {
+            while (cursor.moveToNext()) {
+                long blobId = cursor.getLong(0);
+                if (!referenced.contains(blobId)) {
+                    unreferenced.add(blobId);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int deleted = 0;
+        if (!unreferenced.isEmpty()) {
+            GeoPackageConnection connection = geoPackage.getConnection();
+            connection.beginTransaction();
+            boolean successful = false;
+            try {
+                for (long blobId : unreferenced) {
+                    deleted += connection.delete(tableName,
+                            COLUMN_ID + " = ?",
+                            new String[]{String.valueOf(blobId)});
+                    cache.remove(blobId);
+                }
+                successful = true;
+            } finally {
+                connection.endTransaction(successful);
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Copy the blob table and extension to a copy of the tile table, keeping
+     * the blob ids referenced by the copied tile rows
+     *
+     * @param newTileTableName tile table copy name
+     * @return tile dedup of the tile table copy
+     */
+    public TileDedup copy(String newTileTableName) {
+        TileDedup copy = new TileDedup(geoPackage, newTileTableName);
+        copy.getOrCreate();
+        String columns = COLUMN_ID + ", " + COLUMN_HASH + ", " + COLUMN_DATA;
+        geoPackage.getConnection().execSQL("INSERT INTO \"" + copy.tableName
+                + "\" (" + columns + ") SELECT " + columns + " FROM \""
+                + tableName + "\"");
+        return copy;
+    }
+
+    /**
+     * Restore the tile data of each tile row referencing this blob table in
+     * another tile table, such as a tile table copy without extensions
+     *
+     * @param tileTableName tile table name
+     * @return number of tile rows restored
+     */
+    public int restore(String tileTableName) {
+        return convert(tileTableName, false);
+    }
+
+    /**
+     * Restore the tile data of each referencing tile row and delete the blob
+     * table and extension
+     */
+    public void delete() {
+        if (geoPackage.isTable(tableName) && geoPackage.isTable(tileTableName)) {
+            convert(tileTableName, false);
+        }
+        drop();
+    }
+
+    /**
+     * Drop the blob table and delete the extension without restoring tile
+     * rows, for a deleted tile table
+     */
+    public void drop() {
+        if (geoPackage.isTable(tableName)) {
+            geoPackage.dropTable(tableName);
+        }
+        cache.evictAll();
+        geoPackage.resetTileDedup(tileTableName);
+        try {
+            if (extensionsDao.isTableExists()) {
+                extensionsDao.deleteByExtension(EXTENSION_NAME, tileTableName);
+            }
+        } catch (SQLException e) {
+            throw new GeoPackageException(
+                    "Failed to delete Tile Dedup extension. GeoPackage: "
+                            + geoPackage.getName() + ", Table: "
+                            + tileTableName, e);
+        }
+    }
+
+    /**
+     * Convert the tile rows between stored tile data and blob references in
+     * batched transactions
+     *
+     * @param tileTableName tile table name
+     * @param toReference   true to convert stored tile data to references,
+     *                      false to restore referenced tile data
+     * @return converted count
+     */
+    private int convert(String tileTableName, boolean toReference) {
+
+        String where = referenceWhere();
+        if (toReference) {
+            where = "NOT (" + where + ")";
+        }
+        String sql = "SELECT rowid, " + TileTable.COLUMN_TILE_DATA
+                + " FROM \"" + tileTableName + "\" WHERE rowid > ? AND "
+                + where + " ORDER BY rowid LIMIT " + batchSize;
+
+        GeoPackageConnection connection = geoPackage.getConnection();
+
+        int count = 0;
+        long lastId = Long.MIN_VALUE;
+        boolean more = true;
+        while (more) {
+
+            List<Long> ids = new ArrayList<>();
+            List<byte[]> data = new ArrayList<>();
+            Cursor cursor = geoPackage.rawQuery(sql,
+                    new String[]{String.valueOf(lastId)});
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                    data.add(cursor.getBlob(1));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            more = ids.size() == batchSize;
+            if (ids.isEmpty()) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+
+            connection.beginTransaction();
+            boolean successful = false;
+            try {
+                for (int i = 0; i < ids.size(); i++) {
+                    byte[] tileData = data.get(i);
+                    if (tileData == null) {
+                        continue;
+                    }
+                    ContentValues values = new ContentValues();
+                    values.put(TileTable.COLUMN_TILE_DATA,
+                            toReference ? store(tileData) : resolve(tileData));
+                    count += connection.getDb().update(tileTableName, values,
+                            "rowid = ?",
+                            new String[]{String.valueOf(ids.get(i))});
+                }
+                successful = true;
+            } finally {
+                connection.endTransaction(successful);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Build the where clause matching tile rows holding blob references
+     *
+     * @return where clause
+     */
+    private static String referenceWhere() {
+        return "length(" + TileTable.COLUMN_TILE_DATA + ") = "
+                + REFERENCE_LENGTH + " AND substr("
+                + TileTable.COLUMN_TILE_DATA + ", 1, "
+                + REFERENCE_PREFIX.length + ") = X'"
+                + HashUtils.toHex(REFERENCE_PREFIX) + "'";
+    }
+
+}
@@ -0,0 +1,993 @@
+package mil.nga.geopackage.extension.generalize;
+
+import android.content.ContentValues;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.util.Log;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageConstants;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.R;
+import mil.nga.geopackage.core.contents.Contents;
+import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.GeoPackageDatabase;
+import mil.nga.geopackage.extension.BaseExtension;
+import mil.nga.geopackage.extension.ExtensionScopeType;
+import mil.nga.geopackage.extension.Extensions;
+import mil.nga.geopackage.features.user.FeatureCursor;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRowView;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.io.GeoPackageProgress;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.TileUtils;
+import mil.nga.sf.CompoundCurve;
+import mil.nga.sf.Geometry;
+import mil.nga.sf.GeometryCollection;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.LineString;
+import mil.nga.sf.MultiLineString;
+import mil.nga.sf.MultiPoint;
+import mil.nga.sf.MultiPolygon;
+import mil.nga.sf.Point;
+import mil.nga.sf.Polygon;
+import mil.nga.sf.PolyhedralSurface;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionTransform;
+import mil.nga.sf.util.GeometryEnvelopeBuilder;
+import mil.nga.sf.util.GeometryUtils;
+
+/**
+ * Feature Generalization extension, a precomputed pyramid of generalized
+ * features by zoom level stored in a side table of the GeoPackage. Each zoom
+ * level stores feature geometries simplified to the zoom pixel tolerance and
+ * grid based point clusters of points and of features smaller than a few
+ * pixels. Feature tiles draw low zoom tiles from the pyramid instead of
+ * querying every intersecting feature. The pyramid is stale once the feature
+ * table contents last change is after the last generation.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class FeatureGeneralization extends BaseExtension {
+
+    /**
+     * Extension name without the author
+     */
+    public static final String NAME = "feature_generalization";
+
+    /**
+     * Extension, with author and name
+     */
+    public static final String EXTENSION_NAME = Extensions
+            .buildExtensionName(GeoPackageConstants.EXTENSION_AUTHOR, NAME);
+
+    /**
+     * Extension definition
+     */
+    public static final String DEFINITION = "Feature generalization pyramid of simplified geometries and point clusters by zoom level";
+
+    /**
+     * Generalization table name prefix, followed by the feature table name
+     */
+    public static final String TABLE_NAME_PREFIX = "nga_generalization_";
+
+    /**
+     * Id column name
+     */
+    public static final String COLUMN_ID = "id";
+
+    /**
+     * Zoom level column name
+     */
+    public static final String COLUMN_ZOOM = "zoom";
+
+    /**
+     * Feature id column name
+     */
+    public static final String COLUMN_FEATURE_ID = "feature_id";
+
+    /**
+     * Feature count column name
+     */
+    public static final String COLUMN_COUNT = "count";
+
+    /**
+     * Web Mercator min x column name
+     */
+    public static final String COLUMN_MIN_X = "min_x";
+
+    /**
+     * Web Mercator max x column name
+     */
+    public static final String COLUMN_MAX_X = "max_x";
+
+    /**
+     * Web Mercator min y column name
+     */
+    public static final String COLUMN_MIN_Y = "min_y";
+
+    /**
+     * Web Mercator max y column name
+     */
+    public static final String COLUMN_MAX_Y = "max_y";
+
+    /**
+     * Geometry column name, null for point clusters
+     */
+    public static final String COLUMN_GEOMETRY = "geom";
+
+    /**
+     * Generation state table name, the last generated time by feature table
+     */
+    public static final String STATE_TABLE_NAME = "nga_generalizations";
+
+    /**
+     * Generation state table feature table name column name
+     */
+    public static final String COLUMN_TABLE_NAME = "table_name";
+
+    /**
+     * Generation state table last generated column name, milliseconds since
+     * the epoch
+     */
+    public static final String COLUMN_LAST_GENERATED = "last_generated";
+
+    /**
+     * Temporary table of cluster point locations used during generation
+     */
+    private static final String CLUSTER_POINTS_TABLE = "nga_generalization_points";
+
+    /**
+     * GeoPackage
+     */
+    private final GeoPackage geoPackage;
+
+    /**
+     * Feature DAO
+     */
+    private final FeatureDao featureDao;
+
+    /**
+     * Generalization table name
+     */
+    private final String tableName;
+
+    /**
+     * Feature projection to Web Mercator transform
+     */
+    private final ProjectionTransform toWebMercator;
+
+    /**
+     * Cluster grid cell size in pixels
+     */
+    private int clusterPixels;
+
+    /**
+     * Features smaller than this pixel length in both dimensions are clustered
+     * as points
+     */
+    private int minFeaturePixels;
+
+    /**
+     * Query single chunk limit
+     */
+    private int chunkLimit = 1000;
+
+    /**
+     * Progress
+     */
+    private GeoPackageProgress progress;
+
+    /**
+     * Cached generalized zoom levels
+     */
+    private Set<Integer> zooms;
+
+    /**
+     * Last feature id read while generating, the keyset paging position
+     */
+    private long lastFeatureId;
+
+    /**
+     * Constructor
+     *
+     * @param geoPackage GeoPackage
+     * @param featureDao feature dao
+     */
+    public FeatureGeneralization(GeoPackage geoPackage, FeatureDao featureDao) {
+        super(geoPackage);
+        this.geoPackage = geoPackage;
+        this.featureDao = featureDao;
+        this.tableName = TABLE_NAME_PREFIX + featureDao.getTableName();
+        this.toWebMercator = featureDao.getProjection()
+                .getTransformation(ProjectionConstants.EPSG_WEB_MERCATOR);
+        Resources resources = geoPackage.getContext().getResources();
+        clusterPixels = resources.getInteger(
+                R.integer.feature_generalization_cluster_pixels);
+        minFeaturePixels = resources.getInteger(
+                R.integer.feature_generalization_min_feature_pixels);
+    }
+
+    /**
+     * Get the feature DAO
+     *
+     * @return feature dao
+     */
+    public FeatureDao getFeatureDao() {
+        return featureDao;
+    }
+
+    /**
+     * Get the generalization table name
+     *
+     * @return table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Get the cluster grid cell size in pixels
+     *
+     * @return cluster pixels
+     */
+    public int getClusterPixels() {
+        return clusterPixels;
+    }
+
+    /**
+     * Set the cluster grid cell size in pixels
+     *
+     * @param clusterPixels cluster pixels
+     */
+    public void setClusterPixels(int clusterPixels) {
+        this.clusterPixels = clusterPixels;
+    }
+
+    /**
+     * Get the min feature pixel length, smaller features are clustered as
+     * points
+     *
+     * @return min feature pixels
+     */
+    public int getMinFeaturePixels() {
+        return minFeaturePixels;
+    }
+
+    /**
+     * Set the min feature pixel length, smaller features are clustered as
+     * points
+     *
+     * @param minFeaturePixels min feature pixels
+     */
+    public void setMinFeaturePixels(int minFeaturePixels) {
+        this.minFeaturePixels = minFeaturePixels;
+    }
+
+    /**
+     * Get the query chunk limit
+     *
+     * @return chunk limit
+     */
+    public int getChunkLimit() {
+        return chunkLimit;
+    }
+
+    /**
+     * Set the query chunk limit
+     *
+     * @param chunkLimit chunk limit
+     */
+    public void setChunkLimit(int chunkLimit) {
+        this.chunkLimit = chunkLimit;
+    }
+
+    /**
+     * Set the progress tracker, progress is counted by feature
+     *
+     * @param progress progress tracker
+     */
+    public void setProgress(GeoPackageProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Determine if the feature table has a generalization pyramid
+     *
+     * @return true if has generalization
+     */
+    public boolean has() {
+        return has(EXTENSION_NAME, featureDao.getTableName(), null)
+                && geoPackage.isTable(tableName);
+    }
+
+    /**
+     * Get the generalized zoom levels
+     *
+     * @return zoom levels
+     */
+    public Set<Integer> getZooms() {
+        if (zooms == null) {
+            Set<Integer> zoomLevels = new TreeSet<>();
+            if (geoPackage.isTable(tableName)) {
+                Cursor cursor = geoPackage.rawQuery("SELECT DISTINCT "
+                        + COLUMN_ZOOM + " FROM \"" + tableName + "\"", null);
+                try {
+                    while (cursor.moveToNext()) {
+                        zoomLevels.add(cursor.getInt(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            zooms = zoomLevels;
+        }
+        return zooms;
+    }
+
+    /**
+     * Determine if the zoom level is generalized
+     *
+     * @param zoom zoom level
+     * @return true if generalized
+     */
+    public boolean hasZoom(int zoom) {
+        return getZooms().contains(zoom);
+    }
+
+    /**
+     * Get the date last generated
+     *
+     * @return last generated date or null
+     */
+    public Date getLastGenerated() {
+        Date date = null;
+        if (geoPackage.isTable(STATE_TABLE_NAME)) {
+            Cursor cursor = geoPackage.rawQuery("SELECT "
+                    + COLUMN_LAST_GENERATED + " FROM " + STATE_TABLE_NAME
+                    + " WHERE " + COLUMN_TABLE_NAME + " = ?",
+                    new String[]{featureDao.getTableName()});
+            try {
+                if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                    date = new Date(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return date;
+    }
+
+    /**
+     * Determine if the generalization pyramid is stale, the feature table
+     * having changed after the last generation or never being generated
+     *
+     * @return true if stale
+     */
+    public boolean isStale() {
+
+        boolean stale = true;
+
+        Date lastGenerated = getLastGenerated();
+        if (lastGenerated != null) {
+            Contents contents;
+            try {
+                contents = geoPackage.getContentsDao().queryForId(
+                        featureDao.getTableName());
+            } catch (SQLException e) {
+                throw new GeoPackageException(
+                        "Failed to query for contents. GeoPackage: "
+                                + geoPackage.getName() + ", Table: "
+                                + featureDao.getTableName(), e);
+            }
+            Date lastChange = contents != null ? contents.getLastChange()
+                    : null;
+            stale = lastChange != null && lastChange.after(lastGenerated);
+        }
+
+        return stale;
+    }
+
+    /**
+     * Generate the generalization pyramid for the zoom levels, replacing
+     * existing generalized features of the zoom levels. When the pyramid is
+     * stale, the generalized features of all other zoom levels are deleted.
+     *
+     * @param minZoom min zoom level
+     * @param maxZoom max zoom level
+     * @return number of generalized features created, -1 if canceled
+     */
+    public int generate(int minZoom, int maxZoom) {
+
+        getOrCreate(EXTENSION_NAME, featureDao.getTableName(), null,
+                DEFINITION, ExtensionScopeType.READ_WRITE);
+        createTable();
+        zooms = null;
+
+        // Features changed during generation leave the pyramid stale
+        long generated = System.currentTimeMillis();
+
+        GeoPackageConnection connection = geoPackage.getConnection();
+        GeoPackageDatabase db = connection.getDb();
+
+        if (isStale()) {
+            db.delete(tableName, null, null);
+        } else {
+            db.delete(tableName, COLUMN_ZOOM + " >= ? AND " + COLUMN_ZOOM
+                            + " <= ?",
+                    new String[]{String.valueOf(minZoom),
+                            String.valueOf(maxZoom)});
+        }
+
+        connection.execSQL("CREATE TEMP TABLE IF NOT EXISTS "
+                + CLUSTER_POINTS_TABLE + " (" + COLUMN_ZOOM + " INTEGER, "
+                + COLUMN_FEATURE_ID + " INTEGER NOT NULL, x REAL NOT NULL, y REAL NOT NULL)");
+        connection.execSQL("DELETE FROM " + CLUSTER_POINTS_TABLE);
+
+        int count = 0;
+
+        try {
+
+            String[] columns = featureDao.getIdAndGeometryColumnNames();
+            String idColumn = CoreSQLUtils.quoteWrap(featureDao
+                    .getIdColumnName());
+
+            // Page by id, avoiding rescanning the skipped rows of offsets
+            lastFeatureId = Long.MIN_VALUE;
+            int chunkCount = 0;
+            while (chunkCount >= 0 && (progress == null || progress.isActive())) {
+                FeatureCursor cursor = featureDao.query(columns,
+                        idColumn + " > ?",
+                        new String[]{String.valueOf(lastFeatureId)}, null,
+                        null, idColumn, String.valueOf(chunkLimit));
+                db.beginTransaction();
+                boolean successful = false;
+                try {
+                    chunkCount = generateRows(db, cursor, minZoom, maxZoom);
+                    successful = true;
+                } finally {
+                    db.endTransaction(successful);
+                }
+                if (chunkCount > 0) {
+                    count += chunkCount;
+                }
+            }
+
+            if (progress != null && !progress.isActive()) {
+                count = -1;
+            } else {
+                db.beginTransaction();
+                boolean successful = false;
+                try {
+                    for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+                        count += createClusters(connection, zoom);
+                    }
+                    db.delete(STATE_TABLE_NAME, COLUMN_TABLE_NAME + " = ?",
+                            new String[]{featureDao.getTableName()});
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_TABLE_NAME, featureDao.getTableName());
+                    values.put(COLUMN_LAST_GENERATED, generated);
+                    db.insertOrThrow(STATE_TABLE_NAME, null, values);
+                    successful = true;
+                } finally {
+                    db.endTransaction(successful);
+                }
+            }
+
+        } finally {
+            connection.execSQL("DROP TABLE IF EXISTS " + CLUSTER_POINTS_TABLE);
+            zooms = null;
+        }
+
+        return count;
+    }
+
+    /**
+     * Query for generalized features of the zoom level within the bounding box
+     *
+     * @param zoom                   zoom level
+     * @param webMercatorBoundingBox web mercator bounding box
+     * @return generalized features
+     */
+    public List<GeneralizedFeature> query(int zoom,
+                                          BoundingBox webMercatorBoundingBox) {
+
+        List<GeneralizedFeature> features = new ArrayList<>();
+
+        ProjectionTransform fromWebMercator = toWebMercator
+                .getInverseTransformation();
+
+        Cursor cursor = geoPackage.rawQuery("SELECT " + COLUMN_FEATURE_ID
+                        + ", " + COLUMN_COUNT + ", " + COLUMN_MIN_X + ", "
+                        + COLUMN_MIN_Y + ", " + COLUMN_GEOMETRY + " FROM \""
+                        + tableName + "\" WHERE " + boundsWhere(),
+                boundsWhereArgs(zoom, webMercatorBoundingBox));
+        try {
+            while (cursor.moveToNext()) {
+                long featureId = cursor.getLong(0);
+                int count = cursor.getInt(1);
+                Geometry geometry;
+                boolean cluster = cursor.isNull(4);
+                if (cluster) {
+                    geometry = fromWebMercator.transform(new Point(
+                            cursor.getDouble(2), cursor.getDouble(3)));
+                } else {
+                    geometry = new GeoPackageGeometryData(cursor.getBlob(4))
+                            .getGeometry();
+                }
+                if (geometry != null) {
+                    features.add(new GeneralizedFeature(featureId, count,
+                            cluster, geometry));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return features;
+    }
+
+    /**
+     * Count the generalized features of the zoom level within the bounding
+     * box
+     *
+     * @param zoom                   zoom level
+     * @param webMercatorBoundingBox web mercator bounding box
+     * @return count
+     */
+    public int count(int zoom, BoundingBox webMercatorBoundingBox) {
+        return geoPackage.getConnection().count(tableName, boundsWhere(),
+                boundsWhereArgs(zoom, webMercatorBoundingBox));
+    }
+
+    /**
+     * Delete the generalization table and extension
+     */
+    public void delete() {
+        if (geoPackage.isTable(tableName)) {
+            geoPackage.dropTable(tableName);
+        }
+        if (geoPackage.isTable(STATE_TABLE_NAME)) {
+            geoPackage.getConnection().delete(STATE_TABLE_NAME,
+                    COLUMN_TABLE_NAME + " = ?",
+                    new String[]{featureDao.getTableName()});
+        }
+        try {
+            if (extensionsDao.isTableExists()) {
+                extensionsDao.deleteByExtension(EXTENSION_NAME,
+                        featureDao.getTableName());
+            }
+        } catch (SQLException e) {
+            throw new GeoPackageException(
+                    "Failed to delete Feature Generalization extension. GeoPackage: "
+                            + geoPackage.getName() + ", Table: "
+                            + featureDao.getTableName(), e);
+        }
+        zooms = null;
+    }
+
+    /**
+     * Create the generalization table and index if they do not exist
+     */
+    private void createTable() {
+        GeoPackageConnection connection = geoPackage.getConnection();
+        connection.execSQL("CREATE TABLE IF NOT EXISTS \"" + tableName + "\" ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + COLUMN_ZOOM + " INTEGER NOT NULL, "
+                + COLUMN_FEATURE_ID + " INTEGER NOT NULL, "
+                + COLUMN_COUNT + " INTEGER NOT NULL, "
+                + COLUMN_MIN_X + " DOUBLE NOT NULL, "
+                + COLUMN_MAX_X + " DOUBLE NOT NULL, "
+                + COLUMN_MIN_Y + " DOUBLE NOT NULL, "
+                + COLUMN_MAX_Y + " DOUBLE NOT NULL, "
+                + COLUMN_GEOMETRY + " BLOB)");
+        connection.execSQL("CREATE INDEX IF NOT EXISTS \"" + tableName
+                + "_zoom_idx\" ON \"" + tableName + "\" (" + COLUMN_ZOOM + ", "
+                + COLUMN_MIN_X + ", " + COLUMN_MAX_X + ")");
+        connection.execSQL("CREATE TABLE IF NOT EXISTS " + STATE_TABLE_NAME
+                + " (" + COLUMN_TABLE_NAME + " TEXT PRIMARY KEY NOT NULL, "
+                + COLUMN_LAST_GENERATED + " INTEGER NOT NULL)");
+    }
+
+    /**
+     * Generate the generalized rows of the features in the cursor
+     *
+     * @param db      database
+     * @param cursor  feature cursor
+     * @param minZoom min zoom level
+     * @param maxZoom max zoom level
+     * @return generalized geometries created, -1 if no results
+     */
+    private int generateRows(GeoPackageDatabase db, FeatureCursor cursor,
+                             int minZoom, int maxZoom) {
+
+        int count = -1;
+
+        FeatureRowView row = cursor.getRowView();
+        try {
+            while ((progress == null || progress.isActive())
+                    && cursor.moveToNext()) {
+                if (count < 0) {
+                    count++;
+                }
+                try {
+                    lastFeatureId = row.getId();
+                    if (row.isValid()) {
+                        GeoPackageGeometryData geometryData = row.getGeometry();
+                        Geometry geometry = geometryData != null ? geometryData
+                                .getGeometry() : null;
+                        if (geometry != null) {
+                            count += generate(db, row.getId(),
+                                    toWebMercator.transform(geometry), minZoom,
+                                    maxZoom);
+                        }
+                        if (progress != null) {
+                            progress.addProgress(1);
+                        }
+                    }
+                } catch (Exception e) {
+                    Log.e(FeatureGeneralization.class.getSimpleName(),
+                            "Failed to generalize feature. Table: "
+                                    + featureDao.getTableName()
+                                    + ", Id: " + lastFeatureId, e);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return count;
+    }
+
+    /**
+     * Generate the generalized rows of a feature
+     *
+     * @param db       database
+     * @param id       feature id
+     * @param geometry web mercator geometry
+     * @param minZoom  min zoom level
+     * @param maxZoom  max zoom level
+     * @return generalized geometries created
+     */
+    private int generate(GeoPackageDatabase db, long id, Geometry geometry,
+                         int minZoom, int maxZoom) {
+
+        int count = 0;
+
+        switch (geometry.getGeometryType()) {
+
+            case POINT:
+                insertClusterPoint(db, null, id, (Point) geometry);
+                break;
+
+            case MULTIPOINT:
+                for (Point point : ((MultiPoint) geometry).getPoints()) {
+                    insertClusterPoint(db, null, id, point);
+                }
+                break;
+
+            default:
+                GeometryEnvelope envelope = GeometryEnvelopeBuilder
+                        .buildEnvelope(geometry);
+                for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+                    double tolerance = TileBoundingBoxUtils.toleranceDistance(
+                            zoom, TileUtils.TILE_PIXELS_DEFAULT,
+                            TileUtils.TILE_PIXELS_DEFAULT);
+                    double minLength = tolerance * minFeaturePixels;
+                    Geometry simplified = null;
+                    if (envelope.getMaxX() - envelope.getMinX() >= minLength
+                            || envelope.getMaxY() - envelope.getMinY() >= minLength) {
+                        simplified = simplify(geometry, tolerance);
+                    }
+                    if (simplified != null) {
+                        insertGeometry(db, zoom, id, simplified);
+                        count++;
+                    } else {
+                        // Cluster features too small to draw as their center
+                        insertClusterPoint(db, zoom, id, new Point(
+                                (envelope.getMinX() + envelope.getMaxX()) / 2.0,
+                                (envelope.getMinY() + envelope.getMaxY()) / 2.0));
+                    }
+                }
+        }
+
+        return count;
+    }
+
+    /**
+     * Insert a simplified geometry row
+     *
+     * @param db       database
+     * @param zoom     zoom level
+     * @param id       feature id
+     * @param geometry simplified web mercator geometry
+     */
+    private void insertGeometry(GeoPackageDatabase db, int zoom, long id,
+                                Geometry geometry) {
+
+        GeometryEnvelope envelope = GeometryEnvelopeBuilder
+                .buildEnvelope(geometry);
+
+        GeoPackageGeometryData geometryData = new GeoPackageGeometryData(
+                featureDao.getGeometryColumns().getSrsId());
+        geometryData.setGeometry(toWebMercator.getInverseTransformation()
+                .transform(geometry));
+
+        byte[] bytes;
+        try {
+            bytes = geometryData.toBytes();
+        } catch (IOException e) {
+            throw new GeoPackageException(
+                    "Failed to write generalized Geometry Data bytes. Table: "
+                            + featureDao.getTableName() + ", Id: " + id, e);
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_ZOOM, zoom);
+        values.put(COLUMN_FEATURE_ID, id);
+        values.put(COLUMN_COUNT, 1);
+        values.put(COLUMN_MIN_X, envelope.getMinX());
+        values.put(COLUMN_MAX_X, envelope.getMaxX());
+        values.put(COLUMN_MIN_Y, envelope.getMinY());
+        values.put(COLUMN_MAX_Y, envelope.getMaxY());
+        values.put(COLUMN_GEOMETRY, bytes);
+        db.insertOrThrow(tableName, null, values);
+    }
+
+    /**
+     * Insert a point to be clustered
+     *
+     * @param db    database
+     * @param zoom  zoom level or null for all zoom levels
+     * @param id    feature id
+     * @param point web mercator point
+     */
+    private void insertClusterPoint(GeoPackageDatabase db, Integer zoom,
+                                    long id, Point point) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_ZOOM, zoom);
+        values.put(COLUMN_FEATURE_ID, id);
+        values.put("x", point.getX());
+        values.put("y", point.getY());
+        db.insertOrThrow(CLUSTER_POINTS_TABLE, null, values);
+    }
+
+    /**
+     * Create the grid clusters of the zoom level from the cluster points
+     *
+     * @param connection connection
+     * @param zoom       zoom level
+     * @return number of clusters created
+     */
+    private int createClusters(GeoPackageConnection connection, int zoom) {
+
+        double cellLength = 2 * ProjectionConstants.WEB_MERCATOR_HALF_WORLD_WIDTH
+                / TileBoundingBoxUtils.tilesPerSide(zoom)
+                / TileUtils.TILE_PIXELS_DEFAULT * clusterPixels;
+        double half = ProjectionConstants.WEB_MERCATOR_HALF_WORLD_WIDTH;
+
+        String cellX = "CAST((x + " + half + ") / " + cellLength
+                + " AS INTEGER)";
+        String cellY = "CAST((y + " + half + ") / " + cellLength
+                + " AS INTEGER)";
+
+        int before = connection.count(tableName, COLUMN_ZOOM + " = ?",
+                new String[]{String.valueOf(zoom)});
+
+        connection.execSQL("INSERT INTO \"" + tableName + "\" ("
+                + COLUMN_ZOOM + ", " + COLUMN_FEATURE_ID + ", " + COLUMN_COUNT
+                + ", " + COLUMN_MIN_X + ", " + COLUMN_MAX_X + ", "
+                + COLUMN_MIN_Y + ", " + COLUMN_MAX_Y + ") SELECT " + zoom
+                + ", MIN(" + COLUMN_FEATURE_ID + "), COUNT(*), AVG(x), AVG(x), AVG(y), AVG(y) FROM "
+                + CLUSTER_POINTS_TABLE + " WHERE " + COLUMN_ZOOM
+                + " IS NULL OR " + COLUMN_ZOOM + " = " + zoom + " GROUP BY "
+                + cellX + ", " + cellY);
+
+        return connection.count(tableName, COLUMN_ZOOM + " = ?",
+                new String[]{String.valueOf(zoom)}) - before;
+    }
+
+    /**
+     * Simplify the web mercator geometry
+     *
+     * @param geometry  web mercator geometry
+     * @param tolerance simplify tolerance in meters
+     * @return simplified geometry or null if the geometry collapsed
+     */
+    private Geometry simplify(Geometry geometry, double tolerance) {
+
+        Geometry simplified = null;
+
+        switch (geometry.getGeometryType()) {
+
+            case POINT:
+                simplified = geometry;
+                break;
+            case MULTIPOINT:
+                if (!((MultiPoint) geometry).getPoints().isEmpty()) {
+                    simplified = geometry;
+                }
+                break;
+            case LINESTRING:
+            case CIRCULARSTRING:
+                simplified = simplify((LineString) geometry, tolerance, 2);
+                break;
+            case POLYGON:
+            case TRIANGLE:
+                simplified = simplify((Polygon) geometry, tolerance);
+                break;
+            case MULTILINESTRING:
+                simplified = simplifyLineStrings(
+                        ((MultiLineString) geometry).getLineStrings(),
+                        geometry, tolerance);
+                break;
+            case COMPOUNDCURVE:
+                simplified = simplifyLineStrings(
+                        ((CompoundCurve) geometry).getLineStrings(),
+                        geometry, tolerance);
+                break;
+            case MULTIPOLYGON:
+                simplified = simplifyPolygons(
+                        ((MultiPolygon) geometry).getPolygons(), geometry,
+                        tolerance);
+                break;
+            case POLYHEDRALSURFACE:
+            case TIN:
+                simplified = simplifyPolygons(
+                        ((PolyhedralSurface) geometry).getPolygons(), geometry,
+                        tolerance);
+                break;
+            case GEOMETRYCOLLECTION:
+                @SuppressWarnings("unchecked")
+                GeometryCollection<Geometry> geometryCollection = (GeometryCollection<Geometry>) geometry;
+                GeometryCollection<Geometry> simplifiedCollection = new GeometryCollection<>(
+                        geometry.hasZ(), geometry.hasM());
+                for (Geometry child : geometryCollection.getGeometries()) {
+                    Geometry simplifiedChild = simplify(child, tolerance);
+                    if (simplifiedChild != null) {
+                        simplifiedCollection.addGeometry(simplifiedChild);
+                    }
+                }
+                if (!simplifiedCollection.getGeometries().isEmpty()) {
+                    simplified = simplifiedCollection;
+                }
+                break;
+            default:
+                throw new GeoPackageException("Unsupported Geometry Type: "
+                        + geometry.getGeometryType().getName());
+        }
+
+        return simplified;
+    }
+
+    /**
+     * Simplify the line strings
+     *
+     * @param lineStrings line strings
+     * @param geometry    source geometry
+     * @param tolerance   simplify tolerance in meters
+     * @return simplified multi line string or null
+     */
+    private MultiLineString simplifyLineStrings(List<LineString> lineStrings,
+                                                Geometry geometry, double tolerance) {
+        MultiLineString simplified = new MultiLineString(geometry.hasZ(),
+                geometry.hasM());
+        for (LineString lineString : lineStrings) {
+            LineString simplifiedLineString = simplify(lineString, tolerance, 2);
+            if (simplifiedLineString != null) {
+                simplified.addLineString(simplifiedLineString);
+            }
+        }
+        return simplified.getLineStrings().isEmpty() ? null : simplified;
+    }
+
+    /**
+     * Simplify the polygons
+     *
+     * @param polygons  polygons
+     * @param geometry  source geometry
+     * @param tolerance simplify tolerance in meters
+     * @return simplified multi polygon or null
+     */
+    private MultiPolygon simplifyPolygons(List<Polygon> polygons,
+                                          Geometry geometry, double tolerance) {
+        MultiPolygon simplified = new MultiPolygon(geometry.hasZ(),
+                geometry.hasM());
+        for (Polygon polygon : polygons) {
+            Polygon simplifiedPolygon = simplify(polygon, tolerance);
+            if (simplifiedPolygon != null) {
+                simplified.addPolygon(simplifiedPolygon);
+            }
+        }
+        return simplified.getPolygons().isEmpty() ? null : simplified;
+    }
+
+    /**
+     * Simplify the polygon, dropping collapsed holes
+     *
+     * @param polygon   polygon
+     * @param tolerance simplify tolerance in meters
+     * @return simplified polygon or null if the exterior ring collapsed
+     */
+    private Polygon simplify(Polygon polygon, double tolerance) {
+        Polygon simplified = null;
+        List<LineString> rings = polygon.getRings();
+        if (!rings.isEmpty()) {
+            LineString exterior = simplify(rings.get(0), tolerance, 4);
+            if (exterior != null) {
+                simplified = new Polygon(polygon.hasZ(), polygon.hasM());
+                simplified.addRing(exterior);
+                for (int i = 1; i < rings.size(); i++) {
+                    LineString hole = simplify(rings.get(i), tolerance, 4);
+                    if (hole != null) {
+                        simplified.addRing(hole);
+                    }
+                }
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Simplify the line string points
+     *
+     * @param lineString line string
+     * @param tolerance  simplify tolerance in meters
+     * @param minPoints  min points of a valid simplified line string
+     * @return simplified line string or null if collapsed
+     */
+    private LineString simplify(LineString lineString, double tolerance,
+                                int minPoints) {
+        LineString simplified = null;
+        List<Point> points = lineString.getPoints();
+        if (points.size() >= minPoints) {
+            points = GeometryUtils.simplifyPoints(points, tolerance);
+            if (points.size() >= minPoints) {
+                simplified = new LineString(lineString.hasZ(),
+                        lineString.hasM());
+                simplified.setPoints(points);
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Build the zoom and bounds where clause
+     *
+     * @return where clause
+     */
+    private static String boundsWhere() {
+        return COLUMN_ZOOM + " = ? AND " + COLUMN_MIN_X + " <= ? AND "
+                + COLUMN_MAX_X + " >= ? AND " + COLUMN_MIN_Y + " <= ? AND "
+                + COLUMN_MAX_Y + " >= ?";
+    }
+
+    /**
+     * Build the zoom and bounds where arguments
+     *
+     * @param zoom                   zoom level
+     * @param webMercatorBoundingBox web mercator bounding box
+     * @return where arguments
+     */
+    private static String[] boundsWhereArgs(int zoom,
+                                            BoundingBox webMercatorBoundingBox) {
+        return new String[]{String.valueOf(zoom),
+                String.valueOf(webMercatorBoundingBox.getMaxLongitude()),
+                String.valueOf(webMercatorBoundingBox.getMinLongitude()),
+                String.valueOf(webMercatorBoundingBox.getMaxLatitude()),
+                String.valueOf(webMercatorBoundingBox.getMinLatitude())};
+    }
+
+}
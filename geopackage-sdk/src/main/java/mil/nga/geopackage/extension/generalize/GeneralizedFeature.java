@@ -0,0 +1,87 @@
+package mil.nga.geopackage.extension.generalize;
+
+import mil.nga.sf.Geometry;
+
+/**
+ * Generalized feature of a zoom level, either a simplified feature geometry
+ * or a point cluster of one or more features
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class GeneralizedFeature {
+
+    /**
+     * Feature id, the representative (lowest) feature id of a cluster
+     */
+    private final long featureId;
+
+    /**
+     * Number of features represented, counting multi point points
+     * individually
+     */
+    private final int count;
+
+    /**
+     * Cluster flag
+     */
+    private final boolean cluster;
+
+    /**
+     * Geometry in the feature projection
+     */
+    private final Geometry geometry;
+
+    /**
+     * Constructor
+     *
+     * @param featureId feature id
+     * @param count     number of features represented
+     * @param cluster   true if a point cluster
+     * @param geometry  geometry in the feature projection
+     */
+    public GeneralizedFeature(long featureId, int count, boolean cluster,
+                              Geometry geometry) {
+        this.featureId = featureId;
+        this.count = count;
+        this.cluster = cluster;
+        this.geometry = geometry;
+    }
+
+    /**
+     * Get the feature id, the representative (lowest) feature id of a cluster
+     *
+     * @return feature id
+     */
+    public long getFeatureId() {
+        return featureId;
+    }
+
+    /**
+     * Get the number of features represented
+     *
+     * @return count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Is a point cluster of one or more features
+     *
+     * @return true if a cluster
+     */
+    public boolean isCluster() {
+        return cluster;
+    }
+
+    /**
+     * Get the geometry in the feature projection
+     *
+     * @return geometry
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+}
@@ -0,0 +1,488 @@
+package mil.nga.geopackage.extension.index;
+
+import android.database.Cursor;
+
+import androidx.collection.LongSparseArray;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageConstants;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.extension.BaseExtension;
+import mil.nga.geopackage.extension.ExtensionScopeType;
+import mil.nga.geopackage.extension.Extensions;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.geom.GeometryEnvelopeReader;
+import mil.nga.sf.GeometryEnvelope;
+
+/**
+ * Feature Change Tracker extension, records the ids of inserted, deleted, and
+ * geometry or id updated feature rows into a change log table through
+ * triggers on the feature table. Changes made by any connection or
+ * application are recorded. Syncing replays only the logged ids into the
+ * feature indexes in bulk, in place of a full index rebuild, and then removes
+ * the replayed changes from the log once replayed into every existing index.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class FeatureChangeTracker extends BaseExtension {
+
+    /**
+     * Extension name without the author
+     */
+    public static final String NAME = "feature_changes";
+
+    /**
+     * Extension, with author and name
+     */
+    public static final String EXTENSION_NAME = Extensions
+            .buildExtensionName(GeoPackageConstants.EXTENSION_AUTHOR, NAME);
+
+    /**
+     * Extension definition
+     */
+    public static final String DEFINITION = "Change log of feature ids for incremental index synchronization";
+
+    /**
+     * Change log table and trigger name prefix, followed by the feature table
+     * name
+     */
+    public static final String TABLE_NAME_PREFIX = "nga_feature_changes_";
+
+    /**
+     * Change id column name, increasing in change order
+     */
+    public static final String COLUMN_CHANGE_ID = "change_id";
+
+    /**
+     * Changed feature id column name
+     */
+    public static final String COLUMN_FEATURE_ID = "feature_id";
+
+    /**
+     * Insert trigger name suffix
+     */
+    public static final String TRIGGER_INSERT_SUFFIX = "_insert";
+
+    /**
+     * Update trigger name suffix
+     */
+    public static final String TRIGGER_UPDATE_SUFFIX = "_update";
+
+    /**
+     * Delete trigger name suffix
+     */
+    public static final String TRIGGER_DELETE_SUFFIX = "_delete";
+
+    /**
+     * Default number of changed feature ids indexed per transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    /**
+     * Leading geometry bytes read for the envelope, the GeoPackage geometry
+     * header with the largest envelope
+     */
+    private static final int GEOMETRY_HEADER_BYTES = 72;
+
+    /**
+     * Geometry bytes read per chunk when the envelope is not in the header,
+     * within a cursor window
+     */
+    private static final int GEOMETRY_CHUNK_BYTES = 1024 * 1024;
+
+    /**
+     * GeoPackage
+     */
+    private final GeoPackage geoPackage;
+
+    /**
+     * Feature DAO
+     */
+    private final FeatureDao featureDao;
+
+    /**
+     * Feature table name
+     */
+    private final String featureTableName;
+
+    /**
+     * Change log table name
+     */
+    private final String tableName;
+
+    /**
+     * Number of changed feature ids indexed per transaction
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Constructor
+     *
+     * @param geoPackage GeoPackage
+     * @param featureDao feature DAO
+     */
+    public FeatureChangeTracker(GeoPackage geoPackage, FeatureDao featureDao) {
+        super(geoPackage);
+        this.geoPackage = geoPackage;
+        this.featureDao = featureDao;
+        this.featureTableName = featureDao.getTableName();
+        this.tableName = TABLE_NAME_PREFIX + featureTableName;
+    }
+
+    /**
+     * Get the feature DAO
+     *
+     * @return feature DAO
+     */
+    public FeatureDao getFeatureDao() {
+        return featureDao;
+    }
+
+    /**
+     * Get the change log table name
+     *
+     * @return table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Get the number of changed feature ids indexed per transaction
+     *
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of changed feature ids indexed per transaction
+     *
+     * @param batchSize batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Determine if the feature table has the extension and is tracking
+     * changes
+     *
+     * @return true if has extension
+     */
+    public boolean has() {
+        return has(EXTENSION_NAME, featureTableName,
+                featureDao.getGeometryColumnName())
+                && geoPackage.isTable(tableName);
+    }
+
+    /**
+     * Get or create the extension, change log table, and change triggers
+     */
+    public void getOrCreate() {
+
+        getOrCreate(EXTENSION_NAME, featureTableName,
+                featureDao.getGeometryColumnName(), DEFINITION,
+                ExtensionScopeType.READ_WRITE);
+
+        GeoPackageConnection connection = geoPackage.getConnection();
+        String table = CoreSQLUtils.quoteWrap(tableName);
+        String featureTable = CoreSQLUtils.quoteWrap(featureTableName);
+        String idColumn = CoreSQLUtils.quoteWrap(featureDao.getTable()
+                .getPkColumnName());
+        String geometryColumn = CoreSQLUtils.quoteWrap(featureDao
+                .getGeometryColumnName());
+        String insertOld = "INSERT INTO " + table + " (" + COLUMN_FEATURE_ID
+                + ") VALUES (OLD." + idColumn + ");";
+        String insertNew = "INSERT INTO " + table + " (" + COLUMN_FEATURE_ID
+                + ") VALUES (NEW." + idColumn + ");";
+
+        connection.execSQL("CREATE TABLE IF NOT EXISTS " + table + " ("
+                + COLUMN_CHANGE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_FEATURE_ID + " INTEGER NOT NULL)");
+        connection.execSQL("CREATE INDEX IF NOT EXISTS "
+                + CoreSQLUtils.quoteWrap(tableName + "_" + COLUMN_FEATURE_ID)
+                + " ON " + table + " (" + COLUMN_FEATURE_ID + ")");
+        connection.execSQL("CREATE TRIGGER IF NOT EXISTS "
+                + CoreSQLUtils.quoteWrap(tableName + TRIGGER_INSERT_SUFFIX)
+                + " AFTER INSERT ON " + featureTable + " BEGIN " + insertNew
+                + " END");
+        connection.execSQL("CREATE TRIGGER IF NOT EXISTS "
+                + CoreSQLUtils.quoteWrap(tableName + TRIGGER_UPDATE_SUFFIX)
+                + " AFTER UPDATE OF " + idColumn + ", " + geometryColumn
+                + " ON " + featureTable + " BEGIN " + insertOld + " "
+                + insertNew + " END");
+        connection.execSQL("CREATE TRIGGER IF NOT EXISTS "
+                + CoreSQLUtils.quoteWrap(tableName + TRIGGER_DELETE_SUFFIX)
+                + " AFTER DELETE ON " + featureTable + " BEGIN " + insertOld
+                + " END");
+    }
+
+    /**
+     * Count the distinct changed feature ids awaiting sync
+     *
+     * @return changed feature count
+     */
+    public long count() {
+        long count = 0;
+        if (geoPackage.isTable(tableName)) {
+            Cursor cursor = geoPackage.rawQuery("SELECT COUNT(DISTINCT "
+                    + COLUMN_FEATURE_ID + ") FROM "
+                    + CoreSQLUtils.quoteWrap(tableName), null);
+            try {
+                if (cursor.moveToFirst()) {
+                    count = cursor.getLong(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sync the logged changes into every index type of the feature index
+     * manager with an existing index, including indexes not current with
+     * the feature table
+     *
+     * @param indexManager feature index manager
+     * @return number of changed feature ids synced
+     */
+    public long sync(FeatureIndexManager indexManager) {
+        return sync(indexManager, getIndexTypes(indexManager));
+    }
+
+    /**
+     * Sync the logged changes into the index types of the feature index
+     * manager. The changed feature ids are read in id order batches joined to
+     * their current geometry headers, deleted rows having no geometry, and
+     * each batch is indexed in bulk. The synced changes are removed from the
+     * log only when the index types include every existing index, otherwise
+     * they are kept for the remaining indexes. Changes logged during the sync
+     * are kept for the next sync.
+     *
+     * @param indexManager feature index manager
+     * @param types        index types
+     * @return number of changed feature ids synced
+     */
+    public long sync(FeatureIndexManager indexManager,
+                     List<FeatureIndexType> types) {
+
+        long synced = 0;
+
+        if (geoPackage.isTable(tableName)) {
+
+            String table = CoreSQLUtils.quoteWrap(tableName);
+
+            long maxChangeId = -1;
+            Cursor cursor = geoPackage.rawQuery("SELECT MAX("
+                    + COLUMN_CHANGE_ID + ") FROM " + table, null);
+            try {
+                if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                    maxChangeId = cursor.getLong(0);
+                }
+            } finally {
+                cursor.close();
+            }
+
+            if (maxChangeId >= 0) {
+
+                String geometryColumn = "f." + CoreSQLUtils.quoteWrap(
+                        featureDao.getGeometryColumnName());
+                String sql = "SELECT c." + COLUMN_FEATURE_ID + ", substr("
+                        + geometryColumn + ", 1, " + GEOMETRY_HEADER_BYTES
+                        + "), length(" + geometryColumn + ")"
+                        + " FROM (SELECT DISTINCT " + COLUMN_FEATURE_ID
+                        + " FROM " + table + " WHERE " + COLUMN_CHANGE_ID
+                        + " <= ? AND " + COLUMN_FEATURE_ID + " > ? ORDER BY "
+                        + COLUMN_FEATURE_ID + " LIMIT " + batchSize
+                        + ") c LEFT JOIN "
+                        + CoreSQLUtils.quoteWrap(featureTableName) + " f ON f."
+                        + CoreSQLUtils.quoteWrap(featureDao.getTable()
+                        .getPkColumnName())
+                        + " = c." + COLUMN_FEATURE_ID + " ORDER BY c."
+                        + COLUMN_FEATURE_ID;
+
+                LongSparseArray<GeometryEnvelope> envelopes = new LongSparseArray<>();
+                LongSparseArray<Integer> unbounded = new LongSparseArray<>();
+                long lastId = Long.MIN_VALUE;
+                boolean more = true;
+                while (more) {
+
+                    envelopes.clear();
+                    unbounded.clear();
+                    cursor = geoPackage.rawQuery(sql, new String[]{
+                            String.valueOf(maxChangeId),
+                            String.valueOf(lastId)});
+                    try {
+                        while (cursor.moveToNext()) {
+                            lastId = cursor.getLong(0);
+                            GeometryEnvelope envelope = null;
+                            if (!cursor.isNull(1)) {
+                                byte[] header = cursor.getBlob(1);
+                                int length = cursor.getInt(2);
+                                if (length <= header.length) {
+                                    envelope = GeometryEnvelopeReader
+                                            .readEnvelope(header);
+                                } else if (!GeometryEnvelopeReader
+                                        .isEmpty(header)) {
+                                    envelope = GeometryEnvelopeReader
+                                            .readHeaderEnvelope(header);
+                                    if (envelope == null) {
+                                        unbounded.put(lastId, length);
+                                    }
+                                }
+                            }
+                            envelopes.put(lastId, envelope);
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+
+                    // Build the envelopes not stored in the geometry headers
+                    // from the geometries read in chunks
+                    for (int i = 0; i < unbounded.size(); i++) {
+                        long featureId = unbounded.keyAt(i);
+                        byte[] geometry = readGeometry(featureId,
+                                unbounded.valueAt(i));
+                        if (geometry != null) {
+                            envelopes.put(featureId, GeometryEnvelopeReader
+                                    .readEnvelope(geometry));
+                        }
+                    }
+
+                    // Index with the cursor closed, the indexes may be
+                    // written from other connections
+                    if (envelopes.size() > 0 && !types.isEmpty()) {
+                        indexManager.index(envelopes, types);
+                    }
+                    synced += envelopes.size();
+                    more = envelopes.size() >= batchSize;
+                }
+
+                // Keep the changes for any existing index not synced
+                if (types.containsAll(getIndexTypes(indexManager))) {
+                    geoPackage.getConnection().delete(tableName,
+                            COLUMN_CHANGE_ID + " <= ?",
+                            new String[]{String.valueOf(maxChangeId)});
+                }
+            }
+        }
+
+        return synced;
+    }
+
+    /**
+     * Get the index types of the feature index manager with an existing
+     * index, current or not with the feature table
+     *
+     * @param indexManager feature index manager
+     * @return index types
+     */
+    private List<FeatureIndexType> getIndexTypes(
+            FeatureIndexManager indexManager) {
+        List<FeatureIndexType> types = new ArrayList<>();
+        for (FeatureIndexType type : FeatureIndexType.values()) {
+            if (type != FeatureIndexType.NONE
+                    && indexManager.getLastIndexed(type) != null) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Read the feature geometry in chunks, supporting geometries larger than
+     * a cursor window
+     *
+     * @param featureId feature id
+     * @param length    geometry length
+     * @return geometry bytes, null when the geometry changed while reading
+     */
+    private byte[] readGeometry(long featureId, int length) {
+
+        String sql = "SELECT substr("
+                + CoreSQLUtils.quoteWrap(featureDao.getGeometryColumnName())
+                + ", ?, ?) FROM " + CoreSQLUtils.quoteWrap(featureTableName)
+                + " WHERE " + CoreSQLUtils.quoteWrap(featureDao.getTable()
+                .getPkColumnName()) + " = ?";
+
+        byte[] geometry = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            byte[] chunk = null;
+            Cursor cursor = geoPackage.rawQuery(sql, new String[]{
+                    String.valueOf(offset + 1),
+                    String.valueOf(GEOMETRY_CHUNK_BYTES),
+                    String.valueOf(featureId)});
+            try {
+                if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                    chunk = cursor.getBlob(0);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (chunk == null || chunk.length == 0
+                    || offset + chunk.length > length) {
+                // Geometry changed while reading, logged for the next sync
+                return null;
+            }
+            System.arraycopy(chunk, 0, geometry, offset, chunk.length);
+            offset += chunk.length;
+        }
+
+        return geometry;
+    }
+
+    /**
+     * Clear the logged changes, such as after a full index rebuild of every
+     * index type
+     *
+     * @return number of cleared change log entries
+     */
+    public int clear() {
+        int cleared = 0;
+        if (geoPackage.isTable(tableName)) {
+            cleared = geoPackage.getConnection().delete(tableName, null, null);
+        }
+        return cleared;
+    }
+
+    /**
+     * Delete the change triggers, change log table, and extension
+     */
+    public void delete() {
+        GeoPackageConnection connection = geoPackage.getConnection();
+        connection.execSQL("DROP TRIGGER IF EXISTS "
+                + CoreSQLUtils.quoteWrap(tableName + TRIGGER_INSERT_SUFFIX));
+        connection.execSQL("DROP TRIGGER IF EXISTS "
+                + CoreSQLUtils.quoteWrap(tableName + TRIGGER_UPDATE_SUFFIX));
+        connection.execSQL("DROP TRIGGER IF EXISTS "
+                + CoreSQLUtils.quoteWrap(tableName + TRIGGER_DELETE_SUFFIX));
+        if (geoPackage.isTable(tableName)) {
+            geoPackage.dropTable(tableName);
+        }
+        try {
+            if (extensionsDao.isTableExists()) {
+                extensionsDao.deleteByExtension(EXTENSION_NAME,
+                        featureTableName);
+            }
+        } catch (SQLException e) {
+            throw new GeoPackageException(
+                    "Failed to delete Feature Change Tracker extension. GeoPackage: "
+                            + geoPackage.getName() + ", Table: "
+                            + featureTableName, e);
+        }
+    }
+
+}
@@ -2,6 +2,8 @@ package mil.nga.geopackage.extension.index;
 
 import android.util.Log;
 
+import androidx.collection.LongSparseArray;
+
 import com.j256.ormlite.misc.TransactionManager;
 import com.j256.ormlite.support.ConnectionSource;
 
@@ -15,7 +17,9 @@ import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.FeatureRowView;
 import mil.nga.geopackage.features.user.FeatureRowSync;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
 import mil.nga.sf.GeometryEnvelope;
 import mil.nga.sf.proj.Projection;
 
@@ -91,6 +95,67 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
         return indexed;
     }
 
+    /**
+     * Index the geometry envelopes by geometry id in a single transaction,
+     * deleting the index of ids with null envelopes. The last indexed time is
+     * updated once. This method assumes that indexing has been completed and
+     * maintained as the last indexed time is updated.
+     *
+     * @param envelopes geometry envelopes by geometry id
+     * @return number of geometries indexed
+     * @since 3.5.1
+     */
+    public int index(final LongSparseArray<GeometryEnvelope> envelopes) {
+        final TableIndex tableIndex = getTableIndex();
+        if (tableIndex == null) {
+            throw new GeoPackageException(
+                    "GeoPackage table is not indexed. GeoPackage: "
+                            + getGeoPackage().getName() + ", Table: "
+                            + getTableName());
+        }
+
+        int count;
+        try {
+            ConnectionSource connectionSource = getGeoPackage().getDatabase()
+                    .getConnectionSource();
+            count = TransactionManager.callInTransaction(connectionSource,
+                    new Callable<Integer>() {
+                        public Integer call() throws Exception {
+
+                            int count = 0;
+
+                            // Reused geometry data holding only the envelope
+                            GeoPackageGeometryData envelopeData = new GeoPackageGeometryData(
+                                    featureDao.getGeometryColumns().getSrsId());
+
+                            for (int i = 0; i < envelopes.size(); i++) {
+                                long geomId = envelopes.keyAt(i);
+                                GeometryEnvelope envelope = envelopes.valueAt(i);
+                                if (envelope == null) {
+                                    deleteIndex(geomId);
+                                } else {
+                                    envelopeData.setEnvelope(envelope);
+                                    if (index(tableIndex, geomId, envelopeData)) {
+                                        count++;
+                                    }
+                                }
+                            }
+
+                            return count;
+                        }
+                    });
+        } catch (SQLException e) {
+            throw new GeoPackageException("Failed to Index Geometries. GeoPackage: "
+                    + getGeoPackage().getName() + ", Table: " + getTableName(),
+                    e);
+        }
+
+        // Update the last indexed time
+        updateLastIndexed();
+
+        return count;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -153,6 +218,12 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
 
         int count = -1;
 
+        FeatureRowView row = cursor.getRowView();
+
+        // Reused geometry data holding only the header envelope of each row
+        GeoPackageGeometryData envelopeData = new GeoPackageGeometryData(
+                featureDao.getGeometryColumns().getSrsId());
+
         try {
             while ((progress == null || progress.isActive())
                     && cursor.moveToNext()) {
@@ -160,10 +231,11 @@ public class FeatureTableIndex extends FeatureTableCoreIndex {
                     count++;
                 }
                 try {
-                    FeatureRow row = cursor.getRow();
                     if (row.isValid()) {
-                        boolean indexed = index(tableIndex,
-                                row.getId(), row.getGeometry());
+                        GeometryEnvelope envelope = row.getGeometryEnvelope();
+                        envelopeData.setEnvelope(envelope);
+                        boolean indexed = index(tableIndex, row.getId(),
+                                envelope != null ? envelopeData : null);
                         if (indexed) {
                             count++;
                         }
@@ -0,0 +1,245 @@
+package mil.nga.geopackage.extension.refresh;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import java.sql.SQLException;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageConstants;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.extension.BaseExtension;
+import mil.nga.geopackage.extension.ExtensionScopeType;
+import mil.nga.geopackage.extension.Extensions;
+
+/**
+ * Tile Refresh extension, stores the HTTP cache validators and content hash
+ * of each downloaded tile in a side table of the tile table so that URL tile
+ * tables can be conditionally refreshed, rewriting only changed tiles
+ *
+ * Validators are keyed by the zoom level and x, y coordinate of the tile
+ * request, which remain stable across refreshes regardless of the tile table
+ * tile grid.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class TileRefresh extends BaseExtension {
+
+    /**
+     * Extension name without the author
+     */
+    public static final String NAME = "tile_refresh";
+
+    /**
+     * Extension, with author and name
+     */
+    public static final String EXTENSION_NAME = Extensions
+            .buildExtensionName(GeoPackageConstants.EXTENSION_AUTHOR, NAME);
+
+    /**
+     * Extension definition
+     */
+    public static final String DEFINITION = "Tile HTTP cache validators and content hashes for conditional tile refresh";
+
+    /**
+     * Refresh table name prefix, followed by the tile table name
+     */
+    public static final String TABLE_NAME_PREFIX = "nga_tile_refresh_";
+
+    /**
+     * Zoom level column name
+     */
+    public static final String COLUMN_ZOOM = "zoom_level";
+
+    /**
+     * Request x coordinate column name
+     */
+    public static final String COLUMN_X = "x";
+
+    /**
+     * Request y coordinate column name
+     */
+    public static final String COLUMN_Y = "y";
+
+    /**
+     * ETag column name
+     */
+    public static final String COLUMN_ETAG = "etag";
+
+    /**
+     * Last-Modified column name
+     */
+    public static final String COLUMN_LAST_MODIFIED = "last_modified";
+
+    /**
+     * Content hash column name
+     */
+    public static final String COLUMN_HASH = "hash";
+
+    /**
+     * GeoPackage
+     */
+    private final GeoPackage geoPackage;
+
+    /**
+     * Tile table name
+     */
+    private final String tileTableName;
+
+    /**
+     * Refresh table name
+     */
+    private final String tableName;
+
+    /**
+     * Constructor
+     *
+     * @param geoPackage    GeoPackage
+     * @param tileTableName tile table name
+     */
+    public TileRefresh(GeoPackage geoPackage, String tileTableName) {
+        super(geoPackage);
+        this.geoPackage = geoPackage;
+        this.tileTableName = tileTableName;
+        this.tableName = TABLE_NAME_PREFIX + tileTableName;
+    }
+
+    /**
+     * Get the tile table name
+     *
+     * @return tile table name
+     */
+    public String getTileTableName() {
+        return tileTableName;
+    }
+
+    /**
+     * Get the refresh table name
+     *
+     * @return table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Determine if the tile table has the extension
+     *
+     * @return true if has extension
+     */
+    public boolean has() {
+        return has(EXTENSION_NAME, tileTableName, null)
+                && geoPackage.isTable(tableName);
+    }
+
+    /**
+     * Get or create the extension and refresh table
+     */
+    public void getOrCreate() {
+        getOrCreate(EXTENSION_NAME, tileTableName, null, DEFINITION,
+                ExtensionScopeType.READ_WRITE);
+        geoPackage.getConnection().execSQL("CREATE TABLE IF NOT EXISTS \""
+                + tableName + "\" ("
+                + COLUMN_ZOOM + " INTEGER NOT NULL, "
+                + COLUMN_X + " INTEGER NOT NULL, "
+                + COLUMN_Y + " INTEGER NOT NULL, "
+                + COLUMN_ETAG + " TEXT, "
+                + COLUMN_LAST_MODIFIED + " TEXT, "
+                + COLUMN_HASH + " TEXT, "
+                + "PRIMARY KEY (" + COLUMN_ZOOM + ", " + COLUMN_X + ", "
+                + COLUMN_Y + ") ON CONFLICT REPLACE)");
+    }
+
+    /**
+     * Get the validator of the tile
+     *
+     * @param zoom zoom level
+     * @param x    request x coordinate
+     * @param y    request y coordinate
+     * @return validator or null
+     */
+    public TileValidator getValidator(int zoom, long x, long y) {
+        TileValidator validator = null;
+        Cursor cursor = geoPackage.rawQuery("SELECT " + COLUMN_ETAG + ", "
+                        + COLUMN_LAST_MODIFIED + ", " + COLUMN_HASH + " FROM \""
+                        + tableName + "\" WHERE " + COLUMN_ZOOM + " = ? AND "
+                        + COLUMN_X + " = ? AND " + COLUMN_Y + " = ?",
+                new String[]{String.valueOf(zoom), String.valueOf(x),
+                        String.valueOf(y)});
+        try {
+            if (cursor.moveToFirst()) {
+                validator = new TileValidator(cursor.getString(0),
+                        cursor.getString(1), cursor.getString(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return validator;
+    }
+
+    /**
+     * Set the validator of the tile, replacing an existing validator
+     *
+     * @param zoom      zoom level
+     * @param x         request x coordinate
+     * @param y         request y coordinate
+     * @param validator validator
+     */
+    public void setValidator(int zoom, long x, long y, TileValidator validator) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_ZOOM, zoom);
+        values.put(COLUMN_X, x);
+        values.put(COLUMN_Y, y);
+        values.put(COLUMN_ETAG, validator.getETag());
+        values.put(COLUMN_LAST_MODIFIED, validator.getLastModified());
+        values.put(COLUMN_HASH, validator.getHash());
+        geoPackage.getConnection().getDb().insertOrThrow(tableName, null,
+                values);
+    }
+
+    /**
+     * Delete the validator of the tile
+     *
+     * @param zoom zoom level
+     * @param x    request x coordinate
+     * @param y    request y coordinate
+     * @return deleted count
+     */
+    public int deleteValidator(int zoom, long x, long y) {
+        return geoPackage.getConnection().delete(tableName,
+                COLUMN_ZOOM + " = ? AND " + COLUMN_X + " = ? AND " + COLUMN_Y
+                        + " = ?",
+                new String[]{String.valueOf(zoom), String.valueOf(x),
+                        String.valueOf(y)});
+    }
+
+    /**
+     * Count the tile validators
+     *
+     * @return count
+     */
+    public int count() {
+        return geoPackage.getConnection().count(tableName, null, null);
+    }
+
+    /**
+     * Delete the refresh table and extension
+     */
+    public void delete() {
+        if (geoPackage.isTable(tableName)) {
+            geoPackage.dropTable(tableName);
+        }
+        try {
+            if (extensionsDao.isTableExists()) {
+                extensionsDao.deleteByExtension(EXTENSION_NAME, tileTableName);
+            }
+        } catch (SQLException e) {
+            throw new GeoPackageException(
+                    "Failed to delete Tile Refresh extension. GeoPackage: "
+                            + geoPackage.getName() + ", Table: "
+                            + tileTableName, e);
+        }
+    }
+
+}
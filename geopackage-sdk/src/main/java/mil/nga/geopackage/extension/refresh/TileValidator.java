@@ -0,0 +1,67 @@
+package mil.nga.geopackage.extension.refresh;
+
+/**
+ * Tile validator, the HTTP cache validators and content hash of a downloaded
+ * tile used to conditionally refresh the tile
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class TileValidator {
+
+    /**
+     * ETag header value
+     */
+    private final String eTag;
+
+    /**
+     * Last-Modified header value
+     */
+    private final String lastModified;
+
+    /**
+     * Content hash of the downloaded tile bytes
+     */
+    private final String hash;
+
+    /**
+     * Constructor
+     *
+     * @param eTag         ETag header value
+     * @param lastModified Last-Modified header value
+     * @param hash         content hash
+     */
+    public TileValidator(String eTag, String lastModified, String hash) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.hash = hash;
+    }
+
+    /**
+     * Get the ETag header value
+     *
+     * @return ETag or null
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Get the Last-Modified header value
+     *
+     * @return Last-Modified or null
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the content hash of the downloaded tile bytes
+     *
+     * @return hash or null
+     */
+    public String getHash() {
+        return hash;
+    }
+
+}
@@ -1,16 +1,29 @@
 package mil.nga.geopackage.extension.related;
 
+import android.database.Cursor;
+
+import androidx.collection.LongSparseArray;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.db.CoreSQLUtils;
 import mil.nga.geopackage.db.GeoPackageConnection;
 import mil.nga.geopackage.extension.related.media.MediaDao;
+import mil.nga.geopackage.extension.related.media.MediaRow;
 import mil.nga.geopackage.extension.related.media.MediaTable;
 import mil.nga.geopackage.extension.related.simple.SimpleAttributesDao;
+import mil.nga.geopackage.extension.related.simple.SimpleAttributesRow;
 import mil.nga.geopackage.extension.related.simple.SimpleAttributesTable;
+import mil.nga.geopackage.user.UserDao;
 import mil.nga.geopackage.user.custom.UserCustomCursor;
 import mil.nga.geopackage.user.custom.UserCustomDao;
+import mil.nga.geopackage.user.custom.UserCustomRow;
 
 /**
  * Related Tables extension
@@ -25,6 +38,11 @@ public class RelatedTablesExtension extends RelatedTablesCoreExtension {
      */
     private GeoPackageConnection connection;
 
+    /**
+     * Mapping tables verified to have base and related id indexes
+     */
+    private final Set<String> indexedMappingTables = new HashSet<>();
+
     /**
      * Constructor
      *
@@ -244,4 +262,332 @@ public class RelatedTablesExtension extends RelatedTablesCoreExtension {
         return has;
     }
 
+    /**
+     * Get the related id mappings for the base ids
+     *
+     * @param extendedRelation extended relation
+     * @param baseIds          base ids
+     * @return related ids by base id, excluding base ids without mappings
+     * @since 3.5.1
+     */
+    public LongSparseArray<long[]> getMappingsForBase(
+            ExtendedRelation extendedRelation, Collection<Long> baseIds) {
+        return getMappingsForBase(extendedRelation.getMappingTableName(),
+                baseIds);
+    }
+
+    /**
+     * Get the related id mappings for the base ids, querying in chunks of
+     * base ids
+     *
+     * @param tableName mapping table name
+     * @param baseIds   base ids
+     * @return related ids by base id, excluding base ids without mappings
+     * @since 3.5.1
+     */
+    public LongSparseArray<long[]> getMappingsForBase(String tableName,
+                                                      Collection<Long> baseIds) {
+        return getMappings(tableName, UserMappingTable.COLUMN_BASE_ID,
+                UserMappingTable.COLUMN_RELATED_ID, baseIds);
+    }
+
+    /**
+     * Get the base id mappings for the related ids
+     *
+     * @param extendedRelation extended relation
+     * @param relatedIds       related ids
+     * @return base ids by related id, excluding related ids without mappings
+     * @since 3.5.1
+     */
+    public LongSparseArray<long[]> getMappingsForRelated(
+            ExtendedRelation extendedRelation, Collection<Long> relatedIds) {
+        return getMappingsForRelated(extendedRelation.getMappingTableName(),
+                relatedIds);
+    }
+
+    /**
+     * Get the base id mappings for the related ids, querying in chunks of
+     * related ids
+     *
+     * @param tableName  mapping table name
+     * @param relatedIds related ids
+     * @return base ids by related id, excluding related ids without mappings
+     * @since 3.5.1
+     */
+    public LongSparseArray<long[]> getMappingsForRelated(String tableName,
+                                                         Collection<Long> relatedIds) {
+        return getMappings(tableName, UserMappingTable.COLUMN_RELATED_ID,
+                UserMappingTable.COLUMN_BASE_ID, relatedIds);
+    }
+
+    /**
+     * Get the related rows for the base ids, reading the mappings and the
+     * related rows joined to the mappings in chunks of base ids
+     *
+     * @param extendedRelation extended relation
+     * @param baseIds          base ids
+     * @return related rows by base id, excluding base ids without related rows
+     * @since 3.5.1
+     */
+    public LongSparseArray<List<UserCustomRow>> getRelatedRowsForBase(
+            ExtendedRelation extendedRelation, Collection<Long> baseIds) {
+        return getRelatedRowsForBase(extendedRelation,
+                getUserDao(extendedRelation.getRelatedTableName()), baseIds);
+    }
+
+    /**
+     * Get the related media rows for the base ids
+     *
+     * @param extendedRelation extended relation
+     * @param baseIds          base ids
+     * @return media rows by base id, excluding base ids without media
+     * @since 3.5.1
+     */
+    public LongSparseArray<List<MediaRow>> getRelatedMediaForBase(
+            ExtendedRelation extendedRelation, Collection<Long> baseIds) {
+        MediaDao mediaDao = getMediaDao(extendedRelation);
+        LongSparseArray<List<UserCustomRow>> related = getRelatedRowsForBase(
+                extendedRelation, mediaDao, baseIds);
+        LongSparseArray<List<MediaRow>> media = new LongSparseArray<>(
+                related.size());
+        for (int i = 0; i < related.size(); i++) {
+            List<MediaRow> rows = new ArrayList<>();
+            for (UserCustomRow row : related.valueAt(i)) {
+                rows.add(mediaDao.getRow(row));
+            }
+            media.append(related.keyAt(i), rows);
+        }
+        return media;
+    }
+
+    /**
+     * Get the related simple attributes rows for the base ids
+     *
+     * @param extendedRelation extended relation
+     * @param baseIds          base ids
+     * @return simple attributes rows by base id, excluding base ids without
+     * simple attributes
+     * @since 3.5.1
+     */
+    public LongSparseArray<List<SimpleAttributesRow>> getRelatedSimpleAttributesForBase(
+            ExtendedRelation extendedRelation, Collection<Long> baseIds) {
+        SimpleAttributesDao simpleAttributesDao = getSimpleAttributesDao(
+                extendedRelation);
+        LongSparseArray<List<UserCustomRow>> related = getRelatedRowsForBase(
+                extendedRelation, simpleAttributesDao, baseIds);
+        LongSparseArray<List<SimpleAttributesRow>> simpleAttributes = new LongSparseArray<>(
+                related.size());
+        for (int i = 0; i < related.size(); i++) {
+            List<SimpleAttributesRow> rows = new ArrayList<>();
+            for (UserCustomRow row : related.valueAt(i)) {
+                rows.add(simpleAttributesDao.getRow(row));
+            }
+            simpleAttributes.append(related.keyAt(i), rows);
+        }
+        return simpleAttributes;
+    }
+
+    /**
+     * Create the base id and related id indexes of the mapping table when
+     * missing
+     *
+     * @param tableName mapping table name
+     * @return number of indexes created
+     * @since 3.5.1
+     */
+    public int indexMappingTable(String tableName) {
+        int created = 0;
+        for (String column : new String[]{UserMappingTable.COLUMN_BASE_ID,
+                UserMappingTable.COLUMN_RELATED_ID}) {
+            if (!hasIndex(tableName, column)) {
+                connection.execSQL("CREATE INDEX IF NOT EXISTS "
+                        + CoreSQLUtils.quoteWrap("idx_" + tableName + "_" + column)
+                        + " ON " + CoreSQLUtils.quoteWrap(tableName) + " ("
+                        + CoreSQLUtils.quoteWrap(column) + ")");
+                created++;
+            }
+        }
+        indexedMappingTables.add(tableName);
+        return created;
+    }
+
+    /**
+     * Get the related rows for the base ids from the related table DAO
+     *
+     * @param extendedRelation extended relation
+     * @param relatedDao       related table DAO
+     * @param baseIds          base ids
+     * @return related rows by base id
+     */
+    private LongSparseArray<List<UserCustomRow>> getRelatedRowsForBase(
+            ExtendedRelation extendedRelation, UserCustomDao relatedDao,
+            Collection<Long> baseIds) {
+
+        String mappingTable = extendedRelation.getMappingTableName();
+        LongSparseArray<long[]> mappings = getMappingsForBase(mappingTable,
+                baseIds);
+
+        // Read each related row once, joined to the mappings of the base ids
+        LongSparseArray<UserCustomRow> relatedRows = new LongSparseArray<>();
+        String where = CoreSQLUtils.quoteWrap(
+                relatedDao.getTable().getPkColumnName()) + " IN (SELECT "
+                + CoreSQLUtils.quoteWrap(UserMappingTable.COLUMN_RELATED_ID)
+                + " FROM " + CoreSQLUtils.quoteWrap(mappingTable) + " WHERE "
+                + CoreSQLUtils.quoteWrap(UserMappingTable.COLUMN_BASE_ID)
+                + " IN (";
+        for (List<Long> chunk : UserDao.chunk(baseIds)) {
+            UserCustomCursor cursor = relatedDao.query(where
+                            + UserDao.placeholders(chunk.size()) + "))",
+                    UserDao.whereArgs(chunk));
+            try {
+                while (cursor.moveToNext()) {
+                    UserCustomRow row = cursor.getRow();
+                    if (row.isValid()) {
+                        relatedRows.put(row.getId(), row);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        LongSparseArray<List<UserCustomRow>> rows = new LongSparseArray<>(
+                mappings.size());
+        for (int i = 0; i < mappings.size(); i++) {
+            List<UserCustomRow> baseRows = new ArrayList<>();
+            for (long relatedId : mappings.valueAt(i)) {
+                UserCustomRow row = relatedRows.get(relatedId);
+                if (row != null) {
+                    baseRows.add(row);
+                }
+            }
+            if (!baseRows.isEmpty()) {
+                rows.append(mappings.keyAt(i), baseRows);
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Get the mapped ids of the key ids, querying in chunks of key ids
+     *
+     * @param tableName   mapping table name
+     * @param keyColumn   key id column
+     * @param valueColumn mapped id column
+     * @param ids         key ids
+     * @return mapped ids by key id
+     */
+    private LongSparseArray<long[]> getMappings(String tableName,
+                                                String keyColumn, String valueColumn, Collection<Long> ids) {
+
+        if (!indexedMappingTables.contains(tableName)
+                && connection.getDb().isWritable()) {
+            indexMappingTable(tableName);
+        }
+
+        LongSparseArray<long[]> mappings = new LongSparseArray<>();
+
+        String sql = "SELECT " + CoreSQLUtils.quoteWrap(keyColumn) + ", "
+                + CoreSQLUtils.quoteWrap(valueColumn) + " FROM "
+                + CoreSQLUtils.quoteWrap(tableName) + " WHERE "
+                + CoreSQLUtils.quoteWrap(keyColumn) + " IN (";
+        String orderBy = ") ORDER BY " + CoreSQLUtils.quoteWrap(keyColumn);
+
+        for (List<Long> chunk : UserDao.chunk(ids)) {
+            Cursor cursor = connection.rawQuery(
+                    sql + UserDao.placeholders(chunk.size()) + orderBy,
+                    UserDao.whereArgs(chunk));
+            try {
+                long key = 0;
+                long[] values = new long[8];
+                int count = 0;
+                while (cursor.moveToNext()) {
+                    long rowKey = cursor.getLong(0);
+                    if (count > 0 && rowKey != key) {
+                        putMappings(mappings, key, values, count);
+                        count = 0;
+                    }
+                    key = rowKey;
+                    if (count == values.length) {
+                        values = Arrays.copyOf(values, count * 2);
+                    }
+                    values[count++] = cursor.getLong(1);
+                }
+                if (count > 0) {
+                    putMappings(mappings, key, values, count);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return mappings;
+    }
+
+    /**
+     * Put the mapped ids of the key, merging with mapped ids of the key read
+     * in a previous chunk of duplicate key ids
+     *
+     * @param mappings mappings
+     * @param key      key id
+     * @param values   mapped ids buffer
+     * @param count    mapped id count
+     */
+    private static void putMappings(LongSparseArray<long[]> mappings,
+                                    long key, long[] values, int count) {
+        long[] existing = mappings.get(key);
+        long[] merged;
+        if (existing == null) {
+            merged = Arrays.copyOf(values, count);
+        } else {
+            merged = Arrays.copyOf(existing, existing.length + count);
+            System.arraycopy(values, 0, merged, existing.length, count);
+        }
+        mappings.put(key, merged);
+    }
+
+    /**
+     * Determine if an index on the table has the column as its first column
+     *
+     * @param tableName table name
+     * @param column    column name
+     * @return true if indexed
+     */
+    private boolean hasIndex(String tableName, String column) {
+        boolean indexed = false;
+        List<String> indexes = new ArrayList<>();
+        Cursor cursor = connection.rawQuery("PRAGMA index_list("
+                + CoreSQLUtils.quoteWrap(tableName) + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                indexes.add(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        for (String index : indexes) {
+            cursor = connection.rawQuery("PRAGMA index_info("
+                    + CoreSQLUtils.quoteWrap(index) + ")", null);
+            try {
+                int seqIndex = cursor.getColumnIndex("seqno");
+                int nameIndex = cursor.getColumnIndex("name");
+                while (cursor.moveToNext()) {
+                    if (cursor.getInt(seqIndex) == 0
+                            && column.equalsIgnoreCase(cursor.getString(nameIndex))) {
+                        indexed = true;
+                        break;
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            if (indexed) {
+                break;
+            }
+        }
+        return indexed;
+    }
+
 }
@@ -1,5 +1,7 @@
 package mil.nga.geopackage.extension.related.media;
 
+import androidx.collection.LongSparseArray;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -78,8 +80,9 @@ public class MediaDao extends UserCustomDao {
      */
     public List<MediaRow> getRows(List<Long> ids) {
         List<MediaRow> mediaRows = new ArrayList<>();
+        LongSparseArray<UserCustomRow> userCustomRows = queryForIdRows(ids);
         for (long id : ids) {
-            UserCustomRow userCustomRow = queryForIdRow(id);
+            UserCustomRow userCustomRow = userCustomRows.get(id);
             if (userCustomRow != null) {
                 mediaRows.add(getRow(userCustomRow));
             }
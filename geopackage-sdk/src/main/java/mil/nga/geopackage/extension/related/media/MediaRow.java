@@ -157,6 +157,19 @@ public class MediaRow extends UserCustomRow {
         return BitmapConverter.toBitmap(getData(), options);
     }
 
+    /**
+     * Get the data bitmap sampled down to at least the requested size,
+     * avoiding full resolution decodes of large images
+     *
+     * @param width  requested width
+     * @param height requested height
+     * @return data bitmap
+     * @since 3.5.1
+     */
+    public Bitmap getDataBitmap(int width, int height) {
+        return BitmapConverter.toBitmap(getData(), width, height);
+    }
+
     /**
      * Set the data from a full quality bitmap
      *
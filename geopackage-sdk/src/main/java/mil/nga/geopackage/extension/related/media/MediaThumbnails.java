@@ -0,0 +1,780 @@
+package mil.nga.geopackage.extension.related.media;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageConstants;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.extension.BaseExtension;
+import mil.nga.geopackage.extension.ExtensionScopeType;
+import mil.nga.geopackage.extension.Extensions;
+import mil.nga.geopackage.io.BitmapConverter;
+import mil.nga.geopackage.io.HashUtils;
+
+/**
+ * Media Thumbnails extension, reads media image bounds from the leading
+ * header bytes of the media data, decodes sampled images for requested
+ * sizes, and persists generated thumbnails in a side table of the media table
+ * keyed by media id and size with a stamp and length of the source media.
+ * The source stamp is the content hash of the leading and trailing media
+ * bytes, so cached and persisted thumbnails are validated without reading the
+ * full media data, which is read only to generate a thumbnail. Media updates
+ * keeping the length, leading, and trailing bytes should delete the media
+ * thumbnails. Decoded thumbnails are retained in a shared in memory cache
+ * bounded by bitmap bytes and returned as copies callers may recycle. Media
+ * data is read in chunks so rows larger than a cursor window are supported.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class MediaThumbnails extends BaseExtension {
+
+    /**
+     * Extension name without the author
+     */
+    public static final String NAME = "media_thumbnails";
+
+    /**
+     * Extension, with author and name
+     */
+    public static final String EXTENSION_NAME = Extensions
+            .buildExtensionName(GeoPackageConstants.EXTENSION_AUTHOR, NAME);
+
+    /**
+     * Extension definition
+     */
+    public static final String DEFINITION = "Generated thumbnails of related media images";
+
+    /**
+     * Thumbnail table name prefix, followed by the media table name
+     */
+    public static final String TABLE_NAME_PREFIX = "nga_media_thumbnails_";
+
+    /**
+     * Media id column name
+     */
+    public static final String COLUMN_MEDIA_ID = "media_id";
+
+    /**
+     * Thumbnail size column name, the max thumbnail dimension in pixels
+     */
+    public static final String COLUMN_SIZE = "size";
+
+    /**
+     * Source media stamp column name, the content hash of the leading and
+     * trailing source media bytes
+     */
+    public static final String COLUMN_HASH = "hash";
+
+    /**
+     * Source media data length column name
+     */
+    public static final String COLUMN_SOURCE_LENGTH = "source_length";
+
+    /**
+     * Thumbnail content type column name
+     */
+    public static final String COLUMN_CONTENT_TYPE = "content_type";
+
+    /**
+     * Thumbnail data column name
+     */
+    public static final String COLUMN_DATA = "data";
+
+    /**
+     * Default leading media bytes read when decoding bounds
+     */
+    public static final int DEFAULT_HEADER_BYTES = 64 * 1024;
+
+    /**
+     * Default max bitmap bytes retained in the shared thumbnail cache
+     */
+    public static final int DEFAULT_CACHE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Media data bytes read per chunk, within a cursor window
+     */
+    private static final int DATA_CHUNK_BYTES = 1024 * 1024;
+
+    /**
+     * Leading and trailing media bytes hashed into the source stamp
+     */
+    private static final int STAMP_BYTES = 4 * 1024;
+
+    /**
+     * JPEG thumbnail compress quality
+     */
+    private static final int JPEG_QUALITY = 85;
+
+    /**
+     * PNG content type
+     */
+    private static final String PNG_CONTENT_TYPE = "image/png";
+
+    /**
+     * JPEG content type
+     */
+    private static final String JPEG_CONTENT_TYPE = "image/jpeg";
+
+    /**
+     * Cached thumbnail with the stamp and length of its source media data
+     */
+    private static class CachedThumbnail {
+
+        /**
+         * Thumbnail
+         */
+        final Bitmap thumbnail;
+
+        /**
+         * Source media stamp
+         */
+        final String stamp;
+
+        /**
+         * Source media data length
+         */
+        final int length;
+
+        /**
+         * Constructor
+         *
+         * @param thumbnail thumbnail
+         * @param stamp     source media stamp
+         * @param length    source media data length
+         */
+        CachedThumbnail(Bitmap thumbnail, String stamp, int length) {
+            this.thumbnail = thumbnail;
+            this.stamp = stamp;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * Shared thumbnail cache, sized by bitmap bytes
+     */
+    private static final LruCache<String, CachedThumbnail> thumbnailCache = new LruCache<String, CachedThumbnail>(
+            DEFAULT_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, CachedThumbnail value) {
+            return value.thumbnail.getByteCount();
+        }
+    };
+
+    /**
+     * Resize the shared thumbnail cache
+     *
+     * @param maxBytes max bitmap bytes
+     */
+    public static void resizeCache(int maxBytes) {
+        thumbnailCache.resize(maxBytes);
+    }
+
+    /**
+     * Clear the shared thumbnail cache
+     */
+    public static void clearCache() {
+        thumbnailCache.evictAll();
+    }
+
+    /**
+     * GeoPackage
+     */
+    private final GeoPackage geoPackage;
+
+    /**
+     * Media DAO
+     */
+    private final MediaDao mediaDao;
+
+    /**
+     * Media table name
+     */
+    private final String mediaTableName;
+
+    /**
+     * Thumbnail table name
+     */
+    private final String tableName;
+
+    /**
+     * Leading media bytes read when decoding bounds
+     */
+    private int headerBytes = DEFAULT_HEADER_BYTES;
+
+    /**
+     * Persist generated thumbnails flag
+     */
+    private boolean persist = true;
+
+    /**
+     * Constructor
+     *
+     * @param geoPackage GeoPackage
+     * @param mediaDao   media DAO
+     */
+    public MediaThumbnails(GeoPackage geoPackage, MediaDao mediaDao) {
+        super(geoPackage);
+        this.geoPackage = geoPackage;
+        this.mediaDao = mediaDao;
+        this.mediaTableName = mediaDao.getTableName();
+        this.tableName = TABLE_NAME_PREFIX + mediaTableName;
+    }
+
+    /**
+     * Get the media DAO
+     *
+     * @return media DAO
+     */
+    public MediaDao getMediaDao() {
+        return mediaDao;
+    }
+
+    /**
+     * Get the thumbnail table name
+     *
+     * @return table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Get the leading media bytes read when decoding bounds
+     *
+     * @return header bytes
+     */
+    public int getHeaderBytes() {
+        return headerBytes;
+    }
+
+    /**
+     * Set the leading media bytes read when decoding bounds. Images whose
+     * bounds are not within the header bytes are read in full.
+     *
+     * @param headerBytes header bytes
+     */
+    public void setHeaderBytes(int headerBytes) {
+        this.headerBytes = headerBytes;
+    }
+
+    /**
+     * Is persisting generated thumbnails enabled
+     *
+     * @return true if persisting thumbnails
+     */
+    public boolean isPersist() {
+        return persist;
+    }
+
+    /**
+     * Set whether generated thumbnails are persisted to the thumbnail table
+     * of writable GeoPackages
+     *
+     * @param persist persist flag
+     */
+    public void setPersist(boolean persist) {
+        this.persist = persist;
+    }
+
+    /**
+     * Determine if the media table has the extension
+     *
+     * @return true if has extension
+     */
+    public boolean has() {
+        return has(EXTENSION_NAME, mediaTableName, null)
+                && geoPackage.isTable(tableName);
+    }
+
+    /**
+     * Get or create the extension and thumbnail table
+     */
+    public void getOrCreate() {
+        getOrCreate(EXTENSION_NAME, mediaTableName, null, DEFINITION,
+                ExtensionScopeType.READ_WRITE);
+        geoPackage.getConnection().execSQL("CREATE TABLE IF NOT EXISTS \""
+                + tableName + "\" ("
+                + COLUMN_MEDIA_ID + " INTEGER NOT NULL, "
+                + COLUMN_SIZE + " INTEGER NOT NULL, "
+                + COLUMN_HASH + " TEXT NOT NULL, "
+                + COLUMN_SOURCE_LENGTH + " INTEGER NOT NULL, "
+                + COLUMN_CONTENT_TYPE + " TEXT NOT NULL, "
+                + COLUMN_DATA + " BLOB NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_MEDIA_ID + ", " + COLUMN_SIZE
+                + ") ON CONFLICT REPLACE)");
+    }
+
+    /**
+     * Read the media image bounds from the leading header bytes, without
+     * reading the full media data or allocating pixel memory
+     *
+     * @param mediaId media id
+     * @return bounds options, null when the media row does not exist
+     */
+    public BitmapFactory.Options getBounds(long mediaId) {
+        BitmapFactory.Options options = null;
+        Cursor cursor = geoPackage.rawQuery("SELECT substr("
+                        + CoreSQLUtils.quoteWrap(MediaTable.COLUMN_DATA)
+                        + ", 1, ?) FROM " + CoreSQLUtils.quoteWrap(mediaTableName)
+                        + " WHERE " + idWhere(),
+                new String[]{String.valueOf(headerBytes),
+                        String.valueOf(mediaId)});
+        try {
+            if (cursor.moveToFirst()) {
+                byte[] header = cursor.getBlob(0);
+                options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                if (header != null) {
+                    BitmapFactory.decodeByteArray(header, 0, header.length,
+                            options);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        if (options != null && options.outWidth <= 0) {
+            byte[] data = readData(mediaId);
+            if (data != null) {
+                BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Decode the media image sampled down to at least the requested size
+     *
+     * @param mediaId media id
+     * @param width   requested width
+     * @param height  requested height
+     * @return bitmap, null when the media row does not exist
+     */
+    public Bitmap decode(long mediaId, int width, int height) {
+        Bitmap bitmap = null;
+        byte[] data = readData(mediaId);
+        if (data != null) {
+            bitmap = BitmapConverter.toBitmap(data, width, height);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Get the media thumbnail from the cache or the thumbnail table when the
+     * stored source stamp and length match the media data, or by generating
+     * it. Only the stamped media bytes are read unless generating. The
+     * returned bitmap is a copy owned by the caller.
+     *
+     * @param mediaId media id
+     * @param size    max thumbnail dimension in pixels
+     * @return thumbnail, null when the media row or data does not exist
+     */
+    public Bitmap getThumbnail(long mediaId, int size) {
+
+        String dataColumn = CoreSQLUtils.quoteWrap(MediaTable.COLUMN_DATA);
+        int length = -1;
+        String stamp = null;
+        String stampBytes = String.valueOf(STAMP_BYTES);
+        Cursor cursor = geoPackage.rawQuery("SELECT length(" + dataColumn
+                        + "), substr(" + dataColumn + ", 1, ?), substr("
+                        + dataColumn + ", -?, ?) FROM "
+                        + CoreSQLUtils.quoteWrap(mediaTableName) + " WHERE "
+                        + idWhere(),
+                new String[]{stampBytes, stampBytes, stampBytes,
+                        String.valueOf(mediaId)});
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                length = cursor.getInt(0);
+                stamp = stamp(cursor.getBlob(1), cursor.getBlob(2));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Bitmap thumbnail = null;
+        if (stamp != null) {
+            thumbnail = getThumbnail(mediaId, null, stamp, length, null, size);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Get the media thumbnail of the read media row from the cache or the
+     * thumbnail table when the stored source stamp and length match the media
+     * data, or by generating it. The returned bitmap is a copy owned by the
+     * caller.
+     *
+     * @param mediaRow media row
+     * @param size     max thumbnail dimension in pixels
+     * @return thumbnail, null when the media row data was not read
+     */
+    public Bitmap getThumbnail(MediaRow mediaRow, int size) {
+        Bitmap thumbnail = null;
+        byte[] data = mediaRow.getData();
+        if (data != null) {
+            thumbnail = getThumbnail(mediaRow.getId(), data, stamp(data),
+                    data.length, mediaRow.getContentType(), size);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Delete the thumbnails of the media, from the thumbnail table and cache
+     *
+     * @param mediaId media id
+     * @return deleted count
+     */
+    public int deleteThumbnails(long mediaId) {
+        int deleted = 0;
+        if (geoPackage.isTable(tableName)) {
+            Cursor cursor = geoPackage.rawQuery("SELECT " + COLUMN_SIZE
+                            + " FROM \"" + tableName + "\" WHERE "
+                            + COLUMN_MEDIA_ID + " = ?",
+                    new String[]{String.valueOf(mediaId)});
+            try {
+                while (cursor.moveToNext()) {
+                    thumbnailCache.remove(cacheKey(mediaId, cursor.getInt(0)));
+                }
+            } finally {
+                cursor.close();
+            }
+            deleted = geoPackage.getConnection().delete(tableName,
+                    COLUMN_MEDIA_ID + " = ?",
+                    new String[]{String.valueOf(mediaId)});
+        }
+        return deleted;
+    }
+
+    /**
+     * Count the persisted thumbnails
+     *
+     * @return count
+     */
+    public int count() {
+        return geoPackage.getConnection().count(tableName, null, null);
+    }
+
+    /**
+     * Delete the thumbnail table and extension
+     */
+    public void delete() {
+        if (geoPackage.isTable(tableName)) {
+            geoPackage.dropTable(tableName);
+        }
+        clearCache();
+        try {
+            if (extensionsDao.isTableExists()) {
+                extensionsDao.deleteByExtension(EXTENSION_NAME, mediaTableName);
+            }
+        } catch (SQLException e) {
+            throw new GeoPackageException(
+                    "Failed to delete Media Thumbnails extension. GeoPackage: "
+                            + geoPackage.getName() + ", Table: "
+                            + mediaTableName, e);
+        }
+    }
+
+    /**
+     * Get the media thumbnail from the cache or the thumbnail table matching
+     * the source stamp and length, or by generating it from the media data
+     *
+     * @param mediaId     media id
+     * @param data        media data, null to read when generating
+     * @param stamp       source media stamp
+     * @param length      source media data length
+     * @param contentType media content type, null to query when needed
+     * @param size        max thumbnail dimension in pixels
+     * @return thumbnail copy or null when the media is not a decodable image
+     */
+    private Bitmap getThumbnail(long mediaId, byte[] data, String stamp,
+                                int length, String contentType, int size) {
+
+        String key = cacheKey(mediaId, size);
+        CachedThumbnail cached = thumbnailCache.get(key);
+        if (cached != null && cached.length == length
+                && cached.stamp.equals(stamp)) {
+            return copy(cached.thumbnail);
+        }
+
+        Bitmap thumbnail = null;
+        if (has()) {
+            thumbnail = queryThumbnail(mediaId, size, stamp, length);
+        }
+        if (thumbnail == null) {
+            if (data == null) {
+                data = readData(mediaId);
+                if (data != null) {
+                    stamp = stamp(data);
+                    length = data.length;
+                }
+            }
+            if (data != null) {
+                if (contentType == null) {
+                    contentType = queryContentType(mediaId);
+                }
+                thumbnail = createThumbnail(mediaId, data, stamp, contentType,
+                        size);
+            }
+        }
+
+        Bitmap copy = null;
+        if (thumbnail != null) {
+            thumbnailCache.put(key, new CachedThumbnail(thumbnail, stamp,
+                    length));
+            copy = copy(thumbnail);
+        } else {
+            thumbnailCache.remove(key);
+        }
+        return copy;
+    }
+
+    /**
+     * Query the persisted thumbnail of the media id and size matching the
+     * source media stamp and length
+     *
+     * @param mediaId media id
+     * @param size    thumbnail size
+     * @param stamp   source media stamp
+     * @param length  source media data length
+     * @return thumbnail or null
+     */
+    private Bitmap queryThumbnail(long mediaId, int size, String stamp,
+                                  int length) {
+        Bitmap thumbnail = null;
+        Cursor cursor = geoPackage.rawQuery("SELECT " + COLUMN_DATA
+                        + " FROM \"" + tableName + "\" WHERE " + COLUMN_MEDIA_ID
+                        + " = ? AND " + COLUMN_SIZE + " = ? AND " + COLUMN_HASH
+                        + " = ? AND " + COLUMN_SOURCE_LENGTH + " = ?",
+                new String[]{String.valueOf(mediaId), String.valueOf(size),
+                        stamp, String.valueOf(length)});
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                thumbnail = BitmapConverter.toBitmap(cursor.getBlob(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Create the thumbnail of the media data with a sampled decode scaled to
+     * fit within the size, persisting it when enabled and writable
+     *
+     * @param mediaId     media id
+     * @param data        media data
+     * @param stamp       media stamp
+     * @param contentType media content type
+     * @param size        max thumbnail dimension in pixels
+     * @return thumbnail or null when the media is not a decodable image
+     */
+    private Bitmap createThumbnail(long mediaId, byte[] data, String stamp,
+                                   String contentType, int size) {
+
+        Bitmap bitmap = BitmapConverter.toBitmap(data, size, size);
+        if (bitmap == null) {
+            return null;
+        }
+
+        Bitmap thumbnail = bitmap;
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width > size || height > size) {
+            double scale = Math.min((double) size / width,
+                    (double) size / height);
+            thumbnail = Bitmap.createScaledBitmap(bitmap,
+                    Math.max(1, (int) Math.round(width * scale)),
+                    Math.max(1, (int) Math.round(height * scale)), true);
+            if (thumbnail != bitmap) {
+                bitmap.recycle();
+            }
+        }
+
+        if (persist && geoPackage.getConnection().getDb().isWritable()) {
+            try {
+                boolean png = thumbnail.hasAlpha()
+                        || !JPEG_CONTENT_TYPE.equalsIgnoreCase(contentType);
+                byte[] thumbnailData = BitmapConverter.toBytes(thumbnail,
+                        png ? Bitmap.CompressFormat.PNG
+                                : Bitmap.CompressFormat.JPEG, JPEG_QUALITY);
+                getOrCreate();
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_MEDIA_ID, mediaId);
+                values.put(COLUMN_SIZE, size);
+                values.put(COLUMN_HASH, stamp);
+                values.put(COLUMN_SOURCE_LENGTH, data.length);
+                values.put(COLUMN_CONTENT_TYPE, png ? PNG_CONTENT_TYPE
+                        : JPEG_CONTENT_TYPE);
+                values.put(COLUMN_DATA, thumbnailData);
+                geoPackage.getConnection().getDb().insertOrThrow(tableName,
+                        null, values);
+            } catch (IOException e) {
+                Log.w(MediaThumbnails.class.getSimpleName(),
+                        "Failed to persist thumbnail. Table: " + mediaTableName
+                                + ", Id: " + mediaId, e);
+            }
+        }
+
+        return thumbnail;
+    }
+
+    /**
+     * Read the media data in chunks, supporting data larger than a cursor
+     * window
+     *
+     * @param mediaId media id
+     * @return media data, null when the media row or data does not exist
+     */
+    private byte[] readData(long mediaId) {
+
+        String table = CoreSQLUtils.quoteWrap(mediaTableName);
+        String dataColumn = CoreSQLUtils.quoteWrap(MediaTable.COLUMN_DATA);
+        String[] idArgs = new String[]{String.valueOf(mediaId)};
+
+        int length = -1;
+        Cursor cursor = geoPackage.rawQuery("SELECT length(" + dataColumn
+                + ") FROM " + table + " WHERE " + idWhere(), idArgs);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                length = cursor.getInt(0);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        byte[] data = null;
+        if (length >= 0) {
+            data = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                byte[] chunk = null;
+                cursor = geoPackage.rawQuery("SELECT substr(" + dataColumn
+                                + ", ?, ?) FROM " + table + " WHERE " + idWhere(),
+                        new String[]{String.valueOf(offset + 1),
+                                String.valueOf(DATA_CHUNK_BYTES),
+                                String.valueOf(mediaId)});
+                try {
+                    if (cursor.moveToFirst()) {
+                        chunk = cursor.getBlob(0);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                if (chunk == null || chunk.length == 0
+                        || offset + chunk.length > length) {
+                    // Media data changed while reading
+                    return null;
+                }
+                System.arraycopy(chunk, 0, data, offset, chunk.length);
+                offset += chunk.length;
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Build the source stamp of the media data, the content hash of the
+     * leading and trailing stamp bytes
+     *
+     * @param data media data
+     * @return source stamp
+     */
+    private static String stamp(byte[] data) {
+        byte[] leading = Arrays.copyOfRange(data, 0,
+                Math.min(STAMP_BYTES, data.length));
+        byte[] trailing = Arrays.copyOfRange(data,
+                Math.max(0, data.length - STAMP_BYTES), data.length);
+        return stamp(leading, trailing);
+    }
+
+    /**
+     * Build the source stamp from the leading and trailing stamp bytes
+     *
+     * @param leading  leading media bytes
+     * @param trailing trailing media bytes
+     * @return source stamp
+     */
+    private static String stamp(byte[] leading, byte[] trailing) {
+        MessageDigest digest = HashUtils.createDigest();
+        if (leading != null) {
+            digest.update(leading);
+        }
+        if (trailing != null) {
+            digest.update(trailing);
+        }
+        return HashUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Query the media content type
+     *
+     * @param mediaId media id
+     * @return content type or null
+     */
+    private String queryContentType(long mediaId) {
+        String contentType = null;
+        Cursor cursor = geoPackage.rawQuery("SELECT "
+                        + CoreSQLUtils.quoteWrap(MediaTable.COLUMN_CONTENT_TYPE)
+                        + " FROM " + CoreSQLUtils.quoteWrap(mediaTableName)
+                        + " WHERE " + idWhere(),
+                new String[]{String.valueOf(mediaId)});
+        try {
+            if (cursor.moveToFirst()) {
+                contentType = cursor.getString(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        return contentType;
+    }
+
+    /**
+     * Copy the cached thumbnail for the caller
+     *
+     * @param thumbnail cached thumbnail
+     * @return thumbnail copy
+     */
+    private static Bitmap copy(Bitmap thumbnail) {
+        Bitmap.Config config = thumbnail.getConfig();
+        if (config == null) {
+            config = Bitmap.Config.ARGB_8888;
+        }
+        return thumbnail.copy(config, false);
+    }
+
+    /**
+     * Media table id where clause
+     *
+     * @return where clause
+     */
+    private String idWhere() {
+        return CoreSQLUtils.quoteWrap(mediaDao.getTable().getPkColumnName())
+                + " = ?";
+    }
+
+    /**
+     * Get the thumbnail cache key
+     *
+     * @param mediaId media id
+     * @param size    thumbnail size
+     * @return key
+     */
+    private String cacheKey(long mediaId, int size) {
+        return geoPackage.getName() + "/" + mediaTableName + "/" + mediaId
+                + "/" + size;
+    }
+
+}
@@ -1,5 +1,7 @@
 package mil.nga.geopackage.extension.related.simple;
 
+import androidx.collection.LongSparseArray;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -79,8 +81,9 @@ public class SimpleAttributesDao extends UserCustomDao {
      */
     public List<SimpleAttributesRow> getRows(List<Long> ids) {
         List<SimpleAttributesRow> simpleAttributesRows = new ArrayList<>();
+        LongSparseArray<UserCustomRow> userCustomRows = queryForIdRows(ids);
         for (long id : ids) {
-            UserCustomRow userCustomRow = queryForIdRow(id);
+            UserCustomRow userCustomRow = userCustomRows.get(id);
             if (userCustomRow != null) {
                 simpleAttributesRows.add(getRow(userCustomRow));
             }
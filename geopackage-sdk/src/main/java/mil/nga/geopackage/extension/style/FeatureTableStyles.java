@@ -90,6 +90,16 @@ public class FeatureTableStyles {
         return featureStyleExtension;
     }
 
+    /**
+     * Get the GeoPackage
+     *
+     * @return GeoPackage
+     * @since 3.5.1
+     */
+    public GeoPackage getGeoPackage() {
+        return featureStyleExtension.getGeoPackage();
+    }
+
     /**
      * Get the feature table name
      *
@@ -1251,6 +1261,18 @@ public class FeatureTableStyles {
         featureStyleExtension.deleteIcon(tableName, featureId, geometryType);
     }
 
+    /**
+     * Prewarm the shared {@link IconAtlas} by decoding all table and feature
+     * icons
+     *
+     * @param density display density: {@link android.util.DisplayMetrics#density}
+     * @return number of icons in the atlas
+     * @since 3.5.1
+     */
+    public int prewarmIcons(float density) {
+        return IconAtlas.getShared().prewarm(this, density);
+    }
+
     /**
      * Get all the unique style row ids the table maps to
      *
@@ -0,0 +1,397 @@
+package mil.nga.geopackage.extension.style;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mil.nga.geopackage.GeoPackage;
+
+/**
+ * Process wide Icon Atlas of decoded icon bitmaps, shared across all feature
+ * tiles and feature table styles users. Icons are keyed by GeoPackage, icon
+ * table, icon id, a content stamp of the icon row, and effective scale
+ * (display density multiplied by icon scale) so each icon is decoded once per
+ * distinct drawn size, and updated icon rows or re-created GeoPackages are
+ * never served stale bitmaps. The atlas is bounded by bitmap bytes and is
+ * thread safe. Bitmaps retrieved from the
+ * atlas are shared and must not be recycled by callers.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class IconAtlas {
+
+    /**
+     * Default max bitmap bytes to retain in the atlas
+     */
+    public static final int DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * Shared process wide atlas instance
+     */
+    private static final IconAtlas sharedAtlas = new IconAtlas();
+
+    /**
+     * Get the shared process wide icon atlas
+     *
+     * @return icon atlas
+     */
+    public static IconAtlas getShared() {
+        return sharedAtlas;
+    }
+
+    /**
+     * Icon bitmap cache, sized by bitmap bytes
+     */
+    private final LruCache<IconKey, Bitmap> iconCache;
+
+    /**
+     * Locks of icons currently being decoded, ensuring a single decode per
+     * icon key
+     */
+    private final ConcurrentHashMap<IconKey, Object> decodeLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, created with a max size of {@link #DEFAULT_MAX_BYTES}
+     */
+    public IconAtlas() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxBytes max icon bitmap bytes to retain in the atlas
+     */
+    public IconAtlas(int maxBytes) {
+        iconCache = new LruCache<IconKey, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(IconKey key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Get the cached icon bitmap or null if not cached
+     *
+     * @param geoPackage GeoPackage of the icon
+     * @param iconRow    icon row
+     * @param density    display density: {@link android.util.DisplayMetrics#density}
+     * @param scale      icon scale
+     * @return icon bitmap or null
+     */
+    public Bitmap get(GeoPackage geoPackage, IconRow iconRow, float density,
+                      float scale) {
+        return iconCache.get(new IconKey(geoPackage, iconRow, density * scale));
+    }
+
+    /**
+     * Create or retrieve from the atlas an icon bitmap for the icon row at a
+     * scale of 1.0
+     *
+     * @param geoPackage GeoPackage of the icon
+     * @param iconRow    icon row
+     * @param density    display density: {@link android.util.DisplayMetrics#density}
+     * @return icon bitmap
+     */
+    public Bitmap createIcon(GeoPackage geoPackage, IconRow iconRow,
+                             float density) {
+        return createIcon(geoPackage, iconRow, density, 1.0f);
+    }
+
+    /**
+     * Create or retrieve from the atlas an icon bitmap for the icon row
+     *
+     * @param geoPackage GeoPackage of the icon
+     * @param iconRow    icon row
+     * @param density    display density: {@link android.util.DisplayMetrics#density}
+     * @param scale      icon scale, applied in addition to the density
+     * @return icon bitmap
+     */
+    public Bitmap createIcon(GeoPackage geoPackage, IconRow iconRow,
+                             float density, float scale) {
+
+        Bitmap iconImage = null;
+
+        if (iconRow != null && iconRow.getData() != null) {
+
+            float iconScale = density * scale;
+            IconKey key = new IconKey(geoPackage, iconRow, iconScale);
+
+            iconImage = iconCache.get(key);
+
+            if (iconImage == null) {
+
+                Object lock = new Object();
+                Object existingLock = decodeLocks.putIfAbsent(key, lock);
+                if (existingLock != null) {
+                    lock = existingLock;
+                }
+
+                try {
+                    synchronized (lock) {
+                        iconImage = iconCache.get(key);
+                        if (iconImage == null) {
+                            iconImage = IconCache.createIconNoCache(iconRow,
+                                    iconScale);
+                            if (iconImage != null) {
+                                iconCache.put(key, iconImage);
+                            }
+                        }
+                    }
+                } finally {
+                    decodeLocks.remove(key, lock);
+                }
+            }
+
+        }
+
+        return iconImage;
+    }
+
+    /**
+     * Prewarm the atlas by decoding all table and feature icons of the feature
+     * table styles at a scale of 1.0
+     *
+     * @param featureTableStyles feature table styles
+     * @param density            display density: {@link android.util.DisplayMetrics#density}
+     * @return number of icons decoded or found in the atlas
+     */
+    public int prewarm(FeatureTableStyles featureTableStyles, float density) {
+        return prewarm(featureTableStyles, density, 1.0f);
+    }
+
+    /**
+     * Prewarm the atlas by decoding all table and feature icons of the feature
+     * table styles
+     *
+     * @param featureTableStyles feature table styles
+     * @param density            display density: {@link android.util.DisplayMetrics#density}
+     * @param scale              icon scale
+     * @return number of icons decoded or found in the atlas
+     */
+    public int prewarm(FeatureTableStyles featureTableStyles, float density,
+                       float scale) {
+
+        int count = 0;
+
+        GeoPackage geoPackage = featureTableStyles.getGeoPackage();
+        IconDao iconDao = featureTableStyles.getIconDao();
+        if (iconDao != null) {
+
+            Set<Long> iconRowIds = new HashSet<>();
+            List<Long> tableIconIds = featureTableStyles.getAllTableIconIds();
+            if (tableIconIds != null) {
+                iconRowIds.addAll(tableIconIds);
+            }
+            List<Long> iconIds = featureTableStyles.getAllIconIds();
+            if (iconIds != null) {
+                iconRowIds.addAll(iconIds);
+            }
+
+            for (long iconRowId : iconRowIds) {
+                IconRow iconRow = iconDao.getRow(iconDao.queryForIdRow(iconRowId));
+                if (iconRow != null
+                        && createIcon(geoPackage, iconRow, density, scale) != null) {
+                    count++;
+                }
+            }
+
+        }
+
+        return count;
+    }
+
+    /**
+     * Remove all cached bitmaps of the icon row, at all contents, densities
+     * and scales
+     *
+     * @param geoPackage GeoPackage of the icon
+     * @param iconRow    icon row
+     */
+    public void remove(GeoPackage geoPackage, IconRow iconRow) {
+        if (iconRow != null) {
+            IconKey iconKey = new IconKey(geoPackage, iconRow, 0);
+            for (IconKey key : iconCache.snapshot().keySet()) {
+                if (key.sameIcon(iconKey)) {
+                    iconCache.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all cached bitmaps of the icon rows, at all contents, densities
+     * and scales
+     *
+     * @param geoPackage GeoPackage of the icons
+     * @param iconRows   icon rows
+     */
+    public void remove(GeoPackage geoPackage, Collection<IconRow> iconRows) {
+        for (IconRow iconRow : iconRows) {
+            remove(geoPackage, iconRow);
+        }
+    }
+
+    /**
+     * Clear the atlas
+     */
+    public void clear() {
+        iconCache.evictAll();
+    }
+
+    /**
+     * Get the current bitmap bytes retained in the atlas
+     *
+     * @return bytes
+     */
+    public int size() {
+        return iconCache.size();
+    }
+
+    /**
+     * Get the max bitmap bytes retained in the atlas
+     *
+     * @return max bytes
+     */
+    public int maxSize() {
+        return iconCache.maxSize();
+    }
+
+    /**
+     * Resize the atlas
+     *
+     * @param maxBytes max bitmap bytes
+     */
+    @TargetApi(21)
+    public void resize(int maxBytes) {
+        iconCache.resize(maxBytes);
+    }
+
+    /**
+     * Icon atlas key of the GeoPackage icon, content stamp, and effective
+     * scale. The content stamp and style dimensions keep updated icon rows
+     * and re-created GeoPackages from being served stale bitmaps without
+     * comparing or retaining the icon data.
+     */
+    private static class IconKey {
+
+        /**
+         * GeoPackage name
+         */
+        private final String geoPackage;
+
+        /**
+         * Icon table name
+         */
+        private final String table;
+
+        /**
+         * Icon id
+         */
+        private final long id;
+
+        /**
+         * Icon data content stamp
+         */
+        private final int contentStamp;
+
+        /**
+         * Icon data length
+         */
+        private final int length;
+
+        /**
+         * Icon style width
+         */
+        private final Double width;
+
+        /**
+         * Icon style height
+         */
+        private final Double height;
+
+        /**
+         * Effective icon scale, density multiplied by scale
+         */
+        private final float scale;
+
+        /**
+         * Constructor
+         *
+         * @param geoPackage GeoPackage
+         * @param iconRow    icon row
+         * @param scale      effective icon scale
+         */
+        IconKey(GeoPackage geoPackage, IconRow iconRow, float scale) {
+            this.geoPackage = geoPackage != null ? geoPackage.getName() : null;
+            this.table = iconRow.getTable().getTableName();
+            this.id = iconRow.getId();
+            byte[] data = iconRow.getData();
+            this.contentStamp = iconRow.getContentStamp();
+            this.length = data != null ? data.length : -1;
+            this.width = iconRow.getWidth();
+            this.height = iconRow.getHeight();
+            this.scale = scale;
+        }
+
+        /**
+         * Determine if the key is the same GeoPackage icon, ignoring content
+         * and scale
+         *
+         * @param other icon key
+         * @return true if same icon
+         */
+        boolean sameIcon(IconKey other) {
+            return id == other.id
+                    && (geoPackage == null ? other.geoPackage == null : geoPackage.equals(other.geoPackage))
+                    && (table == null ? other.table == null : table.equals(other.table));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            IconKey other = (IconKey) obj;
+            return Float.compare(scale, other.scale) == 0
+                    && contentStamp == other.contentStamp
+                    && length == other.length
+                    && (width == null ? other.width == null : width.equals(other.width))
+                    && (height == null ? other.height == null : height.equals(other.height))
+                    && sameIcon(other);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = contentStamp;
+            result = prime * result + (int) (id ^ (id >>> 32));
+            result = prime * result + (table == null ? 0 : table.hashCode());
+            result = prime * result + (geoPackage == null ? 0 : geoPackage.hashCode());
+            result = prime * result + length;
+            result = prime * result + (width == null ? 0 : width.hashCode());
+            result = prime * result + (height == null ? 0 : height.hashCode());
+            result = prime * result + Float.floatToIntBits(scale);
+            return result;
+        }
+
+    }
+
+}
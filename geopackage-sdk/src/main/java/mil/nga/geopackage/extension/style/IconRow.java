@@ -2,6 +2,8 @@ package mil.nga.geopackage.extension.style;
 
 import android.graphics.BitmapFactory;
 
+import java.util.Arrays;
+
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.extension.related.media.MediaRow;
 import mil.nga.geopackage.user.custom.UserCustomColumn;
@@ -20,6 +22,16 @@ public class IconRow extends MediaRow {
      */
     private boolean tableIcon;
 
+    /**
+     * Icon data the content stamp was computed from
+     */
+    private byte[] stampData;
+
+    /**
+     * Icon data content stamp
+     */
+    private int contentStamp;
+
     /**
      * Constructor to create an empty row
      */
@@ -423,6 +435,20 @@ public class IconRow extends MediaRow {
         }
     }
 
+    /**
+     * Get the icon data content stamp, computed once per icon data value
+     *
+     * @return content stamp
+     */
+    synchronized int getContentStamp() {
+        byte[] data = getData();
+        if (data != stampData) {
+            contentStamp = Arrays.hashCode(data);
+            stampData = data;
+        }
+        return contentStamp;
+    }
+
     /**
      * Copy the row
      *
@@ -7,7 +7,9 @@ import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.stmt.QueryBuilder;
 
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
@@ -23,6 +25,8 @@ import mil.nga.geopackage.db.CoreSQLUtils;
 import mil.nga.geopackage.db.GeoPackageConnection;
 import mil.nga.geopackage.db.GeoPackageTableCreator;
 import mil.nga.geopackage.extension.RTreeIndexExtension;
+import mil.nga.geopackage.extension.dedup.TileDedup;
+import mil.nga.geopackage.extension.refresh.TileRefresh;
 import mil.nga.geopackage.features.columns.GeometryColumns;
 import mil.nga.geopackage.features.columns.GeometryColumnsDao;
 import mil.nga.geopackage.features.index.FeatureIndexManager;
@@ -57,6 +61,12 @@ public class GeoPackageImpl extends GeoPackageCoreImpl implements GeoPackage {
      */
     private final Context context;
 
+    /**
+     * Tile dedup extensions by tile table name, null for tables without the
+     * extension
+     */
+    private final Map<String, TileDedup> tileDedups = new HashMap<>();
+
     /**
      * Database connection
      */
@@ -258,6 +268,12 @@ public class GeoPackageImpl extends GeoPackageCoreImpl implements GeoPackage {
         TileDao dao = new TileDao(getName(), database, tileMatrixSet, tileMatrices,
                 tileTable);
 
+        // Resolve tile data blob references of deduplicated tile tables
+        TileDedup dedup = getTileDedup(tileMatrixSet.getTableName());
+        if (dedup != null) {
+            dao.setDedup(dedup);
+        }
+
         // Register the table name (with and without quotes) to wrap cursors with the tile cursor
         registerCursorWrapper(tileMatrixSet.getTableName(),
                 new GeoPackageCursorWrapper() {
@@ -417,6 +433,81 @@ public class GeoPackageImpl extends GeoPackageCoreImpl implements GeoPackage {
         return dao;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Also deletes the tile refresh and tile dedup side tables of the table
+     */
+    @Override
+    public void deleteTable(String table) {
+        super.deleteTable(table);
+        new TileRefresh(this, table).delete();
+        new TileDedup(this, table).drop();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Also copies the tile dedup blob table referenced by the copied tile
+     * rows
+     */
+    @Override
+    public void copyTable(String tableName, String newTableName) {
+        super.copyTable(tableName, newTableName);
+        TileDedup dedup = getTileDedup(tableName);
+        if (dedup != null && !new TileDedup(this, newTableName).has()) {
+            dedup.copy(newTableName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Also restores the tile data of copied tile rows referencing the tile
+     * dedup blob table
+     */
+    @Override
+    public void copyTableNoExtensions(String tableName, String newTableName) {
+        super.copyTableNoExtensions(tableName, newTableName);
+        TileDedup dedup = getTileDedup(tableName);
+        if (dedup != null) {
+            dedup.restore(newTableName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resetTileDedup(String table) {
+        synchronized (tileDedups) {
+            tileDedups.remove(table);
+        }
+    }
+
+    /**
+     * Get the tile dedup extension of the tile table, checked once and cached
+     * until reset
+     *
+     * @param table tile table name
+     * @return tile dedup or null
+     */
+    private TileDedup getTileDedup(String table) {
+        synchronized (tileDedups) {
+            TileDedup dedup;
+            if (tileDedups.containsKey(table)) {
+                dedup = tileDedups.get(table);
+            } else {
+                dedup = new TileDedup(this, table);
+                if (!dedup.has()) {
+                    dedup = null;
+                }
+                tileDedups.put(table, dedup);
+            }
+            return dedup;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
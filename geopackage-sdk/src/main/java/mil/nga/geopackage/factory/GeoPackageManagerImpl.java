@@ -4,6 +4,7 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.res.Resources;
+import android.database.Cursor;
 import android.database.DatabaseErrorHandler;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
@@ -14,15 +15,17 @@ import android.util.Log;
 
 import androidx.annotation.RequiresApi;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.sql.SQLException;
+import java.security.DigestInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -38,13 +41,17 @@ import mil.nga.geopackage.R;
 import mil.nga.geopackage.core.contents.Contents;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
 import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.db.GeoPackageConnectionPool;
 import mil.nga.geopackage.db.GeoPackageDatabase;
 import mil.nga.geopackage.db.GeoPackageTableCreator;
 import mil.nga.geopackage.db.metadata.GeoPackageMetadata;
-import mil.nga.geopackage.db.metadata.GeoPackageMetadataDataSource;
+import mil.nga.geopackage.db.metadata.GeoPackageMetadataCatalog;
 import mil.nga.geopackage.db.metadata.GeoPackageMetadataDb;
+import mil.nga.geopackage.io.GeoPackageExportFilter;
+import mil.nga.geopackage.io.GeoPackageExtractor;
 import mil.nga.geopackage.io.GeoPackageIOUtils;
 import mil.nga.geopackage.io.GeoPackageProgress;
+import mil.nga.geopackage.io.HashUtils;
 import mil.nga.geopackage.validate.GeoPackageValidate;
 import mil.nga.sf.util.ByteReader;
 
@@ -55,11 +62,21 @@ import mil.nga.sf.util.ByteReader;
  */
 class GeoPackageManagerImpl implements GeoPackageManager {
 
+    /**
+     * SQLite database header length
+     */
+    private static final int SQLITE_HEADER_LENGTH = 100;
+
     /**
      * Context
      */
     private final Context context;
 
+    /**
+     * Shared metadata catalog
+     */
+    private final GeoPackageMetadataCatalog catalog;
+
     /**
      * Validate the database header of an imported database
      */
@@ -70,6 +87,11 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      */
     private boolean importIntegrityValidation;
 
+    /**
+     * Validate the integrity of an imported database with a quick check
+     */
+    private boolean importQuickCheck;
+
     /**
      * Validate the database header when opening a database
      */
@@ -85,6 +107,11 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      */
     private boolean sqliteWriteAheadLogging;
 
+    /**
+     * Number of pooled read connections, 0 for no pool
+     */
+    private int sqliteReadConnections;
+
     /**
      * Constructor
      *
@@ -92,13 +119,16 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      */
     GeoPackageManagerImpl(Context context) {
         this.context = context;
+        catalog = GeoPackageMetadataCatalog.getInstance(context);
 
         Resources resources = context.getResources();
         importHeaderValidation = resources.getBoolean(R.bool.manager_validation_import_header);
         importIntegrityValidation = resources.getBoolean(R.bool.manager_validation_import_integrity);
+        importQuickCheck = resources.getBoolean(R.bool.manager_validation_import_quick_check);
         openHeaderValidation = resources.getBoolean(R.bool.manager_validation_open_header);
         openIntegrityValidation = resources.getBoolean(R.bool.manager_validation_open_integrity);
         sqliteWriteAheadLogging = resources.getBoolean(R.bool.sqlite_write_ahead_logging);
+        sqliteReadConnections = resources.getInteger(R.integer.sqlite_read_connections);
     }
 
     /**
@@ -118,19 +148,8 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      */
     @Override
     public List<String> databasesLike(String like) {
-        List<String> databases = null;
-        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                context);
-        metadataDb.open();
-        try {
-            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-            databases = dataSource.getMetadataWhereNameLike(like, GeoPackageMetadata.COLUMN_NAME);
-        } finally {
-            metadataDb.close();
-        }
-
+        List<String> databases = catalog.getNamesLike(like);
         databases = deleteMissingDatabases(databases);
-
         return databases;
     }
 
@@ -139,35 +158,40 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      */
     @Override
     public List<String> databasesNotLike(String notLike) {
-        List<String> databases = null;
-        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                context);
-        metadataDb.open();
-        try {
-            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-            databases = dataSource.getMetadataWhereNameNotLike(notLike, GeoPackageMetadata.COLUMN_NAME);
-        } finally {
-            metadataDb.close();
-        }
-
+        List<String> databases = catalog.getNamesNotLike(notLike);
         databases = deleteMissingDatabases(databases);
-
         return databases;
     }
 
     /**
-     * Delete all databases that do not exist or the database file does not exist
+     * Delete all databases that do not exist or the database file does not
+     * exist, listing the internal databases once and deleting the metadata of
+     * missing external databases together
      *
      * @param databases list of databases
      * @return databases that exist
      */
     private List<String> deleteMissingDatabases(List<String> databases) {
         List<String> filesExist = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        Set<String> internal = internalDatabaseSet();
         for (String database : databases) {
-            if (exists(database)) {
+            if (internal.contains(database)) {
                 filesExist.add(database);
+            } else {
+                GeoPackageMetadata metadata = catalog.get(database);
+                if (metadata != null) {
+                    if (metadata.isExternal() && !new File(metadata.getExternalPath()).exists()) {
+                        missing.add(database);
+                    } else {
+                        filesExist.add(database);
+                    }
+                }
             }
         }
+        if (!missing.isEmpty()) {
+            catalog.delete(missing);
+        }
         return filesExist;
     }
 
@@ -252,24 +276,18 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      */
     @Override
     public boolean exists(String database) {
-        boolean exists = internalDatabaseSet().contains(database);
+        boolean exists = isInternalDatabase(database)
+                && database.indexOf(File.separatorChar) < 0
+                && context.getDatabasePath(database).exists();
 
         if (!exists) {
-            GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                    context);
-            metadataDb.open();
-            try {
-                GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-                GeoPackageMetadata metadata = dataSource.get(database);
-                if (metadata != null) {
-                    if (metadata.getExternalPath() != null && !new File(metadata.getExternalPath()).exists()) {
-                        delete(database);
-                    } else {
-                        exists = true;
-                    }
+            GeoPackageMetadata metadata = catalog.get(database);
+            if (metadata != null) {
+                if (metadata.getExternalPath() != null && !new File(metadata.getExternalPath()).exists()) {
+                    delete(database);
+                } else {
+                    exists = true;
                 }
-            } finally {
-                metadataDb.close();
             }
         }
         return exists;
@@ -290,17 +308,7 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      */
     @Override
     public boolean isExternal(String database) {
-        boolean external = false;
-        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                context);
-        metadataDb.open();
-        try {
-            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-            external = dataSource.isExternal(database);
-        } finally {
-            metadataDb.close();
-        }
-        return external;
+        return catalog.isExternal(database);
     }
 
     /**
@@ -389,15 +397,7 @@ class GeoPackageManagerImpl implements GeoPackageManager {
         boolean deleted = false;
         boolean external = isExternal(database);
 
-        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                context);
-        metadataDb.open();
-        try {
-            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-            deleted = dataSource.delete(database);
-        } finally {
-            metadataDb.close();
-        }
+        deleted = catalog.delete(database);
 
         if (!external) {
             deleted = context.deleteDatabase(database);
@@ -468,18 +468,10 @@ class GeoPackageManagerImpl implements GeoPackageManager {
             GeoPackageDatabase db = new GeoPackageDatabase(context.openOrCreateDatabase(database,
                     Context.MODE_PRIVATE, null));
             createAndCloseGeoPackage(db);
-            GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                    context);
-            metadataDb.open();
-            try {
-                GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-                // Save in metadata
-                GeoPackageMetadata metadata = new GeoPackageMetadata();
-                metadata.setName(database);
-                dataSource.create(metadata);
-            } finally {
-                metadataDb.close();
-            }
+            // Save in metadata
+            GeoPackageMetadata metadata = new GeoPackageMetadata();
+            metadata.setName(database);
+            catalog.create(metadata);
             created = true;
         }
 
@@ -625,6 +617,15 @@ class GeoPackageManagerImpl implements GeoPackageManager {
     @Override
     public boolean importGeoPackage(String database, InputStream stream,
                                     boolean override, GeoPackageProgress progress) {
+        return importGeoPackage(database, stream, override, progress, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean importGeoPackage(String database, InputStream stream,
+                                    boolean override, GeoPackageProgress progress, String checksum) {
 
         if (progress != null) {
             try {
@@ -637,7 +638,8 @@ class GeoPackageManagerImpl implements GeoPackageManager {
             }
         }
 
-        boolean success = importGeoPackage(database, override, stream, progress);
+        boolean success = importGeoPackage(database, override, stream, progress,
+                checksum);
         return success;
     }
 
@@ -670,7 +672,7 @@ class GeoPackageManagerImpl implements GeoPackageManager {
         try {
             FileInputStream geoPackageStream = new FileInputStream(file);
             success = importGeoPackage(database, override, geoPackageStream,
-                    null);
+                    null, null);
         } catch (FileNotFoundException e) {
             throw new GeoPackageException(
                     "Failed read or write GeoPackage file '" + file
@@ -744,7 +746,7 @@ class GeoPackageManagerImpl implements GeoPackageManager {
 
             InputStream geoPackageStream = connection.getInputStream();
             success = importGeoPackage(name, override, geoPackageStream,
-                    progress);
+                    progress, null);
         } catch (IOException e) {
             throw new GeoPackageException("Failed to import GeoPackage " + name
                     + " from URL: '" + url.toString() + "'", e);
@@ -837,6 +839,71 @@ class GeoPackageManagerImpl implements GeoPackageManager {
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exportGeoPackage(String database, File file,
+                                    GeoPackageProgress progress) {
+        return exportGeoPackage(database, file, null, progress);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exportGeoPackage(String database, File file,
+                                    GeoPackageExportFilter filter, GeoPackageProgress progress) {
+
+        if (file.exists()) {
+            throw new GeoPackageException(
+                    "GeoPackage export file already exists: " + file);
+        }
+        File directory = file.getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        if (filter != null && !filter.isFiltered()) {
+            filter = null;
+        }
+
+        if (filter != null) {
+            return extractGeoPackage(database, file, filter, progress);
+        }
+
+        // Back up from a separate read only connection
+        GeoPackage geoPackage = open(database, false);
+        if (geoPackage == null) {
+            throw new GeoPackageException(
+                    "Failed to open GeoPackage database: " + database);
+        }
+        try {
+            if (progress != null) {
+                progress.setMax(1);
+            }
+            vacuumInto(geoPackage, file);
+        } catch (RuntimeException e) {
+            file.delete();
+            throw e;
+        } finally {
+            geoPackage.close();
+        }
+
+        if (progress != null) {
+            progress.addProgress(1);
+        }
+
+        boolean exported = true;
+        if (progress != null && !progress.isActive()) {
+            exported = false;
+            if (progress.cleanupOnCancel()) {
+                file.delete();
+            }
+        }
+
+        return exported;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -850,6 +917,14 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      */
     @Override
     public GeoPackage open(String database, boolean writable) {
+        return open(database, writable, sqliteReadConnections);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GeoPackage open(String database, boolean writable, int readConnections) {
 
         GeoPackage db = null;
 
@@ -879,7 +954,7 @@ class GeoPackageManagerImpl implements GeoPackageManager {
                 sqlite = context.openOrCreateDatabase(database,
                         Context.MODE_PRIVATE, cursorFactory);
             }
-            if (sqliteWriteAheadLogging) {
+            if (sqliteWriteAheadLogging || (readConnections > 0 && writable)) {
                 sqlite.enableWriteAheadLogging();
             } else {
                 sqlite.disableWriteAheadLogging();
@@ -888,7 +963,17 @@ class GeoPackageManagerImpl implements GeoPackageManager {
             // Validate the database if validation is enabled
             validateDatabaseAndCloseOnError(sqlite, openHeaderValidation, openIntegrityValidation);
 
-            GeoPackageConnection connection = new GeoPackageConnection(new GeoPackageDatabase(sqlite, writable, cursorFactory));
+            GeoPackageDatabase geoPackageDatabase = new GeoPackageDatabase(sqlite, writable, cursorFactory);
+            if (readConnections > 0) {
+                try {
+                    geoPackageDatabase.setReadPool(GeoPackageConnectionPool.open(
+                            sqlite.getPath(), readConnections, cursorFactory));
+                } catch (RuntimeException e) {
+                    sqlite.close();
+                    throw e;
+                }
+            }
+            GeoPackageConnection connection = new GeoPackageConnection(geoPackageDatabase);
             connection.enableForeignKeys();
 
             GeoPackageTableCreator tableCreator = new GeoPackageTableCreator(connection);
@@ -938,6 +1023,22 @@ class GeoPackageManagerImpl implements GeoPackageManager {
         this.importIntegrityValidation = enabled;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isImportQuickCheck() {
+        return importQuickCheck;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setImportQuickCheck(boolean enabled) {
+        this.importQuickCheck = enabled;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -986,6 +1087,22 @@ class GeoPackageManagerImpl implements GeoPackageManager {
         this.sqliteWriteAheadLogging = enabled;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSqliteReadConnections() {
+        return sqliteReadConnections;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSqliteReadConnections(int readConnections) {
+        this.sqliteReadConnections = readConnections;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1085,17 +1202,8 @@ class GeoPackageManagerImpl implements GeoPackageManager {
     @Override
     public boolean rename(String database, String newDatabase) {
         GeoPackageMetadata metadata = getGeoPackageMetadata(database);
-        if (metadata != null) {
-
-            GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                    context);
-            metadataDb.open();
-            try {
-                GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-                dataSource.rename(metadata, newDatabase);
-            } finally {
-                metadataDb.close();
-            }
+        if (metadata != null && catalog.rename(database, newDatabase)) {
+            metadata.setName(newDatabase);
         }
 
         if ((metadata == null || !metadata.isExternal()) && copy(database, newDatabase)) {
@@ -1158,35 +1266,33 @@ class GeoPackageManagerImpl implements GeoPackageManager {
                             + database + ", Path: " + path, e);
         }
 
-        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                context);
-        metadataDb.open();
-        try {
-            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-            // Save the external link in metadata
-            GeoPackageMetadata metadata = new GeoPackageMetadata();
-            metadata.setName(database);
-            metadata.setExternalPath(path);
-            dataSource.create(metadata);
+        // Save the external link in metadata
+        GeoPackageMetadata metadata = new GeoPackageMetadata();
+        metadata.setName(database);
+        metadata.setExternalPath(path);
+        catalog.create(metadata);
 
-            GeoPackage geoPackage = open(database, false);
-            if (geoPackage != null) {
-                try {
-                    GeoPackageValidate.validateMinimumTables(geoPackage);
-                } catch (RuntimeException e) {
-                    dataSource.delete(database);
-                    throw e;
-                } finally {
-                    geoPackage.close();
-                }
-            } else {
-                dataSource.delete(database);
-                throw new GeoPackageException(
-                        "Unable to open GeoPackage database. Database: "
-                                + database);
+        GeoPackage geoPackage = null;
+        try {
+            geoPackage = open(database, false);
+        } catch (RuntimeException e) {
+            catalog.delete(database);
+            throw e;
+        }
+        if (geoPackage != null) {
+            try {
+                GeoPackageValidate.validateMinimumTables(geoPackage);
+            } catch (RuntimeException e) {
+                catalog.delete(database);
+                throw e;
+            } finally {
+                geoPackage.close();
             }
-        } finally {
-            metadataDb.close();
+        } else {
+            catalog.delete(database);
+            throw new GeoPackageException(
+                    "Unable to open GeoPackage database. Database: "
+                            + database);
         }
 
         return exists(database);
@@ -1271,10 +1377,7 @@ class GeoPackageManagerImpl implements GeoPackageManager {
             fis = new FileInputStream(sqliteDatabase.getPath());
             byte[] headerBytes = new byte[16];
             if (fis.read(headerBytes) == 16) {
-                ByteReader byteReader = new ByteReader(headerBytes);
-                String header = byteReader.readString(headerBytes.length);
-                String headerPrefix = header.substring(0, GeoPackageConstants.SQLITE_HEADER_PREFIX.length());
-                validHeader = headerPrefix.equalsIgnoreCase(GeoPackageConstants.SQLITE_HEADER_PREFIX);
+                validHeader = isDatabaseHeaderValid(headerBytes);
             }
         } catch (Exception e) {
             Log.e(GeoPackageManagerImpl.class.getSimpleName(), "Failed to retrieve database header", e);
@@ -1291,6 +1394,78 @@ class GeoPackageManagerImpl implements GeoPackageManager {
         return validHeader;
     }
 
+    /**
+     * Determine if the database header bytes are valid
+     *
+     * @param headerBytes header bytes, at least the first 16 bytes
+     * @return true if valid
+     */
+    private boolean isDatabaseHeaderValid(byte[] headerBytes) {
+        boolean validHeader = false;
+        if (headerBytes.length >= 16) {
+            ByteReader byteReader = new ByteReader(headerBytes);
+            String header = byteReader.readString(16);
+            String headerPrefix = header.substring(0, GeoPackageConstants.SQLITE_HEADER_PREFIX.length());
+            validHeader = headerPrefix.equalsIgnoreCase(GeoPackageConstants.SQLITE_HEADER_PREFIX);
+        }
+        if (validHeader && headerBytes.length >= 18) {
+            // Page size is a power of two between 512 and 32768, or 1 for 65536
+            int pageSize = ((headerBytes[16] & 0xFF) << 8) | (headerBytes[17] & 0xFF);
+            validHeader = pageSize == 1
+                    || (pageSize >= 512 && (pageSize & (pageSize - 1)) == 0);
+        }
+        return validHeader;
+    }
+
+    /**
+     * Validate the integrity of the database with a quick check, skipping
+     * index content verification
+     *
+     * @param sqliteDatabase database
+     */
+    private void validateDatabaseQuickCheck(SQLiteDatabase sqliteDatabase) {
+
+        boolean ok = false;
+        Cursor cursor = sqliteDatabase.rawQuery("PRAGMA quick_check", null);
+        try {
+            ok = cursor.moveToFirst() && cursor.getCount() == 1
+                    && "ok".equalsIgnoreCase(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        if (!ok) {
+            throw new GeoPackageException(
+                    "GeoPackage SQLite file quick check failed: " + sqliteDatabase.getPath());
+        }
+    }
+
+    /**
+     * Validate the database has the minimum required GeoPackage tables
+     *
+     * @param sqliteDatabase database
+     */
+    private void validateRequiredTables(SQLiteDatabase sqliteDatabase) {
+
+        int count = 0;
+        Cursor cursor = sqliteDatabase.rawQuery(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name IN (?, ?)",
+                new String[]{SpatialReferenceSystem.TABLE_NAME, Contents.TABLE_NAME});
+        try {
+            if (cursor.moveToFirst()) {
+                count = cursor.getInt(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        if (count != 2) {
+            throw new GeoPackageException(
+                    "Invalid GeoPackage database file. Does not contain required tables: "
+                            + SpatialReferenceSystem.TABLE_NAME
+                            + " & " + Contents.TABLE_NAME
+                            + ", Database: " + sqliteDatabase.getPath());
+        }
+    }
+
     /**
      * Validate the integrity of the database
      *
@@ -1326,14 +1501,24 @@ class GeoPackageManagerImpl implements GeoPackageManager {
     private void addInternalDatabases(Collection<String> databases) {
         String[] databaseArray = context.databaseList();
         for (String database : databaseArray) {
-            if (!isTemporary(database)
-                    && !database
-                    .equalsIgnoreCase(GeoPackageMetadataDb.DATABASE_NAME)) {
+            if (isInternalDatabase(database)) {
                 databases.add(database);
             }
         }
     }
 
+    /**
+     * Determine if the database name is an internal GeoPackage name, not a
+     * temporary file or the metadata database
+     *
+     * @param database database name
+     * @return true if an internal GeoPackage name
+     */
+    private boolean isInternalDatabase(String database) {
+        return !isTemporary(database)
+                && !database.equalsIgnoreCase(GeoPackageMetadataDb.DATABASE_NAME);
+    }
+
     /**
      * Add all external databases to the collection
      *
@@ -1342,14 +1527,7 @@ class GeoPackageManagerImpl implements GeoPackageManager {
     private void addExternalDatabases(Collection<String> databases) {
         // Get the external GeoPackages, adding those where the file exists and
         // deleting those with missing files
-        List<GeoPackageMetadata> externalGeoPackages = getExternalGeoPackages();
-        for (GeoPackageMetadata external : externalGeoPackages) {
-            if (new File(external.getExternalPath()).exists()) {
-                databases.add(external.getName());
-            } else {
-                delete(external.getName());
-            }
-        }
+        databases.addAll(catalog.getExistingExternal());
     }
 
     /**
@@ -1359,10 +1537,14 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      * @param override
      * @param geoPackageStream
      * @param progress
+     * @param checksum expected hex encoded SHA-256 checksum, null to not verify
      * @return true if imported successfully
      */
     private boolean importGeoPackage(String database, boolean override,
-                                     InputStream geoPackageStream, GeoPackageProgress progress) {
+                                     InputStream geoPackageStream, GeoPackageProgress progress,
+                                     String checksum) {
+
+        File newDbFile = context.getDatabasePath(database);
 
         try {
 
@@ -1378,107 +1560,129 @@ class GeoPackageManagerImpl implements GeoPackageManager {
                 }
             }
 
+            // Compute the checksum while copying
+            DigestInputStream digestStream = null;
+            InputStream stream = geoPackageStream;
+            if (checksum != null) {
+                digestStream = HashUtils.digestStream(stream);
+                stream = digestStream;
+            }
+
             // Copy the geopackage over as a database
-            File newDbFile = context.getDatabasePath(database);
             try {
-                SQLiteDatabase db = context.openOrCreateDatabase(database,
-                        Context.MODE_PRIVATE, null);
-                db.close();
-                GeoPackageIOUtils.copyStream(geoPackageStream, newDbFile, progress);
+
+                // Check the SQLite header before copying
+                byte[] header = readHeader(stream);
+                if (importHeaderValidation && !isDatabaseHeaderValid(header)) {
+                    throw new GeoPackageException(
+                            "GeoPackage SQLite header is not valid. Database: " + database);
+                }
+
+                File directory = newDbFile.getParentFile();
+                if (directory != null) {
+                    directory.mkdirs();
+                }
+                GeoPackageIOUtils.copyStream(new SequenceInputStream(
+                                new ByteArrayInputStream(header), stream), newDbFile,
+                        progress);
             } catch (IOException e) {
+                delete(database);
                 throw new GeoPackageException(
                         "Failed to import GeoPackage database: " + database, e);
             }
 
+            if (digestStream != null && (progress == null || progress.isActive())) {
+                String computed = HashUtils.hash(digestStream);
+                if (!computed.equalsIgnoreCase(checksum)) {
+                    delete(database);
+                    throw new GeoPackageException(
+                            "GeoPackage checksum mismatch. Database: " + database
+                                    + ", Expected: " + checksum + ", Computed: "
+                                    + computed);
+                }
+            }
+
         } finally {
             GeoPackageIOUtils.closeQuietly(geoPackageStream);
         }
 
         if (progress == null || progress.isActive()) {
 
-            // Verify that the database is valid
+            // Validate the integrity and required tables on a single connection
             try {
-                SQLiteDatabase sqlite = context.openOrCreateDatabase(database,
-                        Context.MODE_PRIVATE, null, new DatabaseErrorHandler() {
+                SQLiteDatabase sqlite = SQLiteDatabase.openDatabase(
+                        newDbFile.getPath(), null, SQLiteDatabase.OPEN_READONLY
+                                | SQLiteDatabase.NO_LOCALIZED_COLLATORS,
+                        new DatabaseErrorHandler() {
                             @Override
                             public void onCorruption(SQLiteDatabase dbObj) {
                             }
                         });
-                validateDatabaseAndClose(sqlite, importHeaderValidation, importIntegrityValidation);
-
-                GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                        context);
-                metadataDb.open();
                 try {
-                    GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-                    // Save in metadata
-                    GeoPackageMetadata metadata = new GeoPackageMetadata();
-                    metadata.setName(database);
-                    dataSource.create(metadata);
+                    if (importIntegrityValidation) {
+                        if (importQuickCheck) {
+                            validateDatabaseQuickCheck(sqlite);
+                        } else {
+                            validateDatabaseIntegrity(sqlite);
+                        }
+                    }
+                    validateRequiredTables(sqlite);
                 } finally {
-                    metadataDb.close();
+                    sqlite.close();
                 }
+            } catch (GeoPackageException e) {
+                delete(database);
+                throw e;
             } catch (Exception e) {
                 delete(database);
                 throw new GeoPackageException(
                         "Invalid GeoPackage database file", e);
             }
 
-            GeoPackage geoPackage = open(database, false);
-            if (geoPackage != null) {
-                try {
-                    if (!geoPackage.getSpatialReferenceSystemDao()
-                            .isTableExists()
-                            || !geoPackage.getContentsDao().isTableExists()) {
-                        delete(database);
-                        throw new GeoPackageException(
-                                "Invalid GeoPackage database file. Does not contain required tables: "
-                                        + SpatialReferenceSystem.TABLE_NAME
-                                        + " & " + Contents.TABLE_NAME
-                                        + ", Database: " + database);
-                    }
-                } catch (SQLException e) {
-                    delete(database);
-                    throw new GeoPackageException(
-                            "Invalid GeoPackage database file. Could not verify existence of required tables: "
-                                    + SpatialReferenceSystem.TABLE_NAME
-                                    + " & "
-                                    + Contents.TABLE_NAME
-                                    + ", Database: "
-                                    + database);
-                } finally {
-                    geoPackage.close();
-                }
-            } else {
-                delete(database);
-                throw new GeoPackageException(
-                        "Unable to open GeoPackage database. Database: "
-                                + database);
-            }
+            // Save in metadata
+            GeoPackageMetadata metadata = new GeoPackageMetadata();
+            metadata.setName(database);
+            catalog.create(metadata);
+
+        } else if (progress.cleanupOnCancel()) {
+            delete(database);
         }
 
         return exists(database);
     }
 
+    /**
+     * Read the SQLite header bytes from the start of the stream
+     *
+     * @param stream input stream
+     * @return header bytes, fewer than the header length if the stream ended
+     * @throws IOException upon read error
+     */
+    private static byte[] readHeader(InputStream stream) throws IOException {
+        byte[] header = new byte[SQLITE_HEADER_LENGTH];
+        int length = 0;
+        while (length < header.length) {
+            int read = stream.read(header, length, header.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        if (length < header.length) {
+            byte[] partial = new byte[length];
+            System.arraycopy(header, 0, partial, 0, length);
+            header = partial;
+        }
+        return header;
+    }
+
     /**
      * Get all external GeoPackage metadata
      *
      * @return
      */
     private List<GeoPackageMetadata> getExternalGeoPackages() {
-        List<GeoPackageMetadata> metadata = null;
-
-        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                context);
-        metadataDb.open();
-        try {
-            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-            metadata = dataSource.getAllExternal();
-        } finally {
-            metadataDb.close();
-        }
-
-        return metadata;
+        return catalog.getAllExternal();
     }
 
     /**
@@ -1488,19 +1692,7 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      * @return
      */
     private GeoPackageMetadata getGeoPackageMetadata(String database) {
-        GeoPackageMetadata metadata = null;
-
-        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                context);
-        metadataDb.open();
-        try {
-            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-            metadata = dataSource.get(database);
-        } finally {
-            metadataDb.close();
-        }
-
-        return metadata;
+        return catalog.get(database);
     }
 
     /**
@@ -1510,19 +1702,62 @@ class GeoPackageManagerImpl implements GeoPackageManager {
      * @return metadata or null
      */
     private GeoPackageMetadata getGeoPackageMetadataAtExternalPath(String path) {
-        GeoPackageMetadata metadata = null;
+        return catalog.getExternalAtPath(path);
+    }
 
-        GeoPackageMetadataDb metadataDb = new GeoPackageMetadataDb(
-                context);
-        metadataDb.open();
+    /**
+     * Back up the GeoPackage into a new compacted database file with VACUUM
+     * INTO on the SQLite bindings connection, which runs as a single read
+     * transaction
+     *
+     * @param geoPackage GeoPackage
+     * @param file       backup file
+     */
+    private void vacuumInto(GeoPackage geoPackage, File file) {
         try {
-            GeoPackageMetadataDataSource dataSource = new GeoPackageMetadataDataSource(metadataDb);
-            metadata = dataSource.getExternalAtPath(path);
-        } finally {
-            metadataDb.close();
+            geoPackage.getConnection().getDb().getBindingsDb().execSQL(
+                    "VACUUM INTO ?", new Object[]{file.getAbsolutePath()});
+        } catch (Exception e) {
+            throw new GeoPackageException("Failed to back up GeoPackage '"
+                    + geoPackage.getName() + "' to file: " + file, e);
         }
+    }
 
-        return metadata;
+    /**
+     * Export the filtered tables and tile zoom levels by copying only their
+     * rows into the new file with an online extract, each table copied in its
+     * own statement so concurrent writers are not blocked
+     *
+     * @param database database name
+     * @param file     export file
+     * @param filter   export filter
+     * @param progress progress tracker
+     * @return true if exported, false if cancelled
+     */
+    private boolean extractGeoPackage(String database, File file,
+                                      GeoPackageExportFilter filter, GeoPackageProgress progress) {
+
+        // Attaching the export requires a writable connection
+        GeoPackage geoPackage = open(database, true);
+        if (geoPackage == null) {
+            throw new GeoPackageException(
+                    "Failed to open GeoPackage database: " + database);
+        }
+        try {
+            GeoPackageExtractor extractor = new GeoPackageExtractor(geoPackage);
+            extractor.setTables(filter.getTables());
+            for (String table : geoPackage.getTileTables()) {
+                if (filter.isExported(table)) {
+                    extractor.setZoomRange(table, filter.getMinZoom(table),
+                            filter.getMaxZoom(table));
+                }
+            }
+            extractor.setOnline(true);
+            extractor.setProgress(progress);
+            return extractor.extract(file);
+        } finally {
+            geoPackage.close();
+        }
     }
 
     /**
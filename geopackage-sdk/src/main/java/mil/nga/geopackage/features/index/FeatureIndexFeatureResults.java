@@ -28,6 +28,16 @@ public class FeatureIndexFeatureResults implements FeatureIndexResults {
         this.cursor = cursor;
     }
 
+    /**
+     * Get the result cursor
+     *
+     * @return cursor
+     * @since 3.5.1
+     */
+    public FeatureCursor getCursor() {
+        return cursor;
+    }
+
     /**
      * {@inheritDoc}
      */
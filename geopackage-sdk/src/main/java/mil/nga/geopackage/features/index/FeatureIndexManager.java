@@ -3,6 +3,8 @@ package mil.nga.geopackage.features.index;
 import android.content.Context;
 import android.util.Log;
 
+import androidx.collection.LongSparseArray;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -16,9 +18,11 @@ import java.util.Set;
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.CoreSQLUtils;
 import mil.nga.geopackage.db.FeatureIndexer;
 import mil.nga.geopackage.extension.RTreeIndexExtension;
 import mil.nga.geopackage.extension.RTreeIndexTableDao;
+import mil.nga.geopackage.extension.index.FeatureChangeTracker;
 import mil.nga.geopackage.extension.index.FeatureTableIndex;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
@@ -30,7 +34,8 @@ import mil.nga.sf.proj.Projection;
 
 /**
  * Feature Index Manager to manage indexing of feature geometries in both Android metadata and
- * within a GeoPackage using the Geometry Index Extension
+ * within a GeoPackage using the Geometry Index Extension. Envelope queries are planned by a
+ * {@link FeatureIndexPlanner} from cached index statistics.
  *
  * @author osbornb
  * @see mil.nga.geopackage.db.FeatureIndexer
@@ -64,6 +69,11 @@ public class FeatureIndexManager {
      */
     private final ManualFeatureQuery manualFeatureQuery;
 
+    /**
+     * Feature Change Tracker
+     */
+    private final FeatureChangeTracker featureChangeTracker;
+
     /**
      * Ordered set of index locations to check in order when checking if features are indexed
      * and when querying for features
@@ -81,6 +91,22 @@ public class FeatureIndexManager {
      */
     private boolean continueOnError = true;
 
+    /**
+     * Planner choosing how envelope queries are executed
+     */
+    private final FeatureIndexPlanner planner;
+
+    /**
+     * Query planning flag, when disabled envelope queries use index
+     * subqueries as planned by the index location query order alone
+     */
+    private boolean queryPlanning = true;
+
+    /**
+     * Plan of the last envelope query or count
+     */
+    private FeatureIndexPlan lastPlan;
+
     /**
      * Constructor
      *
@@ -107,11 +133,14 @@ public class FeatureIndexManager {
         RTreeIndexExtension rTreeExtension = new RTreeIndexExtension(geoPackage);
         rTreeIndexTableDao = rTreeExtension.getTableDao(featureDao.copy());
         manualFeatureQuery = new ManualFeatureQuery(featureDao.copy());
+        featureChangeTracker = new FeatureChangeTracker(geoPackage, featureDao);
 
         // Set the default indexed check and query order
         indexLocationQueryOrder.add(FeatureIndexType.RTREE);
         indexLocationQueryOrder.add(FeatureIndexType.GEOPACKAGE);
         indexLocationQueryOrder.add(FeatureIndexType.METADATA);
+
+        planner = new FeatureIndexPlanner(this);
     }
 
     /**
@@ -161,6 +190,16 @@ public class FeatureIndexManager {
         return rTreeIndexTableDao;
     }
 
+    /**
+     * Get the Feature Change Tracker
+     *
+     * @return feature change tracker
+     * @since 3.5.1
+     */
+    public FeatureChangeTracker getFeatureChangeTracker() {
+        return featureChangeTracker;
+    }
+
     /**
      * Get the ordered set of ordered index query locations
      *
@@ -200,6 +239,76 @@ public class FeatureIndexManager {
         this.continueOnError = continueOnError;
     }
 
+    /**
+     * Get the planner choosing how envelope queries are executed
+     *
+     * @return feature index planner
+     * @since 3.5.1
+     */
+    public FeatureIndexPlanner getPlanner() {
+        return planner;
+    }
+
+    /**
+     * Is query planning enabled
+     *
+     * @return true if planning envelope queries
+     * @since 3.5.1
+     */
+    public boolean isQueryPlanning() {
+        return queryPlanning;
+    }
+
+    /**
+     * Set the query planning flag. When enabled (default is true) envelope
+     * queries and counts choose between index subqueries, RTree joins, direct
+     * full scans, and index only counts from estimated result sizes.
+     *
+     * @param queryPlanning true to plan envelope queries
+     * @since 3.5.1
+     */
+    public void setQueryPlanning(boolean queryPlanning) {
+        this.queryPlanning = queryPlanning;
+    }
+
+    /**
+     * Get the plan of the last envelope query or count, for diagnostics
+     *
+     * @return last plan or null
+     * @since 3.5.1
+     */
+    public FeatureIndexPlan getLastPlan() {
+        return lastPlan;
+    }
+
+    /**
+     * Get the plan an envelope query would use on the first indexed type,
+     * without executing the query
+     *
+     * @param envelope geometry envelope
+     * @param where    where clause
+     * @return plan
+     * @since 3.5.1
+     */
+    public FeatureIndexPlan getQueryPlan(GeometryEnvelope envelope,
+                                         String where) {
+        return plan(getIndexedType(), envelope, where, false);
+    }
+
+    /**
+     * Get the plan an envelope count would use on the first indexed type,
+     * without executing the count
+     *
+     * @param envelope geometry envelope
+     * @param where    where clause
+     * @return plan
+     * @since 3.5.1
+     */
+    public FeatureIndexPlan getCountPlan(GeometryEnvelope envelope,
+                                         String where) {
+        return plan(getIndexedType(), envelope, where, true);
+    }
+
     /**
      * Prioritize the query location order.  All types are placed at the front of the query order
      * in the order they are given. Omitting a location leaves it at it's current priority location.
@@ -374,6 +483,7 @@ public class FeatureIndexManager {
                 throw new GeoPackageException("Unsupported FeatureIndexType: "
                         + type);
         }
+        planner.clear(type);
         return count;
     }
 
@@ -430,12 +540,98 @@ public class FeatureIndexManager {
                 indexed = featureIndexer.index(row);
                 break;
             case RTREE:
-                // Updated by triggers, ignore for RTree
+                if (rTreeIndexTableDao.hasTriggers()) {
+                    // Updated by triggers
+                    indexed = true;
+                } else {
+                    LongSparseArray<GeometryEnvelope> envelopes = new LongSparseArray<>(1);
+                    envelopes.put(row.getId(), row.getGeometryEnvelope());
+                    indexed = rTreeIndexTableDao.index(envelopes) > 0;
+                }
+                break;
+            default:
+                throw new GeoPackageException("Unsupported FeatureIndexType: " + type);
+        }
+        return indexed;
+    }
+
+    /**
+     * Sync the feature changes recorded by the Feature Change Tracker into
+     * every index type with an existing index, indexing only the changed
+     * feature ids
+     *
+     * @return number of changed feature ids synced, 0 when changes are not
+     * tracked
+     * @since 3.5.1
+     */
+    public long sync() {
+        long synced = 0;
+        if (featureChangeTracker.has()) {
+            synced = featureChangeTracker.sync(this);
+        }
+        return synced;
+    }
+
+    /**
+     * Index the geometry envelopes by feature id for the index types in bulk,
+     * each type in a single transaction, deleting the index of ids with null
+     * envelopes. RTree indexes are updated directly only when the RTree
+     * triggers do not exist. This method assumes that indexing has been
+     * completed and maintained as the last indexed time is updated.
+     *
+     * @param envelopes geometry envelopes by feature id
+     * @param types     feature index types
+     * @return true if indexed from any type
+     * @since 3.5.1
+     */
+    public boolean index(LongSparseArray<GeometryEnvelope> envelopes,
+                         List<FeatureIndexType> types) {
+        boolean indexed = false;
+        for (FeatureIndexType type : types) {
+            if (index(type, envelopes)) {
                 indexed = true;
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Index the geometry envelopes by feature id in bulk in a single
+     * transaction, deleting the index of ids with null envelopes. RTree
+     * indexes are updated directly only when the RTree triggers do not exist.
+     * This method assumes that indexing has been completed and maintained as
+     * the last indexed time is updated.
+     *
+     * @param type      index location type
+     * @param envelopes geometry envelopes by feature id
+     * @return true if indexed
+     * @since 3.5.1
+     */
+    public boolean index(FeatureIndexType type,
+                         LongSparseArray<GeometryEnvelope> envelopes) {
+        boolean indexed = false;
+        if (type == null) {
+            throw new GeoPackageException("FeatureIndexType is required to index");
+        }
+        switch (type) {
+            case GEOPACKAGE:
+                indexed = featureTableIndex.index(envelopes) > 0;
+                break;
+            case METADATA:
+                indexed = featureIndexer.index(envelopes) > 0;
+                break;
+            case RTREE:
+                if (rTreeIndexTableDao.hasTriggers()) {
+                    // Updated by triggers
+                    indexed = true;
+                } else {
+                    indexed = rTreeIndexTableDao.index(envelopes) > 0;
+                }
                 break;
             default:
                 throw new GeoPackageException("Unsupported FeatureIndexType: " + type);
         }
+        planner.clear(type);
         return indexed;
     }
 
@@ -500,6 +696,7 @@ public class FeatureIndexManager {
             default:
                 throw new GeoPackageException("Unsupported FeatureIndexType: " + type);
         }
+        planner.clear(type);
         return deleted;
     }
 
@@ -1284,6 +1481,12 @@ public class FeatureIndexManager {
         Long count = null;
         for (FeatureIndexType type : getLocation()) {
             try {
+                FeatureIndexPlan plan = plan(type, envelope, null, true);
+                lastPlan = plan;
+                if (plan.getType() == FeatureIndexPlanType.FULL_SCAN) {
+                    count = plan.getIndexCount();
+                    break;
+                }
                 switch (type) {
                     case GEOPACKAGE:
                         count = featureTableIndex.count(envelope);
@@ -1307,6 +1510,7 @@ public class FeatureIndexManager {
             }
         }
         if (count == null) {
+            lastPlan = plan(FeatureIndexType.NONE, envelope, null, true);
             count = manualFeatureQuery.count(envelope);
         }
         return count;
@@ -1425,6 +1629,19 @@ public class FeatureIndexManager {
         FeatureIndexResults results = null;
         for (FeatureIndexType type : getLocation()) {
             try {
+                FeatureIndexPlan plan = plan(type, envelope, where, false);
+                lastPlan = plan;
+                if (plan.getType() == FeatureIndexPlanType.FULL_SCAN) {
+                    results = new FeatureIndexFeatureResults(
+                            featureDao.query(columns, fullScanWhere(where),
+                                    whereArgs));
+                    break;
+                } else if (plan.getType() == FeatureIndexPlanType.JOIN) {
+                    results = new FeatureIndexFeatureResults(
+                            rTreeIndexTableDao.queryFeaturesJoin(columns,
+                                    envelope, where, whereArgs));
+                    break;
+                }
                 switch (type) {
                     case GEOPACKAGE:
                         FeatureCursor geoPackageCursor = featureTableIndex
@@ -1455,6 +1672,7 @@ public class FeatureIndexManager {
             }
         }
         if (results == null) {
+            lastPlan = plan(FeatureIndexType.NONE, envelope, where, false);
             results = manualFeatureQuery.query(columns, envelope, where, whereArgs);
         }
         return results;
@@ -1474,6 +1692,21 @@ public class FeatureIndexManager {
         Long count = null;
         for (FeatureIndexType type : getLocation()) {
             try {
+                FeatureIndexPlan plan = plan(type, envelope, where, true);
+                lastPlan = plan;
+                if (plan.getType() == FeatureIndexPlanType.FULL_SCAN) {
+                    if (where == null || where.isEmpty()) {
+                        count = plan.getIndexCount();
+                    } else {
+                        count = (long) featureDao.count(fullScanWhere(where),
+                                whereArgs);
+                    }
+                    break;
+                } else if (plan.getType() == FeatureIndexPlanType.JOIN) {
+                    count = (long) rTreeIndexTableDao.countFeaturesJoin(
+                            envelope, where, whereArgs);
+                    break;
+                }
                 switch (type) {
                     case GEOPACKAGE:
                         count = (long) featureTableIndex.countFeatures(envelope,
@@ -1501,6 +1734,7 @@ public class FeatureIndexManager {
             }
         }
         if (count == null) {
+            lastPlan = plan(FeatureIndexType.NONE, envelope, where, true);
             count = manualFeatureQuery.count(envelope, where, whereArgs);
         }
         return count;
@@ -1735,6 +1969,45 @@ public class FeatureIndexManager {
         return indexType;
     }
 
+    /**
+     * Plan an envelope query or count on the feature index type
+     *
+     * @param type     feature index type
+     * @param envelope geometry envelope
+     * @param where    where clause
+     * @param count    true if counting
+     * @return plan
+     */
+    private FeatureIndexPlan plan(FeatureIndexType type,
+                                  GeometryEnvelope envelope, String where, boolean count) {
+        FeatureIndexPlan plan;
+        boolean hasWhere = where != null && !where.isEmpty();
+        if (queryPlanning || type == null || type == FeatureIndexType.NONE) {
+            plan = planner.plan(type, envelope, hasWhere, count);
+        } else {
+            plan = new FeatureIndexPlan(count && !hasWhere
+                    ? FeatureIndexPlanType.ID_ONLY
+                    : FeatureIndexPlanType.SUBQUERY, type, -1, -1, -1);
+        }
+        return plan;
+    }
+
+    /**
+     * Build the where clause of a full scan plan, limited to the features
+     * with geometries as indexes only contain features with geometries
+     *
+     * @param where where clause
+     * @return full scan where clause
+     */
+    private String fullScanWhere(String where) {
+        String fullScanWhere = CoreSQLUtils.quoteWrap(featureDao
+                .getGeometryColumnName()) + " IS NOT NULL";
+        if (where != null && !where.isEmpty()) {
+            fullScanWhere += " AND (" + where + ")";
+        }
+        return fullScanWhere;
+    }
+
     /**
      * Verify the index location is set
      *
@@ -0,0 +1,110 @@
+package mil.nga.geopackage.features.index;
+
+/**
+ * Feature Index plan chosen for an envelope query, with the statistics
+ * estimates the choice was based on
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class FeatureIndexPlan {
+
+    /**
+     * Plan type
+     */
+    private final FeatureIndexPlanType type;
+
+    /**
+     * Feature index type, NONE for manual plans
+     */
+    private final FeatureIndexType indexType;
+
+    /**
+     * Estimated fraction of indexed features within the envelope
+     */
+    private final double selectivity;
+
+    /**
+     * Estimated number of indexed features within the envelope
+     */
+    private final long estimatedCount;
+
+    /**
+     * Number of index entries
+     */
+    private final long indexCount;
+
+    /**
+     * Constructor
+     *
+     * @param type           plan type
+     * @param indexType      feature index type
+     * @param selectivity    estimated selectivity
+     * @param estimatedCount estimated count
+     * @param indexCount     index entries
+     */
+    public FeatureIndexPlan(FeatureIndexPlanType type,
+                            FeatureIndexType indexType, double selectivity,
+                            long estimatedCount, long indexCount) {
+        this.type = type;
+        this.indexType = indexType;
+        this.selectivity = selectivity;
+        this.estimatedCount = estimatedCount;
+        this.indexCount = indexCount;
+    }
+
+    /**
+     * Get the plan type
+     *
+     * @return plan type
+     */
+    public FeatureIndexPlanType getType() {
+        return type;
+    }
+
+    /**
+     * Get the feature index type
+     *
+     * @return feature index type
+     */
+    public FeatureIndexType getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * Get the estimated fraction of indexed features within the envelope
+     *
+     * @return selectivity, 0.0 to 1.0
+     */
+    public double getSelectivity() {
+        return selectivity;
+    }
+
+    /**
+     * Get the estimated number of indexed features within the envelope
+     *
+     * @return estimated count
+     */
+    public long getEstimatedCount() {
+        return estimatedCount;
+    }
+
+    /**
+     * Get the number of index entries
+     *
+     * @return index count
+     */
+    public long getIndexCount() {
+        return indexCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return type + " (" + indexType + "), selectivity: " + selectivity
+                + ", estimated: " + estimatedCount + " of " + indexCount;
+    }
+
+}
@@ -0,0 +1,40 @@
+package mil.nga.geopackage.features.index;
+
+/**
+ * Feature Index plan type enumeration of how an envelope query is executed
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public enum FeatureIndexPlanType {
+
+    /**
+     * Feature table query restricted to the ids of an index subquery within
+     * the envelope
+     */
+    SUBQUERY,
+
+    /**
+     * RTree index driven join of the envelope entries to feature rows by id
+     */
+    JOIN,
+
+    /**
+     * Direct feature table scan without an envelope filter, when every
+     * feature is indexed and within the envelope
+     */
+    FULL_SCAN,
+
+    /**
+     * Count of the index entries within the envelope, without reading
+     * feature rows
+     */
+    ID_ONLY,
+
+    /**
+     * Manual feature table scan filtering each geometry envelope, when no
+     * index exists
+     */
+    MANUAL;
+
+}
@@ -0,0 +1,559 @@
+package mil.nga.geopackage.features.index;
+
+import android.database.Cursor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.db.GeoPackageDatabase;
+import mil.nga.geopackage.extension.RTreeIndexExtension;
+import mil.nga.geopackage.extension.index.GeometryIndex;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.sf.GeometryEnvelope;
+
+/**
+ * Feature Index planner choosing how envelope queries of a Feature Index
+ * Manager are executed. Result sizes are estimated from cached per index
+ * statistics: the index entry count, the index extent, and a grid histogram
+ * of entry centers. Statistics are cleared by the index writes of the
+ * manager and otherwise rebuilt at most once per max statistics age, so
+ * writes to the feature table or other tables do not rebuild them. Stale
+ * statistics only change the cost of a query and never its results, as full
+ * scan plans are verified against the current feature count, index count,
+ * and index extent.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class FeatureIndexPlanner {
+
+    /**
+     * Default histogram grid cells per dimension
+     */
+    public static final int DEFAULT_HISTOGRAM_SIZE = 16;
+
+    /**
+     * Default estimated selectivity at and above which RTree queries join
+     * instead of selecting ids through a subquery
+     */
+    public static final double DEFAULT_JOIN_SELECTIVITY = 0.25;
+
+    /**
+     * Default max age in milliseconds of statistics before rebuilt, picking
+     * up index changes not made through the manager
+     */
+    public static final long DEFAULT_MAX_STATISTICS_AGE = 60000;
+
+    /**
+     * Cached index statistics
+     */
+    private static class Statistics {
+
+        /**
+         * Number of index entries
+         */
+        long count;
+
+        /**
+         * Index extent, null when empty
+         */
+        BoundingBox extent;
+
+        /**
+         * Entry center counts by row major grid cell, null when not available
+         */
+        long[] histogram;
+
+        /**
+         * Histogram cells per dimension
+         */
+        int size;
+
+        /**
+         * Time built in milliseconds
+         */
+        long built;
+
+    }
+
+    /**
+     * Feature Index Manager
+     */
+    private final FeatureIndexManager manager;
+
+    /**
+     * Cached statistics by feature index type
+     */
+    private final Map<FeatureIndexType, Statistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Histogram grid cells per dimension
+     */
+    private int histogramSize = DEFAULT_HISTOGRAM_SIZE;
+
+    /**
+     * Estimated selectivity at and above which RTree queries join
+     */
+    private double joinSelectivity = DEFAULT_JOIN_SELECTIVITY;
+
+    /**
+     * Max age in milliseconds of statistics before rebuilt
+     */
+    private long maxStatisticsAge = DEFAULT_MAX_STATISTICS_AGE;
+
+    /**
+     * Number of statistics builds
+     */
+    private final AtomicInteger builds = new AtomicInteger();
+
+    /**
+     * Constructor
+     *
+     * @param manager feature index manager
+     */
+    public FeatureIndexPlanner(FeatureIndexManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Get the histogram grid cells per dimension
+     *
+     * @return histogram size
+     */
+    public int getHistogramSize() {
+        return histogramSize;
+    }
+
+    /**
+     * Set the histogram grid cells per dimension, clearing cached statistics
+     *
+     * @param histogramSize histogram size
+     */
+    public void setHistogramSize(int histogramSize) {
+        this.histogramSize = Math.max(histogramSize, 1);
+        clear();
+    }
+
+    /**
+     * Get the estimated selectivity at and above which RTree queries join
+     *
+     * @return join selectivity
+     */
+    public double getJoinSelectivity() {
+        return joinSelectivity;
+    }
+
+    /**
+     * Set the estimated selectivity at and above which RTree queries join
+     * instead of selecting ids through a subquery
+     *
+     * @param joinSelectivity join selectivity, 0.0 to 1.0 or above 1.0 to
+     *                        never join
+     */
+    public void setJoinSelectivity(double joinSelectivity) {
+        this.joinSelectivity = joinSelectivity;
+    }
+
+    /**
+     * Get the max age in milliseconds of statistics before rebuilt
+     *
+     * @return max statistics age
+     */
+    public long getMaxStatisticsAge() {
+        return maxStatisticsAge;
+    }
+
+    /**
+     * Set the max age in milliseconds of statistics before rebuilt, capping
+     * the rebuild frequency of indexes changed outside of the manager such
+     * as by RTree triggers or other connections
+     *
+     * @param maxStatisticsAge max statistics age
+     */
+    public void setMaxStatisticsAge(long maxStatisticsAge) {
+        this.maxStatisticsAge = maxStatisticsAge;
+    }
+
+    /**
+     * Get the number of statistics builds, each querying the index count,
+     * extent, and histogram
+     *
+     * @return statistics builds
+     */
+    public int getBuildCount() {
+        return builds.get();
+    }
+
+    /**
+     * Clear all cached statistics
+     */
+    public void clear() {
+        statistics.clear();
+    }
+
+    /**
+     * Clear the cached statistics of the feature index type
+     *
+     * @param type feature index type
+     */
+    public void clear(FeatureIndexType type) {
+        statistics.remove(type);
+    }
+
+    /**
+     * Plan an envelope query or count on the feature index type
+     *
+     * @param type     feature index type, NONE or null when not indexed
+     * @param envelope geometry envelope
+     * @param where    true if the query has a where clause
+     * @param count    true if counting instead of querying rows
+     * @return plan
+     */
+    public FeatureIndexPlan plan(FeatureIndexType type,
+                                 GeometryEnvelope envelope, boolean where, boolean count) {
+
+        if (type == null || type == FeatureIndexType.NONE) {
+            return new FeatureIndexPlan(FeatureIndexPlanType.MANUAL,
+                    FeatureIndexType.NONE, 1.0, -1, -1);
+        }
+
+        Statistics stats = getStatistics(type);
+        double selectivity = selectivity(stats, envelope);
+        long estimated = Math.round(selectivity * stats.count);
+
+        FeatureIndexPlan plan = null;
+        if (stats.extent != null && contains(envelope, stats.extent)) {
+            plan = planFullScan(type, envelope, stats);
+        }
+
+        if (plan == null) {
+            FeatureIndexPlanType planType;
+            if (count && !where) {
+                planType = FeatureIndexPlanType.ID_ONLY;
+            } else if (type == FeatureIndexType.RTREE
+                    && selectivity >= joinSelectivity) {
+                planType = FeatureIndexPlanType.JOIN;
+            } else {
+                planType = FeatureIndexPlanType.SUBQUERY;
+            }
+            plan = new FeatureIndexPlan(planType, type, selectivity, estimated,
+                    stats.count);
+        }
+
+        return plan;
+    }
+
+    /**
+     * Plan a full scan when the cached extent is within the envelope and the
+     * current counts and extent verify every feature with a geometry is
+     * indexed and within the envelope. Statistics found stale are cleared.
+     *
+     * @param type     feature index type
+     * @param envelope geometry envelope
+     * @param stats    statistics
+     * @return full scan plan or null
+     */
+    private FeatureIndexPlan planFullScan(FeatureIndexType type,
+                                          GeometryEnvelope envelope, Statistics stats) {
+        long indexCount = indexCount(type);
+        BoundingBox extent = indexExtent(type);
+        FeatureIndexPlan plan = null;
+        if (indexCount > 0 && contains(envelope, extent)
+                && indexCount == featureCount()) {
+            plan = new FeatureIndexPlan(FeatureIndexPlanType.FULL_SCAN, type,
+                    1.0, indexCount, indexCount);
+        }
+        if (indexCount != stats.count || (extent == null
+                ? stats.extent != null : !extent.equals(stats.extent))) {
+            clear(type);
+        }
+        return plan;
+    }
+
+    /**
+     * Get the cached statistics of the feature index type, building when
+     * cleared or older than the max statistics age
+     *
+     * @param type feature index type
+     * @return statistics
+     */
+    private Statistics getStatistics(FeatureIndexType type) {
+        long now = System.currentTimeMillis();
+        Statistics stats = statistics.get(type);
+        if (stats == null || now - stats.built > maxStatisticsAge) {
+            builds.incrementAndGet();
+            stats = new Statistics();
+            stats.built = now;
+            stats.count = indexCount(type);
+            if (stats.count > 0) {
+                stats.extent = indexExtent(type);
+                if (stats.extent != null) {
+                    stats.size = histogramSize;
+                    stats.histogram = histogram(type, stats.extent,
+                            stats.size);
+                }
+            }
+            statistics.put(type, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Count the features with geometries
+     *
+     * @return count
+     */
+    private long featureCount() {
+        FeatureDao featureDao = manager.getFeatureDao();
+        return featureDao.count(CoreSQLUtils.quoteWrap(featureDao
+                .getGeometryColumnName()) + " IS NOT NULL");
+    }
+
+    /**
+     * Count the index entries
+     *
+     * @param type feature index type
+     * @return count
+     */
+    private long indexCount(FeatureIndexType type) {
+        long count;
+        switch (type) {
+            case GEOPACKAGE:
+                count = manager.getFeatureTableIndex().count();
+                break;
+            case METADATA:
+                count = manager.getFeatureIndexer().count();
+                break;
+            case RTREE:
+                count = manager.getRTreeIndexTableDao().count();
+                break;
+            default:
+                count = 0;
+        }
+        return count;
+    }
+
+    /**
+     * Get the index extent
+     *
+     * @param type feature index type
+     * @return extent
+     */
+    private BoundingBox indexExtent(FeatureIndexType type) {
+        BoundingBox extent;
+        switch (type) {
+            case GEOPACKAGE:
+                extent = manager.getFeatureTableIndex().getBoundingBox();
+                break;
+            case METADATA:
+                extent = manager.getFeatureIndexer().getBoundingBox();
+                break;
+            case RTREE:
+                extent = manager.getRTreeIndexTableDao().getBoundingBox();
+                break;
+            default:
+                extent = null;
+        }
+        return extent;
+    }
+
+    /**
+     * Build the grid histogram of index entry centers with a single grouped
+     * query over the index table
+     *
+     * @param type   feature index type
+     * @param extent index extent
+     * @param size   cells per dimension
+     * @return histogram, null when the index type has no index table in the
+     * GeoPackage
+     */
+    private long[] histogram(FeatureIndexType type, BoundingBox extent,
+                             int size) {
+
+        String table;
+        String minX;
+        String maxX;
+        String minY;
+        String maxY;
+        String where = null;
+        String[] whereArgs = null;
+        GeoPackageDatabase db;
+        switch (type) {
+            case GEOPACKAGE:
+                table = GeometryIndex.TABLE_NAME;
+                minX = GeometryIndex.COLUMN_MIN_X;
+                maxX = GeometryIndex.COLUMN_MAX_X;
+                minY = GeometryIndex.COLUMN_MIN_Y;
+                maxY = GeometryIndex.COLUMN_MAX_Y;
+                where = CoreSQLUtils.quoteWrap(GeometryIndex.COLUMN_TABLE_NAME)
+                        + " = ?";
+                whereArgs = new String[]{manager.getFeatureDao().getTableName()};
+                db = manager.getFeatureDao().getDatabaseConnection();
+                break;
+            case RTREE:
+                table = manager.getRTreeIndexTableDao().getTableName();
+                minX = RTreeIndexExtension.COLUMN_MIN_X;
+                maxX = RTreeIndexExtension.COLUMN_MAX_X;
+                minY = RTreeIndexExtension.COLUMN_MIN_Y;
+                maxY = RTreeIndexExtension.COLUMN_MAX_Y;
+                db = manager.getRTreeIndexTableDao().getDatabaseConnection();
+                break;
+            default:
+                return null;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        sql.append(cell(minX, maxX, extent.getMinLongitude(),
+                extent.getMaxLongitude(), size));
+        sql.append(", ");
+        sql.append(cell(minY, maxY, extent.getMinLatitude(),
+                extent.getMaxLatitude(), size));
+        sql.append(", COUNT(*) FROM ").append(CoreSQLUtils.quoteWrap(table));
+        if (where != null) {
+            sql.append(" WHERE ").append(where);
+        }
+        sql.append(" GROUP BY 1, 2");
+
+        long[] histogram = new long[size * size];
+        Cursor cursor = db.rawQuery(sql.toString(), whereArgs);
+        try {
+            while (cursor.moveToNext()) {
+                int x = clamp(cursor.getInt(0), size);
+                int y = clamp(cursor.getInt(1), size);
+                histogram[y * size + x] += cursor.getLong(2);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Build the SQL expression of the histogram cell of entry centers in one
+     * dimension
+     *
+     * @param minColumn min column
+     * @param maxColumn max column
+     * @param min       extent min
+     * @param max       extent max
+     * @param size      cells per dimension
+     * @return cell expression
+     */
+    private static String cell(String minColumn, String maxColumn, double min,
+                               double max, int size) {
+        String cell;
+        if (max > min) {
+            cell = "CAST(((" + CoreSQLUtils.quoteWrap(minColumn) + " + "
+                    + CoreSQLUtils.quoteWrap(maxColumn) + ") / 2.0 - " + min
+                    + ") / " + ((max - min) / size) + " AS INTEGER)";
+        } else {
+            cell = "0";
+        }
+        return cell;
+    }
+
+    /**
+     * Clamp the cell to the histogram
+     *
+     * @param cell cell
+     * @param size cells per dimension
+     * @return clamped cell
+     */
+    private static int clamp(int cell, int size) {
+        return Math.max(0, Math.min(size - 1, cell));
+    }
+
+    /**
+     * Estimate the fraction of index entries within the envelope
+     *
+     * @param stats    statistics
+     * @param envelope geometry envelope
+     * @return selectivity
+     */
+    private static double selectivity(Statistics stats,
+                                      GeometryEnvelope envelope) {
+
+        if (stats.count == 0 || stats.extent == null) {
+            return 0.0;
+        }
+
+        double minX = stats.extent.getMinLongitude();
+        double maxX = stats.extent.getMaxLongitude();
+        double minY = stats.extent.getMinLatitude();
+        double maxY = stats.extent.getMaxLatitude();
+
+        double selectivity;
+        if (stats.histogram == null) {
+            selectivity = overlap(minX, maxX, envelope.getMinX(),
+                    envelope.getMaxX())
+                    * overlap(minY, maxY, envelope.getMinY(),
+                    envelope.getMaxY());
+        } else {
+            int size = stats.size;
+            double width = (maxX - minX) / size;
+            double height = (maxY - minY) / size;
+            double estimate = 0;
+            for (int y = 0; y < size; y++) {
+                double yOverlap = overlap(minY + y * height,
+                        minY + (y + 1) * height, envelope.getMinY(),
+                        envelope.getMaxY());
+                if (yOverlap > 0) {
+                    for (int x = 0; x < size; x++) {
+                        long cellCount = stats.histogram[y * size + x];
+                        if (cellCount > 0) {
+                            estimate += cellCount * yOverlap
+                                    * overlap(minX + x * width,
+                                    minX + (x + 1) * width,
+                                    envelope.getMinX(), envelope.getMaxX());
+                        }
+                    }
+                }
+            }
+            selectivity = estimate / stats.count;
+        }
+
+        return Math.max(0.0, Math.min(1.0, selectivity));
+    }
+
+    /**
+     * Get the fraction of the range overlapped by the query range
+     *
+     * @param min      range min
+     * @param max      range max
+     * @param queryMin query min
+     * @param queryMax query max
+     * @return overlap fraction
+     */
+    private static double overlap(double min, double max, double queryMin,
+                                  double queryMax) {
+        double overlap;
+        if (max > min) {
+            overlap = Math.max(0.0, Math.min(max, queryMax)
+                    - Math.max(min, queryMin)) / (max - min);
+        } else {
+            overlap = queryMin <= min && min <= queryMax ? 1.0 : 0.0;
+        }
+        return overlap;
+    }
+
+    /**
+     * Determine if the envelope contains the extent
+     *
+     * @param envelope geometry envelope
+     * @param extent   extent
+     * @return true if contains
+     */
+    private static boolean contains(GeometryEnvelope envelope,
+                                    BoundingBox extent) {
+        return extent != null
+                && envelope.getMinX() <= extent.getMinLongitude()
+                && envelope.getMaxX() >= extent.getMaxLongitude()
+                && envelope.getMinY() <= extent.getMinLatitude()
+                && envelope.getMaxY() >= extent.getMaxLatitude();
+    }
+
+}
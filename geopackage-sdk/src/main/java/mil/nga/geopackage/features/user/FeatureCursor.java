@@ -71,6 +71,22 @@ public class FeatureCursor extends
         return (FeatureColumns) super.getColumns();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FeatureRowView getRowView() {
+        return (FeatureRowView) super.getRowView();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected FeatureRowView createRowView() {
+        return new FeatureRowView(this);
+    }
+
     /**
      * Get the geometry
      *
@@ -0,0 +1,119 @@
+package mil.nga.geopackage.features.user;
+
+import java.io.IOException;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.GeometryEnvelopeReader;
+import mil.nga.geopackage.user.UserRowView;
+import mil.nga.sf.GeometryEnvelope;
+
+/**
+ * Reusable view of the current row of a feature cursor. Provides the id,
+ * geometry, and typed column values without building a feature row.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class FeatureRowView extends
+        UserRowView<FeatureColumn, FeatureTable, FeatureRow> {
+
+    /**
+     * Constructor
+     *
+     * @param cursor feature cursor
+     */
+    protected FeatureRowView(FeatureCursor cursor) {
+        super(cursor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FeatureCursor getCursor() {
+        return (FeatureCursor) super.getCursor();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FeatureColumns getColumns() {
+        return (FeatureColumns) super.getColumns();
+    }
+
+    /**
+     * Get the geometry column cursor index
+     *
+     * @return geometry index
+     */
+    public int getGeometryIndex() {
+        return getColumns().getGeometryIndex();
+    }
+
+    /**
+     * Get the raw geometry blob bytes of the current row
+     *
+     * @return geometry bytes or null
+     */
+    public byte[] getGeometryBytes() {
+        byte[] bytes = null;
+        FeatureRow row = getRequeryRow();
+        if (row != null) {
+            GeoPackageGeometryData geometryData = row.getGeometry();
+            if (geometryData != null) {
+                try {
+                    bytes = geometryData.toBytes();
+                } catch (IOException e) {
+                    throw new GeoPackageException(
+                            "Failed to write Geometry Data bytes. Table: "
+                                    + getCursor().getTableName(), e);
+                }
+            }
+        } else {
+            int geometryIndex = getGeometryIndex();
+            if (geometryIndex >= 0) {
+                bytes = getBlob(geometryIndex);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the geometry data of the current row
+     *
+     * @return geometry data or null
+     */
+    public GeoPackageGeometryData getGeometry() {
+        GeoPackageGeometryData geometryData = null;
+        FeatureRow row = getRequeryRow();
+        if (row != null) {
+            geometryData = row.getGeometry();
+        } else {
+            byte[] bytes = getGeometryBytes();
+            if (bytes != null) {
+                geometryData = new GeoPackageGeometryData(bytes);
+            }
+        }
+        return geometryData;
+    }
+
+    /**
+     * Get the geometry envelope of the current row, read from the geometry
+     * header or streamed from the geometry bytes without building the geometry
+     *
+     * @return geometry envelope or null
+     */
+    public GeometryEnvelope getGeometryEnvelope() {
+        GeometryEnvelope envelope = null;
+        FeatureRow row = getRequeryRow();
+        if (row != null) {
+            envelope = row.getGeometryEnvelope();
+        } else {
+            envelope = GeometryEnvelopeReader.readEnvelope(getGeometryBytes());
+        }
+        return envelope;
+    }
+
+}
@@ -0,0 +1,412 @@
+package mil.nga.geopackage.features.user;
+
+import androidx.collection.LongSparseArray;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.sf.GeometryEnvelope;
+
+/**
+ * Feature Writer session batching feature row creates, updates, and deletes
+ * into transactions bounded by a row count and a duration. The geometry
+ * envelopes of changed rows are collected and applied to the feature indexes
+ * in bulk at each commit in place of indexing each row. The GeoPackage index
+ * is written within the batch transaction, while metadata and RTree indexes
+ * on other connections are written after the batch commits and remain
+ * pending for the next commit when they fail. RTree indexes without triggers
+ * are maintained directly. A failed write or GeoPackage index rolls back the
+ * current batch.
+ *
+ * The batch duration is checked on each write and flush. An idle writer
+ * holds the open batch transaction until the next write, {@link #flush()},
+ * {@link #commit()}, or {@link #close()}, so callers pausing between writes
+ * should flush or commit.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class FeatureWriter implements Closeable {
+
+    /**
+     * Default maximum number of row writes per transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Default maximum transaction duration in milliseconds
+     */
+    public static final long DEFAULT_BATCH_TIME = 1000;
+
+    /**
+     * Feature DAO
+     */
+    private final FeatureDao featureDao;
+
+    /**
+     * Feature index manager, null when not maintaining indexes
+     */
+    private final FeatureIndexManager indexManager;
+
+    /**
+     * Maintained index types
+     */
+    private final List<FeatureIndexType> indexTypes;
+
+    /**
+     * Geometry envelopes of the rows changed in the current batch by id, null
+     * for deleted rows and rows without geometries
+     */
+    private final LongSparseArray<GeometryEnvelope> envelopes = new LongSparseArray<>();
+
+    /**
+     * Geometry envelopes of committed rows by id awaiting the indexes written
+     * after commit
+     */
+    private final LongSparseArray<GeometryEnvelope> pendingEnvelopes = new LongSparseArray<>();
+
+    /**
+     * Maximum number of row writes per transaction
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Maximum transaction duration in milliseconds
+     */
+    private long batchTime = DEFAULT_BATCH_TIME;
+
+    /**
+     * Row writes in the current batch
+     */
+    private int batchCount = 0;
+
+    /**
+     * Current batch deadline in nanoseconds
+     */
+    private long batchDeadline;
+
+    /**
+     * In transaction flag
+     */
+    private boolean inTransaction = false;
+
+    /**
+     * Total row writes
+     */
+    private long count = 0;
+
+    /**
+     * Committed batches
+     */
+    private int commits = 0;
+
+    /**
+     * Closed flag
+     */
+    private boolean closed = false;
+
+    /**
+     * Constructor, without index maintenance
+     *
+     * @param featureDao feature DAO
+     */
+    public FeatureWriter(FeatureDao featureDao) {
+        this(featureDao, null);
+    }
+
+    /**
+     * Constructor, maintaining the currently indexed types of the feature
+     * index manager
+     *
+     * @param featureDao   feature DAO
+     * @param indexManager feature index manager
+     */
+    public FeatureWriter(FeatureDao featureDao,
+                         FeatureIndexManager indexManager) {
+        this(featureDao, indexManager, indexManager != null ? indexManager
+                .getIndexedTypes() : new ArrayList<FeatureIndexType>());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param featureDao   feature DAO
+     * @param indexManager feature index manager
+     * @param indexTypes   maintained index types
+     */
+    public FeatureWriter(FeatureDao featureDao,
+                         FeatureIndexManager indexManager,
+                         List<FeatureIndexType> indexTypes) {
+        this.featureDao = featureDao;
+        this.indexManager = indexManager;
+        this.indexTypes = new ArrayList<>(indexTypes);
+    }
+
+    /**
+     * Get the feature DAO
+     *
+     * @return feature DAO
+     */
+    public FeatureDao getFeatureDao() {
+        return featureDao;
+    }
+
+    /**
+     * Get the maintained index types
+     *
+     * @return index types
+     */
+    public List<FeatureIndexType> getIndexTypes() {
+        return indexTypes;
+    }
+
+    /**
+     * Get the maximum number of row writes per transaction
+     *
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the maximum number of row writes per transaction
+     *
+     * @param batchSize batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the maximum transaction duration in milliseconds
+     *
+     * @return batch time
+     */
+    public long getBatchTime() {
+        return batchTime;
+    }
+
+    /**
+     * Set the maximum transaction duration in milliseconds
+     *
+     * @param batchTime batch time
+     */
+    public void setBatchTime(long batchTime) {
+        this.batchTime = batchTime;
+    }
+
+    /**
+     * Get the total number of row writes
+     *
+     * @return count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of committed batches
+     *
+     * @return commits
+     */
+    public int getCommits() {
+        return commits;
+    }
+
+    /**
+     * Get the number of row writes in the current uncommitted batch
+     *
+     * @return batch count
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Create the feature row
+     *
+     * @param row feature row
+     * @return row id
+     */
+    public long create(FeatureRow row) {
+        begin();
+        long id;
+        try {
+            id = featureDao.create(row);
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+        envelopes.put(id, row.getGeometryEnvelope());
+        written();
+        return id;
+    }
+
+    /**
+     * Update the feature row
+     *
+     * @param row feature row
+     * @return number of rows updated
+     */
+    public int update(FeatureRow row) {
+        begin();
+        int updated;
+        try {
+            updated = featureDao.update(row);
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+        if (updated > 0) {
+            envelopes.put(row.getId(), row.getGeometryEnvelope());
+        }
+        written();
+        return updated;
+    }
+
+    /**
+     * Delete the feature row
+     *
+     * @param row feature row
+     * @return number of rows deleted
+     */
+    public int delete(FeatureRow row) {
+        return delete(row.getId());
+    }
+
+    /**
+     * Delete the feature row by id
+     *
+     * @param id row id
+     * @return number of rows deleted
+     */
+    public int delete(long id) {
+        begin();
+        int deleted;
+        try {
+            deleted = featureDao.deleteById(id);
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+        if (deleted > 0) {
+            envelopes.put(id, null);
+        }
+        written();
+        return deleted;
+    }
+
+    /**
+     * Commit the current batch transaction and apply the collected envelopes
+     * to the maintained indexes. The GeoPackage index is written within the
+     * batch transaction and a failure rolls back the batch. A failure of the
+     * indexes written after the commit keeps their envelopes pending for the
+     * next commit.
+     */
+    public void commit() {
+        if (inTransaction) {
+
+            boolean successful = false;
+            try {
+                if (indexManager != null && envelopes.size() > 0
+                        && indexTypes.contains(FeatureIndexType.GEOPACKAGE)) {
+                    indexManager.index(FeatureIndexType.GEOPACKAGE, envelopes);
+                }
+                successful = true;
+            } finally {
+                featureDao.endTransaction(successful);
+                inTransaction = false;
+                if (successful) {
+                    pendingEnvelopes.putAll(envelopes);
+                } else {
+                    count -= batchCount;
+                }
+                envelopes.clear();
+                batchCount = 0;
+            }
+            commits++;
+
+            List<FeatureIndexType> committedTypes = new ArrayList<>(indexTypes);
+            committedTypes.remove(FeatureIndexType.GEOPACKAGE);
+            if (indexManager != null && !committedTypes.isEmpty()
+                    && pendingEnvelopes.size() > 0) {
+                indexManager.index(pendingEnvelopes, committedTypes);
+            }
+            pendingEnvelopes.clear();
+        }
+    }
+
+    /**
+     * Commit the current batch when its duration has expired. Call while
+     * pausing between writes to bound the batch transaction duration.
+     *
+     * @return true if committed
+     */
+    public boolean flush() {
+        boolean flushed = false;
+        if (inTransaction && System.nanoTime() >= batchDeadline) {
+            commit();
+            flushed = true;
+        }
+        return flushed;
+    }
+
+    /**
+     * Roll back the current batch transaction, discarding its row writes
+     */
+    public void rollback() {
+        if (inTransaction) {
+            featureDao.endTransaction(false);
+            inTransaction = false;
+            count -= batchCount;
+            batchCount = 0;
+            envelopes.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Commits the current batch, no more rows can be written
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            commit();
+        }
+    }
+
+    /**
+     * Begin a batch transaction if not in one
+     */
+    private void begin() {
+        if (closed) {
+            throw new GeoPackageException(
+                    "Feature Writer is closed. Table: "
+                            + featureDao.getTableName());
+        }
+        flush();
+        if (!inTransaction) {
+            featureDao.beginTransaction();
+            inTransaction = true;
+            batchDeadline = System.nanoTime() + batchTime * 1000000L;
+        }
+    }
+
+    /**
+     * Count a row write and commit when the batch is full or expired
+     */
+    private void written() {
+        batchCount++;
+        count++;
+        if (batchCount >= batchSize || System.nanoTime() >= batchDeadline) {
+            commit();
+        }
+    }
+
+}
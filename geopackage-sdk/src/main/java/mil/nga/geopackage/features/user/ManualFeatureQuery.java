@@ -264,11 +264,11 @@ public class ManualFeatureQuery {
 
             FeatureCursor featureCursor = featureDao.queryForChunk(columns,
                     chunkLimit, offset);
+            FeatureRowView featureRow = featureCursor.getRowView();
             try {
                 while (featureCursor.moveToNext()) {
                     hasResults = true;
 
-                    FeatureRow featureRow = featureCursor.getRow();
                     GeometryEnvelope featureEnvelope = featureRow
                             .getGeometryEnvelope();
                     if (featureEnvelope != null) {
@@ -1033,11 +1033,11 @@ public class ManualFeatureQuery {
 
             FeatureCursor featureCursor = featureDao.queryForChunk(queryColumns,
                     where, whereArgs, chunkLimit, offset);
+            FeatureRowView featureRow = featureCursor.getRowView();
             try {
                 while (featureCursor.moveToNext()) {
                     hasResults = true;
 
-                    FeatureRow featureRow = featureCursor.getRow();
                     GeometryEnvelope envelope = featureRow
                             .getGeometryEnvelope();
                     if (envelope != null) {
@@ -0,0 +1,531 @@
+package mil.nga.geopackage.geom;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import mil.nga.geopackage.GeoPackageConstants;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.sf.GeometryEnvelope;
+
+/**
+ * Reads geometry envelopes directly from GeoPackage geometry blob bytes
+ * without building geometries. The envelope is read from the GeoPackage
+ * binary header when present. When the header has no envelope, the bounds
+ * are accumulated by streaming over the well-known binary coordinates
+ * without creating point or geometry objects.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class GeometryEnvelopeReader {
+
+    /**
+     * Header length up to and including the srs id
+     */
+    private static final int HEADER_LENGTH = 8;
+
+    /**
+     * Extended ISO geometry type code Z flag
+     */
+    private static final int EWKB_Z_FLAG = 0x80000000;
+
+    /**
+     * Extended ISO geometry type code M flag
+     */
+    private static final int EWKB_M_FLAG = 0x40000000;
+
+    /**
+     * Read the geometry envelope from the GeoPackage geometry bytes, from the
+     * header if present or from the well-known binary coordinates
+     *
+     * @param bytes geometry bytes
+     * @return geometry envelope or null if no bytes or an empty geometry
+     */
+    public static GeometryEnvelope readEnvelope(byte[] bytes) {
+        GeometryEnvelope envelope = null;
+        if (bytes != null) {
+            envelope = readEnvelope(ByteBuffer.wrap(bytes));
+        }
+        return envelope;
+    }
+
+    /**
+     * Read the geometry envelope from the GeoPackage geometry bytes starting
+     * at the buffer position, from the header if present or from the
+     * well-known binary coordinates. The buffer position and byte order are
+     * not modified.
+     *
+     * @param buffer geometry bytes buffer
+     * @return geometry envelope or null if an empty geometry
+     */
+    public static GeometryEnvelope readEnvelope(ByteBuffer buffer) {
+
+        ByteBuffer bytes = buffer.slice();
+        Header header = readHeader(bytes);
+
+        GeometryEnvelope envelope = null;
+
+        if (!header.empty) {
+            if (header.envelopeIndicator > 0) {
+                envelope = readHeaderEnvelope(bytes, header);
+            } else if (header.extended) {
+                // Extended geometries are not well-known binary, build from
+                // the fully read geometry
+                byte[] geometryBytes = new byte[bytes.limit()];
+                bytes.position(0);
+                bytes.get(geometryBytes);
+                envelope = new GeoPackageGeometryData(geometryBytes)
+                        .getOrBuildEnvelope();
+            } else {
+                bytes.position(header.wkbOffset);
+                Bounds bounds = new Bounds();
+                readGeometry(bytes, bounds);
+                envelope = bounds.toEnvelope();
+            }
+        }
+
+        return envelope;
+    }
+
+    /**
+     * Read only the geometry envelope stored in the GeoPackage geometry header
+     *
+     * @param bytes geometry bytes
+     * @return header geometry envelope or null if not in the header
+     */
+    public static GeometryEnvelope readHeaderEnvelope(byte[] bytes) {
+        GeometryEnvelope envelope = null;
+        if (bytes != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            Header header = readHeader(buffer);
+            envelope = readHeaderEnvelope(buffer, header);
+        }
+        return envelope;
+    }
+
+    /**
+     * Read the spatial reference system id from the GeoPackage geometry header
+     *
+     * @param bytes geometry bytes
+     * @return srs id
+     */
+    public static int readSrsId(byte[] bytes) {
+        return readHeader(ByteBuffer.wrap(bytes)).srsId;
+    }
+
+    /**
+     * Read the empty geometry flag from the GeoPackage geometry header
+     *
+     * @param bytes geometry bytes
+     * @return true if an empty geometry
+     */
+    public static boolean isEmpty(byte[] bytes) {
+        return readHeader(ByteBuffer.wrap(bytes)).empty;
+    }
+
+    /**
+     * Read and validate the GeoPackage geometry header
+     *
+     * @param buffer geometry bytes buffer starting at the header
+     * @return header
+     */
+    static Header readHeader(ByteBuffer buffer) {
+
+        if (buffer.limit() < HEADER_LENGTH) {
+            throw new GeoPackageException(
+                    "GeoPackage geometry bytes are shorter than the header. Length: "
+                            + buffer.limit());
+        }
+
+        String magic = new String(new char[]{(char) buffer.get(0),
+                (char) buffer.get(1)});
+        if (!magic.equals(GeoPackageConstants.GEOPACKAGE_GEOMETRY_MAGIC_NUMBER)) {
+            throw new GeoPackageException(
+                    "Unexpected GeoPackage Geometry magic number: "
+                            + magic
+                            + ", Expected: "
+                            + GeoPackageConstants.GEOPACKAGE_GEOMETRY_MAGIC_NUMBER);
+        }
+
+        int flags = buffer.get(3) & 0xFF;
+
+        Header header = new Header();
+        header.extended = ((flags >> 5) & 1) == 1;
+        header.empty = ((flags >> 4) & 1) == 1;
+        header.envelopeIndicator = (flags >> 1) & 7;
+        if (header.envelopeIndicator > 4) {
+            throw new GeoPackageException(
+                    "Unexpected GeoPackage Geometry flags. Envelope contents indicator must be between 0 and 4. Actual: "
+                            + header.envelopeIndicator);
+        }
+        header.byteOrder = (flags & 1) == 0 ? ByteOrder.BIG_ENDIAN
+                : ByteOrder.LITTLE_ENDIAN;
+
+        ByteOrder order = buffer.order();
+        buffer.order(header.byteOrder);
+        header.srsId = buffer.getInt(4);
+        buffer.order(order);
+
+        header.wkbOffset = HEADER_LENGTH
+                + getEnvelopeDoubles(header.envelopeIndicator) * 8;
+
+        return header;
+    }
+
+    /**
+     * Read the header envelope
+     *
+     * @param buffer geometry bytes buffer starting at the header
+     * @param header read header
+     * @return header envelope or null
+     */
+    private static GeometryEnvelope readHeaderEnvelope(ByteBuffer buffer,
+                                                       Header header) {
+
+        GeometryEnvelope envelope = null;
+
+        int indicator = header.envelopeIndicator;
+        if (indicator > 0) {
+
+            ByteOrder order = buffer.order();
+            buffer.order(header.byteOrder);
+
+            int offset = HEADER_LENGTH;
+            envelope = new GeometryEnvelope();
+            envelope.setMinX(buffer.getDouble(offset));
+            envelope.setMaxX(buffer.getDouble(offset + 8));
+            envelope.setMinY(buffer.getDouble(offset + 16));
+            envelope.setMaxY(buffer.getDouble(offset + 24));
+            offset += 32;
+
+            if (indicator == 2 || indicator == 4) {
+                envelope.setHasZ(true);
+                envelope.setMinZ(buffer.getDouble(offset));
+                envelope.setMaxZ(buffer.getDouble(offset + 8));
+                offset += 16;
+            }
+
+            if (indicator == 3 || indicator == 4) {
+                envelope.setHasM(true);
+                envelope.setMinM(buffer.getDouble(offset));
+                envelope.setMaxM(buffer.getDouble(offset + 8));
+            }
+
+            buffer.order(order);
+        }
+
+        return envelope;
+    }
+
+    /**
+     * Get the number of envelope doubles for the envelope indicator
+     *
+     * @param indicator envelope indicator
+     * @return number of doubles
+     */
+    private static int getEnvelopeDoubles(int indicator) {
+        int doubles;
+        switch (indicator) {
+            case 0:
+                doubles = 0;
+                break;
+            case 1:
+                doubles = 4;
+                break;
+            case 2:
+            case 3:
+                doubles = 6;
+                break;
+            default:
+                doubles = 8;
+        }
+        return doubles;
+    }
+
+    /**
+     * Stream over a well-known binary geometry, accumulating the coordinate
+     * bounds
+     *
+     * @param buffer buffer positioned at the geometry byte order
+     * @param bounds bounds
+     */
+    private static void readGeometry(ByteBuffer buffer, Bounds bounds) {
+
+        GeometryTypeCode typeCode = readTypeCode(buffer);
+        boolean hasZ = typeCode.hasZ;
+        boolean hasM = typeCode.hasM;
+
+        switch (typeCode.type) {
+            case 1:
+                // Point
+                readCoordinates(buffer, 1, hasZ, hasM, bounds);
+                break;
+            case 2:
+            case 8:
+                // LineString, CircularString
+                readCoordinates(buffer, buffer.getInt(), hasZ, hasM, bounds);
+                break;
+            case 3:
+            case 17:
+                // Polygon, Triangle
+                int rings = buffer.getInt();
+                for (int i = 0; i < rings; i++) {
+                    readCoordinates(buffer, buffer.getInt(), hasZ, hasM,
+                            bounds);
+                }
+                break;
+            case 4:
+            case 5:
+            case 6:
+            case 7:
+            case 9:
+            case 10:
+            case 11:
+            case 12:
+            case 15:
+            case 16:
+                // Multi geometries, collections, compound curves, curve
+                // polygons, polyhedral surfaces, and TINs
+                int geometries = buffer.getInt();
+                for (int i = 0; i < geometries; i++) {
+                    readGeometry(buffer, bounds);
+                }
+                break;
+            default:
+                throw new GeoPackageException(
+                        "Unsupported well-known binary geometry type code: "
+                                + typeCode.code);
+        }
+
+    }
+
+    /**
+     * Read the byte order and geometry type code of a well-known binary
+     * geometry, setting the buffer byte order
+     *
+     * @param buffer buffer positioned at the geometry byte order
+     * @return geometry type code
+     */
+    static GeometryTypeCode readTypeCode(ByteBuffer buffer) {
+
+        // Each geometry, including nested geometries, has its own byte order
+        buffer.order(buffer.get() == 0 ? ByteOrder.BIG_ENDIAN
+                : ByteOrder.LITTLE_ENDIAN);
+
+        GeometryTypeCode typeCode = new GeometryTypeCode();
+
+        int code = buffer.getInt();
+        typeCode.hasZ = (code & EWKB_Z_FLAG) != 0;
+        typeCode.hasM = (code & EWKB_M_FLAG) != 0;
+        code &= 0x0FFFFFFF;
+        typeCode.code = code;
+
+        switch (code / 1000) {
+            case 1:
+                typeCode.hasZ = true;
+                break;
+            case 2:
+                typeCode.hasM = true;
+                break;
+            case 3:
+                typeCode.hasZ = true;
+                typeCode.hasM = true;
+                break;
+        }
+
+        typeCode.type = code % 1000;
+
+        return typeCode;
+    }
+
+    /**
+     * Read coordinates and accumulate the bounds, skipping empty (NaN)
+     * coordinates
+     *
+     * @param buffer buffer positioned at the first coordinate
+     * @param count  number of coordinates
+     * @param hasZ   true if coordinates have z values
+     * @param hasM   true if coordinates have m values
+     * @param bounds bounds
+     */
+    private static void readCoordinates(ByteBuffer buffer, int count,
+                                        boolean hasZ, boolean hasM, Bounds bounds) {
+        for (int i = 0; i < count; i++) {
+            double x = buffer.getDouble();
+            double y = buffer.getDouble();
+            double z = hasZ ? buffer.getDouble() : Double.NaN;
+            double m = hasM ? buffer.getDouble() : Double.NaN;
+            if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                bounds.add(x, y, z, m);
+            }
+        }
+    }
+
+    /**
+     * Read well-known binary geometry type code values
+     */
+    static class GeometryTypeCode {
+
+        /**
+         * Geometry type code without dimension flags
+         */
+        int code;
+
+        /**
+         * Base geometry type code, without the dimension thousands
+         */
+        int type;
+
+        /**
+         * True if coordinates have z values
+         */
+        boolean hasZ;
+
+        /**
+         * True if coordinates have m values
+         */
+        boolean hasM;
+
+    }
+
+    /**
+     * Read GeoPackage geometry header values
+     */
+    static class Header {
+
+        /**
+         * Extended geometry flag
+         */
+        boolean extended;
+
+        /**
+         * Empty geometry flag
+         */
+        boolean empty;
+
+        /**
+         * Envelope contents indicator
+         */
+        int envelopeIndicator;
+
+        /**
+         * Header byte order
+         */
+        ByteOrder byteOrder;
+
+        /**
+         * Spatial reference system id
+         */
+        int srsId;
+
+        /**
+         * Well-known binary offset
+         */
+        int wkbOffset;
+
+    }
+
+    /**
+     * Primitive coordinate bounds accumulator
+     */
+    private static class Bounds {
+
+        /**
+         * True when at least one coordinate has been added
+         */
+        boolean hasValues;
+
+        /**
+         * X and Y bounds
+         */
+        double minX, maxX, minY, maxY;
+
+        /**
+         * True when z values have been added
+         */
+        boolean hasZ;
+
+        /**
+         * Z bounds
+         */
+        double minZ, maxZ;
+
+        /**
+         * True when m values have been added
+         */
+        boolean hasM;
+
+        /**
+         * M bounds
+         */
+        double minM, maxM;
+
+        /**
+         * Add a coordinate
+         *
+         * @param x x value
+         * @param y y value
+         * @param z z value or NaN
+         * @param m m value or NaN
+         */
+        void add(double x, double y, double z, double m) {
+            if (!hasValues) {
+                minX = maxX = x;
+                minY = maxY = y;
+                hasValues = true;
+            } else {
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+            if (!Double.isNaN(z)) {
+                if (!hasZ) {
+                    minZ = maxZ = z;
+                    hasZ = true;
+                } else {
+                    minZ = Math.min(minZ, z);
+                    maxZ = Math.max(maxZ, z);
+                }
+            }
+            if (!Double.isNaN(m)) {
+                if (!hasM) {
+                    minM = maxM = m;
+                    hasM = true;
+                } else {
+                    minM = Math.min(minM, m);
+                    maxM = Math.max(maxM, m);
+                }
+            }
+        }
+
+        /**
+         * Build the geometry envelope
+         *
+         * @return envelope or null when no coordinates were added
+         */
+        GeometryEnvelope toEnvelope() {
+            GeometryEnvelope envelope = null;
+            if (hasValues) {
+                envelope = new GeometryEnvelope();
+                envelope.setMinX(minX);
+                envelope.setMaxX(maxX);
+                envelope.setMinY(minY);
+                envelope.setMaxY(maxY);
+                if (hasZ) {
+                    envelope.setHasZ(true);
+                    envelope.setMinZ(minZ);
+                    envelope.setMaxZ(maxZ);
+                }
+                if (hasM) {
+                    envelope.setHasM(true);
+                    envelope.setMinM(minM);
+                    envelope.setMaxM(maxM);
+                }
+            }
+            return envelope;
+        }
+
+    }
+
+}
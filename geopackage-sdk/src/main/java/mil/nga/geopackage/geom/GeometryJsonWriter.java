@@ -0,0 +1,334 @@
+package mil.nga.geopackage.geom;
+
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.sf.Geometry;
+import mil.nga.sf.geojson.FeatureConverter;
+
+/**
+ * Writes GeoJSON geometries directly from GeoPackage geometry blob bytes
+ * without building geometries. The well-known binary coordinates are
+ * streamed into the JSON writer. Curve geometries are written by their
+ * vertices as the nearest GeoJSON types: circular strings and compound
+ * curves as line strings, curve polygons and triangles as polygons, multi
+ * curves as multi line strings, and multi surfaces, polyhedral surfaces, and
+ * TINs as multi polygons. M values are not written.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class GeometryJsonWriter {
+
+    /**
+     * Write the GeoJSON geometry of the GeoPackage geometry bytes, writing a
+     * null value for null bytes and empty geometries
+     *
+     * @param json  JSON writer
+     * @param bytes geometry bytes
+     * @throws IOException upon failure
+     */
+    public static void write(JsonWriter json, byte[] bytes) throws IOException {
+
+        if (bytes == null) {
+            json.nullValue();
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        GeometryEnvelopeReader.Header header = GeometryEnvelopeReader
+                .readHeader(buffer);
+
+        if (header.empty) {
+            json.nullValue();
+        } else if (header.extended) {
+            // Extended geometries are not well-known binary, convert from the
+            // fully read geometry
+            Geometry geometry = new GeoPackageGeometryData(bytes).getGeometry();
+            if (geometry != null) {
+                writeValue(json, FeatureConverter.toMap(geometry));
+            } else {
+                json.nullValue();
+            }
+        } else {
+            buffer.position(header.wkbOffset);
+            writeGeometry(json, buffer);
+        }
+    }
+
+    /**
+     * Write a well-known binary geometry as a GeoJSON geometry object
+     *
+     * @param json   JSON writer
+     * @param buffer buffer positioned at the geometry byte order
+     * @throws IOException upon failure
+     */
+    private static void writeGeometry(JsonWriter json, ByteBuffer buffer)
+            throws IOException {
+
+        GeometryEnvelopeReader.GeometryTypeCode typeCode = GeometryEnvelopeReader
+                .readTypeCode(buffer);
+        boolean hasZ = typeCode.hasZ;
+        boolean hasM = typeCode.hasM;
+
+        json.beginObject();
+
+        switch (typeCode.type) {
+            case 1:
+                // Point
+                json.name("type").value("Point");
+                json.name("coordinates");
+                writePosition(json, buffer, hasZ, hasM, true);
+                break;
+            case 2:
+            case 8:
+            case 9:
+                // LineString, CircularString, CompoundCurve
+                json.name("type").value("LineString");
+                json.name("coordinates");
+                json.beginArray();
+                writeCurveCoordinates(json, buffer, typeCode, false);
+                json.endArray();
+                break;
+            case 3:
+            case 10:
+            case 17:
+                // Polygon, CurvePolygon, Triangle
+                json.name("type").value("Polygon");
+                json.name("coordinates");
+                writePolygon(json, buffer, typeCode);
+                break;
+            case 4:
+                // MultiPoint
+                json.name("type").value("MultiPoint");
+                json.name("coordinates");
+                json.beginArray();
+                int points = buffer.getInt();
+                for (int i = 0; i < points; i++) {
+                    GeometryEnvelopeReader.GeometryTypeCode pointType = GeometryEnvelopeReader
+                            .readTypeCode(buffer);
+                    writePosition(json, buffer, pointType.hasZ,
+                            pointType.hasM, true);
+                }
+                json.endArray();
+                break;
+            case 5:
+            case 11:
+                // MultiLineString, MultiCurve
+                json.name("type").value("MultiLineString");
+                json.name("coordinates");
+                json.beginArray();
+                int curves = buffer.getInt();
+                for (int i = 0; i < curves; i++) {
+                    json.beginArray();
+                    writeCurveCoordinates(json, buffer,
+                            GeometryEnvelopeReader.readTypeCode(buffer), false);
+                    json.endArray();
+                }
+                json.endArray();
+                break;
+            case 6:
+            case 12:
+            case 15:
+            case 16:
+                // MultiPolygon, MultiSurface, PolyhedralSurface, TIN
+                json.name("type").value("MultiPolygon");
+                json.name("coordinates");
+                json.beginArray();
+                int polygons = buffer.getInt();
+                for (int i = 0; i < polygons; i++) {
+                    writePolygon(json, buffer,
+                            GeometryEnvelopeReader.readTypeCode(buffer));
+                }
+                json.endArray();
+                break;
+            case 7:
+                // GeometryCollection
+                json.name("type").value("GeometryCollection");
+                json.name("geometries");
+                json.beginArray();
+                int geometries = buffer.getInt();
+                for (int i = 0; i < geometries; i++) {
+                    writeGeometry(json, buffer);
+                }
+                json.endArray();
+                break;
+            default:
+                throw new GeoPackageException(
+                        "Unsupported well-known binary geometry type code: "
+                                + typeCode.code);
+        }
+
+        json.endObject();
+    }
+
+    /**
+     * Write the coordinates of a curve into the current position array
+     *
+     * @param json      JSON writer
+     * @param buffer    buffer positioned after the curve type code
+     * @param typeCode  curve type code
+     * @param skipFirst true to skip the first position, shared with the end
+     *                  of the previous compound curve segment
+     * @throws IOException upon failure
+     */
+    private static void writeCurveCoordinates(JsonWriter json,
+                                              ByteBuffer buffer,
+                                              GeometryEnvelopeReader.GeometryTypeCode typeCode,
+                                              boolean skipFirst) throws IOException {
+        switch (typeCode.type) {
+            case 2:
+            case 8:
+                // LineString, CircularString
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    if (i == 0 && skipFirst) {
+                        skipPosition(buffer, typeCode.hasZ, typeCode.hasM);
+                    } else {
+                        writePosition(json, buffer, typeCode.hasZ,
+                                typeCode.hasM, false);
+                    }
+                }
+                break;
+            case 9:
+                // CompoundCurve
+                int segments = buffer.getInt();
+                for (int i = 0; i < segments; i++) {
+                    writeCurveCoordinates(json, buffer,
+                            GeometryEnvelopeReader.readTypeCode(buffer),
+                            skipFirst || i > 0);
+                }
+                break;
+            default:
+                throw new GeoPackageException(
+                        "Unexpected curve well-known binary geometry type code: "
+                                + typeCode.code);
+        }
+    }
+
+    /**
+     * Write the rings of a polygon as a GeoJSON polygon coordinates array
+     *
+     * @param json     JSON writer
+     * @param buffer   buffer positioned after the polygon type code
+     * @param typeCode polygon type code
+     * @throws IOException upon failure
+     */
+    private static void writePolygon(JsonWriter json, ByteBuffer buffer,
+                                     GeometryEnvelopeReader.GeometryTypeCode typeCode)
+            throws IOException {
+        json.beginArray();
+        int rings = buffer.getInt();
+        switch (typeCode.type) {
+            case 3:
+            case 17:
+                // Polygon, Triangle
+                for (int i = 0; i < rings; i++) {
+                    json.beginArray();
+                    int count = buffer.getInt();
+                    for (int j = 0; j < count; j++) {
+                        writePosition(json, buffer, typeCode.hasZ,
+                                typeCode.hasM, false);
+                    }
+                    json.endArray();
+                }
+                break;
+            case 10:
+                // CurvePolygon
+                for (int i = 0; i < rings; i++) {
+                    json.beginArray();
+                    writeCurveCoordinates(json, buffer,
+                            GeometryEnvelopeReader.readTypeCode(buffer), false);
+                    json.endArray();
+                }
+                break;
+            default:
+                throw new GeoPackageException(
+                        "Unexpected surface well-known binary geometry type code: "
+                                + typeCode.code);
+        }
+        json.endArray();
+    }
+
+    /**
+     * Write a coordinate position array
+     *
+     * @param json   JSON writer
+     * @param buffer buffer positioned at the coordinate
+     * @param hasZ   true if the coordinate has a z value
+     * @param hasM   true if the coordinate has an m value
+     * @param point  true if a point, written as an empty array when empty
+     * @throws IOException upon failure
+     */
+    private static void writePosition(JsonWriter json, ByteBuffer buffer,
+                                      boolean hasZ, boolean hasM, boolean point)
+            throws IOException {
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        double z = hasZ ? buffer.getDouble() : Double.NaN;
+        if (hasM) {
+            buffer.getDouble();
+        }
+        json.beginArray();
+        if (!point || !Double.isNaN(x) || !Double.isNaN(y)) {
+            json.value(x);
+            json.value(y);
+            if (hasZ && !Double.isNaN(z)) {
+                json.value(z);
+            }
+        }
+        json.endArray();
+    }
+
+    /**
+     * Skip a coordinate
+     *
+     * @param buffer buffer positioned at the coordinate
+     * @param hasZ   true if the coordinate has a z value
+     * @param hasM   true if the coordinate has an m value
+     */
+    private static void skipPosition(ByteBuffer buffer, boolean hasZ,
+                                     boolean hasM) {
+        int doubles = 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+        buffer.position(buffer.position() + doubles * 8);
+    }
+
+    /**
+     * Write a JSON compatible value of maps, lists, and primitives
+     *
+     * @param json  JSON writer
+     * @param value value
+     * @throws IOException upon failure
+     */
+    private static void writeValue(JsonWriter json, Object value)
+            throws IOException {
+        if (value == null) {
+            json.nullValue();
+        } else if (value instanceof Map) {
+            json.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                json.name(String.valueOf(entry.getKey()));
+                writeValue(json, entry.getValue());
+            }
+            json.endObject();
+        } else if (value instanceof List) {
+            json.beginArray();
+            for (Object item : (List<?>) value) {
+                writeValue(json, item);
+            }
+            json.endArray();
+        } else if (value instanceof Number) {
+            json.value((Number) value);
+        } else if (value instanceof Boolean) {
+            json.value((Boolean) value);
+        } else {
+            json.value(value.toString());
+        }
+    }
+
+}
@@ -38,6 +38,50 @@ public class BitmapConverter {
         return bitmap;
     }
 
+    /**
+     * Decode the bytes to a bitmap sampled down to at least the requested
+     * size, reading the bounds first and decoding with the largest power of
+     * two sample size keeping both dimensions at or above the request
+     *
+     * @param bytes  image bytes
+     * @param width  requested width
+     * @param height requested height
+     * @return image bitmap
+     * @since 3.5.1
+     */
+    public static Bitmap toBitmap(byte[] bytes, int width, int height) {
+        Options options = new Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        options.inSampleSize = getSampleSize(options.outWidth,
+                options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        return toBitmap(bytes, options);
+    }
+
+    /**
+     * Get the largest power of two sample size keeping the sampled image
+     * dimensions at or above the requested dimensions
+     *
+     * @param imageWidth  image width
+     * @param imageHeight image height
+     * @param width       requested width
+     * @param height      requested height
+     * @return sample size
+     * @since 3.5.1
+     */
+    public static int getSampleSize(int imageWidth, int imageHeight,
+                                    int width, int height) {
+        int sampleSize = 1;
+        if (imageWidth > 0 && imageHeight > 0 && width > 0 && height > 0) {
+            while (imageWidth / (sampleSize * 2) >= width
+                    && imageHeight / (sampleSize * 2) >= height) {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
     /**
      * Compress the bitmap to a byte array at full quality
      *
@@ -0,0 +1,21 @@
+package mil.nga.geopackage.io;
+
+/**
+ * Feature JSON output format enumeration
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public enum FeatureJsonFormat {
+
+    /**
+     * A single GeoJSON Feature Collection
+     */
+    GEOJSON,
+
+    /**
+     * Newline delimited GeoJSON Features, one per line
+     */
+    NDJSON;
+
+}
@@ -0,0 +1,393 @@
+package mil.nga.geopackage.io;
+
+import android.util.Base64;
+import android.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.features.index.FeatureIndexFeatureResults;
+import mil.nga.geopackage.features.index.FeatureIndexResults;
+import mil.nga.geopackage.features.user.FeatureColumn;
+import mil.nga.geopackage.features.user.FeatureColumns;
+import mil.nga.geopackage.features.user.FeatureCursor;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.FeatureRowView;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.geom.GeometryJsonWriter;
+
+/**
+ * Streaming feature writer of GeoJSON Feature Collections or newline
+ * delimited GeoJSON Features to an output stream. Rows are written one at a
+ * time as they are read, with geometries encoded directly from the geometry
+ * blob bytes, so memory use does not grow with the number of features.
+ * Cursor backed results are read through the cursor row view without
+ * building feature rows.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class FeatureJsonWriter implements Closeable {
+
+    /**
+     * Output character set
+     */
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * Output writer
+     */
+    private final Writer writer;
+
+    /**
+     * Output format
+     */
+    private final FeatureJsonFormat format;
+
+    /**
+     * Feature Collection JSON writer, created when the collection is started
+     */
+    private JsonWriter collectionJson;
+
+    /**
+     * Include geometries flag
+     */
+    private boolean includeGeometries = true;
+
+    /**
+     * Include the primary key as the feature id flag
+     */
+    private boolean includeIds = true;
+
+    /**
+     * Number of features written
+     */
+    private long count = 0;
+
+    /**
+     * Finished writing flag
+     */
+    private boolean finished = false;
+
+    /**
+     * Constructor, writing a GeoJSON Feature Collection
+     *
+     * @param out output stream
+     * @throws IOException upon failure
+     */
+    public FeatureJsonWriter(OutputStream out) throws IOException {
+        this(out, FeatureJsonFormat.GEOJSON);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param out    output stream
+     * @param format output format
+     * @throws IOException upon failure
+     */
+    public FeatureJsonWriter(OutputStream out, FeatureJsonFormat format)
+            throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, CHARSET));
+        this.format = format;
+    }
+
+    /**
+     * Get the output format
+     *
+     * @return output format
+     */
+    public FeatureJsonFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Is including geometries enabled
+     *
+     * @return true if including geometries
+     */
+    public boolean isIncludeGeometries() {
+        return includeGeometries;
+    }
+
+    /**
+     * Set whether geometries are written, null geometries are written when
+     * disabled
+     *
+     * @param includeGeometries include geometries flag
+     */
+    public void setIncludeGeometries(boolean includeGeometries) {
+        this.includeGeometries = includeGeometries;
+    }
+
+    /**
+     * Is including the primary key as the feature id enabled
+     *
+     * @return true if including ids
+     */
+    public boolean isIncludeIds() {
+        return includeIds;
+    }
+
+    /**
+     * Set whether the primary key is written as the feature id instead of as
+     * a property
+     *
+     * @param includeIds include ids flag
+     */
+    public void setIncludeIds(boolean includeIds) {
+        this.includeIds = includeIds;
+    }
+
+    /**
+     * Get the number of features written
+     *
+     * @return feature count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Write the remaining feature rows of the cursor. The cursor is not
+     * closed.
+     *
+     * @param cursor feature cursor
+     * @return number of features written
+     * @throws IOException upon failure
+     */
+    public int write(FeatureCursor cursor) throws IOException {
+        int written = 0;
+        FeatureRowView rowView = cursor.getRowView();
+        while (cursor.moveToNext()) {
+            if (rowView.isValid()) {
+                write(rowView);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Write the feature index results. The results are not closed.
+     *
+     * @param results feature index results
+     * @return number of features written
+     * @throws IOException upon failure
+     */
+    public int write(FeatureIndexResults results) throws IOException {
+        int written = 0;
+        if (results instanceof FeatureIndexFeatureResults) {
+            written = write(((FeatureIndexFeatureResults) results).getCursor());
+        } else {
+            for (FeatureRow row : results) {
+                write(row);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Write the feature row of the current cursor position
+     *
+     * @param rowView feature row view
+     * @throws IOException upon failure
+     */
+    public void write(FeatureRowView rowView) throws IOException {
+
+        FeatureColumns columns = rowView.getColumns();
+        JsonWriter json = beginFeature();
+
+        if (includeIds && columns.getPkColumn() != null) {
+            json.name("id").value(rowView.getId());
+        }
+
+        json.name("geometry");
+        if (includeGeometries) {
+            GeometryJsonWriter.write(json, rowView.getGeometryBytes());
+        } else {
+            json.nullValue();
+        }
+
+        json.name("properties");
+        json.beginObject();
+        for (int index = 0; index < columns.columnCount(); index++) {
+            FeatureColumn column = columns.getColumn(index);
+            if (isProperty(column)) {
+                json.name(column.getName());
+                writeValue(json, rowView.getValue(index));
+            }
+        }
+        json.endObject();
+
+        endFeature(json);
+    }
+
+    /**
+     * Write the feature row
+     *
+     * @param row feature row
+     * @throws IOException upon failure
+     */
+    public void write(FeatureRow row) throws IOException {
+
+        FeatureColumns columns = row.getColumns();
+        JsonWriter json = beginFeature();
+
+        if (includeIds && row.hasId()) {
+            json.name("id").value(row.getId());
+        }
+
+        json.name("geometry");
+        GeoPackageGeometryData geometryData = includeGeometries ? row
+                .getGeometry() : null;
+        GeometryJsonWriter.write(json,
+                geometryData != null ? geometryData.toBytes() : null);
+
+        json.name("properties");
+        json.beginObject();
+        for (int index = 0; index < columns.columnCount(); index++) {
+            FeatureColumn column = columns.getColumn(index);
+            if (isProperty(column)) {
+                json.name(column.getName());
+                writeValue(json, row.getValue(index));
+            }
+        }
+        json.endObject();
+
+        endFeature(json);
+    }
+
+    /**
+     * Finish writing, ending the Feature Collection, and flush the output.
+     * No more features can be written.
+     *
+     * @throws IOException upon failure
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            if (format == FeatureJsonFormat.GEOJSON) {
+                JsonWriter json = getCollectionJson();
+                json.endArray();
+                json.endObject();
+            }
+            finished = true;
+        }
+        writer.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Finishes writing and closes the output stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Begin a feature object
+     *
+     * @return JSON writer of the feature
+     * @throws IOException upon failure
+     */
+    private JsonWriter beginFeature() throws IOException {
+        if (finished) {
+            throw new GeoPackageException(
+                    "Feature JSON writing has been finished");
+        }
+        JsonWriter json;
+        if (format == FeatureJsonFormat.GEOJSON) {
+            json = getCollectionJson();
+        } else {
+            // A top level value per line, written directly through to the
+            // shared output writer
+            json = new JsonWriter(writer);
+        }
+        json.beginObject();
+        json.name("type").value("Feature");
+        return json;
+    }
+
+    /**
+     * End a feature object
+     *
+     * @param json JSON writer of the feature
+     * @throws IOException upon failure
+     */
+    private void endFeature(JsonWriter json) throws IOException {
+        json.endObject();
+        if (format == FeatureJsonFormat.NDJSON) {
+            writer.write('\n');
+        }
+        count++;
+    }
+
+    /**
+     * Get the Feature Collection JSON writer, starting the collection on
+     * first use
+     *
+     * @return JSON writer
+     * @throws IOException upon failure
+     */
+    private JsonWriter getCollectionJson() throws IOException {
+        if (collectionJson == null) {
+            collectionJson = new JsonWriter(writer);
+            collectionJson.beginObject();
+            collectionJson.name("type").value("FeatureCollection");
+            collectionJson.name("features");
+            collectionJson.beginArray();
+        }
+        return collectionJson;
+    }
+
+    /**
+     * Determine if the column is written as a feature property
+     *
+     * @param column feature column
+     * @return true if a property
+     */
+    private boolean isProperty(FeatureColumn column) {
+        return !column.isGeometry() && !(includeIds && column.isPrimaryKey());
+    }
+
+    /**
+     * Write a property value
+     *
+     * @param json  JSON writer
+     * @param value property value
+     * @throws IOException upon failure
+     */
+    private static void writeValue(JsonWriter json, Object value)
+            throws IOException {
+        if (value == null) {
+            json.nullValue();
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                json.nullValue();
+            } else {
+                json.value(number);
+            }
+        } else if (value instanceof Number) {
+            json.value(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            json.value((Boolean) value);
+        } else if (value instanceof byte[]) {
+            json.value(Base64.encodeToString((byte[]) value, Base64.NO_WRAP));
+        } else {
+            json.value(value.toString());
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package mil.nga.geopackage.io;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import mil.nga.geopackage.GeoPackageException;
+
+/**
+ * GeoPackage export filter, selects the user tables and tile zoom level
+ * ranges written to an exported GeoPackage
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class GeoPackageExportFilter {
+
+    /**
+     * Exported tables, null to export all tables
+     */
+    private Set<String> tables = null;
+
+    /**
+     * Min zoom level of all tile tables
+     */
+    private Long minZoom = null;
+
+    /**
+     * Max zoom level of all tile tables
+     */
+    private Long maxZoom = null;
+
+    /**
+     * Min zoom levels by tile table
+     */
+    private final Map<String, Long> tableMinZooms = new HashMap<>();
+
+    /**
+     * Max zoom levels by tile table
+     */
+    private final Map<String, Long> tableMaxZooms = new HashMap<>();
+
+    /**
+     * Constructor, exports all tables and zoom levels
+     */
+    public GeoPackageExportFilter() {
+
+    }
+
+    /**
+     * Constructor
+     *
+     * @param tables exported tables
+     */
+    public GeoPackageExportFilter(Collection<String> tables) {
+        setTables(tables);
+    }
+
+    /**
+     * Get the exported tables
+     *
+     * @return tables, null when exporting all tables
+     */
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * Set the exported tables
+     *
+     * @param tables tables, null to export all tables
+     */
+    public void setTables(Collection<String> tables) {
+        if (tables != null) {
+            this.tables = new LinkedHashSet<>(tables);
+        } else {
+            this.tables = null;
+        }
+    }
+
+    /**
+     * Add an exported table
+     *
+     * @param table table name
+     */
+    public void addTable(String table) {
+        if (tables == null) {
+            tables = new LinkedHashSet<>();
+        }
+        tables.add(table);
+    }
+
+    /**
+     * Determine if the table is exported
+     *
+     * @param table table name
+     * @return true if exported
+     */
+    public boolean isExported(String table) {
+        return tables == null || tables.contains(table);
+    }
+
+    /**
+     * Set the zoom level range of all tile tables
+     *
+     * @param minZoom min zoom level, null for no min
+     * @param maxZoom max zoom level, null for no max
+     */
+    public void setZoomRange(Long minZoom, Long maxZoom) {
+        validateZoomRange(minZoom, maxZoom);
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+    }
+
+    /**
+     * Set the zoom level range of a tile table, taking precedence over the
+     * range of all tile tables
+     *
+     * @param table   tile table name
+     * @param minZoom min zoom level, null for no min
+     * @param maxZoom max zoom level, null for no max
+     */
+    public void setZoomRange(String table, Long minZoom, Long maxZoom) {
+        validateZoomRange(minZoom, maxZoom);
+        tableMinZooms.put(table, minZoom);
+        tableMaxZooms.put(table, maxZoom);
+    }
+
+    /**
+     * Get the min zoom level of the tile table
+     *
+     * @param table tile table name
+     * @return min zoom level, null for no min
+     */
+    public Long getMinZoom(String table) {
+        Long zoom = minZoom;
+        if (tableMinZooms.containsKey(table)) {
+            zoom = tableMinZooms.get(table);
+        }
+        return zoom;
+    }
+
+    /**
+     * Get the max zoom level of the tile table
+     *
+     * @param table tile table name
+     * @return max zoom level, null for no max
+     */
+    public Long getMaxZoom(String table) {
+        Long zoom = maxZoom;
+        if (tableMaxZooms.containsKey(table)) {
+            zoom = tableMaxZooms.get(table);
+        }
+        return zoom;
+    }
+
+    /**
+     * Determine if the filter excludes tables or zoom levels
+     *
+     * @return true if filtering
+     */
+    public boolean isFiltered() {
+        return tables != null || minZoom != null || maxZoom != null
+                || !tableMinZooms.isEmpty();
+    }
+
+    /**
+     * Validate the zoom level range
+     *
+     * @param minZoom min zoom level
+     * @param maxZoom max zoom level
+     */
+    private static void validateZoomRange(Long minZoom, Long maxZoom) {
+        if (minZoom != null && maxZoom != null && minZoom > maxZoom) {
+            throw new GeoPackageException("Min zoom level " + minZoom
+                    + " is larger than max zoom level " + maxZoom);
+        }
+    }
+
+}
@@ -0,0 +1,1031 @@
+package mil.nga.geopackage.io;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.db.GeoPackageDatabase;
+import mil.nga.geopackage.extension.index.FeatureTableIndex;
+import mil.nga.geopackage.extension.index.GeometryIndex;
+import mil.nga.geopackage.extension.index.TableIndex;
+import mil.nga.geopackage.extension.related.ExtendedRelation;
+import mil.nga.geopackage.extension.related.UserMappingTable;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.geom.GeometryEnvelopeReader;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.TileGrid;
+import mil.nga.geopackage.tiles.matrix.TileMatrix;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileTable;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.proj.Projection;
+
+/**
+ * GeoPackage extractor, extracts selected tables, the features within a
+ * region, and the tiles within a region and zoom level range into a new
+ * GeoPackage file
+ *
+ * The destination is attached to the SQLite bindings connection of the source
+ * and rows are copied with bulk INSERT ... SELECT statements in a single
+ * transaction, selecting features through the RTree spatial index when
+ * present. The spatial reference systems, contents, geometry columns, tile
+ * matrices, extensions, related table mappings (including styles and icons)
+ * and table side tables of extracted tables are carried over. Indexes and
+ * triggers are created after the rows are copied. An online extract copies
+ * each table in its own statement instead, without holding the source write
+ * lock.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class GeoPackageExtractor {
+
+    /**
+     * Attached destination schema name
+     */
+    private static final String SCHEMA = "extract";
+
+    /**
+     * RTree index table name prefix
+     */
+    private static final String RTREE_PREFIX = "rtree_";
+
+    /**
+     * RTree shadow table suffixes
+     */
+    private static final String[] RTREE_SHADOW_SUFFIXES = new String[]{
+            "_node", "_parent", "_rowid"};
+
+    /**
+     * Max row ids per insert statement when selecting features without a
+     * spatial index
+     */
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    /**
+     * Source GeoPackage
+     */
+    private final GeoPackage geoPackage;
+
+    /**
+     * Extracted tables, null to extract all tables
+     */
+    private Set<String> tables = null;
+
+    /**
+     * Region bounding box
+     */
+    private BoundingBox boundingBox = null;
+
+    /**
+     * Region bounding box projection
+     */
+    private Projection projection = null;
+
+    /**
+     * Min tile zoom level
+     */
+    private Long minZoom = null;
+
+    /**
+     * Max tile zoom level
+     */
+    private Long maxZoom = null;
+
+    /**
+     * Min zoom levels by tile table
+     */
+    private final Map<String, Long> tableMinZooms = new HashMap<>();
+
+    /**
+     * Max zoom levels by tile table
+     */
+    private final Map<String, Long> tableMaxZooms = new HashMap<>();
+
+    /**
+     * Online extract flag, copying each table without a transaction
+     */
+    private boolean online = false;
+
+    /**
+     * Progress tracker
+     */
+    private GeoPackageProgress progress = null;
+
+    /**
+     * Constructor
+     *
+     * @param geoPackage source GeoPackage, opened as writable
+     */
+    public GeoPackageExtractor(GeoPackage geoPackage) {
+        this.geoPackage = geoPackage;
+    }
+
+    /**
+     * Get the source GeoPackage
+     *
+     * @return GeoPackage
+     */
+    public GeoPackage getGeoPackage() {
+        return geoPackage;
+    }
+
+    /**
+     * Get the extracted tables
+     *
+     * @return tables, null when extracting all tables
+     */
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * Set the extracted tables. Tables related to extracted tables through
+     * the related tables extension, such as style and icon tables, are
+     * extracted as well.
+     *
+     * @param tables tables, null to extract all tables
+     */
+    public void setTables(Collection<String> tables) {
+        if (tables != null) {
+            this.tables = new LinkedHashSet<>(tables);
+        } else {
+            this.tables = null;
+        }
+    }
+
+    /**
+     * Get the region bounding box
+     *
+     * @return bounding box, null when not limited to a region
+     */
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    /**
+     * Get the region bounding box projection
+     *
+     * @return projection
+     */
+    public Projection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Set the region, features and tiles intersecting the bounding box are
+     * extracted
+     *
+     * @param boundingBox bounding box, null to not limit to a region
+     * @param projection  bounding box projection
+     */
+    public void setBoundingBox(BoundingBox boundingBox, Projection projection) {
+        if (boundingBox != null && projection == null) {
+            throw new GeoPackageException(
+                    "Bounding box projection is required");
+        }
+        this.boundingBox = boundingBox;
+        this.projection = projection;
+    }
+
+    /**
+     * Get the min tile zoom level
+     *
+     * @return min zoom level, null for no min
+     */
+    public Long getMinZoom() {
+        return minZoom;
+    }
+
+    /**
+     * Get the max tile zoom level
+     *
+     * @return max zoom level, null for no max
+     */
+    public Long getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Set the tile zoom level range
+     *
+     * @param minZoom min zoom level, null for no min
+     * @param maxZoom max zoom level, null for no max
+     */
+    public void setZoomRange(Long minZoom, Long maxZoom) {
+        validateZoomRange(minZoom, maxZoom);
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+    }
+
+    /**
+     * Set the zoom level range of a tile table, taking precedence over the
+     * range of all tile tables
+     *
+     * @param table   tile table name
+     * @param minZoom min zoom level, null for no min
+     * @param maxZoom max zoom level, null for no max
+     */
+    public void setZoomRange(String table, Long minZoom, Long maxZoom) {
+        validateZoomRange(minZoom, maxZoom);
+        tableMinZooms.put(table, minZoom);
+        tableMaxZooms.put(table, maxZoom);
+    }
+
+    /**
+     * Get the min zoom level of the tile table
+     *
+     * @param table tile table name
+     * @return min zoom level, null for no min
+     */
+    public Long getMinZoom(String table) {
+        Long zoom = minZoom;
+        if (tableMinZooms.containsKey(table)) {
+            zoom = tableMinZooms.get(table);
+        }
+        return zoom;
+    }
+
+    /**
+     * Get the max zoom level of the tile table
+     *
+     * @param table tile table name
+     * @return max zoom level, null for no max
+     */
+    public Long getMaxZoom(String table) {
+        Long zoom = maxZoom;
+        if (tableMaxZooms.containsKey(table)) {
+            zoom = tableMaxZooms.get(table);
+        }
+        return zoom;
+    }
+
+    /**
+     * Is an online extract
+     *
+     * @return true if online
+     */
+    public boolean isOnline() {
+        return online;
+    }
+
+    /**
+     * Set the online extract flag. An online extract copies each table in
+     * its own statement instead of a single transaction, so concurrent
+     * writers of the source are not blocked. Writes committed during the
+     * extract may be included in some tables and not others.
+     *
+     * @param online true for an online extract
+     */
+    public void setOnline(boolean online) {
+        this.online = online;
+    }
+
+    /**
+     * Get the progress tracker
+     *
+     * @return progress
+     */
+    public GeoPackageProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Set the progress tracker, progressed once per copied table
+     *
+     * @param progress progress
+     */
+    public void setProgress(GeoPackageProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Extract into a new GeoPackage file
+     *
+     * @param file extract file, must not exist
+     * @return true if extracted, false if cancelled
+     */
+    public boolean extract(File file) {
+
+        if (file.exists()) {
+            throw new GeoPackageException(
+                    "GeoPackage extract file already exists: " + file);
+        }
+        File directory = file.getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+
+        GeoPackageDatabase database = geoPackage.getConnection().getDb();
+        org.sqlite.database.sqlite.SQLiteDatabase db = database.getBindingsDb();
+        if (!database.isBindingsWritable()) {
+            throw new GeoPackageException(
+                    "GeoPackage must be writable to attach the extract. GeoPackage: "
+                            + geoPackage.getName());
+        }
+
+        boolean extracted = false;
+        try {
+            extracted = extract(db, file);
+        } catch (RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+
+        if (!extracted && (progress == null || progress.cleanupOnCancel())) {
+            file.delete();
+        }
+
+        return extracted;
+    }
+
+    /**
+     * Extract into the new GeoPackage file
+     *
+     * @param db   source bindings connection
+     * @param file extract file
+     * @return true if extracted, false if cancelled
+     */
+    private boolean extract(org.sqlite.database.sqlite.SQLiteDatabase db,
+                            File file) {
+
+        List<SchemaEntry> schema = readSchema(db);
+
+        // Determine the extracted contents tables, including related tables
+        Set<String> contentsTables = new LinkedHashSet<>(geoPackage.getTables());
+        Set<String> extracted = new LinkedHashSet<>();
+        for (String table : contentsTables) {
+            if (tables == null || tables.contains(table)) {
+                extracted.add(table);
+            }
+        }
+        Map<String, String[]> mappingTables = new HashMap<>();
+        if (geoPackage.isTable(ExtendedRelation.TABLE_NAME)) {
+            String sql = "SELECT " + ExtendedRelation.COLUMN_BASE_TABLE_NAME
+                    + ", " + ExtendedRelation.COLUMN_RELATED_TABLE_NAME + ", "
+                    + ExtendedRelation.COLUMN_MAPPING_TABLE_NAME + " FROM "
+                    + ExtendedRelation.TABLE_NAME;
+            List<String[]> relations = new ArrayList<>();
+            Cursor cursor = db.rawQuery(sql, null);
+            try {
+                while (cursor.moveToNext()) {
+                    relations.add(new String[]{cursor.getString(0),
+                            cursor.getString(1), cursor.getString(2)});
+                }
+            } finally {
+                cursor.close();
+            }
+            for (String[] relation : relations) {
+                if (extracted.contains(relation[0])
+                        || !contentsTables.contains(relation[0])) {
+                    if (contentsTables.contains(relation[1])) {
+                        extracted.add(relation[1]);
+                    }
+                    mappingTables.put(relation[2], new String[]{relation[0],
+                            relation[1]});
+                }
+            }
+        }
+
+        // Determine the copied tables
+        Set<String> skipped = new HashSet<>();
+        skipped.add(GeometryIndex.TABLE_NAME);
+        skipped.add(TableIndex.TABLE_NAME);
+        for (SchemaEntry entry : schema) {
+            if (entry.isVirtual()) {
+                skipped.add(entry.name);
+                for (String suffix : RTREE_SHADOW_SUFFIXES) {
+                    skipped.add(entry.name + suffix);
+                }
+            }
+        }
+        Set<String> copied = new LinkedHashSet<>();
+        List<String> mappings = new ArrayList<>();
+        for (SchemaEntry entry : schema) {
+            if (!entry.isTable() || entry.name.startsWith("sqlite_")
+                    || skipped.contains(entry.name)) {
+                continue;
+            }
+            if (contentsTables.contains(entry.name)) {
+                if (extracted.contains(entry.name)) {
+                    copied.add(entry.name);
+                }
+            } else if (mappingTables.containsKey(entry.name)) {
+                mappings.add(entry.name);
+            } else if (isExtractedSideTable(entry.name, contentsTables,
+                    extracted)) {
+                copied.add(entry.name);
+            }
+        }
+        for (String mapping : mappings) {
+            String[] relation = mappingTables.get(mapping);
+            if (copied.contains(relation[0]) && copied.contains(relation[1])) {
+                copied.add(mapping);
+            }
+        }
+
+        // Feature tables with RTree indexes
+        Map<String, String> rTrees = new HashMap<>();
+        for (String table : geoPackage.getFeatureTables()) {
+            if (copied.contains(table)) {
+                FeatureDao featureDao = geoPackage.getFeatureDao(table);
+                String rTree = RTREE_PREFIX + table + "_"
+                        + featureDao.getGeometryColumnName();
+                if (skipped.contains(rTree)) {
+                    rTrees.put(table, rTree);
+                }
+            }
+        }
+
+        if (progress != null) {
+            progress.setMax(copied.size() + rTrees.size() + 2);
+        }
+
+        // Create the destination tables
+        SQLiteDatabase destination = SQLiteDatabase.openOrCreateDatabase(file,
+                null);
+        try {
+            destination.execSQL("PRAGMA application_id = "
+                    + queryInt(db, "PRAGMA application_id"));
+            destination.setVersion(queryInt(db, "PRAGMA user_version"));
+            for (SchemaEntry entry : schema) {
+                if (entry.isTable() && copied.contains(entry.name)) {
+                    destination.execSQL(entry.sql);
+                }
+            }
+        } finally {
+            destination.close();
+        }
+        addProgress();
+
+        // Copy the rows into the attached destination
+        boolean active = true;
+        db.execSQL("ATTACH DATABASE ? AS " + SCHEMA,
+                new Object[]{file.getAbsolutePath()});
+        try {
+            for (Map.Entry<String, String> rTree : rTrees.entrySet()) {
+                for (SchemaEntry entry : schema) {
+                    if (entry.name.equals(rTree.getValue())) {
+                        String sql = entry.sql;
+                        db.execSQL("CREATE VIRTUAL TABLE " + SCHEMA + "."
+                                + CoreSQLUtils.quoteWrap(entry.name) + " "
+                                + sql.substring(sql.toUpperCase().indexOf("USING")));
+                    }
+                }
+            }
+
+            if (!online) {
+                db.beginTransaction();
+            }
+            try {
+                for (String table : copied) {
+                    if (!isActive()) {
+                        break;
+                    }
+                    copyTable(db, table, contentsTables, copied,
+                            mappingTables.get(table));
+                    addProgress();
+                }
+                for (Map.Entry<String, String> rTree : rTrees.entrySet()) {
+                    if (!isActive()) {
+                        break;
+                    }
+                    String rTreeTable = CoreSQLUtils.quoteWrap(rTree.getValue());
+                    db.execSQL("INSERT INTO " + SCHEMA + "." + rTreeTable
+                            + " SELECT * FROM main." + rTreeTable
+                            + " WHERE id IN (SELECT rowid FROM " + SCHEMA + "."
+                            + CoreSQLUtils.quoteWrap(rTree.getKey()) + ")");
+                    addProgress();
+                }
+                active = isActive();
+                if (active && !online) {
+                    db.setTransactionSuccessful();
+                }
+            } finally {
+                if (!online) {
+                    db.endTransaction();
+                }
+            }
+        } finally {
+            db.execSQL("DETACH DATABASE " + SCHEMA);
+        }
+
+        // Create the indexes, triggers, and views of the copied tables
+        if (active) {
+            destination = SQLiteDatabase.openDatabase(file.getAbsolutePath(),
+                    null, SQLiteDatabase.OPEN_READWRITE);
+            try {
+                for (SchemaEntry entry : schema) {
+                    if (entry.sql == null || entry.isTable()
+                            || entry.isVirtual()) {
+                        continue;
+                    }
+                    if (entry.isView() || copied.contains(entry.table)) {
+                        try {
+                            destination.execSQL(entry.sql);
+                        } catch (Exception e) {
+                            Log.w(GeoPackageExtractor.class.getSimpleName(),
+                                    "Failed to create " + entry.type + ": "
+                                            + entry.name, e);
+                        }
+                    }
+                }
+            } finally {
+                destination.close();
+            }
+            addProgress();
+        }
+
+        return active;
+    }
+
+    /**
+     * Copy the rows of the table into the attached destination
+     *
+     * @param db       source bindings connection
+     * @param table          table name
+     * @param contentsTables contents tables
+     * @param copied         copied tables
+     * @param relation       base and related table names when a mapping table
+     */
+    private void copyTable(org.sqlite.database.sqlite.SQLiteDatabase db,
+                           String table, Set<String> contentsTables,
+                           Set<String> copied, String[] relation) {
+
+        String insert = "INSERT INTO " + SCHEMA + "."
+                + CoreSQLUtils.quoteWrap(table) + " SELECT * FROM main."
+                + CoreSQLUtils.quoteWrap(table);
+
+        List<String> columns = queryColumns(db, table);
+
+        StringBuilder where = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+
+        if (relation != null) {
+
+            // Mapping rows between copied base and related rows
+            where.append(UserMappingTable.COLUMN_BASE_ID)
+                    .append(" IN (SELECT rowid FROM ").append(SCHEMA)
+                    .append(".").append(CoreSQLUtils.quoteWrap(relation[0]))
+                    .append(") AND ").append(UserMappingTable.COLUMN_RELATED_ID)
+                    .append(" IN (SELECT rowid FROM ")
+                    .append(SCHEMA).append(".")
+                    .append(CoreSQLUtils.quoteWrap(relation[1])).append(")");
+
+        } else if (table.equals(ExtendedRelation.TABLE_NAME)) {
+
+            where.append(ExtendedRelation.COLUMN_BASE_TABLE_NAME)
+                    .append(" IN (").append(inList(copied, args))
+                    .append(") AND ")
+                    .append(ExtendedRelation.COLUMN_RELATED_TABLE_NAME)
+                    .append(" IN (").append(inList(copied, args)).append(")");
+
+        } else if (columns.contains("table_name")
+                && !contentsTables.contains(table)) {
+
+            // GeoPackage and extension tables, limited to copied tables
+            where.append("(table_name IS NULL OR table_name IN (")
+                    .append(inList(copied, args)).append("))");
+            if (columns.contains("extension_name")) {
+                where.append(" AND extension_name <> ?");
+                args.add(FeatureTableIndex.EXTENSION_NAME);
+            }
+            if (table.equals(TileMatrix.TABLE_NAME)) {
+                appendTileMatrixZoomRanges(where, args, copied);
+            }
+
+        } else if (geoPackage.isFeatureTable(table) && boundingBox != null) {
+
+            FeatureDao featureDao = geoPackage.getFeatureDao(table);
+            BoundingBox featureBoundingBox = boundingBox.transform(projection
+                    .getTransformation(featureDao.getProjection()));
+            String rTree = RTREE_PREFIX + table + "_"
+                    + featureDao.getGeometryColumnName();
+            if (geoPackage.isTable(rTree)) {
+                where.append("rowid IN (SELECT id FROM main.")
+                        .append(CoreSQLUtils.quoteWrap(rTree))
+                        .append(" WHERE minx <= ? AND maxx >= ? AND miny <= ? AND maxy >= ?)");
+                args.add(featureBoundingBox.getMaxLongitude());
+                args.add(featureBoundingBox.getMinLongitude());
+                args.add(featureBoundingBox.getMaxLatitude());
+                args.add(featureBoundingBox.getMinLatitude());
+            } else {
+                copyFeatures(db, insert, featureDao, featureBoundingBox);
+                return;
+            }
+
+        } else if (geoPackage.isTileTable(table)) {
+
+            TileDao tileDao = geoPackage.getTileDao(table);
+            if (boundingBox != null) {
+                appendTileGrids(where, args, tileDao);
+            } else {
+                appendZoomRange(where, args, table);
+                if (where.length() > 0) {
+                    where.delete(0, " AND ".length());
+                }
+            }
+
+        }
+
+        String sql = insert;
+        if (where.length() > 0) {
+            sql += " WHERE " + where;
+        }
+        db.execSQL(sql, args.toArray());
+    }
+
+    /**
+     * Copy the features intersecting the bounding box of a feature table
+     * without an RTree index, reading each geometry envelope
+     *
+     * @param db          source bindings connection
+     * @param insert      insert statement
+     * @param featureDao  feature dao
+     * @param boundingBox bounding box in the feature projection
+     */
+    private void copyFeatures(org.sqlite.database.sqlite.SQLiteDatabase db,
+                              String insert, FeatureDao featureDao,
+                              BoundingBox boundingBox) {
+
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT rowid, "
+                + CoreSQLUtils.quoteWrap(featureDao.getGeometryColumnName())
+                + " FROM main." + CoreSQLUtils.quoteWrap(featureDao.getTableName()),
+                null);
+        try {
+            while (cursor.moveToNext()) {
+                GeometryEnvelope envelope = GeometryEnvelopeReader
+                        .readEnvelope(cursor.getBlob(1));
+                if (envelope != null
+                        && envelope.getMinX() <= boundingBox.getMaxLongitude()
+                        && envelope.getMaxX() >= boundingBox.getMinLongitude()
+                        && envelope.getMinY() <= boundingBox.getMaxLatitude()
+                        && envelope.getMaxY() >= boundingBox.getMinLatitude()) {
+                    ids.add(cursor.getLong(0));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (int start = 0; start < ids.size(); start += ID_CHUNK_SIZE) {
+            StringBuilder sql = new StringBuilder(insert);
+            sql.append(" WHERE rowid IN (");
+            int end = Math.min(start + ID_CHUNK_SIZE, ids.size());
+            for (int i = start; i < end; i++) {
+                if (i > start) {
+                    sql.append(",");
+                }
+                sql.append(ids.get(i));
+            }
+            sql.append(")");
+            db.execSQL(sql.toString());
+        }
+    }
+
+    /**
+     * Append the tile grid of the bounding box at each zoom level in range to
+     * the where clause
+     *
+     * @param where   where clause
+     * @param args    where arguments
+     * @param tileDao tile dao
+     */
+    private void appendTileGrids(StringBuilder where, List<Object> args,
+                                 TileDao tileDao) {
+
+        BoundingBox tileBoundingBox = boundingBox.transform(projection
+                .getTransformation(tileDao.getProjection()));
+        BoundingBox setBoundingBox = tileDao.getBoundingBox();
+        BoundingBox overlap = TileBoundingBoxUtils.overlap(setBoundingBox,
+                tileBoundingBox);
+        Long minZoom = getMinZoom(tileDao.getTableName());
+        Long maxZoom = getMaxZoom(tileDao.getTableName());
+
+        where.append("(");
+        int grids = 0;
+        if (overlap != null) {
+            for (TileMatrix tileMatrix : tileDao.getTileMatrices()) {
+                long zoom = tileMatrix.getZoomLevel();
+                if ((minZoom != null && zoom < minZoom)
+                        || (maxZoom != null && zoom > maxZoom)) {
+                    continue;
+                }
+                TileGrid tileGrid = TileBoundingBoxUtils.getTileGrid(
+                        setBoundingBox, tileMatrix.getMatrixWidth(),
+                        tileMatrix.getMatrixHeight(), overlap);
+                if (grids++ > 0) {
+                    where.append(" OR ");
+                }
+                where.append("(").append(TileTable.COLUMN_ZOOM_LEVEL)
+                        .append(" = ? AND ").append(TileTable.COLUMN_TILE_COLUMN)
+                        .append(" BETWEEN ? AND ? AND ")
+                        .append(TileTable.COLUMN_TILE_ROW)
+                        .append(" BETWEEN ? AND ?)");
+                args.add(zoom);
+                args.add(tileGrid.getMinX());
+                args.add(tileGrid.getMaxX());
+                args.add(tileGrid.getMinY());
+                args.add(tileGrid.getMaxY());
+            }
+        }
+        if (grids == 0) {
+            where.append("0");
+        }
+        where.append(")");
+    }
+
+    /**
+     * Append the zoom level range of the tile table to the where clause,
+     * each condition preceded by AND
+     *
+     * @param where where clause
+     * @param args  where arguments
+     * @param table tile table name
+     */
+    private void appendZoomRange(StringBuilder where, List<Object> args,
+                                 String table) {
+        Long minZoom = getMinZoom(table);
+        Long maxZoom = getMaxZoom(table);
+        if (minZoom != null) {
+            where.append(" AND ").append(TileMatrix.COLUMN_ZOOM_LEVEL)
+                    .append(" >= ?");
+            args.add(minZoom);
+        }
+        if (maxZoom != null) {
+            where.append(" AND ").append(TileMatrix.COLUMN_ZOOM_LEVEL)
+                    .append(" <= ?");
+            args.add(maxZoom);
+        }
+    }
+
+    /**
+     * Append the exclusion of tile matrices outside of the zoom level range
+     * of each copied tile table to the where clause, each condition preceded
+     * by AND
+     *
+     * @param where  where clause
+     * @param args   where arguments
+     * @param copied copied tables
+     */
+    private void appendTileMatrixZoomRanges(StringBuilder where,
+                                            List<Object> args, Set<String> copied) {
+        for (String table : copied) {
+            if (!geoPackage.isTileTable(table)) {
+                continue;
+            }
+            Long minZoom = getMinZoom(table);
+            Long maxZoom = getMaxZoom(table);
+            if (minZoom == null && maxZoom == null) {
+                continue;
+            }
+            where.append(" AND NOT (").append(TileMatrix.COLUMN_TABLE_NAME)
+                    .append(" = ? AND (");
+            args.add(table);
+            if (minZoom != null) {
+                where.append(TileMatrix.COLUMN_ZOOM_LEVEL).append(" < ?");
+                args.add(minZoom);
+            }
+            if (maxZoom != null) {
+                if (minZoom != null) {
+                    where.append(" OR ");
+                }
+                where.append(TileMatrix.COLUMN_ZOOM_LEVEL).append(" > ?");
+                args.add(maxZoom);
+            }
+            where.append("))");
+        }
+    }
+
+    /**
+     * Validate the zoom level range
+     *
+     * @param minZoom min zoom level
+     * @param maxZoom max zoom level
+     */
+    private static void validateZoomRange(Long minZoom, Long maxZoom) {
+        if (minZoom != null && maxZoom != null && minZoom > maxZoom) {
+            throw new GeoPackageException("Min zoom level " + minZoom
+                    + " is larger than max zoom level " + maxZoom);
+        }
+    }
+
+    /**
+     * Build an IN list of parameters for the values
+     *
+     * @param values values
+     * @param args   where arguments to add the values to
+     * @return parameter list
+     */
+    private static String inList(Collection<String> values, List<Object> args) {
+        StringBuilder list = new StringBuilder();
+        for (String value : values) {
+            if (list.length() > 0) {
+                list.append(", ");
+            }
+            list.append("?");
+            args.add(value);
+        }
+        if (list.length() == 0) {
+            list.append("NULL");
+        }
+        return list.toString();
+    }
+
+    /**
+     * Determine if a table outside of the contents is extracted. Side tables
+     * named with a contents table name suffix are extracted with their
+     * contents table, all other tables are extracted.
+     *
+     * @param table          table name
+     * @param contentsTables contents tables
+     * @param extracted      extracted contents tables
+     * @return true if extracted
+     */
+    private static boolean isExtractedSideTable(String table,
+                                                Set<String> contentsTables,
+                                                Set<String> extracted) {
+        boolean extract = true;
+        for (String contentsTable : contentsTables) {
+            if (table.endsWith("_" + contentsTable)) {
+                extract = extracted.contains(contentsTable);
+                if (extract) {
+                    break;
+                }
+            }
+        }
+        return extract;
+    }
+
+    /**
+     * Query the column names of a source table
+     *
+     * @param db    source bindings connection
+     * @param table table name
+     * @return column names
+     */
+    private static List<String> queryColumns(
+            org.sqlite.database.sqlite.SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA main.table_info("
+                + CoreSQLUtils.quoteWrap(table) + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    /**
+     * Query a single integer result
+     *
+     * @param db  source bindings connection
+     * @param sql sql statement
+     * @return integer result
+     */
+    private static int queryInt(org.sqlite.database.sqlite.SQLiteDatabase db,
+                                String sql) {
+        int value = 0;
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            if (cursor.moveToFirst()) {
+                value = cursor.getInt(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        return value;
+    }
+
+    /**
+     * Read the source schema in creation order
+     *
+     * @param db source bindings connection
+     * @return schema entries
+     */
+    private static List<SchemaEntry> readSchema(
+            org.sqlite.database.sqlite.SQLiteDatabase db) {
+        List<SchemaEntry> schema = new ArrayList<>();
+        Cursor cursor = db.rawQuery(
+                "SELECT type, name, tbl_name, sql FROM main.sqlite_master ORDER BY rowid",
+                null);
+        try {
+            while (cursor.moveToNext()) {
+                schema.add(new SchemaEntry(cursor.getString(0),
+                        cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return schema;
+    }
+
+    /**
+     * Determine if the progress is active
+     *
+     * @return true if active
+     */
+    private boolean isActive() {
+        return progress == null || progress.isActive();
+    }
+
+    /**
+     * Add a progress step
+     */
+    private void addProgress() {
+        if (progress != null) {
+            progress.addProgress(1);
+        }
+    }
+
+    /**
+     * SQLite schema entry
+     */
+    private static class SchemaEntry {
+
+        /**
+         * Entry type
+         */
+        final String type;
+
+        /**
+         * Entry name
+         */
+        final String name;
+
+        /**
+         * Table the entry belongs to
+         */
+        final String table;
+
+        /**
+         * Creation sql
+         */
+        final String sql;
+
+        /**
+         * Constructor
+         *
+         * @param type  entry type
+         * @param name  entry name
+         * @param table table name
+         * @param sql   creation sql
+         */
+        SchemaEntry(String type, String name, String table, String sql) {
+            this.type = type;
+            this.name = name;
+            this.table = table;
+            this.sql = sql;
+        }
+
+        /**
+         * Determine if a regular table
+         *
+         * @return true if a table
+         */
+        boolean isTable() {
+            return type.equals("table") && !isVirtual();
+        }
+
+        /**
+         * Determine if a virtual table
+         *
+         * @return true if virtual
+         */
+        boolean isVirtual() {
+            return type.equals("table") && sql != null
+                    && sql.trim().toUpperCase().startsWith("CREATE VIRTUAL");
+        }
+
+        /**
+         * Determine if a view
+         *
+         * @return true if a view
+         */
+        boolean isView() {
+            return type.equals("view");
+        }
+
+    }
+
+}
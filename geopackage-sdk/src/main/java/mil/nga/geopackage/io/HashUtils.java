@@ -0,0 +1,86 @@
+package mil.nga.geopackage.io;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import mil.nga.geopackage.GeoPackageException;
+
+/**
+ * Content hash utility methods, shared by the extensions comparing tile and
+ * media bytes by content and by verified GeoPackage imports
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class HashUtils {
+
+    /**
+     * Content hash algorithm
+     */
+    public static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * Hash the bytes
+     *
+     * @param bytes bytes
+     * @return hex encoded content hash
+     */
+    public static String hash(byte[] bytes) {
+        return toHex(createDigest().digest(bytes));
+    }
+
+    /**
+     * Create a content hash message digest
+     *
+     * @return message digest
+     */
+    public static MessageDigest createDigest() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new GeoPackageException("Unsupported hash algorithm: "
+                    + HASH_ALGORITHM, e);
+        }
+        return digest;
+    }
+
+    /**
+     * Wrap the stream to compute the content hash of the bytes read, retrieved
+     * with {@link #hash(DigestInputStream)} once read
+     *
+     * @param stream input stream
+     * @return digest input stream
+     */
+    public static DigestInputStream digestStream(InputStream stream) {
+        return new DigestInputStream(stream, createDigest());
+    }
+
+    /**
+     * Get the content hash of the bytes read from the digest stream
+     *
+     * @param stream digest input stream
+     * @return hex encoded content hash
+     */
+    public static String hash(DigestInputStream stream) {
+        return toHex(stream.getMessageDigest().digest());
+    }
+
+    /**
+     * Hex encode the bytes
+     *
+     * @param bytes bytes
+     * @return lowercase hex string
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+}
@@ -0,0 +1,26 @@
+package mil.nga.geopackage.tiles;
+
+/**
+ * Tile downsample filter used when building overview tiles from child tiles
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public enum TileDownsampleFilter {
+
+    /**
+     * Nearest neighbor, keeps one of each 2x2 child pixels
+     */
+    NEAREST_NEIGHBOR,
+
+    /**
+     * Bilinear filtered scaling
+     */
+    BILINEAR,
+
+    /**
+     * Box filter, alpha weighted average of each 2x2 child pixels
+     */
+    BOX;
+
+}
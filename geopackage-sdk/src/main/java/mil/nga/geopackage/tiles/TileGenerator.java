@@ -25,10 +25,12 @@ import mil.nga.geopackage.core.contents.Contents;
 import mil.nga.geopackage.core.contents.ContentsDao;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystemDao;
+import mil.nga.geopackage.extension.dedup.TileDedup;
 import mil.nga.geopackage.extension.scale.TileScaling;
 import mil.nga.geopackage.extension.scale.TileTableScaling;
 import mil.nga.geopackage.io.BitmapConverter;
 import mil.nga.geopackage.io.GeoPackageProgress;
+import mil.nga.geopackage.io.HashUtils;
 import mil.nga.geopackage.tiles.matrix.TileMatrix;
 import mil.nga.geopackage.tiles.matrix.TileMatrixDao;
 import mil.nga.geopackage.tiles.matrix.TileMatrixKey;
@@ -50,6 +52,14 @@ import mil.nga.sf.proj.ProjectionTransform;
  */
 public abstract class TileGenerator {
 
+    /**
+     * Tile bytes returned from {@link #createTile(int, long, long)} when the
+     * existing tile is unchanged and is kept without being rewritten
+     *
+     * @since 3.5.1
+     */
+    protected static final byte[] UNCHANGED_TILE = new byte[0];
+
     /**
      * Context
      */
@@ -120,6 +130,27 @@ public abstract class TileGenerator {
      */
     private Options options = null;
 
+    /**
+     * Number of upcoming tiles requested through {@link #prefetchTile} ahead
+     * of the tile being created, 0 to create tiles only when reached
+     */
+    private int prefetchCount = 0;
+
+    /**
+     * Tile DAO of the zoom level being generated
+     */
+    private TileDao zoomTileDao;
+
+    /**
+     * Tile grid of the zoom level being generated
+     */
+    private TileGrid zoomTileGrid;
+
+    /**
+     * Local tile grid of the zoom level being generated, null for XYZ tiles
+     */
+    private TileGrid zoomLocalTileGrid;
+
     /**
      * True when generating tiles in XYZ tile format, false when generating
      * GeoPackage format where rows and columns do not match the XYZ row &
@@ -152,6 +183,11 @@ public abstract class TileGenerator {
      */
     private boolean skipExisting = false;
 
+    /**
+     * Deduplicate identical tiles with the tile dedup extension
+     */
+    private boolean dedup = false;
+
     /**
      * Constructor
      *
@@ -371,6 +407,50 @@ public abstract class TileGenerator {
         this.skipExisting = skipExisting;
     }
 
+    /**
+     * Is deduplicating identical tiles with the tile dedup extension
+     *
+     * @return true if deduplicating tiles
+     * @since 3.5.1
+     */
+    public boolean isDedup() {
+        return dedup;
+    }
+
+    /**
+     * Set the deduplicate flag, when true identical tiles are stored once in
+     * the tile dedup extension blob table and referenced from tile rows
+     *
+     * @param dedup true to deduplicate tiles
+     * @since 3.5.1
+     */
+    public void setDedup(boolean dedup) {
+        this.dedup = dedup;
+    }
+
+    /**
+     * Get the number of upcoming tiles prefetched ahead of the tile being
+     * created
+     *
+     * @return prefetch count
+     * @since 3.5.1
+     */
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    /**
+     * Set the number of upcoming tiles prefetched ahead of the tile being
+     * created, allowing generators to create tiles concurrently with writing
+     * created tiles to the GeoPackage
+     *
+     * @param prefetchCount prefetch count, 0 to disable
+     * @since 3.5.1
+     */
+    public void setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = prefetchCount;
+    }
+
     /**
      * Get the tile count of tiles to be generated
      *
@@ -470,6 +550,13 @@ public abstract class TileGenerator {
             TileMatrixDao tileMatrixDao = geoPackage.getTileMatrixDao();
             TileDao tileDao = geoPackage.getTileDao(tileMatrixSet);
 
+            // Store identical tiles once with the tile dedup extension
+            if (dedup && tileDao.getDedup() == null) {
+                TileDedup tileDedup = new TileDedup(geoPackage, tableName);
+                tileDedup.getOrCreate();
+                tileDao.setDedup(tileDedup);
+            }
+
             // Create the new matrix tiles
             for (int zoom = minZoom; zoom <= maxZoom
                     && (progress == null || progress.isActive()); zoom++) {
@@ -513,6 +600,11 @@ public abstract class TileGenerator {
                 contents.setLastChange(new Date());
                 ContentsDao contentsDao = geoPackage.getContentsDao();
                 contentsDao.update(contents);
+
+                // Delete shared tiles no longer referenced after updates
+                if (update && tileDao.getDedup() != null) {
+                    tileDao.getDedup().deleteUnreferenced();
+                }
             }
         } catch (RuntimeException e) {
             geoPackage.deleteTableQuietly(tableName);
@@ -523,6 +615,11 @@ public abstract class TileGenerator {
         } catch (IOException e) {
             geoPackage.deleteTableQuietly(tableName);
             throw e;
+        } finally {
+            postTileGeneration();
+            zoomTileDao = null;
+            zoomTileGrid = null;
+            zoomLocalTileGrid = null;
         }
 
         return count;
@@ -803,6 +900,19 @@ public abstract class TileGenerator {
                               boolean update) throws SQLException, IOException {
 
         int count = 0;
+        int unchanged = 0;
+
+        zoomTileDao = tileDao;
+        zoomTileGrid = tileGrid;
+        zoomLocalTileGrid = localTileGrid;
+
+        // Blob references of already stored tiles by the created tile hash,
+        // skipping compression of repeated tiles
+        TileDedup tileDedup = tileDao.getDedup();
+        Map<String, byte[]> references = null;
+        if (tileDedup != null) {
+            references = new HashMap<>();
+        }
 
         Integer tileWidth = null;
         Integer tileHeight = null;
@@ -833,6 +943,12 @@ public abstract class TileGenerator {
             }
         }
 
+        // Grid position of the next tile considered for prefetching
+        long tileGridHeight = tileGrid.getMaxY() + 1 - tileGrid.getMinY();
+        long tileGridCount = (tileGrid.getMaxX() + 1 - tileGrid.getMinX())
+                * tileGridHeight;
+        long prefetchPosition = 0;
+
         // Download and create the tile and each coordinate
         for (long x = tileGrid.getMinX(); x <= tileGrid.getMaxX(); x++) {
 
@@ -859,6 +975,24 @@ public abstract class TileGenerator {
                     break;
                 }
 
+                // Prefetch the tiles within the prefetch window
+                if (prefetchCount > 0) {
+                    long position = (x - tileGrid.getMinX()) * tileGridHeight
+                            + (y - tileGrid.getMinY());
+                    prefetchPosition = Math.max(prefetchPosition, position);
+                    for (; prefetchPosition <= position + prefetchCount
+                            && prefetchPosition < tileGridCount; prefetchPosition++) {
+                        long prefetchX = tileGrid.getMinX() + prefetchPosition
+                                / tileGridHeight;
+                        long prefetchY = tileGrid.getMinY() + prefetchPosition
+                                % tileGridHeight;
+                        if (isCreateTile(existingTiles, tileGrid,
+                                localTileGrid, prefetchX, prefetchY)) {
+                            prefetchTile(zoomLevel, prefetchX, prefetchY);
+                        }
+                    }
+                }
+
                 long tileRow = y;
                 // Update the row to the local tile grid location
                 if (localTileGrid != null) {
@@ -877,16 +1011,32 @@ public abstract class TileGenerator {
                         // Create the tile
                         byte[] tileBytes = createTile(zoomLevel, x, y);
 
-                        if (tileBytes != null) {
+                        if (tileBytes == UNCHANGED_TILE) {
+
+                            // Keep the existing tile
+                            unchanged++;
+
+                        } else if (tileBytes != null) {
 
                             Bitmap bitmap = null;
 
-                            // Compress the image
-                            if (compressFormat != null) {
+                            // Reuse the reference of a repeated tile
+                            String hash = null;
+                            byte[] reference = null;
+                            if (references != null) {
+                                hash = HashUtils.hash(tileBytes);
+                                reference = references.get(hash);
+                            }
+
+                            // Compress the image, the compressed bytes are
+                            // stored under their own hash
+                            boolean compressed = false;
+                            if (reference == null && compressFormat != null) {
                                 bitmap = BitmapConverter.toBitmap(tileBytes, options);
                                 if (bitmap != null) {
                                     tileBytes = BitmapConverter.toBytes(bitmap,
                                             compressFormat, compressQuality);
+                                    compressed = true;
                                 }
                             }
 
@@ -901,11 +1051,25 @@ public abstract class TileGenerator {
 
                             newRow.setTileColumn(tileColumn);
                             newRow.setTileRow(tileRow);
-                            newRow.setTileData(tileBytes);
+                            if (tileDedup != null) {
+                                if (reference == null) {
+                                    if (compressed) {
+                                        reference = tileDedup.store(tileBytes);
+                                    } else {
+                                        reference = tileDedup.store(tileBytes, hash);
+                                    }
+                                    references.put(hash, reference);
+                                }
+                                newRow.setTileData(reference);
+                            } else {
+                                newRow.setTileData(tileBytes);
+                            }
                             tileDao.create(newRow);
 
                             count++;
 
+                            postTileCreation(zoomLevel, x, y);
+
                             // Determine the tile width and height
                             if (tileWidth == null) {
                                 if (bitmap == null) {
@@ -937,7 +1101,7 @@ public abstract class TileGenerator {
         // If none of the tiles were translated into a bitmap with dimensions,
         // delete them
         if ((tileWidth == null || tileHeight == null)
-                && existingTiles == null) {
+                && existingTiles == null && unchanged == 0) {
             count = 0;
 
             StringBuilder where = new StringBuilder();
@@ -976,8 +1140,8 @@ public abstract class TileGenerator {
                         zoomLevel));
             }
 
-            // Create the tile matrix
-            if (create) {
+            // Create the tile matrix, when at least one tile was written
+            if (create && tileWidth != null && tileHeight != null) {
 
                 // Calculate meters per pixel
                 double pixelXSize = (tileGridBoundingBox.getMaxLongitude() - tileGridBoundingBox
@@ -1002,19 +1166,122 @@ public abstract class TileGenerator {
         return count;
     }
 
+    /**
+     * Determine if the tile at the coordinate should be created, false when
+     * skipping an existing tile
+     *
+     * @param existingTiles existing tile rows by column, null when not
+     *                      skipping existing tiles
+     * @param tileGrid      tile grid
+     * @param localTileGrid local tile grid
+     * @param x             x coordinate
+     * @param y             y coordinate
+     * @return true if the tile should be created
+     */
+    private boolean isCreateTile(Map<Long, Set<Long>> existingTiles,
+                                 TileGrid tileGrid, TileGrid localTileGrid, long x, long y) {
+        boolean createTile = true;
+        if (existingTiles != null) {
+            long tileColumn = x;
+            long tileRow = y;
+            if (localTileGrid != null) {
+                tileColumn = (x - tileGrid.getMinX()) + localTileGrid.getMinX();
+                tileRow = (y - tileGrid.getMinY()) + localTileGrid.getMinY();
+            }
+            Set<Long> existingColumnRows = existingTiles.get(tileColumn);
+            createTile = existingColumnRows == null
+                    || !existingColumnRows.contains(tileRow);
+        }
+        return createTile;
+    }
+
+    /**
+     * Determine if the tile table has a tile at the coordinate of the zoom
+     * level being generated
+     *
+     * @param z zoom level
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return true if the tile exists
+     * @since 3.5.1
+     */
+    protected boolean hasTile(int z, long x, long y) {
+        boolean hasTile = false;
+        if (zoomTileDao != null) {
+            long tileColumn = x;
+            long tileRow = y;
+            if (zoomLocalTileGrid != null) {
+                tileColumn = (x - zoomTileGrid.getMinX()) + zoomLocalTileGrid.getMinX();
+                tileRow = (y - zoomTileGrid.getMinY()) + zoomLocalTileGrid.getMinY();
+            }
+
+            StringBuilder where = new StringBuilder();
+            where.append(zoomTileDao.buildWhere(TileTable.COLUMN_ZOOM_LEVEL, z));
+            where.append(" AND ");
+            where.append(zoomTileDao.buildWhere(TileTable.COLUMN_TILE_COLUMN,
+                    tileColumn));
+            where.append(" AND ");
+            where.append(zoomTileDao.buildWhere(TileTable.COLUMN_TILE_ROW,
+                    tileRow));
+            String[] whereArgs = zoomTileDao.buildWhereArgs(new Object[]{z,
+                    tileColumn, tileRow});
+
+            hasTile = zoomTileDao.count(where.toString(), whereArgs) > 0;
+        }
+        return hasTile;
+    }
+
     /**
      * Called after set up and right before tile generation starts for the first
      * zoom level
      */
     protected abstract void preTileGeneration();
 
+    /**
+     * Called after tile generation completes, fails, or is cancelled
+     *
+     * @since 3.5.1
+     */
+    protected void postTileGeneration() {
+
+    }
+
+    /**
+     * Called after a tile created by {@link #createTile(int, long, long)} is
+     * written to the tile table
+     *
+     * @param z zoom level
+     * @param x x coordinate
+     * @param y y coordinate
+     * @since 3.5.1
+     */
+    protected void postTileCreation(int z, long x, long y) {
+
+    }
+
+    /**
+     * Called ahead of {@link #createTile(int, long, long)} for upcoming tiles
+     * within the prefetch count, allowing the tile to be created concurrently
+     * while previous tiles are written. A prefetched tile is later created
+     * through createTile unless generation is cancelled or fails.
+     *
+     * @param z zoom level
+     * @param x x coordinate
+     * @param y y coordinate
+     * @since 3.5.1
+     */
+    protected void prefetchTile(int z, long x, long y) {
+
+    }
+
     /**
      * Create the tile
      *
      * @param z zoom level
      * @param x x coordinate
      * @param y y coordinate
-     * @return tile bytes
+     * @return tile bytes, null if no tile, or {@link #UNCHANGED_TILE} to keep
+     * the existing tile
      */
     protected abstract byte[] createTile(int z, long x, long y);
 
@@ -0,0 +1,697 @@
+package mil.nga.geopackage.tiles;
+
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.core.contents.Contents;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.io.BitmapConverter;
+import mil.nga.geopackage.io.GeoPackageProgress;
+import mil.nga.geopackage.tiles.matrix.TileMatrix;
+import mil.nga.geopackage.tiles.matrix.TileMatrixDao;
+import mil.nga.geopackage.tiles.matrix.TileMatrixKey;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileRow;
+import mil.nga.geopackage.tiles.user.TileTable;
+
+/**
+ * Tile pyramid builder, builds overview zoom levels of an existing tile
+ * table by downsampling the four child tiles stored at the zoom level below.
+ * Only base zoom level tiles need to be downloaded or rendered, overviews
+ * are built at local CPU cost.
+ *
+ * Children are read and parents written on the calling thread in batched
+ * transactions, while decoding, downsampling, and encoding run in parallel
+ * across parent tiles. Each tile matrix must be exactly half the matrix
+ * width and height of the zoom level below.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class TilePyramidBuilder {
+
+    /**
+     * Default parent tiles written per transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * GeoPackage
+     */
+    private final GeoPackage geoPackage;
+
+    /**
+     * Tile DAO
+     */
+    private final TileDao tileDao;
+
+    /**
+     * Downsample filter
+     */
+    private TileDownsampleFilter filter = TileDownsampleFilter.BOX;
+
+    /**
+     * Compress format of built tiles
+     */
+    private CompressFormat compressFormat = CompressFormat.PNG;
+
+    /**
+     * Compress quality of built tiles
+     */
+    private int compressQuality = 100;
+
+    /**
+     * Parallel downsampling threads
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Parent tiles written per transaction
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Replace existing parent tiles flag
+     */
+    private boolean replaceExisting = true;
+
+    /**
+     * Progress
+     */
+    private GeoPackageProgress progress;
+
+    /**
+     * Constructor
+     *
+     * @param geoPackage GeoPackage
+     * @param tileDao    tile dao
+     */
+    public TilePyramidBuilder(GeoPackage geoPackage, TileDao tileDao) {
+        this.geoPackage = geoPackage;
+        this.tileDao = tileDao;
+    }
+
+    /**
+     * Get the tile DAO
+     *
+     * @return tile dao
+     */
+    public TileDao getTileDao() {
+        return tileDao;
+    }
+
+    /**
+     * Get the downsample filter
+     *
+     * @return filter
+     */
+    public TileDownsampleFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Set the downsample filter
+     *
+     * @param filter filter
+     */
+    public void setFilter(TileDownsampleFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Get the compress format of built tiles
+     *
+     * @return compress format
+     */
+    public CompressFormat getCompressFormat() {
+        return compressFormat;
+    }
+
+    /**
+     * Set the compress format of built tiles
+     *
+     * @param compressFormat compress format
+     */
+    public void setCompressFormat(CompressFormat compressFormat) {
+        this.compressFormat = compressFormat;
+    }
+
+    /**
+     * Get the compress quality of built tiles
+     *
+     * @return compress quality
+     */
+    public int getCompressQuality() {
+        return compressQuality;
+    }
+
+    /**
+     * Set the compress quality of built tiles
+     *
+     * @param compressQuality compress quality
+     */
+    public void setCompressQuality(int compressQuality) {
+        this.compressQuality = compressQuality;
+    }
+
+    /**
+     * Get the parallel downsampling threads
+     *
+     * @return threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the parallel downsampling threads
+     *
+     * @param threads threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Get the parent tiles written per transaction
+     *
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the parent tiles written per transaction
+     *
+     * @param batchSize batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Is replace existing parent tiles on
+     *
+     * @return true if replacing existing tiles
+     */
+    public boolean isReplaceExisting() {
+        return replaceExisting;
+    }
+
+    /**
+     * Set the replace existing parent tiles flag, when false existing parent
+     * tiles are kept
+     *
+     * @param replaceExisting true to replace existing tiles
+     */
+    public void setReplaceExisting(boolean replaceExisting) {
+        this.replaceExisting = replaceExisting;
+    }
+
+    /**
+     * Set the progress tracker, counting parent tiles
+     *
+     * @param progress progress tracker
+     */
+    public void setProgress(GeoPackageProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Build the overview zoom levels from the max zoom level down to the min
+     * zoom level. Each zoom level is built from the zoom level below it.
+     *
+     * @param minZoom lowest overview zoom level to build
+     * @param maxZoom base zoom level with existing tiles
+     * @return number of overview tiles written
+     */
+    public int build(long minZoom, long maxZoom) {
+        int count = 0;
+        for (long zoom = maxZoom; zoom > minZoom
+                && (progress == null || progress.isActive()); zoom--) {
+            count += build(zoom);
+        }
+        return count;
+    }
+
+    /**
+     * Build the overview zoom level above the zoom level, zoom - 1, from the
+     * existing tiles of the zoom level
+     *
+     * @param zoom child zoom level with existing tiles
+     * @return number of overview tiles written
+     */
+    public int build(long zoom) {
+
+        String tableName = tileDao.getTableName();
+        long parentZoom = zoom - 1;
+
+        TileMatrixDao tileMatrixDao = geoPackage.getTileMatrixDao();
+        TileMatrix parentMatrix;
+        try {
+            TileMatrix childMatrix = tileMatrixDao.queryForId(
+                    new TileMatrixKey(tableName, zoom));
+            if (childMatrix == null) {
+                throw new GeoPackageException(
+                        "No tile matrix for zoom level. Table: " + tableName
+                                + ", Zoom: " + zoom);
+            }
+            parentMatrix = getOrCreateParentMatrix(tileMatrixDao, childMatrix,
+                    parentZoom);
+        } catch (SQLException e) {
+            throw new GeoPackageException(
+                    "Failed to get tile matrices. Table: " + tableName
+                            + ", Zoom: " + zoom, e);
+        }
+
+        final int tileWidth = (int) parentMatrix.getTileWidth();
+        final int tileHeight = (int) parentMatrix.getTileHeight();
+
+        long[] parents = queryParents(zoom);
+        int parentCount = parents.length / 2;
+
+        if (progress != null) {
+            progress.setMax(parentCount);
+        }
+
+        int count = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                threads));
+        try {
+
+            List<ParentTile> pending = null;
+            List<ParentTile> batch = new ArrayList<>();
+
+            for (int i = 0; i < parentCount
+                    && (progress == null || progress.isActive()); i++) {
+
+                long column = parents[i * 2];
+                long row = parents[i * 2 + 1];
+
+                if (!replaceExisting
+                        && tileDao.queryForTile(column, row, parentZoom) != null) {
+                    if (progress != null) {
+                        progress.addProgress(1);
+                    }
+                    continue;
+                }
+
+                final byte[][] children = new byte[4][];
+                for (int child = 0; child < 4; child++) {
+                    TileRow childRow = tileDao.queryForTile(
+                            column * 2 + child % 2, row * 2 + child / 2, zoom);
+                    if (childRow != null) {
+                        children[child] = childRow.getTileData();
+                    }
+                }
+
+                Future<byte[]> future = executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return createParent(children, tileWidth, tileHeight);
+                    }
+                });
+                batch.add(new ParentTile(column, row, future));
+
+                // Write the previous batch while this batch is downsampled
+                if (batch.size() >= batchSize) {
+                    count += write(pending, parentZoom);
+                    pending = batch;
+                    batch = new ArrayList<>();
+                }
+            }
+
+            count += write(pending, parentZoom);
+            count += write(batch, parentZoom);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (count > 0) {
+            updateLastChange();
+        }
+
+        return count;
+    }
+
+    /**
+     * Get or create the parent tile matrix at half the child matrix width and
+     * height
+     *
+     * @param tileMatrixDao tile matrix dao
+     * @param childMatrix   child tile matrix
+     * @param parentZoom    parent zoom level
+     * @return parent tile matrix
+     * @throws SQLException upon failure
+     */
+    private TileMatrix getOrCreateParentMatrix(TileMatrixDao tileMatrixDao,
+                                              TileMatrix childMatrix, long parentZoom) throws SQLException {
+
+        String tableName = tileDao.getTableName();
+        long childWidth = childMatrix.getMatrixWidth();
+        long childHeight = childMatrix.getMatrixHeight();
+
+        TileMatrix parentMatrix = tileMatrixDao.queryForId(new TileMatrixKey(
+                tableName, parentZoom));
+
+        if (parentMatrix == null) {
+
+            if (childWidth % 2 != 0 || childHeight % 2 != 0) {
+                throw new GeoPackageException(
+                        "Tile matrix width and height must be even to build the overview. Table: "
+                                + tableName + ", Zoom: "
+                                + childMatrix.getZoomLevel() + ", Matrix Width: "
+                                + childWidth + ", Matrix Height: " + childHeight);
+            }
+
+            parentMatrix = new TileMatrix();
+            parentMatrix.setContents(tileDao.getTileMatrixSet().getContents());
+            parentMatrix.setZoomLevel(parentZoom);
+            parentMatrix.setMatrixWidth(childWidth / 2);
+            parentMatrix.setMatrixHeight(childHeight / 2);
+            parentMatrix.setTileWidth(childMatrix.getTileWidth());
+            parentMatrix.setTileHeight(childMatrix.getTileHeight());
+            parentMatrix.setPixelXSize(childMatrix.getPixelXSize() * 2);
+            parentMatrix.setPixelYSize(childMatrix.getPixelYSize() * 2);
+            tileMatrixDao.create(parentMatrix);
+
+        } else if (parentMatrix.getMatrixWidth() * 2 != childWidth
+                || parentMatrix.getMatrixHeight() * 2 != childHeight) {
+            throw new GeoPackageException(
+                    "Tile matrix is not half the size of the zoom level below. Table: "
+                            + tableName + ", Zoom: " + parentZoom
+                            + ", Matrix Width: " + parentMatrix.getMatrixWidth()
+                            + ", Matrix Height: " + parentMatrix.getMatrixHeight());
+        }
+
+        return parentMatrix;
+    }
+
+    /**
+     * Query the parent tile coordinates of the existing child tiles
+     *
+     * @param zoom child zoom level
+     * @return parent column and row pairs
+     */
+    private long[] queryParents(long zoom) {
+        long[] parents = new long[64];
+        int length = 0;
+        Cursor cursor = geoPackage.rawQuery("SELECT DISTINCT "
+                        + TileTable.COLUMN_TILE_COLUMN + " / 2, "
+                        + TileTable.COLUMN_TILE_ROW + " / 2 FROM \""
+                        + tileDao.getTableName() + "\" WHERE "
+                        + TileTable.COLUMN_ZOOM_LEVEL + " = ? ORDER BY 1, 2",
+                new String[]{String.valueOf(zoom)});
+        try {
+            while (cursor.moveToNext()) {
+                if (length + 2 > parents.length) {
+                    long[] expanded = new long[parents.length * 2];
+                    System.arraycopy(parents, 0, expanded, 0, length);
+                    parents = expanded;
+                }
+                parents[length++] = cursor.getLong(0);
+                parents[length++] = cursor.getLong(1);
+            }
+        } finally {
+            cursor.close();
+        }
+        long[] result = new long[length];
+        System.arraycopy(parents, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * Write the downsampled parent tiles in a single transaction
+     *
+     * @param batch      parent tiles
+     * @param parentZoom parent zoom level
+     * @return number of tiles written
+     */
+    private int write(List<ParentTile> batch, long parentZoom) {
+
+        int count = 0;
+
+        if (batch != null && !batch.isEmpty()) {
+
+            GeoPackageConnection connection = geoPackage.getConnection();
+            connection.beginTransaction();
+            boolean successful = false;
+            try {
+                for (ParentTile parent : batch) {
+
+                    byte[] tileData = null;
+                    try {
+                        tileData = parent.future.get();
+                    } catch (ExecutionException e) {
+                        Log.w(TilePyramidBuilder.class.getSimpleName(),
+                                "Failed to build overview tile. Table: "
+                                        + tileDao.getTableName() + ", Zoom: "
+                                        + parentZoom + ", Column: " + parent.column
+                                        + ", Row: " + parent.row, e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new GeoPackageException(
+                                "Interrupted building overview tiles. Table: "
+                                        + tileDao.getTableName(), e);
+                    }
+
+                    if (tileData != null) {
+                        tileDao.deleteTile(parent.column, parent.row,
+                                parentZoom);
+                        TileRow newRow = tileDao.newRow();
+                        newRow.setZoomLevel(parentZoom);
+                        newRow.setTileColumn(parent.column);
+                        newRow.setTileRow(parent.row);
+                        newRow.setTileData(tileData);
+                        tileDao.create(newRow);
+                        count++;
+                    }
+
+                    if (progress != null) {
+                        progress.addProgress(1);
+                    }
+                }
+                successful = true;
+            } finally {
+                connection.endTransaction(successful);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Update the contents last change date
+     */
+    private void updateLastChange() {
+        try {
+            Contents contents = tileDao.getTileMatrixSet().getContents();
+            contents.setLastChange(new Date());
+            geoPackage.getContentsDao().update(contents);
+        } catch (SQLException e) {
+            Log.w(TilePyramidBuilder.class.getSimpleName(),
+                    "Failed to update contents last change. Table: "
+                            + tileDao.getTableName(), e);
+        }
+    }
+
+    /**
+     * Create the parent tile from the child tiles
+     *
+     * @param children   child tile bytes, ordered top left, top right, bottom
+     *                   left, bottom right
+     * @param tileWidth  parent tile width
+     * @param tileHeight parent tile height
+     * @return parent tile bytes, null if no children were drawn
+     * @throws IOException upon failure
+     */
+    private byte[] createParent(byte[][] children, int tileWidth,
+                                int tileHeight) throws IOException {
+
+        byte[] tileData = null;
+
+        Bitmap parent = Bitmap.createBitmap(tileWidth, tileHeight,
+                Bitmap.Config.ARGB_8888);
+        try {
+
+            boolean drawn = false;
+            for (int child = 0; child < 4; child++) {
+                if (children[child] != null) {
+                    Bitmap childBitmap = BitmapConverter.toBitmap(children[child]);
+                    if (childBitmap != null) {
+                        drawChild(parent, childBitmap, child % 2, child / 2);
+                        childBitmap.recycle();
+                        drawn = true;
+                    }
+                }
+            }
+
+            if (drawn) {
+                tileData = BitmapConverter.toBytes(parent, compressFormat,
+                        compressQuality);
+            }
+
+        } finally {
+            parent.recycle();
+        }
+
+        return tileData;
+    }
+
+    /**
+     * Downsample and draw the child into its parent quadrant
+     *
+     * @param parent parent bitmap
+     * @param child  child bitmap
+     * @param dx     quadrant x, 0 or 1
+     * @param dy     quadrant y, 0 or 1
+     */
+    private void drawChild(Bitmap parent, Bitmap child, int dx, int dy) {
+
+        int width = parent.getWidth();
+        int height = parent.getHeight();
+        int left = dx * width / 2;
+        int top = dy * height / 2;
+        int right = (dx + 1) * width / 2;
+        int bottom = (dy + 1) * height / 2;
+
+        if (filter == TileDownsampleFilter.BOX && child.getWidth() == width
+                && child.getHeight() == height && width % 2 == 0
+                && height % 2 == 0) {
+            boxDownsample(parent, child, left, top);
+        } else {
+            Paint paint = new Paint();
+            paint.setFilterBitmap(filter != TileDownsampleFilter.NEAREST_NEIGHBOR);
+            Canvas canvas = new Canvas(parent);
+            canvas.drawBitmap(child, null, new Rect(left, top, right, bottom),
+                    paint);
+        }
+    }
+
+    /**
+     * Box filter downsample the child into the parent at the offset, alpha
+     * weighting each 2x2 pixel average
+     *
+     * @param parent parent bitmap
+     * @param child  child bitmap of the parent size
+     * @param left   parent x offset
+     * @param top    parent y offset
+     */
+    private static void boxDownsample(Bitmap parent, Bitmap child, int left,
+                                      int top) {
+
+        int childWidth = child.getWidth();
+        int childHeight = child.getHeight();
+        int[] pixels = new int[childWidth * childHeight];
+        child.getPixels(pixels, 0, childWidth, 0, 0, childWidth, childHeight);
+
+        int width = childWidth / 2;
+        int height = childHeight / 2;
+        int[] downsampled = new int[width * height];
+
+        for (int y = 0; y < height; y++) {
+            int index = y * 2 * childWidth;
+            for (int x = 0; x < width; x++, index += 2) {
+                downsampled[y * width + x] = average(pixels[index],
+                        pixels[index + 1], pixels[index + childWidth],
+                        pixels[index + childWidth + 1]);
+            }
+        }
+
+        parent.setPixels(downsampled, 0, width, left, top, width, height);
+    }
+
+    /**
+     * Alpha weighted average of four colors
+     *
+     * @param color1 first color
+     * @param color2 second color
+     * @param color3 third color
+     * @param color4 fourth color
+     * @return average color
+     */
+    private static int average(int color1, int color2, int color3, int color4) {
+
+        int alpha1 = Color.alpha(color1);
+        int alpha2 = Color.alpha(color2);
+        int alpha3 = Color.alpha(color3);
+        int alpha4 = Color.alpha(color4);
+        int alpha = alpha1 + alpha2 + alpha3 + alpha4;
+
+        int average = Color.TRANSPARENT;
+        if (alpha > 0) {
+            int red = (Color.red(color1) * alpha1 + Color.red(color2) * alpha2
+                    + Color.red(color3) * alpha3 + Color.red(color4) * alpha4)
+                    / alpha;
+            int green = (Color.green(color1) * alpha1
+                    + Color.green(color2) * alpha2
+                    + Color.green(color3) * alpha3
+                    + Color.green(color4) * alpha4) / alpha;
+            int blue = (Color.blue(color1) * alpha1
+                    + Color.blue(color2) * alpha2
+                    + Color.blue(color3) * alpha3
+                    + Color.blue(color4) * alpha4) / alpha;
+            average = Color.argb((alpha + 2) / 4, red, green, blue);
+        }
+
+        return average;
+    }
+
+    /**
+     * Parent tile being downsampled
+     */
+    private static class ParentTile {
+
+        /**
+         * Tile column
+         */
+        final long column;
+
+        /**
+         * Tile row
+         */
+        final long row;
+
+        /**
+         * Future tile bytes
+         */
+        final Future<byte[]> future;
+
+        /**
+         * Constructor
+         *
+         * @param column tile column
+         * @param row    tile row
+         * @param future future tile bytes
+         */
+        ParentTile(long column, long row, Future<byte[]> future) {
+            this.column = column;
+            this.row = row;
+            this.future = future;
+        }
+
+    }
+
+}
@@ -0,0 +1,718 @@
+package mil.nga.geopackage.tiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.io.GeoPackageIOUtils;
+
+/**
+ * Tile URL fetcher, downloads tile bytes over HTTP with a bounded number of
+ * in flight requests per host, keep-alive connection reuse, redirect
+ * following, per host rate limiting, and retries with jittered exponential
+ * backoff on 429 and 5xx responses and connection failures
+ *
+ * Connections are reused by fully reading and closing each response stream
+ * without disconnecting, leaving the socket in the platform keep-alive pool.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class UrlTileFetcher {
+
+    /**
+     * Too many requests HTTP response code
+     */
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Temporary redirect HTTP response code
+     */
+    public static final int HTTP_TEMPORARY_REDIRECT = 307;
+
+    /**
+     * Permanent redirect HTTP response code
+     */
+    public static final int HTTP_PERMANENT_REDIRECT = 308;
+
+    /**
+     * Default max in flight requests across all hosts
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 8;
+
+    /**
+     * Default max in flight requests per host
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+
+    /**
+     * Default max retries of a failed request
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /**
+     * Default initial retry delay in milliseconds
+     */
+    public static final long DEFAULT_RETRY_DELAY = 500;
+
+    /**
+     * Default max retry delay in milliseconds
+     */
+    public static final long DEFAULT_MAX_RETRY_DELAY = 30000;
+
+    /**
+     * Default max redirects followed per request
+     */
+    public static final int DEFAULT_MAX_REDIRECTS = 5;
+
+    /**
+     * Max in flight requests across all hosts
+     */
+    private int maxRequests = DEFAULT_MAX_REQUESTS;
+
+    /**
+     * Max in flight requests per host
+     */
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+
+    /**
+     * Max requests per second per host, 0 for no rate limit
+     */
+    private double requestsPerSecond = 0;
+
+    /**
+     * Max retries of a failed request
+     */
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+
+    /**
+     * Initial retry delay in milliseconds, doubled on each retry
+     */
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+
+    /**
+     * Max retry delay in milliseconds
+     */
+    private long maxRetryDelay = DEFAULT_MAX_RETRY_DELAY;
+
+    /**
+     * Max redirects followed per request
+     */
+    private int maxRedirects = DEFAULT_MAX_REDIRECTS;
+
+    /**
+     * Connect timeout in milliseconds, 0 for the platform default
+     */
+    private int connectTimeout = 0;
+
+    /**
+     * Read timeout in milliseconds, 0 for the platform default
+     */
+    private int readTimeout = 0;
+
+    /**
+     * Host request states by host and port
+     */
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Request executor, created when first needed
+     */
+    private ExecutorService executor;
+
+    /**
+     * Constructor
+     */
+    public UrlTileFetcher() {
+
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxRequests        max in flight requests across all hosts
+     * @param maxRequestsPerHost max in flight requests per host
+     */
+    public UrlTileFetcher(int maxRequests, int maxRequestsPerHost) {
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Get the max in flight requests across all hosts
+     *
+     * @return max requests
+     */
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * Set the max in flight requests across all hosts, applied when the
+     * executor is next created
+     *
+     * @param maxRequests max requests
+     */
+    public void setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+    }
+
+    /**
+     * Get the max in flight requests per host
+     *
+     * @return max requests per host
+     */
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * Set the max in flight requests per host, applied to hosts not yet
+     * requested
+     *
+     * @param maxRequestsPerHost max requests per host
+     */
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Get the max requests per second per host
+     *
+     * @return requests per second, 0 for no rate limit
+     */
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    /**
+     * Set the max requests per second per host
+     *
+     * @param requestsPerSecond requests per second, 0 for no rate limit
+     */
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Get the max retries of a failed request
+     *
+     * @return max retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Set the max retries of a failed request
+     *
+     * @param maxRetries max retries
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Get the initial retry delay in milliseconds
+     *
+     * @return retry delay
+     */
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Set the initial retry delay in milliseconds, doubled on each retry
+     *
+     * @param retryDelay retry delay
+     */
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Get the max retry delay in milliseconds
+     *
+     * @return max retry delay
+     */
+    public long getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    /**
+     * Set the max retry delay in milliseconds
+     *
+     * @param maxRetryDelay max retry delay
+     */
+    public void setMaxRetryDelay(long maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    /**
+     * Get the max redirects followed per request
+     *
+     * @return max redirects
+     */
+    public int getMaxRedirects() {
+        return maxRedirects;
+    }
+
+    /**
+     * Set the max redirects followed per request
+     *
+     * @param maxRedirects max redirects
+     */
+    public void setMaxRedirects(int maxRedirects) {
+        this.maxRedirects = maxRedirects;
+    }
+
+    /**
+     * Get the connect timeout in milliseconds
+     *
+     * @return connect timeout
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Set the connect timeout in milliseconds
+     *
+     * @param connectTimeout connect timeout, 0 for the platform default
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Get the read timeout in milliseconds
+     *
+     * @return read timeout
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Set the read timeout in milliseconds
+     *
+     * @param readTimeout read timeout, 0 for the platform default
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Submit an asynchronous fetch of the URL
+     *
+     * @param url url
+     * @return future tile bytes
+     */
+    public Future<byte[]> submit(final String url) {
+        return getExecutor().submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return fetch(url);
+            }
+        });
+    }
+
+    /**
+     * Submit an asynchronous conditional fetch of the URL
+     *
+     * @param url          url
+     * @param eTag         ETag sent as If-None-Match, or null
+     * @param lastModified Last-Modified sent as If-Modified-Since, or null
+     * @return future response
+     */
+    public Future<UrlTileResponse> submit(final String url, final String eTag,
+                                          final String lastModified) {
+        return getExecutor().submit(new Callable<UrlTileResponse>() {
+            @Override
+            public UrlTileResponse call() {
+                return fetch(url, eTag, lastModified);
+            }
+        });
+    }
+
+    /**
+     * Fetch the URL bytes on the calling thread, retrying failures
+     *
+     * @param url url
+     * @return bytes
+     */
+    public byte[] fetch(String url) {
+        return fetch(url, null, null).getBytes();
+    }
+
+    /**
+     * Conditionally fetch the URL on the calling thread, retrying failures
+     *
+     * @param url          url
+     * @param eTag         ETag sent as If-None-Match, or null
+     * @param lastModified Last-Modified sent as If-Modified-Since, or null
+     * @return successful or not modified response
+     */
+    public UrlTileResponse fetch(String url, String eTag, String lastModified) {
+
+        URL requestUrl;
+        try {
+            requestUrl = new URL(url);
+        } catch (MalformedURLException e) {
+            throw new GeoPackageException("Failed to download tile. URL: "
+                    + url, e);
+        }
+
+        HostState host = getHost(requestUrl);
+
+        UrlTileResponse response;
+
+        for (int attempt = 0; ; attempt++) {
+
+            response = null;
+            IOException failure = null;
+
+            host.acquire();
+            try {
+                response = request(requestUrl, eTag, lastModified);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                host.release();
+            }
+
+            if (response != null
+                    && (response.isSuccessful() || response.isNotModified())) {
+                break;
+            }
+
+            boolean retry = attempt < maxRetries
+                    && (failure != null || isRetryable(response.getCode()));
+            if (!retry) {
+                if (failure != null) {
+                    throw new GeoPackageException(
+                            "Failed to download tile. URL: " + url, failure);
+                }
+                throw new GeoPackageException("Failed to download tile. URL: "
+                        + url + ", Response Code: " + response.getCode());
+            }
+
+            long retryAfter = response != null ? response.getRetryAfter() : -1;
+            sleep(getBackoff(attempt, retryAfter));
+        }
+
+        return response;
+    }
+
+    /**
+     * Close the fetcher, shutting down the executor and interrupting in
+     * flight asynchronous requests. The fetcher may still be used, creating a
+     * new executor when needed.
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Determine if the response code is retryable
+     *
+     * @param code response code
+     * @return true if retryable
+     */
+    public static boolean isRetryable(int code) {
+        return code == HTTP_TOO_MANY_REQUESTS || code >= 500;
+    }
+
+    /**
+     * Get the jittered backoff delay of a retry attempt
+     *
+     * @param attempt    zero based attempt number
+     * @param retryAfter server requested delay in milliseconds, -1 if none
+     * @return delay in milliseconds
+     */
+    private long getBackoff(int attempt, long retryAfter) {
+        long delay = retryDelay << Math.min(attempt, 30);
+        if (delay <= 0 || delay > maxRetryDelay) {
+            delay = maxRetryDelay;
+        }
+        // Equal jitter, spreading retries of concurrent requests
+        long half = delay / 2;
+        delay = half + (long) (Math.random() * (delay - half + 1));
+        if (retryAfter > delay) {
+            delay = Math.min(retryAfter, maxRetryDelay);
+        }
+        return delay;
+    }
+
+    /**
+     * Request the URL, following redirects
+     *
+     * @param url          url
+     * @param eTag         ETag sent as If-None-Match, or null
+     * @param lastModified Last-Modified sent as If-Modified-Since, or null
+     * @return response
+     * @throws IOException upon connection failure
+     */
+    private UrlTileResponse request(URL url, String eTag, String lastModified)
+            throws IOException {
+
+        UrlTileResponse response = null;
+
+        for (int redirects = 0; response == null; redirects++) {
+
+            HttpURLConnection connection = (HttpURLConnection) url
+                    .openConnection();
+            connection.setInstanceFollowRedirects(false);
+            if (connectTimeout > 0) {
+                connection.setConnectTimeout(connectTimeout);
+            }
+            if (readTimeout > 0) {
+                connection.setReadTimeout(readTimeout);
+            }
+            if (eTag != null) {
+                connection.setRequestProperty("If-None-Match", eTag);
+            }
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since",
+                        lastModified);
+            }
+
+            int code = connection.getResponseCode();
+
+            if (isRedirect(code)) {
+                String location = connection.getHeaderField("Location");
+                drain(connection);
+                if (location == null || redirects >= maxRedirects) {
+                    throw new GeoPackageException(
+                            "Failed to follow tile redirect. URL: " + url
+                                    + ", Location: " + location
+                                    + ", Redirects: " + redirects);
+                }
+                // Resolve relative locations, allowing protocol changes
+                url = new URL(url, location);
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                InputStream stream = connection.getInputStream();
+                try {
+                    response = new UrlTileResponse(code,
+                            GeoPackageIOUtils.streamBytes(stream),
+                            connection.getHeaderField("ETag"),
+                            connection.getHeaderField("Last-Modified"), -1);
+                } finally {
+                    stream.close();
+                }
+            } else {
+                long retryAfter = getRetryAfter(connection);
+                String responseETag = connection.getHeaderField("ETag");
+                String responseLastModified = connection
+                        .getHeaderField("Last-Modified");
+                drain(connection);
+                response = new UrlTileResponse(code, null, responseETag,
+                        responseLastModified, retryAfter);
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Determine if the response code is a redirect
+     *
+     * @param code response code
+     * @return true if a redirect
+     */
+    private static boolean isRedirect(int code) {
+        return code == HttpURLConnection.HTTP_MOVED_PERM
+                || code == HttpURLConnection.HTTP_MOVED_TEMP
+                || code == HttpURLConnection.HTTP_SEE_OTHER
+                || code == HTTP_TEMPORARY_REDIRECT
+                || code == HTTP_PERMANENT_REDIRECT;
+    }
+
+    /**
+     * Get the Retry-After header delay in milliseconds
+     *
+     * @param connection connection
+     * @return delay in milliseconds, -1 if not provided in seconds
+     */
+    private static long getRetryAfter(HttpURLConnection connection) {
+        long retryAfter = -1;
+        String value = connection.getHeaderField("Retry-After");
+        if (value != null) {
+            try {
+                retryAfter = Long.parseLong(value.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                // HTTP dates are not honored, use the backoff delay
+            }
+        }
+        return retryAfter;
+    }
+
+    /**
+     * Read and close the remaining response body so the connection can be
+     * reused
+     *
+     * @param connection connection
+     */
+    private static void drain(HttpURLConnection connection) {
+        InputStream stream = connection.getErrorStream();
+        if (stream == null) {
+            try {
+                stream = connection.getInputStream();
+            } catch (IOException e) {
+                // No response body
+            }
+        }
+        if (stream != null) {
+            try {
+                byte[] buffer = new byte[1024];
+                while (stream.read(buffer) != -1) {
+                }
+            } catch (IOException e) {
+                // Connection will not be reused
+            } finally {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // Connection will not be reused
+                }
+            }
+        }
+    }
+
+    /**
+     * Sleep between retries
+     *
+     * @param delay delay in milliseconds
+     */
+    private static void sleep(long delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeoPackageException("Tile download interrupted", e);
+        }
+    }
+
+    /**
+     * Get or create the host state of the URL
+     *
+     * @param url url
+     * @return host state
+     */
+    private HostState getHost(URL url) {
+        String key = url.getHost() + ":" + url.getPort();
+        HostState host = hosts.get(key);
+        if (host == null) {
+            synchronized (hosts) {
+                host = hosts.get(key);
+                if (host == null) {
+                    host = new HostState(maxRequestsPerHost);
+                    hosts.put(key, host);
+                }
+            }
+        }
+        return host;
+    }
+
+    /**
+     * Get or create the executor
+     *
+     * @return executor
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Math.max(1, maxRequests),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                    UrlTileFetcher.class.getSimpleName() + "-"
+                                            + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return executor;
+    }
+
+    /**
+     * Per host in flight request limit and request rate limit
+     */
+    private class HostState {
+
+        /**
+         * In flight request permits
+         */
+        private final Semaphore permits;
+
+        /**
+         * Earliest start time in milliseconds of the next request
+         */
+        private long nextRequestTime = 0;
+
+        /**
+         * Constructor
+         *
+         * @param maxRequests max in flight requests
+         */
+        HostState(int maxRequests) {
+            permits = new Semaphore(Math.max(1, maxRequests), true);
+        }
+
+        /**
+         * Acquire a request permit and wait for the rate limit
+         */
+        void acquire() {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GeoPackageException("Tile download interrupted", e);
+            }
+            if (requestsPerSecond > 0) {
+                long interval = (long) (1000 / requestsPerSecond);
+                long wait;
+                synchronized (this) {
+                    long now = System.currentTimeMillis();
+                    wait = nextRequestTime - now;
+                    nextRequestTime = Math.max(now, nextRequestTime)
+                            + interval;
+                }
+                if (wait > 0) {
+                    try {
+                        sleep(wait);
+                    } catch (GeoPackageException e) {
+                        permits.release();
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Release a request permit
+         */
+        void release() {
+            permits.release();
+        }
+
+    }
+
+}
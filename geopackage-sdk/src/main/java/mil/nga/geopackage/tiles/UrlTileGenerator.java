@@ -1,20 +1,22 @@
 package mil.nga.geopackage.tiles;
 
 import android.content.Context;
+import android.content.res.Resources;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.net.URLDecoder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.R;
-import mil.nga.geopackage.io.GeoPackageIOUtils;
+import mil.nga.geopackage.extension.refresh.TileRefresh;
+import mil.nga.geopackage.extension.refresh.TileValidator;
+import mil.nga.geopackage.io.HashUtils;
 import mil.nga.sf.proj.Projection;
 
 /**
@@ -31,19 +33,35 @@ public class UrlTileGenerator extends TileGenerator {
     private final String tileUrl;
 
     /**
-     * True if the URL has x, y, or z variables
+     * Compiled tile URL template
      */
-    private final boolean urlHasXYZ;
+    private final UrlTileTemplate template;
 
     /**
-     * True if the URL has bounding box variables
+     * Tile URL fetcher
      */
-    private final boolean urlHasBoundingBox;
+    private UrlTileFetcher fetcher;
 
     /**
-     * TMS URL flag, when true x,y,z converted to TMS when requesting the tile
+     * Prefetched tile downloads by zoom, x, and y
      */
-    private boolean tms = false;
+    private final Map<String, Future<UrlTileResponse>> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * Refresh flag, when true tiles are conditionally requested and only
+     * changed tiles are rewritten
+     */
+    private boolean refresh = false;
+
+    /**
+     * Tile refresh extension, when refreshing
+     */
+    private TileRefresh tileRefresh;
+
+    /**
+     * Validators of created tiles waiting to be written, by zoom, x, and y
+     */
+    private final Map<String, TileValidator> createdValidators = new ConcurrentHashMap<>();
 
     /**
      * Constructor
@@ -69,14 +87,22 @@ public class UrlTileGenerator extends TileGenerator {
                     + tileUrl, e);
         }
 
-        this.urlHasXYZ = hasXYZ(tileUrl);
-        this.urlHasBoundingBox = hasBoundingBox(tileUrl);
+        this.template = UrlTileTemplate.compile(this.tileUrl);
 
-        if (!this.urlHasXYZ && !this.urlHasBoundingBox) {
+        if (!template.hasXYZ() && !template.hasBoundingBox()) {
             throw new GeoPackageException(
                     "URL does not contain x,y,z or bounding box variables: "
                             + tileUrl);
         }
+
+        Resources resources = context.getResources();
+        fetcher = new UrlTileFetcher(
+                resources.getInteger(R.integer.tile_generator_url_max_requests),
+                resources.getInteger(R.integer.tile_generator_url_max_requests_per_host));
+        fetcher.setMaxRetries(resources.getInteger(R.integer.tile_generator_url_max_retries));
+        fetcher.setConnectTimeout(resources.getInteger(R.integer.tile_generator_url_connect_timeout));
+        fetcher.setReadTimeout(resources.getInteger(R.integer.tile_generator_url_read_timeout));
+        setPrefetchCount(resources.getInteger(R.integer.tile_generator_url_prefetch));
     }
 
     /**
@@ -86,7 +112,7 @@ public class UrlTileGenerator extends TileGenerator {
      * @since 1.2.1
      */
     public boolean isTms() {
-        return tms;
+        return template.isTms();
     }
 
     /**
@@ -96,102 +122,73 @@ public class UrlTileGenerator extends TileGenerator {
      * @since 1.2.1
      */
     public void setTms(boolean tms) {
-        this.tms = tms;
+        template.setTms(tms);
     }
 
     /**
-     * Determine if the url has bounding box variables
+     * Get the compiled tile URL template
      *
-     * @param url
-     * @return
+     * @return template
+     * @since 3.5.1
      */
-    private boolean hasBoundingBox(String url) {
-
-        String replacedUrl = replaceBoundingBox(url, boundingBox);
-        boolean hasBoundingBox = !replacedUrl.equals(url);
-
-        return hasBoundingBox;
+    public UrlTileTemplate getTemplate() {
+        return template;
     }
 
     /**
-     * Replace x, y, and z in the url
+     * Set the subdomains rotated through by the {s} URL variable
      *
-     * @param url
-     * @param z
-     * @param x
-     * @param y
-     * @return
+     * @param subdomains subdomains
+     * @since 3.5.1
      */
-    private String replaceXYZ(String url, int z, long x, long y) {
-
-        url = url.replaceAll(
-                context.getString(R.string.tile_generator_variable_z),
-                String.valueOf(z));
-        url = url.replaceAll(
-                context.getString(R.string.tile_generator_variable_x),
-                String.valueOf(x));
-        url = url.replaceAll(
-                context.getString(R.string.tile_generator_variable_y),
-                String.valueOf(y));
-        return url;
+    public void setSubdomains(String... subdomains) {
+        template.setSubdomains(subdomains);
     }
 
     /**
-     * Determine if the url has x, y, or z variables
+     * Is refresh mode
      *
-     * @param url
-     * @return
+     * @return true if refreshing
+     * @since 3.5.1
      */
-    private boolean hasXYZ(String url) {
-
-        String replacedUrl = replaceXYZ(url, 0, 0, 0);
-        boolean hasXYZ = !replacedUrl.equals(url);
-
-        return hasXYZ;
+    public boolean isRefresh() {
+        return refresh;
     }
 
     /**
-     * Replace the bounding box coordinates in the url
+     * Set the refresh mode. When refreshing, the ETag, Last-Modified, and
+     * content hash of each downloaded tile are stored by the
+     * {@link TileRefresh} extension. Tiles are requested with If-None-Match
+     * and If-Modified-Since, and existing tiles are kept without a rewrite on
+     * a not modified response or an identical content hash. Use with skip
+     * existing off to refresh an existing tile table.
      *
-     * @param url
-     * @param z
-     * @param x
-     * @param y
-     * @return
+     * @param refresh true to refresh
+     * @since 3.5.1
      */
-    private String replaceBoundingBox(String url, int z, long x, long y) {
-
-        BoundingBox boundingBox = TileBoundingBoxUtils.getProjectedBoundingBox(
-                projection, x, y, z);
-
-        url = replaceBoundingBox(url, boundingBox);
+    public void setRefresh(boolean refresh) {
+        this.refresh = refresh;
+    }
 
-        return url;
+    /**
+     * Get the tile URL fetcher, used to configure request concurrency, rate
+     * limits, retries, and timeouts
+     *
+     * @return tile URL fetcher
+     * @since 3.5.1
+     */
+    public UrlTileFetcher getFetcher() {
+        return fetcher;
     }
 
     /**
-     * Replace the url parts with the bounding box
+     * Set the tile URL fetcher
      *
-     * @param url
-     * @param boundingBox
-     * @return
+     * @param fetcher tile URL fetcher
+     * @since 3.5.1
      */
-    private String replaceBoundingBox(String url, BoundingBox boundingBox) {
-
-        url = url.replaceAll(
-                context.getString(R.string.tile_generator_variable_min_lat),
-                String.valueOf(boundingBox.getMinLatitude()));
-        url = url.replaceAll(
-                context.getString(R.string.tile_generator_variable_max_lat),
-                String.valueOf(boundingBox.getMaxLatitude()));
-        url = url.replaceAll(
-                context.getString(R.string.tile_generator_variable_min_lon),
-                String.valueOf(boundingBox.getMinLongitude()));
-        url = url.replaceAll(
-                context.getString(R.string.tile_generator_variable_max_lon),
-                String.valueOf(boundingBox.getMaxLongitude()));
-
-        return url;
+    public void setFetcher(UrlTileFetcher fetcher) {
+        this.fetcher = fetcher;
     }
 
     /**
@@ -199,79 +196,153 @@ public class UrlTileGenerator extends TileGenerator {
      */
     @Override
     protected void preTileGeneration() {
-
+        if (refresh) {
+            tileRefresh = new TileRefresh(getGeoPackage(), getTableName());
+            tileRefresh.getOrCreate();
+        } else {
+            tileRefresh = null;
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    protected byte[] createTile(int z, long x, long y) {
-
-        byte[] bytes = null;
+    protected void postTileGeneration() {
+        for (Future<UrlTileResponse> future : prefetched.values()) {
+            future.cancel(true);
+        }
+        prefetched.clear();
+        createdValidators.clear();
+        fetcher.close();
+    }
 
-        String zoomUrl = tileUrl;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void prefetchTile(int z, long x, long y) {
+        TileValidator validator = getValidator(z, x, y);
+        prefetched.put(tileKey(z, x, y), fetcher.submit(getTileUrl(z, x, y),
+                validator != null ? validator.getETag() : null,
+                validator != null ? validator.getLastModified() : null));
+    }
 
-        // Replace x, y, and z
-        if (urlHasXYZ) {
-            long yRequest = y;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected byte[] createTile(int z, long x, long y) {
 
-            // If TMS, flip the y value
-            if (tms) {
-                yRequest = TileBoundingBoxUtils.getYAsOppositeTileFormat(z,
-                        (int) y);
+        UrlTileResponse response;
+
+        Future<UrlTileResponse> future = prefetched.remove(tileKey(z, x, y));
+        if (future != null) {
+            try {
+                response = future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof GeoPackageException) {
+                    throw (GeoPackageException) e.getCause();
+                }
+                throw new GeoPackageException("Failed to download tile. z="
+                        + z + ", x=" + x + ", y=" + y, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GeoPackageException(
+                        "Interrupted downloading tile. z=" + z + ", x=" + x
+                                + ", y=" + y, e);
             }
-
-            zoomUrl = replaceXYZ(zoomUrl, z, x, yRequest);
+        } else {
+            TileValidator validator = getValidator(z, x, y);
+            response = fetcher.fetch(getTileUrl(z, x, y),
+                    validator != null ? validator.getETag() : null,
+                    validator != null ? validator.getLastModified() : null);
         }
 
-        // Replace bounding box
-        if (urlHasBoundingBox) {
-            zoomUrl = replaceBoundingBox(zoomUrl, z, x, y);
+        byte[] bytes = response.getBytes();
+
+        if (tileRefresh != null) {
+            if (response.isNotModified()) {
+                bytes = UNCHANGED_TILE;
+            } else {
+                TileValidator validator = new TileValidator(
+                        response.getETag(), response.getLastModified(),
+                        HashUtils.hash(bytes));
+                TileValidator existing = getValidator(z, x, y);
+                if (existing != null
+                        && validator.getHash().equals(existing.getHash())) {
+                    // Identical content, keep the tile and update validators
+                    tileRefresh.setValidator(z, x, y, validator);
+                    bytes = UNCHANGED_TILE;
+                } else {
+                    createdValidators.put(tileKey(z, x, y), validator);
+                }
+            }
         }
 
-        URL url;
-        try {
-            url = new URL(zoomUrl);
-        } catch (MalformedURLException e) {
-            throw new GeoPackageException("Failed to download tile. URL: "
-                    + zoomUrl + ", z=" + z + ", x=" + x + ", y=" + y, e);
-        }
+        return bytes;
+    }
 
-        HttpURLConnection connection = null;
-        try {
-            connection = (HttpURLConnection) url.openConnection();
-            connection.connect();
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_MOVED_PERM
-                    || responseCode == HttpURLConnection.HTTP_MOVED_TEMP
-                    || responseCode == HttpURLConnection.HTTP_SEE_OTHER) {
-                String redirect = connection.getHeaderField("Location");
-                connection.disconnect();
-                url = new URL(redirect);
-                connection = (HttpURLConnection) url.openConnection();
-                connection.connect();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void postTileCreation(int z, long x, long y) {
+        if (tileRefresh != null) {
+            TileValidator validator = createdValidators.remove(tileKey(z, x, y));
+            if (validator != null) {
+                tileRefresh.setValidator(z, x, y, validator);
             }
+        }
+    }
 
-            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-                throw new GeoPackageException("Failed to download tile. URL: "
-                        + zoomUrl + ", z=" + z + ", x=" + x + ", y=" + y);
-            }
+    /**
+     * Get the stored validator of the tile when refreshing. Validators are
+     * only used while the tile row exists, a missing tile is downloaded in
+     * full.
+     *
+     * @param z zoom level
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return validator or null
+     */
+    private TileValidator getValidator(int z, long x, long y) {
+        TileValidator validator = null;
+        if (tileRefresh != null && hasTile(z, x, y)) {
+            validator = tileRefresh.getValidator(z, x, y);
+        }
+        return validator;
+    }
+
+    /**
+     * Get the prefetched tile key
+     *
+     * @param z zoom level
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return key
+     */
+    private static String tileKey(int z, long x, long y) {
+        return z + "/" + x + "/" + y;
+    }
 
-            InputStream geoPackageStream = connection.getInputStream();
-            bytes = GeoPackageIOUtils.streamBytes(geoPackageStream);
+    /**
+     * Get the tile URL of the zoom level and coordinate
+     *
+     * @param z zoom level
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return tile URL
+     */
+    private String getTileUrl(int z, long x, long y) {
 
-        } catch (IOException e) {
-            throw new GeoPackageException("Failed to download tile. URL: "
-                    + zoomUrl + ", z=" + z + ", x=" + x + ", y=" + y, e);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
+        BoundingBox boundingBox = null;
+        if (template.hasBoundingBox()) {
+            boundingBox = TileBoundingBoxUtils.getProjectedBoundingBox(
+                    projection, x, y, z);
         }
 
-        return bytes;
+        return template.render(z, x, y, boundingBox);
     }
 
 }
@@ -0,0 +1,120 @@
+package mil.nga.geopackage.tiles;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Tile URL response of a {@link UrlTileFetcher} request, including the cache
+ * validators returned by the server
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class UrlTileResponse {
+
+    /**
+     * Response code
+     */
+    private final int code;
+
+    /**
+     * Response bytes, null when not modified or unsuccessful
+     */
+    private final byte[] bytes;
+
+    /**
+     * ETag header value
+     */
+    private final String eTag;
+
+    /**
+     * Last-Modified header value
+     */
+    private final String lastModified;
+
+    /**
+     * Retry-After delay in milliseconds, -1 if none
+     */
+    private final long retryAfter;
+
+    /**
+     * Constructor
+     *
+     * @param code         response code
+     * @param bytes        response bytes
+     * @param eTag         ETag header value
+     * @param lastModified Last-Modified header value
+     * @param retryAfter   Retry-After delay in milliseconds, -1 if none
+     */
+    UrlTileResponse(int code, byte[] bytes, String eTag, String lastModified,
+                    long retryAfter) {
+        this.code = code;
+        this.bytes = bytes;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Get the response code
+     *
+     * @return response code
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Get the response bytes
+     *
+     * @return bytes, null when not modified
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the ETag header value
+     *
+     * @return ETag or null
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Get the Last-Modified header value
+     *
+     * @return Last-Modified or null
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Is a successful response with bytes
+     *
+     * @return true if successful
+     */
+    public boolean isSuccessful() {
+        return code == HttpURLConnection.HTTP_OK;
+    }
+
+    /**
+     * Is a not modified response to a conditional request
+     *
+     * @return true if not modified
+     */
+    public boolean isNotModified() {
+        return code == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Get the Retry-After delay in milliseconds
+     *
+     * @return delay, -1 if none
+     */
+    long getRetryAfter() {
+        return retryAfter;
+    }
+
+}
@@ -0,0 +1,404 @@
+package mil.nga.geopackage.tiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackageException;
+
+/**
+ * Tile URL template, compiled once into literal and variable segments and
+ * rendered per tile into a reused buffer
+ *
+ * Supported variables are {z}, {x}, {y}, {-y} (flipped y), {q} or
+ * {quadkey}, {s} (subdomain rotated by tile), {minLat}, {maxLat}, {minLon},
+ * and {maxLon}. Unrecognized braced text is kept as a literal.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class UrlTileTemplate {
+
+    /**
+     * Default subdomains
+     */
+    public static final String[] DEFAULT_SUBDOMAINS = new String[]{"a", "b",
+            "c"};
+
+    /**
+     * Literal segment
+     */
+    private static final int LITERAL = 0;
+
+    /**
+     * Zoom variable
+     */
+    private static final int Z = 1;
+
+    /**
+     * X variable
+     */
+    private static final int X = 2;
+
+    /**
+     * Y variable
+     */
+    private static final int Y = 3;
+
+    /**
+     * Flipped Y variable
+     */
+    private static final int FLIPPED_Y = 4;
+
+    /**
+     * Quadkey variable
+     */
+    private static final int QUADKEY = 5;
+
+    /**
+     * Subdomain variable
+     */
+    private static final int SUBDOMAIN = 6;
+
+    /**
+     * Min latitude variable
+     */
+    private static final int MIN_LAT = 7;
+
+    /**
+     * Max latitude variable
+     */
+    private static final int MAX_LAT = 8;
+
+    /**
+     * Min longitude variable
+     */
+    private static final int MIN_LON = 9;
+
+    /**
+     * Max longitude variable
+     */
+    private static final int MAX_LON = 10;
+
+    /**
+     * Template
+     */
+    private final String template;
+
+    /**
+     * Segment types
+     */
+    private final int[] types;
+
+    /**
+     * Segment literals, null for variable segments
+     */
+    private final String[] literals;
+
+    /**
+     * True if the template has tile coordinate variables
+     */
+    private final boolean hasXYZ;
+
+    /**
+     * True if the template has bounding box variables
+     */
+    private final boolean hasBoundingBox;
+
+    /**
+     * Subdomains
+     */
+    private String[] subdomains = DEFAULT_SUBDOMAINS;
+
+    /**
+     * TMS flag, when true the {y} variable is rendered in TMS format
+     */
+    private boolean tms = false;
+
+    /**
+     * Reused render buffer
+     */
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * Compile a template
+     *
+     * @param template url template
+     * @return compiled template
+     */
+    public static UrlTileTemplate compile(String template) {
+        return new UrlTileTemplate(template);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param template url template
+     */
+    public UrlTileTemplate(String template) {
+        this.template = template;
+
+        List<Integer> typeList = new ArrayList<>();
+        List<String> literalList = new ArrayList<>();
+        boolean xyz = false;
+        boolean bounds = false;
+
+        int literalStart = 0;
+        int index = 0;
+        while (index < template.length()) {
+            int open = template.indexOf('{', index);
+            if (open < 0) {
+                break;
+            }
+            int close = template.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            int type = getType(template.substring(open + 1, close));
+            if (type != LITERAL) {
+                if (open > literalStart) {
+                    typeList.add(LITERAL);
+                    literalList.add(template.substring(literalStart, open));
+                }
+                typeList.add(type);
+                literalList.add(null);
+                literalStart = close + 1;
+                if (type >= MIN_LAT) {
+                    bounds = true;
+                } else if (type != SUBDOMAIN) {
+                    xyz = true;
+                }
+                index = close + 1;
+            } else {
+                index = open + 1;
+            }
+        }
+        if (literalStart < template.length()) {
+            typeList.add(LITERAL);
+            literalList.add(template.substring(literalStart));
+        }
+
+        types = new int[typeList.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = typeList.get(i);
+        }
+        literals = literalList.toArray(new String[literalList.size()]);
+        hasXYZ = xyz;
+        hasBoundingBox = bounds;
+    }
+
+    /**
+     * Get the template
+     *
+     * @return template
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Determine if the template has tile coordinate variables
+     *
+     * @return true if has x, y, z, or quadkey variables
+     */
+    public boolean hasXYZ() {
+        return hasXYZ;
+    }
+
+    /**
+     * Determine if the template has bounding box variables
+     *
+     * @return true if has bounding box variables
+     */
+    public boolean hasBoundingBox() {
+        return hasBoundingBox;
+    }
+
+    /**
+     * Get the subdomains
+     *
+     * @return subdomains
+     */
+    public String[] getSubdomains() {
+        return subdomains;
+    }
+
+    /**
+     * Set the subdomains rotated through by the {s} variable
+     *
+     * @param subdomains subdomains
+     */
+    public void setSubdomains(String... subdomains) {
+        if (subdomains == null || subdomains.length == 0) {
+            throw new GeoPackageException("At least one subdomain is required");
+        }
+        this.subdomains = subdomains;
+    }
+
+    /**
+     * Is TMS format for the {y} variable
+     *
+     * @return true if TMS
+     */
+    public boolean isTms() {
+        return tms;
+    }
+
+    /**
+     * Set the TMS format flag for the {y} variable
+     *
+     * @param tms true if TMS
+     */
+    public void setTms(boolean tms) {
+        this.tms = tms;
+    }
+
+    /**
+     * Render the URL of the XYZ tile coordinate
+     *
+     * @param z zoom level
+     * @param x x coordinate
+     * @param y y coordinate in XYZ format
+     * @return url
+     */
+    public String render(int z, long x, long y) {
+        return render(z, x, y, null);
+    }
+
+    /**
+     * Render the URL of the XYZ tile coordinate and bounding box
+     *
+     * @param z           zoom level
+     * @param x           x coordinate
+     * @param y           y coordinate in XYZ format
+     * @param boundingBox tile bounding box, required when the template has
+     *                    bounding box variables
+     * @return url
+     */
+    public synchronized String render(int z, long x, long y,
+                                      BoundingBox boundingBox) {
+        buffer.setLength(0);
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case LITERAL:
+                    buffer.append(literals[i]);
+                    break;
+                case Z:
+                    buffer.append(z);
+                    break;
+                case X:
+                    buffer.append(x);
+                    break;
+                case Y:
+                    buffer.append(tms ? flipY(z, y) : y);
+                    break;
+                case FLIPPED_Y:
+                    buffer.append(flipY(z, y));
+                    break;
+                case QUADKEY:
+                    appendQuadkey(z, x, y);
+                    break;
+                case SUBDOMAIN:
+                    buffer.append(subdomains[(int) (Math.abs(x + y)
+                            % subdomains.length)]);
+                    break;
+                case MIN_LAT:
+                    buffer.append(boundingBox.getMinLatitude());
+                    break;
+                case MAX_LAT:
+                    buffer.append(boundingBox.getMaxLatitude());
+                    break;
+                case MIN_LON:
+                    buffer.append(boundingBox.getMinLongitude());
+                    break;
+                case MAX_LON:
+                    buffer.append(boundingBox.getMaxLongitude());
+                    break;
+                default:
+                    throw new GeoPackageException(
+                            "Unsupported URL template segment type: "
+                                    + types[i]);
+            }
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Flip the y coordinate between XYZ and TMS formats
+     *
+     * @param z zoom level
+     * @param y y coordinate
+     * @return flipped y coordinate
+     */
+    private static long flipY(int z, long y) {
+        return (1L << z) - 1 - y;
+    }
+
+    /**
+     * Append the quadkey of the XYZ tile coordinate
+     *
+     * @param z zoom level
+     * @param x x coordinate
+     * @param y y coordinate
+     */
+    private void appendQuadkey(int z, long x, long y) {
+        for (int i = z; i > 0; i--) {
+            long mask = 1L << (i - 1);
+            int digit = 0;
+            if ((x & mask) != 0) {
+                digit += 1;
+            }
+            if ((y & mask) != 0) {
+                digit += 2;
+            }
+            buffer.append((char) ('0' + digit));
+        }
+    }
+
+    /**
+     * Get the segment type of the variable name
+     *
+     * @param name variable name
+     * @return segment type, literal if not a variable
+     */
+    private static int getType(String name) {
+        int type;
+        switch (name) {
+            case "z":
+                type = Z;
+                break;
+            case "x":
+                type = X;
+                break;
+            case "y":
+                type = Y;
+                break;
+            case "-y":
+                type = FLIPPED_Y;
+                break;
+            case "q":
+            case "quadkey":
+                type = QUADKEY;
+                break;
+            case "s":
+                type = SUBDOMAIN;
+                break;
+            case "minLat":
+                type = MIN_LAT;
+                break;
+            case "maxLat":
+                type = MAX_LAT;
+                break;
+            case "minLon":
+                type = MIN_LON;
+                break;
+            case "maxLon":
+                type = MAX_LON;
+                break;
+            default:
+                type = LITERAL;
+        }
+        return type;
+    }
+
+}
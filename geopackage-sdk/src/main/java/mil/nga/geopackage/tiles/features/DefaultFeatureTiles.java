@@ -15,6 +15,7 @@ import java.util.List;
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.extension.generalize.GeneralizedFeature;
 import mil.nga.geopackage.extension.style.FeatureStyle;
 import mil.nga.geopackage.extension.style.IconRow;
 import mil.nga.geopackage.extension.style.StyleRow;
@@ -22,6 +23,7 @@ import mil.nga.geopackage.features.index.FeatureIndexResults;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.FeatureRowView;
 import mil.nga.geopackage.geom.GeoPackageGeometryData;
 import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
 import mil.nga.sf.CompoundCurve;
@@ -253,8 +255,8 @@ public class DefaultFeatureTiles extends FeatureTiles {
         BoundingBox expandedBoundingBox = expandBoundingBox(boundingBox);
 
         boolean drawn = false;
+        FeatureRowView row = cursor.getRowView();
         while (cursor.moveToNext()) {
-            FeatureRow row = cursor.getRow();
             if (drawFeature(zoom, boundingBox, expandedBoundingBox, transform, canvas, row)) {
                 drawn = true;
             }
@@ -301,6 +303,40 @@ public class DefaultFeatureTiles extends FeatureTiles {
         return bitmap;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Bitmap drawGeneralizedTile(int zoom, BoundingBox boundingBox, List<GeneralizedFeature> features) {
+
+        FeatureTileCanvas canvas = new FeatureTileCanvas(tileWidth, tileHeight);
+
+        ProjectionTransform transform = getProjectionToWebMercatorTransform(featureDao.getProjection());
+        double simplifyTolerance = TileBoundingBoxUtils.toleranceDistance(zoom, tileWidth, tileHeight);
+
+        boolean drawn = false;
+        for (GeneralizedFeature feature : features) {
+            try {
+                if (drawShape(simplifyTolerance, boundingBox, transform, canvas, feature.getFeatureId(), feature.getGeometry())) {
+                    drawn = true;
+                }
+            } catch (Exception e) {
+                Log.e(DefaultFeatureTiles.class.getSimpleName(), "Failed to draw generalized feature. Table: "
+                        + featureDao.getTableName() + ", Feature Id: " + feature.getFeatureId(), e);
+            }
+        }
+
+        Bitmap bitmap = null;
+        if (drawn) {
+            bitmap = canvas.createBitmap();
+            bitmap = checkIfDrawn(bitmap);
+        } else {
+            canvas.recycle();
+        }
+
+        return bitmap;
+    }
+
     /**
      * Draw the feature on the canvas
      *
@@ -318,55 +354,136 @@ public class DefaultFeatureTiles extends FeatureTiles {
 
         try {
 
-            GeoPackageGeometryData geomData = null;
-            BoundingBox transformedBoundingBox = null;
-            long rowId = -1;
+            long rowId = row.getId();
 
             // Check the cache for the geometry data
-            if (cacheGeometries) {
-                rowId = row.getId();
-                geomData = geometryCache.get(rowId);
-                if (geomData != null) {
-                    transformedBoundingBox = new BoundingBox(geomData.getEnvelope());
-                }
-            }
+            GeoPackageGeometryData geomData = getCachedGeometry(rowId);
+            boolean cached = geomData != null;
 
-            if (geomData == null) {
+            if (!cached) {
                 // Read the geometry
                 geomData = row.getGeometry();
             }
 
-            if (geomData != null) {
-                Geometry geometry = geomData.getGeometry();
-                if (geometry != null) {
+            drawn = drawFeature(zoom, boundingBox, expandedBoundingBox, transform, canvas, rowId, geomData, cached);
+
+        } catch (Exception e) {
+            Log.e(DefaultFeatureTiles.class.getSimpleName(), "Failed to draw feature in tile. Table: "
+                    + featureDao.getTableName(), e);
+        }
 
-                    if (transformedBoundingBox == null) {
-                        GeometryEnvelope envelope = geomData.getOrBuildEnvelope();
-                        BoundingBox geometryBoundingBox = new BoundingBox(envelope);
-                        transformedBoundingBox = geometryBoundingBox.transform(transform);
+        return drawn;
+    }
 
-                        if (cacheGeometries) {
-                            // Set the geometry envelope to the transformed bounding box
-                            geomData.setEnvelope(transformedBoundingBox.buildEnvelope());
-                        }
-                    }
+    /**
+     * Draw the feature from the current row view on the canvas, reading only the id and geometry
+     *
+     * @param zoom                zoom level
+     * @param boundingBox         bounding box
+     * @param expandedBoundingBox expanded bounding box
+     * @param transform           projection transform
+     * @param canvas              feature tile canvas
+     * @param row                 feature row view
+     * @return true if at least one feature was drawn
+     */
+    private boolean drawFeature(int zoom, BoundingBox boundingBox, BoundingBox expandedBoundingBox, ProjectionTransform transform, FeatureTileCanvas canvas, FeatureRowView row) {
+
+        boolean drawn = false;
+
+        try {
+
+            if (row.isValid()) {
+
+                long rowId = row.getId();
+
+                // Check the cache for the geometry data
+                GeoPackageGeometryData geomData = getCachedGeometry(rowId);
+                boolean cached = geomData != null;
+
+                if (!cached) {
+                    // Read the geometry
+                    geomData = row.getGeometry();
+                }
+
+                drawn = drawFeature(zoom, boundingBox, expandedBoundingBox, transform, canvas, rowId, geomData, cached);
+
+            } else if (!row.getCursor().isInvalidRequery()) {
+
+                // Without invalid requery, draw the row as built by the cursor
+                drawn = drawFeature(zoom, boundingBox, expandedBoundingBox, transform, canvas, row.getCursor().getRow());
+
+            }
+            // Otherwise the invalid position is recorded, requeried with the
+            // large blobs read in chunks, and drawn when the cursor moves
+            // through the requeried rows
+
+        } catch (Exception e) {
+            Log.e(DefaultFeatureTiles.class.getSimpleName(), "Failed to draw feature in tile. Table: "
+                    + featureDao.getTableName(), e);
+        }
+
+        return drawn;
+    }
+
+    /**
+     * Get the cached geometry data when caching geometries
+     *
+     * @param rowId feature row id
+     * @return cached geometry data or null
+     */
+    private GeoPackageGeometryData getCachedGeometry(long rowId) {
+        GeoPackageGeometryData geomData = null;
+        if (cacheGeometries) {
+            geomData = geometryCache.get(rowId);
+        }
+        return geomData;
+    }
+
+    /**
+     * Draw the feature geometry on the canvas
+     *
+     * @param zoom                zoom level
+     * @param boundingBox         bounding box
+     * @param expandedBoundingBox expanded bounding box
+     * @param transform           projection transform
+     * @param canvas              feature tile canvas
+     * @param rowId               feature row id
+     * @param geomData            geometry data
+     * @param cached              true if the geometry data was retrieved from the geometry cache
+     * @return true if at least one feature was drawn
+     */
+    private boolean drawFeature(int zoom, BoundingBox boundingBox, BoundingBox expandedBoundingBox, ProjectionTransform transform, FeatureTileCanvas canvas, long rowId, GeoPackageGeometryData geomData, boolean cached) {
+
+        boolean drawn = false;
+
+        if (geomData != null) {
+            Geometry geometry = geomData.getGeometry();
+            if (geometry != null) {
+
+                BoundingBox transformedBoundingBox = null;
+
+                if (cached) {
+                    transformedBoundingBox = new BoundingBox(geomData.getEnvelope());
+                } else {
+                    GeometryEnvelope envelope = geomData.getOrBuildEnvelope();
+                    BoundingBox geometryBoundingBox = new BoundingBox(envelope);
+                    transformedBoundingBox = geometryBoundingBox.transform(transform);
 
                     if (cacheGeometries) {
+                        // Set the geometry envelope to the transformed bounding box
+                        geomData.setEnvelope(transformedBoundingBox.buildEnvelope());
                         // Cache the geometry
                         geometryCache.put(rowId, geomData);
                     }
+                }
 
-                    if (expandedBoundingBox.intersects(transformedBoundingBox, true)) {
+                if (expandedBoundingBox.intersects(transformedBoundingBox, true)) {
 
-                        double simplifyTolerance = TileBoundingBoxUtils.toleranceDistance(zoom, tileWidth, tileHeight);
-                        drawn = drawShape(simplifyTolerance, boundingBox, transform, canvas, row, geometry);
+                    double simplifyTolerance = TileBoundingBoxUtils.toleranceDistance(zoom, tileWidth, tileHeight);
+                    drawn = drawShape(simplifyTolerance, boundingBox, transform, canvas, rowId, geometry);
 
-                    }
                 }
             }
-        } catch (Exception e) {
-            Log.e(DefaultFeatureTiles.class.getSimpleName(), "Failed to draw feature in tile. Table: "
-                    + featureDao.getTableName(), e);
         }
 
         return drawn;
@@ -379,16 +496,16 @@ public class DefaultFeatureTiles extends FeatureTiles {
      * @param boundingBox       bounding box
      * @param transform         projection transform
      * @param canvas            feature tile canvas
-     * @param featureRow        feature row
+     * @param featureId         feature id
      * @param geometry          feature geometry
      * @return true if drawn
      */
-    private boolean drawShape(double simplifyTolerance, BoundingBox boundingBox, ProjectionTransform transform, FeatureTileCanvas canvas, FeatureRow featureRow, Geometry geometry) {
+    private boolean drawShape(double simplifyTolerance, BoundingBox boundingBox, ProjectionTransform transform, FeatureTileCanvas canvas, long featureId, Geometry geometry) {
 
         boolean drawn = false;
 
         GeometryType geometryType = geometry.getGeometryType();
-        FeatureStyle featureStyle = getFeatureStyle(featureRow, geometryType);
+        FeatureStyle featureStyle = getFeatureStyle(featureId, geometryType);
 
         switch (geometryType) {
 
@@ -454,7 +571,7 @@ public class DefaultFeatureTiles extends FeatureTiles {
                 GeometryCollection<Geometry> geometryCollection = (GeometryCollection) geometry;
                 List<Geometry> geometries = geometryCollection.getGeometries();
                 for (Geometry geometryFromCollection : geometries) {
-                    drawn = drawShape(simplifyTolerance, boundingBox, transform, canvas, featureRow, geometryFromCollection) || drawn;
+                    drawn = drawShape(simplifyTolerance, boundingBox, transform, canvas, featureId, geometryFromCollection) || drawn;
                 }
                 break;
             default:
@@ -3,24 +3,40 @@ package mil.nga.geopackage.tiles.features;
 import android.content.Context;
 import android.graphics.Bitmap;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.db.CoreSQLUtils;
+import mil.nga.geopackage.extension.generalize.FeatureGeneralization;
+import mil.nga.geopackage.extension.generalize.GeneralizedFeature;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexResults;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
 import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.Point;
 import mil.nga.sf.proj.Projection;
 import mil.nga.sf.proj.ProjectionConstants;
 import mil.nga.sf.proj.ProjectionFactory;
+import mil.nga.sf.proj.ProjectionTransform;
+import mil.nga.sf.util.GeometryEnvelopeBuilder;
 
 /**
- * Feature Preview for drawing a preview tile from a feature table
+ * Feature Preview for drawing a preview tile from a feature table. When a
+ * sample grid size is set, previews draw a spatially stratified sample:
+ * features from the closest generalization zoom level when available, or a
+ * limited number of indexed features per grid cell within an optional time
+ * budget.
  *
  * @author osbornb
  * @since 3.5.0
@@ -68,6 +84,26 @@ public class FeaturePreview {
      */
     private Integer limit = null;
 
+    /**
+     * Sample grid cells per side, null to draw without spatial sampling
+     */
+    private Integer sampleGridSize = null;
+
+    /**
+     * Sampled features per grid cell
+     */
+    private int sampleCellLimit = 1;
+
+    /**
+     * Sampling time budget in milliseconds, null for no time budget
+     */
+    private Long timeBudget = null;
+
+    /**
+     * Default where clause of features with geometries
+     */
+    private final String defaultWhere;
+
     /**
      * Constructor
      *
@@ -102,8 +138,9 @@ public class FeaturePreview {
         FeatureDao featureDao = featureTiles.getFeatureDao();
         columns.add(featureDao.getIdColumnName());
         columns.add(featureDao.getGeometryColumnName());
-        where = CoreSQLUtils.quoteWrap(featureDao.getGeometryColumnName())
+        defaultWhere = CoreSQLUtils.quoteWrap(featureDao.getGeometryColumnName())
                 + " IS NOT NULL";
+        where = defaultWhere;
     }
 
     /**
@@ -270,6 +307,79 @@ public class FeaturePreview {
         this.limit = limit;
     }
 
+    /**
+     * Get the sample grid cells per side
+     *
+     * @return sample grid size, null when not sampling
+     * @since 3.5.1
+     */
+    public Integer getSampleGridSize() {
+        return sampleGridSize;
+    }
+
+    /**
+     * Set the sample grid cells per side, drawing up to the sample cell limit
+     * of features from each grid cell
+     *
+     * @param sampleGridSize sample grid size, null to not sample
+     * @since 3.5.1
+     */
+    public void setSampleGridSize(Integer sampleGridSize) {
+        if (sampleGridSize != null && sampleGridSize < 1) {
+            throw new GeoPackageException(
+                    "Sample grid size must be at least 1. invalid value: "
+                            + sampleGridSize);
+        }
+        this.sampleGridSize = sampleGridSize;
+    }
+
+    /**
+     * Get the sampled features per grid cell
+     *
+     * @return sample cell limit
+     * @since 3.5.1
+     */
+    public int getSampleCellLimit() {
+        return sampleCellLimit;
+    }
+
+    /**
+     * Set the sampled features per grid cell
+     *
+     * @param sampleCellLimit sample cell limit
+     * @since 3.5.1
+     */
+    public void setSampleCellLimit(int sampleCellLimit) {
+        if (sampleCellLimit < 1) {
+            throw new GeoPackageException(
+                    "Sample cell limit must be at least 1. invalid value: "
+                            + sampleCellLimit);
+        }
+        this.sampleCellLimit = sampleCellLimit;
+    }
+
+    /**
+     * Get the sampling time budget
+     *
+     * @return time budget in milliseconds, null for no time budget
+     * @since 3.5.1
+     */
+    public Long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Set the sampling time budget. Grid cells are visited in a spread order
+     * and sampling stops when the budget is spent, drawing the features
+     * sampled so far.
+     *
+     * @param timeBudget time budget in milliseconds, null for no time budget
+     * @since 3.5.1
+     */
+    public void setTimeBudget(Long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
     /**
      * Draw a preview image
      *
@@ -303,15 +413,266 @@ public class FeaturePreview {
                     .boundWebMercatorBoundingBox(expandedBoundingBox);
             int zoom = TileBoundingBoxUtils.getZoomLevel(expandedBoundingBox);
 
-            FeatureCursor results = featureDao.query(
+            if (sampleGridSize != null) {
+                image = drawSample(zoom, expandedBoundingBox, webMercator);
+            } else {
+                FeatureCursor results = featureDao.query(
+                        columns.toArray(new String[]{}), where, whereArgs, null,
+                        null, null, limit != null ? limit.toString() : null);
+                image = featureTiles.drawTile(zoom, expandedBoundingBox, results);
+            }
+        }
+
+        return image;
+    }
+
+    /**
+     * Draw a spatially sampled preview image from the generalization zoom
+     * level closest to the preview zoom, the indexed features per grid cell,
+     * or a limited query when the table is not indexed
+     *
+     * @param zoom        preview zoom level
+     * @param boundingBox web mercator bounding box
+     * @param webMercator web mercator projection
+     * @return preview image
+     */
+    private Bitmap drawSample(int zoom, BoundingBox boundingBox,
+                              Projection webMercator) {
+
+        Bitmap image = null;
+
+        int cells = sampleGridSize * sampleGridSize;
+        int sampleLimit = cells * sampleCellLimit;
+        if (limit != null) {
+            sampleLimit = Math.min(sampleLimit, limit);
+        }
+        long deadline = timeBudget != null
+                ? System.nanoTime() + timeBudget * 1000000L : Long.MAX_VALUE;
+
+        FeatureGeneralization generalization = featureTiles.getGeneralization();
+        Integer generalizedZoom = null;
+        if (generalization != null && whereArgs == null
+                && defaultWhere.equals(where) && !generalization.isStale()) {
+            generalizedZoom = generalizedZoom(generalization, zoom);
+        }
+        FeatureIndexManager indexManager = featureTiles.getIndexManager();
+
+        if (generalizedZoom != null) {
+
+            List<GeneralizedFeature> features = generalization.query(
+                    generalizedZoom, boundingBox);
+            if (features.size() > sampleLimit) {
+                features = sampleGeneralized(features, boundingBox,
+                        webMercator, sampleLimit, deadline);
+            }
+            image = featureTiles.drawGeneralizedTile(zoom, boundingBox,
+                    features);
+
+        } else if (indexManager != null && indexManager.isIndexed()) {
+
+            String[] queryColumns = columns.toArray(new String[]{});
+            double cellWidth = (boundingBox.getMaxLongitude()
+                    - boundingBox.getMinLongitude()) / sampleGridSize;
+            double cellHeight = (boundingBox.getMaxLatitude()
+                    - boundingBox.getMinLatitude()) / sampleGridSize;
+            int step = spreadStep(cells);
+
+            List<FeatureRow> rows = new ArrayList<>();
+            Set<Long> ids = new HashSet<>();
+            for (int i = 0; i < cells && rows.size() < sampleLimit
+                    && System.nanoTime() < deadline; i++) {
+                int cell = (int) (((long) i * step) % cells);
+                int column = cell % sampleGridSize;
+                int row = cell / sampleGridSize;
+                double minLongitude = boundingBox.getMinLongitude()
+                        + column * cellWidth;
+                double minLatitude = boundingBox.getMinLatitude()
+                        + row * cellHeight;
+                BoundingBox cellBoundingBox = new BoundingBox(minLongitude,
+                        minLatitude, minLongitude + cellWidth,
+                        minLatitude + cellHeight);
+                FeatureIndexResults results = indexManager.query(queryColumns,
+                        cellBoundingBox, webMercator, where, whereArgs);
+                try {
+                    int cellCount = 0;
+                    for (FeatureRow featureRow : results) {
+                        if (ids.add(featureRow.getId())) {
+                            rows.add(featureRow);
+                            if (++cellCount >= sampleCellLimit
+                                    || rows.size() >= sampleLimit) {
+                                break;
+                            }
+                        }
+                    }
+                } finally {
+                    results.close();
+                }
+            }
+            image = featureTiles.drawTile(zoom, boundingBox, rows);
+
+        } else {
+
+            List<FeatureRow> rows = new ArrayList<>();
+            FeatureCursor results = featureTiles.getFeatureDao().query(
                     columns.toArray(new String[]{}), where, whereArgs, null,
-                    null, null, limit != null ? limit.toString() : null);
-            image = featureTiles.drawTile(zoom, expandedBoundingBox, results);
+                    null, null, String.valueOf(sampleLimit));
+            try {
+                while (System.nanoTime() < deadline && results.moveToNext()) {
+                    rows.add(results.getRow());
+                }
+            } finally {
+                results.close();
+            }
+            image = featureTiles.drawTile(zoom, boundingBox, rows);
+
         }
 
         return image;
     }
 
+    /**
+     * Sample the generalized features per grid cell of their geometry
+     * centers, taking up to the cell limit from each cell in spread order
+     * so the sample covers the preview area
+     *
+     * @param features    generalized features
+     * @param boundingBox web mercator bounding box
+     * @param webMercator web mercator projection
+     * @param sampleLimit sample limit
+     * @param deadline    time budget deadline in nanoseconds
+     * @return sampled features
+     */
+    private List<GeneralizedFeature> sampleGeneralized(
+            List<GeneralizedFeature> features, BoundingBox boundingBox,
+            Projection webMercator, int sampleLimit, long deadline) {
+
+        int cells = sampleGridSize * sampleGridSize;
+        double cellWidth = (boundingBox.getMaxLongitude()
+                - boundingBox.getMinLongitude()) / sampleGridSize;
+        double cellHeight = (boundingBox.getMaxLatitude()
+                - boundingBox.getMinLatitude()) / sampleGridSize;
+        ProjectionTransform toWebMercator = featureTiles.getFeatureDao()
+                .getProjection().getTransformation(webMercator);
+
+        List<List<GeneralizedFeature>> cellFeatures = new ArrayList<>(cells);
+        for (int i = 0; i < cells; i++) {
+            cellFeatures.add(null);
+        }
+        for (GeneralizedFeature feature : features) {
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+            int cell = 0;
+            GeometryEnvelope envelope = GeometryEnvelopeBuilder
+                    .buildEnvelope(feature.getGeometry());
+            if (envelope != null) {
+                Point center = toWebMercator.transform(new Point(
+                        (envelope.getMinX() + envelope.getMaxX()) / 2.0,
+                        (envelope.getMinY() + envelope.getMaxY()) / 2.0));
+                int column = cellIndex((center.getX()
+                        - boundingBox.getMinLongitude()) / cellWidth);
+                int row = cellIndex((center.getY()
+                        - boundingBox.getMinLatitude()) / cellHeight);
+                cell = row * sampleGridSize + column;
+            }
+            List<GeneralizedFeature> cellList = cellFeatures.get(cell);
+            if (cellList == null) {
+                cellList = new ArrayList<>();
+                cellFeatures.set(cell, cellList);
+            }
+            if (cellList.size() < sampleCellLimit) {
+                cellList.add(feature);
+            }
+        }
+
+        List<GeneralizedFeature> sample = new ArrayList<>();
+        int step = spreadStep(cells);
+        for (int i = 0; i < cells && sample.size() < sampleLimit; i++) {
+            List<GeneralizedFeature> cellList = cellFeatures
+                    .get((int) (((long) i * step) % cells));
+            if (cellList != null) {
+                for (GeneralizedFeature feature : cellList) {
+                    if (sample.size() >= sampleLimit) {
+                        break;
+                    }
+                    sample.add(feature);
+                }
+            }
+        }
+
+        return sample;
+    }
+
+    /**
+     * Get the sample grid cell index of a cell offset, clamped to the grid
+     *
+     * @param offset cell offset
+     * @return cell index
+     */
+    private int cellIndex(double offset) {
+        int index = 0;
+        if (!Double.isNaN(offset)) {
+            index = (int) Math.max(0, Math.min(sampleGridSize - 1,
+                    Math.floor(offset)));
+        }
+        return index;
+    }
+
+    /**
+     * Get the generalization zoom level closest to the preview zoom level,
+     * preferring the highest generalized zoom not above the preview zoom
+     *
+     * @param generalization feature generalization
+     * @param zoom           preview zoom level
+     * @return generalization zoom level, null when no zoom levels exist
+     */
+    private static Integer generalizedZoom(FeatureGeneralization generalization,
+                                       int zoom) {
+        Integer below = null;
+        Integer above = null;
+        for (int generalizedZoom : generalization.getZooms()) {
+            if (generalizedZoom <= zoom) {
+                if (below == null || generalizedZoom > below) {
+                    below = generalizedZoom;
+                }
+            } else if (above == null || generalizedZoom < above) {
+                above = generalizedZoom;
+            }
+        }
+        return below != null ? below : above;
+    }
+
+    /**
+     * Get a step coprime with the cell count near the golden ratio of the
+     * count, visiting every cell once in an order spread across the grid
+     *
+     * @param cells cell count
+     * @return step
+     */
+    private static int spreadStep(int cells) {
+        int step = Math.max(1, (int) Math.round(cells * 0.618));
+        while (gcd(step, cells) != 1) {
+            step++;
+        }
+        return step;
+    }
+
+    /**
+     * Greatest common divisor
+     *
+     * @param a first value
+     * @param b second value
+     * @return greatest common divisor
+     */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = b;
+            b = a % b;
+            a = t;
+        }
+        return a;
+    }
+
     /**
      * Close the feature tiles connection
      */
@@ -12,16 +12,22 @@ import android.util.Log;
 import org.locationtech.proj4j.units.Units;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import mil.nga.geopackage.BoundingBox;
 import mil.nga.geopackage.GeoPackage;
 import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.R;
+import mil.nga.geopackage.extension.generalize.FeatureGeneralization;
+import mil.nga.geopackage.extension.generalize.GeneralizedFeature;
 import mil.nga.geopackage.extension.style.FeatureStyle;
 import mil.nga.geopackage.extension.style.FeatureTableStyles;
+import mil.nga.geopackage.extension.style.IconAtlas;
 import mil.nga.geopackage.extension.style.IconCache;
 import mil.nga.geopackage.extension.style.IconDao;
 import mil.nga.geopackage.extension.style.IconRow;
@@ -32,6 +38,7 @@ import mil.nga.geopackage.features.index.FeatureIndexResults;
 import mil.nga.geopackage.features.user.FeatureCursor;
 import mil.nga.geopackage.features.user.FeatureDao;
 import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
 import mil.nga.geopackage.io.BitmapConverter;
 import mil.nga.geopackage.style.Color;
 import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
@@ -89,6 +96,22 @@ public abstract class FeatureTiles {
      */
     protected FeatureTableStyles featureTableStyles;
 
+    /**
+     * When not null, low zoom tiles with a generalized zoom level are drawn
+     * from the feature generalization pyramid
+     */
+    protected FeatureGeneralization generalization;
+
+    /**
+     * GeoPackage, used to load the feature generalization on first use
+     */
+    private final GeoPackage geoPackage;
+
+    /**
+     * True once the feature generalization has been loaded or set
+     */
+    private boolean generalizationLoaded = false;
+
     /**
      * Tile width
      */
@@ -160,10 +183,35 @@ public abstract class FeatureTiles {
     private FeaturePaintCache featurePaintCache = new FeaturePaintCache();
 
     /**
-     * Icon Cache
+     * Icon Cache, used when no icon atlas is set
      */
     private IconCache iconCache = new IconCache();
 
+    /**
+     * Icon atlas of decoded icons shared across feature tiles, defaults to
+     * {@link IconAtlas#getShared()}
+     */
+    private IconAtlas iconAtlas = IconAtlas.getShared();
+
+    /**
+     * Icon rows drawn from the icon atlas by id, evicted from the atlas when
+     * the icon cache is cleared
+     */
+    private final Map<Long, IconRow> atlasIcons = new ConcurrentHashMap<>();
+
+    /**
+     * When true, feature table style icons are decoded into the icon atlas
+     * when the draw overlap is calculated
+     */
+    protected boolean prewarmIcons;
+
+    /**
+     * True when a subclass overrides
+     * {@link #getFeatureStyle(FeatureRow, GeometryType)}, styling features
+     * drawn by id through the overridden feature row method
+     */
+    private final boolean featureRowStyles = isFeatureRowStyleOverridden();
+
     /**
      * Height overlapping pixels between tile images
      */
@@ -287,6 +335,7 @@ public abstract class FeatureTiles {
     public FeatureTiles(Context context, GeoPackage geoPackage, FeatureDao featureDao, float density, int width, int height) {
 
         this.context = context;
+        this.geoPackage = geoPackage;
         this.featureDao = featureDao;
         if (featureDao != null) {
             this.projection = featureDao.getProjection();
@@ -320,6 +369,8 @@ public abstract class FeatureTiles {
         polygonFillPaint.setStyle(Style.FILL);
         polygonFillPaint.setAlpha(resources.getInteger(R.integer.feature_tiles_polygon_fill_alpha));
 
+        prewarmIcons = resources.getBoolean(R.bool.feature_tiles_prewarm_icons);
+
         if (geoPackage != null) {
 
             indexManager = new FeatureIndexManager(context, geoPackage, featureDao);
@@ -407,6 +458,9 @@ public abstract class FeatureTiles {
             IconDao iconDao = featureTableStyles.getIconDao();
             for (long iconRowId : iconRowIds) {
                 IconRow iconRow = iconDao.getRow(iconDao.queryForIdRow(iconRowId));
+                if (prewarmIcons) {
+                    getIcon(iconRow);
+                }
                 double[] iconDimensions = iconRow.getDerivedDimensions();
                 float iconWidth = this.density * (float) Math.ceil(iconDimensions[0]);
                 float iconHeight = this.density * (float) Math.ceil(iconDimensions[1]);
@@ -525,6 +579,50 @@ public abstract class FeatureTiles {
         this.indexManager = indexManager;
     }
 
+    /**
+     * Is a generalized query for the zoom level
+     *
+     * @param zoom zoom level
+     * @return true if the zoom level is drawn from the generalization pyramid
+     * @since 3.5.1
+     */
+    public boolean isGeneralizedQuery(int zoom) {
+        FeatureGeneralization featureGeneralization = getGeneralization();
+        return featureGeneralization != null
+                && featureGeneralization.hasZoom(zoom)
+                && !featureGeneralization.isStale();
+    }
+
+    /**
+     * Get the feature generalization, loaded on first use
+     *
+     * @return feature generalization or null
+     * @since 3.5.1
+     */
+    public synchronized FeatureGeneralization getGeneralization() {
+        if (!generalizationLoaded) {
+            if (geoPackage != null) {
+                FeatureGeneralization featureGeneralization = new FeatureGeneralization(geoPackage, featureDao);
+                if (featureGeneralization.has()) {
+                    generalization = featureGeneralization;
+                }
+            }
+            generalizationLoaded = true;
+        }
+        return generalization;
+    }
+
+    /**
+     * Set the feature generalization
+     *
+     * @param generalization feature generalization
+     * @since 3.5.1
+     */
+    public synchronized void setGeneralization(FeatureGeneralization generalization) {
+        this.generalization = generalization;
+        generalizationLoaded = true;
+    }
+
     /**
      * Get the feature table styles
      *
@@ -586,12 +684,17 @@ public abstract class FeatureTiles {
     }
 
     /**
-     * Clear the icon cache
+     * Clear the icon cache, including the icon atlas icons drawn by these
+     * feature tiles
      *
      * @since 3.2.0
      */
     public void clearIconCache() {
         iconCache.clear();
+        if (iconAtlas != null) {
+            iconAtlas.remove(geoPackage, atlasIcons.values());
+        }
+        atlasIcons.clear();
     }
 
     /**
@@ -605,6 +708,49 @@ public abstract class FeatureTiles {
         iconCache.resize(size);
     }
 
+    /**
+     * Get the icon atlas
+     *
+     * @return icon atlas or null
+     * @since 3.5.1
+     */
+    public IconAtlas getIconAtlas() {
+        return iconAtlas;
+    }
+
+    /**
+     * Set the icon atlas, shared across feature tiles. Set to null to use a
+     * feature tiles specific icon cache.
+     *
+     * @param iconAtlas icon atlas or null
+     * @since 3.5.1
+     */
+    public void setIconAtlas(IconAtlas iconAtlas) {
+        this.iconAtlas = iconAtlas;
+        atlasIcons.clear();
+    }
+
+    /**
+     * Is prewarm icons enabled
+     *
+     * @return true if icons are decoded when the draw overlap is calculated
+     * @since 3.5.1
+     */
+    public boolean isPrewarmIcons() {
+        return prewarmIcons;
+    }
+
+    /**
+     * Set the prewarm icons flag. When true, feature table style icons are
+     * decoded into the icon atlas on the next {@link #calculateDrawOverlap()}
+     *
+     * @param prewarmIcons prewarm icons flag
+     * @since 3.5.1
+     */
+    public void setPrewarmIcons(boolean prewarmIcons) {
+        this.prewarmIcons = prewarmIcons;
+    }
+
     /**
      * Get the tile width
      *
@@ -1073,7 +1219,9 @@ public abstract class FeatureTiles {
      */
     public Bitmap drawTile(int x, int y, int zoom) {
         Bitmap bitmap;
-        if (isIndexQuery()) {
+        if (isGeneralizedQuery(zoom)) {
+            bitmap = drawTileQueryGeneralized(x, y, zoom);
+        } else if (isIndexQuery()) {
             bitmap = drawTileQueryIndex(x, y, zoom);
         } else {
             bitmap = drawTileQueryAll(x, y, zoom);
@@ -1126,6 +1274,57 @@ public abstract class FeatureTiles {
         return bitmap;
     }
 
+    /**
+     * Draw a tile bitmap from the x, y, and zoom level by querying the
+     * generalized features of the zoom level in the tile location
+     *
+     * @param x    x coordinate
+     * @param y    y coordinate
+     * @param zoom zoom level
+     * @return drawn bitmap, or null
+     * @since 3.5.1
+     */
+    public Bitmap drawTileQueryGeneralized(int x, int y, int zoom) {
+
+        // Get the web mercator bounding box
+        BoundingBox webMercatorBoundingBox = TileBoundingBoxUtils
+                .getWebMercatorBoundingBox(x, y, zoom);
+
+        Bitmap bitmap = null;
+
+        FeatureGeneralization featureGeneralization = getGeneralization();
+        if (featureGeneralization != null) {
+
+            // Query for the generalized features in the expanded tile bounds
+            List<GeneralizedFeature> features = featureGeneralization.query(zoom,
+                    expandBoundingBox(webMercatorBoundingBox));
+
+            int tileCount = features.size();
+
+            // Draw if at least one generalized feature exists
+            if (tileCount > 0) {
+
+                if (maxFeaturesPerTile == null || tileCount <= maxFeaturesPerTile) {
+
+                    // Draw the tile bitmap
+                    bitmap = drawGeneralizedTile(zoom, webMercatorBoundingBox, features);
+
+                } else if (maxFeaturesTileDraw != null) {
+
+                    // Draw the max features tile from the feature query results
+                    if (isIndexQuery()) {
+                        bitmap = drawTileQueryIndex(x, y, zoom);
+                    } else {
+                        bitmap = drawTileQueryAll(x, y, zoom);
+                    }
+                }
+
+            }
+        }
+
+        return bitmap;
+    }
+
     /**
      * Query for feature result count in the x, y, and zoom
      *
@@ -1418,7 +1617,8 @@ public abstract class FeatureTiles {
     }
 
     /**
-     * Get the feature style for the feature row and geometry type
+     * Get the feature style for the feature row and geometry type. When
+     * overridden, features drawn by id are queried and styled by this method.
      *
      * @param featureRow   feature row
      * @param geometryType geometry type
@@ -1432,6 +1632,50 @@ public abstract class FeatureTiles {
         return featureStyle;
     }
 
+    /**
+     * Get the feature style for the feature id and geometry type. Routes
+     * through {@link #getFeatureStyle(FeatureRow, GeometryType)} with the
+     * queried feature row when a subclass overrides it.
+     *
+     * @param featureId    feature id
+     * @param geometryType geometry type
+     * @return feature style
+     * @since 3.5.1
+     */
+    protected FeatureStyle getFeatureStyle(long featureId, GeometryType geometryType) {
+        FeatureStyle featureStyle = null;
+        if (featureRowStyles) {
+            FeatureRow featureRow = featureDao.queryForIdRow(featureId);
+            if (featureRow != null) {
+                featureStyle = getFeatureStyle(featureRow, geometryType);
+            }
+        } else if (featureTableStyles != null) {
+            featureStyle = featureTableStyles.getFeatureStyle(featureId, geometryType);
+        }
+        return featureStyle;
+    }
+
+    /**
+     * Determine if a subclass overrides
+     * {@link #getFeatureStyle(FeatureRow, GeometryType)}
+     *
+     * @return true if overridden
+     */
+    private boolean isFeatureRowStyleOverridden() {
+        boolean overridden = false;
+        for (Class<?> type = getClass(); !overridden
+                && type != FeatureTiles.class; type = type.getSuperclass()) {
+            try {
+                type.getDeclaredMethod("getFeatureStyle", FeatureRow.class,
+                        GeometryType.class);
+                overridden = true;
+            } catch (NoSuchMethodException e) {
+                // Not declared by the class
+            }
+        }
+        return overridden;
+    }
+
     /**
      * Get the icon bitmap from the icon row
      *
@@ -1439,7 +1683,16 @@ public abstract class FeatureTiles {
      * @return icon bitmap
      */
     protected Bitmap getIcon(IconRow iconRow) {
-        return iconCache.createIcon(iconRow, density);
+        Bitmap icon;
+        if (iconAtlas != null) {
+            icon = iconAtlas.createIcon(geoPackage, iconRow, density);
+            if (icon != null) {
+                atlasIcons.put(iconRow.getId(), iconRow);
+            }
+        } else {
+            icon = iconCache.createIcon(iconRow, density);
+        }
+        return icon;
     }
 
     /**
@@ -1679,4 +1932,32 @@ public abstract class FeatureTiles {
      */
     public abstract Bitmap drawTile(int zoom, BoundingBox webMercatorBoundingBox, List<FeatureRow> featureRow);
 
+    /**
+     * Draw a tile bitmap from generalized features. By default the generalized
+     * geometries are drawn as feature rows of the feature ids, override to
+     * draw point clusters by count.
+     *
+     * @param zoom                   zoom level
+     * @param webMercatorBoundingBox web mercator bounding box
+     * @param features               generalized features
+     * @return tile
+     * @since 3.5.1
+     */
+    public Bitmap drawGeneralizedTile(int zoom, BoundingBox webMercatorBoundingBox, List<GeneralizedFeature> features) {
+
+        long srsId = featureDao.getGeometryColumns().getSrsId();
+
+        List<FeatureRow> featureRows = new ArrayList<>(features.size());
+        for (GeneralizedFeature feature : features) {
+            FeatureRow featureRow = featureDao.newRow();
+            featureRow.setId(feature.getFeatureId());
+            GeoPackageGeometryData geometryData = new GeoPackageGeometryData(srsId);
+            geometryData.setGeometry(feature.getGeometry());
+            featureRow.setGeometry(geometryData);
+            featureRows.add(featureRow);
+        }
+
+        return drawTile(zoom, webMercatorBoundingBox, featureRows);
+    }
+
 }
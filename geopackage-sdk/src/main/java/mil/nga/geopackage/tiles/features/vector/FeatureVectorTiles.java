@@ -0,0 +1,1306 @@
+package mil.nga.geopackage.tiles.features.vector;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageException;
+import mil.nga.geopackage.R;
+import mil.nga.geopackage.core.contents.Contents;
+import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexResults;
+import mil.nga.geopackage.features.user.FeatureColumn;
+import mil.nga.geopackage.features.user.FeatureCursor;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.features.user.FeatureRowView;
+import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
+import mil.nga.geopackage.tiles.TileGrid;
+import mil.nga.geopackage.tiles.TileUtils;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileRow;
+import mil.nga.geopackage.tiles.user.TileTable;
+import mil.nga.sf.CompoundCurve;
+import mil.nga.sf.Geometry;
+import mil.nga.sf.GeometryCollection;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.LineString;
+import mil.nga.sf.MultiLineString;
+import mil.nga.sf.MultiPoint;
+import mil.nga.sf.MultiPolygon;
+import mil.nga.sf.Point;
+import mil.nga.sf.Polygon;
+import mil.nga.sf.PolyhedralSurface;
+import mil.nga.sf.proj.Projection;
+import mil.nga.sf.proj.ProjectionConstants;
+import mil.nga.sf.proj.ProjectionFactory;
+import mil.nga.sf.proj.ProjectionTransform;
+import mil.nga.sf.util.GeometryUtils;
+
+/**
+ * Feature Vector Tiles, encodes Mapbox Vector Tiles from a feature table.
+ * Features are queried through the feature index when indexed, transformed to
+ * Web Mercator, simplified with the same tolerance as raster feature tiles,
+ * clipped to the buffered tile extent, and quantized to tile coordinates.
+ * Encoded tiles can optionally be cached in a GeoPackage XYZ tile table.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class FeatureVectorTiles {
+
+    /**
+     * Web Mercator Projection
+     */
+    private static final Projection WEB_MERCATOR_PROJECTION = ProjectionFactory
+            .getProjection(ProjectionConstants.EPSG_WEB_MERCATOR);
+
+    /**
+     * Cached tile data of tiles without encoded features
+     */
+    private static final byte[] EMPTY_TILE = new byte[0];
+
+    /**
+     * Feature DAO
+     */
+    protected final FeatureDao featureDao;
+
+    /**
+     * Feature index manager, null when the features are not indexed
+     */
+    protected FeatureIndexManager indexManager;
+
+    /**
+     * Feature projection to Web Mercator transform
+     */
+    private final ProjectionTransform toWebMercator;
+
+    /**
+     * Vector tile layer name
+     */
+    protected String layerName;
+
+    /**
+     * Vector tile extent
+     */
+    protected int extent;
+
+    /**
+     * Buffer around the tile extent, in extent units, features are clipped to
+     */
+    protected int buffer;
+
+    /**
+     * Tile pixel length used to calculate the simplify tolerance
+     */
+    protected int tileLength = TileUtils.TILE_PIXELS_DEFAULT;
+
+    /**
+     * Flag indicating whether the geometries should be simplified
+     */
+    protected boolean simplifyGeometries = true;
+
+    /**
+     * Attribute columns to encode, null to encode all non primary key and
+     * non geometry columns
+     */
+    protected String[] columns;
+
+    /**
+     * Max features per tile, null for no limit
+     */
+    protected Integer maxFeaturesPerTile;
+
+    /**
+     * Optional XYZ tile table caching encoded tiles
+     */
+    protected TileDao cacheTileDao;
+
+    /**
+     * Constructor, non indexed features
+     *
+     * @param context    context
+     * @param featureDao feature dao
+     */
+    public FeatureVectorTiles(Context context, FeatureDao featureDao) {
+        this(context, null, featureDao);
+    }
+
+    /**
+     * Constructor, features are queried through the feature index when the
+     * GeoPackage is provided and the features are indexed
+     *
+     * @param context    context
+     * @param geoPackage GeoPackage
+     * @param featureDao feature dao
+     */
+    public FeatureVectorTiles(Context context, GeoPackage geoPackage,
+                              FeatureDao featureDao) {
+
+        this.featureDao = featureDao;
+        this.toWebMercator = featureDao.getProjection()
+                .getTransformation(ProjectionConstants.EPSG_WEB_MERCATOR);
+
+        layerName = featureDao.getTableName();
+        extent = context.getResources().getInteger(
+                R.integer.feature_vector_tiles_extent);
+        buffer = context.getResources().getInteger(
+                R.integer.feature_vector_tiles_buffer);
+
+        if (geoPackage != null) {
+            indexManager = new FeatureIndexManager(context, geoPackage,
+                    featureDao);
+            if (!indexManager.isIndexed()) {
+                indexManager.close();
+                indexManager = null;
+            }
+        }
+    }
+
+    /**
+     * Close the vector tiles connection
+     */
+    public void close() {
+        if (indexManager != null) {
+            indexManager.close();
+        }
+    }
+
+    /**
+     * Get the feature DAO
+     *
+     * @return feature dao
+     */
+    public FeatureDao getFeatureDao() {
+        return featureDao;
+    }
+
+    /**
+     * Is index query
+     *
+     * @return true if an index query
+     */
+    public boolean isIndexQuery() {
+        return indexManager != null && indexManager.isIndexed();
+    }
+
+    /**
+     * Get the index manager
+     *
+     * @return index manager or null
+     */
+    public FeatureIndexManager getIndexManager() {
+        return indexManager;
+    }
+
+    /**
+     * Set the index manager
+     *
+     * @param indexManager index manager
+     */
+    public void setIndexManager(FeatureIndexManager indexManager) {
+        this.indexManager = indexManager;
+    }
+
+    /**
+     * Get the vector tile layer name
+     *
+     * @return layer name
+     */
+    public String getLayerName() {
+        return layerName;
+    }
+
+    /**
+     * Set the vector tile layer name
+     *
+     * @param layerName layer name
+     */
+    public void setLayerName(String layerName) {
+        this.layerName = layerName;
+    }
+
+    /**
+     * Get the vector tile extent
+     *
+     * @return extent
+     */
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * Set the vector tile extent
+     *
+     * @param extent extent
+     */
+    public void setExtent(int extent) {
+        this.extent = extent;
+    }
+
+    /**
+     * Get the buffer around the tile extent in extent units
+     *
+     * @return buffer
+     */
+    public int getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Set the buffer around the tile extent in extent units
+     *
+     * @param buffer buffer
+     */
+    public void setBuffer(int buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Get the tile pixel length used to calculate the simplify tolerance
+     *
+     * @return tile length
+     */
+    public int getTileLength() {
+        return tileLength;
+    }
+
+    /**
+     * Set the tile pixel length used to calculate the simplify tolerance
+     *
+     * @param tileLength tile length
+     */
+    public void setTileLength(int tileLength) {
+        this.tileLength = tileLength;
+    }
+
+    /**
+     * Is the simplify geometries flag set? Default is true
+     *
+     * @return simplify geometries flag
+     */
+    public boolean isSimplifyGeometries() {
+        return simplifyGeometries;
+    }
+
+    /**
+     * Set the simplify geometries flag
+     *
+     * @param simplifyGeometries simplify geometries flag
+     */
+    public void setSimplifyGeometries(boolean simplifyGeometries) {
+        this.simplifyGeometries = simplifyGeometries;
+    }
+
+    /**
+     * Get the attribute columns to encode
+     *
+     * @return columns, null when encoding all attribute columns
+     */
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Set the attribute columns to encode
+     *
+     * @param columns columns, null to encode all non primary key and non
+     *                geometry columns
+     */
+    public void setColumns(String[] columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Get the max features per tile
+     *
+     * @return max features per tile or null
+     */
+    public Integer getMaxFeaturesPerTile() {
+        return maxFeaturesPerTile;
+    }
+
+    /**
+     * Set the max features per tile. When more features are returned in the
+     * query to create a single tile, the tile is not created.
+     *
+     * @param maxFeaturesPerTile max features per tile
+     */
+    public void setMaxFeaturesPerTile(Integer maxFeaturesPerTile) {
+        this.maxFeaturesPerTile = maxFeaturesPerTile;
+    }
+
+    /**
+     * Get the XYZ tile table caching encoded tiles
+     *
+     * @return tile dao or null
+     */
+    public TileDao getCacheTileDao() {
+        return cacheTileDao;
+    }
+
+    /**
+     * Set an XYZ tile table to cache encoded tiles in. Tiles are read from the
+     * table when present and written after being encoded. Tiles without
+     * features are cached as empty tile data. The cache is cleared when the
+     * feature table contents last change differs from the cache table
+     * contents last change. Feature edits that do not update the contents
+     * last change should be followed by {@link #invalidate()} or
+     * {@link #invalidate(GeometryEnvelope)}.
+     *
+     * @param cacheTileDao tile dao or null
+     */
+    public void setCacheTileDao(TileDao cacheTileDao) {
+        if (cacheTileDao != null && !cacheTileDao.isXYZTiles()) {
+            throw new GeoPackageException(
+                    "Vector tile cache must be an XYZ tile table. Table: "
+                            + cacheTileDao.getTableName());
+        }
+        this.cacheTileDao = cacheTileDao;
+    }
+
+    /**
+     * Encode the vector tile bytes from the x, y, and zoom level, reading from
+     * and writing to the cache tile table when set
+     *
+     * @param x    x coordinate
+     * @param y    y coordinate
+     * @param zoom zoom level
+     * @return vector tile bytes, or null when no features are in the tile
+     */
+    public byte[] drawTileBytes(int x, int y, int zoom) {
+
+        byte[] tileData = null;
+        boolean cached = false;
+
+        if (cacheTileDao != null) {
+            validateCache();
+            TileRow tileRow = cacheTileDao.queryForTile(x, y, zoom);
+            if (tileRow != null) {
+                tileData = tileRow.getTileData();
+                cached = tileData != null;
+            }
+        }
+
+        if (!cached) {
+
+            BoundingBox webMercatorBoundingBox = TileBoundingBoxUtils
+                    .getWebMercatorBoundingBox(x, y, zoom);
+
+            if (isIndexQuery()) {
+                tileData = drawTileQueryIndex(zoom, webMercatorBoundingBox);
+            } else {
+                tileData = drawTileQueryAll(zoom, webMercatorBoundingBox);
+            }
+
+            if (cacheTileDao != null) {
+                try {
+                    TileRow tileRow = cacheTileDao.newRow();
+                    tileRow.setZoomLevel(zoom);
+                    tileRow.setTileColumn(x);
+                    tileRow.setTileRow(y);
+                    tileRow.setTileData(tileData != null ? tileData
+                            : EMPTY_TILE);
+                    cacheTileDao.create(tileRow);
+                } catch (Exception e) {
+                    Log.w(FeatureVectorTiles.class.getSimpleName(),
+                            "Failed to cache vector tile. Table: "
+                                    + cacheTileDao.getTableName() + ", x: " + x
+                                    + ", y: " + y + ", zoom: " + zoom, e);
+                }
+            }
+
+        } else if (tileData.length == 0) {
+            tileData = null;
+        }
+
+        return tileData;
+    }
+
+    /**
+     * Invalidate all cached tiles
+     *
+     * @return number of deleted cached tiles
+     */
+    public int invalidate() {
+        int deleted = 0;
+        if (cacheTileDao != null) {
+            deleted = cacheTileDao.delete(null, null);
+        }
+        return deleted;
+    }
+
+    /**
+     * Invalidate the cached tiles at all cached zoom levels intersecting the
+     * geometry envelope of a created, updated, or deleted feature
+     *
+     * @param envelope geometry envelope in the feature projection
+     * @return number of deleted cached tiles
+     */
+    public int invalidate(GeometryEnvelope envelope) {
+
+        int deleted = 0;
+
+        if (cacheTileDao != null && envelope != null) {
+
+            BoundingBox webMercatorBoundingBox = TileBoundingBoxUtils
+                    .boundWebMercatorBoundingBox(new BoundingBox(envelope)
+                            .transform(toWebMercator));
+
+            List<Integer> zoomLevels = new ArrayList<>();
+            Cursor cursor = cacheTileDao.getDb().rawQuery("SELECT DISTINCT "
+                    + TileTable.COLUMN_ZOOM_LEVEL + " FROM \""
+                    + cacheTileDao.getTableName() + "\"", null);
+            try {
+                while (cursor.moveToNext()) {
+                    zoomLevels.add(cursor.getInt(0));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            for (int zoom : zoomLevels) {
+
+                // Expand by a tile in each direction for the clip buffer
+                TileGrid tileGrid = TileBoundingBoxUtils.getTileGrid(
+                        webMercatorBoundingBox, zoom);
+                long maxTile = (1L << zoom) - 1;
+                long minX = Math.max(0, tileGrid.getMinX() - 1);
+                long maxX = Math.min(maxTile, tileGrid.getMaxX() + 1);
+                long minY = Math.max(0, tileGrid.getMinY() - 1);
+                long maxY = Math.min(maxTile, tileGrid.getMaxY() + 1);
+
+                StringBuilder where = new StringBuilder();
+                where.append(cacheTileDao.buildWhere(
+                        TileTable.COLUMN_ZOOM_LEVEL, zoom));
+                where.append(" AND ");
+                where.append(cacheTileDao.buildWhere(
+                        TileTable.COLUMN_TILE_COLUMN, minX, ">="));
+                where.append(" AND ");
+                where.append(cacheTileDao.buildWhere(
+                        TileTable.COLUMN_TILE_COLUMN, maxX, "<="));
+                where.append(" AND ");
+                where.append(cacheTileDao.buildWhere(
+                        TileTable.COLUMN_TILE_ROW, minY, ">="));
+                where.append(" AND ");
+                where.append(cacheTileDao.buildWhere(
+                        TileTable.COLUMN_TILE_ROW, maxY, "<="));
+
+                String[] whereArgs = cacheTileDao.buildWhereArgs(new Object[]{
+                        zoom, minX, maxX, minY, maxY});
+
+                deleted += cacheTileDao.delete(where.toString(), whereArgs);
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Clear the cached tiles when the feature table contents last change
+     * differs from the cache table contents last change, and record the
+     * feature table last change on the cache table
+     */
+    private void validateCache() {
+
+        String featureTable = featureDao.getTableName();
+        String cacheTable = cacheTileDao.getTableName();
+        GeoPackageConnection connection = cacheTileDao.getDb();
+
+        boolean stale = false;
+        Cursor cursor = connection.rawQuery("SELECT f."
+                + Contents.COLUMN_LAST_CHANGE + " IS NOT c."
+                + Contents.COLUMN_LAST_CHANGE + " FROM "
+                + Contents.TABLE_NAME + " f, " + Contents.TABLE_NAME
+                + " c WHERE f." + Contents.COLUMN_TABLE_NAME + " = ? AND c."
+                + Contents.COLUMN_TABLE_NAME + " = ?",
+                new String[]{featureTable, cacheTable});
+        try {
+            stale = cursor.moveToFirst() && cursor.getInt(0) != 0;
+        } finally {
+            cursor.close();
+        }
+
+        if (stale) {
+            invalidate();
+            connection.execSQL("UPDATE " + Contents.TABLE_NAME + " SET "
+                    + Contents.COLUMN_LAST_CHANGE + " = (SELECT "
+                    + Contents.COLUMN_LAST_CHANGE + " FROM "
+                    + Contents.TABLE_NAME + " WHERE "
+                    + Contents.COLUMN_TABLE_NAME + " = "
+                    + DatabaseUtils.sqlEscapeString(featureTable) + ") WHERE "
+                    + Contents.COLUMN_TABLE_NAME + " = "
+                    + DatabaseUtils.sqlEscapeString(cacheTable));
+        }
+    }
+
+    /**
+     * Encode the vector tile by querying the feature index
+     *
+     * @param zoom                   zoom level
+     * @param webMercatorBoundingBox tile web mercator bounding box
+     * @return vector tile bytes or null
+     */
+    private byte[] drawTileQueryIndex(int zoom,
+                                      BoundingBox webMercatorBoundingBox) {
+
+        byte[] tileData = null;
+
+        FeatureIndexResults results = indexManager.query(getQueryColumns(),
+                expandBoundingBox(webMercatorBoundingBox),
+                WEB_MERCATOR_PROJECTION);
+        try {
+            long count = results.count();
+            if (count > 0 && (maxFeaturesPerTile == null
+                    || count <= maxFeaturesPerTile)) {
+                tileData = encodeTile(zoom, webMercatorBoundingBox, results);
+            }
+        } finally {
+            results.close();
+        }
+
+        return tileData;
+    }
+
+    /**
+     * Encode the vector tile by querying all features, culled by the geometry
+     * envelopes read from the geometry headers. Features are encoded as they
+     * are read and the tile is abandoned once the max features per tile is
+     * exceeded. This could be very slow if there are a lot of features
+     *
+     * @param zoom                   zoom level
+     * @param webMercatorBoundingBox tile web mercator bounding box
+     * @return vector tile bytes or null
+     */
+    private byte[] drawTileQueryAll(int zoom,
+                                    BoundingBox webMercatorBoundingBox) {
+
+        BoundingBox expandedBoundingBox = expandBoundingBox(webMercatorBoundingBox);
+
+        VectorTileEncoder encoder = new VectorTileEncoder(extent);
+        TileFrame frame = createTileFrame(zoom, webMercatorBoundingBox);
+        String[] attributeColumns = getAttributeColumns();
+
+        boolean exceeded = false;
+        int count = 0;
+
+        FeatureCursor cursor = featureDao.query(getQueryColumns());
+        try {
+            FeatureRowView row = cursor.getRowView();
+            while (!exceeded && cursor.moveToNext()) {
+                if (row.isValid()) {
+                    GeometryEnvelope envelope = row.getGeometryEnvelope();
+                    if (envelope != null) {
+                        BoundingBox featureBoundingBox = new BoundingBox(
+                                envelope).transform(toWebMercator);
+                        if (expandedBoundingBox.intersects(featureBoundingBox,
+                                true)) {
+                            count++;
+                            if (maxFeaturesPerTile != null
+                                    && count > maxFeaturesPerTile) {
+                                exceeded = true;
+                            } else {
+                                addFeature(encoder, frame, attributeColumns,
+                                        row.toRow());
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        byte[] tileData = null;
+        if (!exceeded && !encoder.isEmpty()) {
+            tileData = encoder.encode();
+        }
+
+        return tileData;
+    }
+
+    /**
+     * Encode a vector tile from the feature rows
+     *
+     * @param zoom                   zoom level
+     * @param webMercatorBoundingBox tile web mercator bounding box
+     * @param featureRows            feature rows
+     * @return vector tile bytes or null when no features were encoded
+     */
+    public byte[] encodeTile(int zoom, BoundingBox webMercatorBoundingBox,
+                             Iterable<FeatureRow> featureRows) {
+
+        VectorTileEncoder encoder = new VectorTileEncoder(extent);
+        TileFrame frame = createTileFrame(zoom, webMercatorBoundingBox);
+        String[] attributeColumns = getAttributeColumns();
+
+        for (FeatureRow featureRow : featureRows) {
+            addFeature(encoder, frame, attributeColumns, featureRow);
+        }
+
+        byte[] tileData = null;
+        if (!encoder.isEmpty()) {
+            tileData = encoder.encode();
+        }
+
+        return tileData;
+    }
+
+    /**
+     * Add the feature row to the encoder
+     *
+     * @param encoder          vector tile encoder
+     * @param frame            tile frame
+     * @param attributeColumns attribute columns
+     * @param featureRow       feature row
+     */
+    private void addFeature(VectorTileEncoder encoder, TileFrame frame,
+                            String[] attributeColumns, FeatureRow featureRow) {
+        try {
+            encodeFeature(encoder, frame, attributeColumns, featureRow);
+        } catch (Exception e) {
+            Log.e(FeatureVectorTiles.class.getSimpleName(),
+                    "Failed to encode feature. Table: "
+                            + featureDao.getTableName() + ", Id: "
+                            + featureRow.getId(), e);
+        }
+    }
+
+    /**
+     * Create the tile frame of the tile bounding box and zoom level simplify
+     * tolerance
+     *
+     * @param zoom                   zoom level
+     * @param webMercatorBoundingBox tile web mercator bounding box
+     * @return tile frame
+     */
+    private TileFrame createTileFrame(int zoom,
+                                      BoundingBox webMercatorBoundingBox) {
+        double simplifyTolerance = TileBoundingBoxUtils.toleranceDistance(
+                zoom, tileLength, tileLength);
+        return new TileFrame(webMercatorBoundingBox, simplifyTolerance);
+    }
+
+    /**
+     * Encode the feature row geometry and attributes
+     *
+     * @param encoder          vector tile encoder
+     * @param frame            tile frame
+     * @param attributeColumns attribute columns
+     * @param featureRow       feature row
+     */
+    private void encodeFeature(VectorTileEncoder encoder, TileFrame frame,
+                               String[] attributeColumns,
+                               FeatureRow featureRow) {
+
+        Geometry geometry = featureRow.getGeometryValue();
+        if (geometry != null) {
+
+            List<int[]> points = new ArrayList<>();
+            List<int[]> lines = new ArrayList<>();
+            List<int[]> polygons = new ArrayList<>();
+            addGeometry(frame, geometry, points, lines, polygons);
+
+            if (!points.isEmpty() || !lines.isEmpty() || !polygons.isEmpty()) {
+
+                Map<String, Object> attributes = new LinkedHashMap<>();
+                for (String column : attributeColumns) {
+                    attributes.put(column, featureRow.getValue(column));
+                }
+
+                Long id = featureRow.hasId() ? featureRow.getId() : null;
+
+                // Mixed geometry collections are encoded as one feature per
+                // vector tile geometry type
+                encoder.addFeature(layerName, id, attributes,
+                        VectorTileEncoder.GEOMETRY_TYPE_POINT, points);
+                encoder.addFeature(layerName, id, attributes,
+                        VectorTileEncoder.GEOMETRY_TYPE_LINESTRING, lines);
+                encoder.addFeature(layerName, id, attributes,
+                        VectorTileEncoder.GEOMETRY_TYPE_POLYGON, polygons);
+            }
+        }
+
+    }
+
+    /**
+     * Add the clipped and quantized geometry parts
+     *
+     * @param frame    tile frame
+     * @param geometry geometry
+     * @param points   point parts
+     * @param lines    line parts
+     * @param polygons polygon ring parts
+     */
+    private void addGeometry(TileFrame frame, Geometry geometry,
+                             List<int[]> points, List<int[]> lines, List<int[]> polygons) {
+
+        switch (geometry.getGeometryType()) {
+
+            case POINT:
+                addPoint(frame, (Point) geometry, points);
+                break;
+            case LINESTRING:
+            case CIRCULARSTRING:
+                addLineString(frame, (LineString) geometry, lines);
+                break;
+            case POLYGON:
+            case TRIANGLE:
+                addPolygon(frame, (Polygon) geometry, polygons);
+                break;
+            case MULTIPOINT:
+                for (Point point : ((MultiPoint) geometry).getPoints()) {
+                    addPoint(frame, point, points);
+                }
+                break;
+            case MULTILINESTRING:
+                for (LineString lineString : ((MultiLineString) geometry)
+                        .getLineStrings()) {
+                    addLineString(frame, lineString, lines);
+                }
+                break;
+            case COMPOUNDCURVE:
+                for (LineString lineString : ((CompoundCurve) geometry)
+                        .getLineStrings()) {
+                    addLineString(frame, lineString, lines);
+                }
+                break;
+            case MULTIPOLYGON:
+                for (Polygon polygon : ((MultiPolygon) geometry).getPolygons()) {
+                    addPolygon(frame, polygon, polygons);
+                }
+                break;
+            case POLYHEDRALSURFACE:
+            case TIN:
+                for (Polygon polygon : ((PolyhedralSurface) geometry)
+                        .getPolygons()) {
+                    addPolygon(frame, polygon, polygons);
+                }
+                break;
+            case GEOMETRYCOLLECTION:
+                @SuppressWarnings("unchecked")
+                GeometryCollection<Geometry> geometryCollection = (GeometryCollection<Geometry>) geometry;
+                for (Geometry geometryFromCollection : geometryCollection
+                        .getGeometries()) {
+                    addGeometry(frame, geometryFromCollection, points, lines,
+                            polygons);
+                }
+                break;
+            default:
+                throw new GeoPackageException("Unsupported Geometry Type: "
+                        + geometry.getGeometryType().getName());
+        }
+
+    }
+
+    /**
+     * Add a point when within the buffered tile extent
+     *
+     * @param frame  tile frame
+     * @param point  point
+     * @param points point parts
+     */
+    private void addPoint(TileFrame frame, Point point, List<int[]> points) {
+        Point webMercatorPoint = toWebMercator.transform(point);
+        double x = frame.getX(webMercatorPoint.getX());
+        double y = frame.getY(webMercatorPoint.getY());
+        if (frame.contains(x, y)) {
+            points.add(new int[]{(int) Math.round(x), (int) Math.round(y)});
+        }
+    }
+
+    /**
+     * Add the clipped line string parts
+     *
+     * @param frame      tile frame
+     * @param lineString line string
+     * @param lines      line parts
+     */
+    private void addLineString(TileFrame frame, LineString lineString,
+                               List<int[]> lines) {
+        double[] coordinates = toTileCoordinates(frame, lineString.getPoints());
+        if (coordinates.length >= 4) {
+            for (double[] part : frame.clipLine(coordinates)) {
+                int[] quantized = quantize(part, false);
+                if (quantized.length >= 4) {
+                    lines.add(quantized);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the clipped and oriented polygon rings
+     *
+     * @param frame    tile frame
+     * @param polygon  polygon
+     * @param polygons polygon ring parts
+     */
+    private void addPolygon(TileFrame frame, Polygon polygon,
+                            List<int[]> polygons) {
+        List<LineString> rings = polygon.getRings();
+        for (int i = 0; i < rings.size(); i++) {
+            double[] coordinates = toTileCoordinates(frame, rings.get(i)
+                    .getPoints());
+            int[] ring = null;
+            if (coordinates.length >= 6) {
+                ring = quantize(frame.clipRing(coordinates), true);
+            }
+            boolean exterior = i == 0;
+            if (ring != null && ring.length >= 6) {
+                long area = signedArea(ring);
+                if (area != 0) {
+                    // Exterior rings have a positive area in tile coordinates
+                    if ((area > 0) != exterior) {
+                        reverse(ring);
+                    }
+                    polygons.add(ring);
+                } else if (exterior) {
+                    break;
+                }
+            } else if (exterior) {
+                // Skip the holes of a polygon without an exterior ring
+                break;
+            }
+        }
+    }
+
+    /**
+     * Transform, simplify, and convert the points to tile coordinates
+     *
+     * @param frame  tile frame
+     * @param points points
+     * @return alternating x and y tile coordinates
+     */
+    private double[] toTileCoordinates(TileFrame frame, List<Point> points) {
+
+        List<Point> webMercatorPoints = toWebMercator.transform(points);
+
+        // Simplify in meters, matching the raster feature tiles simplification
+        if (simplifyGeometries && webMercatorPoints.size() > 2) {
+            webMercatorPoints = GeometryUtils.simplifyPoints(
+                    webMercatorPoints, frame.simplifyTolerance);
+        }
+
+        double[] coordinates = new double[webMercatorPoints.size() * 2];
+        int index = 0;
+        for (Point point : webMercatorPoints) {
+            double x = frame.getX(point.getX());
+            double y = frame.getY(point.getY());
+            if (!Double.isNaN(x) && !Double.isNaN(y)
+                    && !Double.isInfinite(x) && !Double.isInfinite(y)) {
+                coordinates[index++] = x;
+                coordinates[index++] = y;
+            }
+        }
+        if (index < coordinates.length) {
+            double[] validCoordinates = new double[index];
+            System.arraycopy(coordinates, 0, validCoordinates, 0, index);
+            coordinates = validCoordinates;
+        }
+
+        return coordinates;
+    }
+
+    /**
+     * Round the tile coordinates to integers, removing repeated coordinates
+     *
+     * @param coordinates alternating x and y tile coordinates
+     * @param ring        true if a ring, removing a repeated closing coordinate
+     * @return quantized coordinates
+     */
+    private static int[] quantize(double[] coordinates, boolean ring) {
+        int[] quantized = new int[coordinates.length];
+        int size = 0;
+        for (int i = 0; i + 1 < coordinates.length; i += 2) {
+            int x = (int) Math.round(coordinates[i]);
+            int y = (int) Math.round(coordinates[i + 1]);
+            if (size == 0 || quantized[size - 2] != x
+                    || quantized[size - 1] != y) {
+                quantized[size++] = x;
+                quantized[size++] = y;
+            }
+        }
+        if (ring && size >= 4 && quantized[0] == quantized[size - 2]
+                && quantized[1] == quantized[size - 1]) {
+            size -= 2;
+        }
+        int[] result = new int[size];
+        System.arraycopy(quantized, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * Calculate twice the signed area of the ring with the surveyor's formula
+     *
+     * @param ring alternating x and y coordinates
+     * @return twice the signed area
+     */
+    private static long signedArea(int[] ring) {
+        long area = 0;
+        int count = ring.length / 2;
+        for (int i = 0; i < count; i++) {
+            int j = (i + 1) % count;
+            area += (long) ring[i * 2] * ring[j * 2 + 1]
+                    - (long) ring[j * 2] * ring[i * 2 + 1];
+        }
+        return area;
+    }
+
+    /**
+     * Reverse the coordinate order of the ring
+     *
+     * @param ring alternating x and y coordinates
+     */
+    private static void reverse(int[] ring) {
+        int count = ring.length / 2;
+        for (int i = 0; i < count / 2; i++) {
+            int j = count - 1 - i;
+            int x = ring[i * 2];
+            int y = ring[i * 2 + 1];
+            ring[i * 2] = ring[j * 2];
+            ring[i * 2 + 1] = ring[j * 2 + 1];
+            ring[j * 2] = x;
+            ring[j * 2 + 1] = y;
+        }
+    }
+
+    /**
+     * Get the query columns of the id, geometry, and attribute columns
+     *
+     * @return query columns
+     */
+    private String[] getQueryColumns() {
+        String[] idAndGeometry = featureDao.getIdAndGeometryColumnNames();
+        String[] attributeColumns = getAttributeColumns();
+        String[] queryColumns = new String[idAndGeometry.length
+                + attributeColumns.length];
+        System.arraycopy(idAndGeometry, 0, queryColumns, 0,
+                idAndGeometry.length);
+        System.arraycopy(attributeColumns, 0, queryColumns,
+                idAndGeometry.length, attributeColumns.length);
+        return queryColumns;
+    }
+
+    /**
+     * Get the attribute columns to encode
+     *
+     * @return attribute columns
+     */
+    private String[] getAttributeColumns() {
+        String[] attributeColumns = columns;
+        if (attributeColumns == null) {
+            List<String> columnNames = new ArrayList<>();
+            for (FeatureColumn column : featureDao.getTable().getColumns()) {
+                if (!column.isPrimaryKey() && !column.isGeometry()) {
+                    columnNames.add(column.getName());
+                }
+            }
+            attributeColumns = columnNames.toArray(new String[]{});
+        }
+        return attributeColumns;
+    }
+
+    /**
+     * Expand the tile bounding box by the buffer
+     *
+     * @param webMercatorBoundingBox tile web mercator bounding box
+     * @return expanded bounding box
+     */
+    private BoundingBox expandBoundingBox(BoundingBox webMercatorBoundingBox) {
+        double bufferWidth = (webMercatorBoundingBox.getMaxLongitude()
+                - webMercatorBoundingBox.getMinLongitude()) * buffer / extent;
+        double bufferHeight = (webMercatorBoundingBox.getMaxLatitude()
+                - webMercatorBoundingBox.getMinLatitude()) * buffer / extent;
+        BoundingBox expandedBoundingBox = new BoundingBox(
+                webMercatorBoundingBox.getMinLongitude() - bufferWidth,
+                webMercatorBoundingBox.getMinLatitude() - bufferHeight,
+                webMercatorBoundingBox.getMaxLongitude() + bufferWidth,
+                webMercatorBoundingBox.getMaxLatitude() + bufferHeight);
+        return TileBoundingBoxUtils
+                .boundWebMercatorBoundingBox(expandedBoundingBox);
+    }
+
+    /**
+     * Tile coordinate frame of a single tile, converting Web Mercator
+     * coordinates to tile extent coordinates and clipping to the buffered
+     * extent
+     */
+    private class TileFrame {
+
+        /**
+         * Tile min Web Mercator x
+         */
+        private final double minX;
+
+        /**
+         * Tile max Web Mercator y
+         */
+        private final double maxY;
+
+        /**
+         * Extent units per meter in x
+         */
+        private final double scaleX;
+
+        /**
+         * Extent units per meter in y
+         */
+        private final double scaleY;
+
+        /**
+         * Clip min
+         */
+        private final double clipMin;
+
+        /**
+         * Clip max
+         */
+        private final double clipMax;
+
+        /**
+         * Simplify tolerance in meters
+         */
+        private final double simplifyTolerance;
+
+        /**
+         * Constructor
+         *
+         * @param webMercatorBoundingBox tile web mercator bounding box
+         * @param simplifyTolerance      simplify tolerance in meters
+         */
+        TileFrame(BoundingBox webMercatorBoundingBox, double simplifyTolerance) {
+            minX = webMercatorBoundingBox.getMinLongitude();
+            maxY = webMercatorBoundingBox.getMaxLatitude();
+            scaleX = extent / (webMercatorBoundingBox.getMaxLongitude()
+                    - minX);
+            scaleY = extent / (maxY
+                    - webMercatorBoundingBox.getMinLatitude());
+            clipMin = -buffer;
+            clipMax = extent + buffer;
+            this.simplifyTolerance = simplifyTolerance;
+        }
+
+        /**
+         * Get the tile x coordinate
+         *
+         * @param x web mercator x
+         * @return tile x
+         */
+        double getX(double x) {
+            return (x - minX) * scaleX;
+        }
+
+        /**
+         * Get the tile y coordinate
+         *
+         * @param y web mercator y
+         * @return tile y
+         */
+        double getY(double y) {
+            return (maxY - y) * scaleY;
+        }
+
+        /**
+         * Determine if the tile coordinate is within the buffered extent
+         *
+         * @param x tile x
+         * @param y tile y
+         * @return true if contained
+         */
+        boolean contains(double x, double y) {
+            return x >= clipMin && x <= clipMax && y >= clipMin && y <= clipMax;
+        }
+
+        /**
+         * Clip the line to the buffered extent, splitting it into parts
+         * where it leaves and re-enters (Liang-Barsky)
+         *
+         * @param line alternating x and y tile coordinates
+         * @return clipped parts
+         */
+        List<double[]> clipLine(double[] line) {
+
+            List<double[]> parts = new ArrayList<>();
+            double[] part = new double[line.length + 4];
+            int size = 0;
+
+            for (int i = 0; i + 3 < line.length; i += 2) {
+
+                double x0 = line[i];
+                double y0 = line[i + 1];
+                double dx = line[i + 2] - x0;
+                double dy = line[i + 3] - y0;
+
+                double t0 = 0;
+                double t1 = 1;
+                double[] p = {-dx, dx, -dy, dy};
+                double[] q = {x0 - clipMin, clipMax - x0, y0 - clipMin,
+                        clipMax - y0};
+                boolean visible = true;
+                for (int edge = 0; edge < 4 && visible; edge++) {
+                    if (p[edge] == 0) {
+                        visible = q[edge] >= 0;
+                    } else {
+                        double t = q[edge] / p[edge];
+                        if (p[edge] < 0) {
+                            if (t > t1) {
+                                visible = false;
+                            } else if (t > t0) {
+                                t0 = t;
+                            }
+                        } else {
+                            if (t < t0) {
+                                visible = false;
+                            } else if (t < t1) {
+                                t1 = t;
+                            }
+                        }
+                    }
+                }
+
+                if (!visible) {
+                    if (size > 0) {
+                        parts.add(copy(part, size));
+                        size = 0;
+                    }
+                    continue;
+                }
+
+                if (size == 0 || t0 > 0) {
+                    if (size > 0) {
+                        parts.add(copy(part, size));
+                        size = 0;
+                    }
+                    if (size + 2 > part.length) {
+                        part = copy(part, part.length * 2);
+                    }
+                    part[size++] = x0 + t0 * dx;
+                    part[size++] = y0 + t0 * dy;
+                }
+                if (size + 2 > part.length) {
+                    part = copy(part, part.length * 2);
+                }
+                part[size++] = x0 + t1 * dx;
+                part[size++] = y0 + t1 * dy;
+
+                if (t1 < 1) {
+                    parts.add(copy(part, size));
+                    size = 0;
+                }
+            }
+
+            if (size > 0) {
+                parts.add(copy(part, size));
+            }
+
+            return parts;
+        }
+
+        /**
+         * Clip the ring to the buffered extent (Sutherland-Hodgman)
+         *
+         * @param ring alternating x and y tile coordinates
+         * @return clipped ring
+         */
+        double[] clipRing(double[] ring) {
+            double[] clipped = ring;
+            for (int edge = 0; edge < 4 && clipped.length > 0; edge++) {
+                clipped = clipRingEdge(clipped, edge);
+            }
+            return clipped;
+        }
+
+        /**
+         * Clip the ring against a single edge of the buffered extent
+         *
+         * @param ring ring coordinates
+         * @param edge edge: 0 left, 1 right, 2 top, 3 bottom
+         * @return clipped ring coordinates
+         */
+        private double[] clipRingEdge(double[] ring, int edge) {
+            int count = ring.length / 2;
+            double[] clipped = new double[ring.length * 2 + 4];
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                double x0 = ring[i * 2];
+                double y0 = ring[i * 2 + 1];
+                int j = (i + 1) % count;
+                double x1 = ring[j * 2];
+                double y1 = ring[j * 2 + 1];
+                boolean inside0 = inside(x0, y0, edge);
+                boolean inside1 = inside(x1, y1, edge);
+                if (inside0) {
+                    clipped[size++] = x0;
+                    clipped[size++] = y0;
+                }
+                if (inside0 != inside1) {
+                    double boundary = edge == 0 || edge == 2 ? clipMin
+                            : clipMax;
+                    double t;
+                    if (edge < 2) {
+                        t = (boundary - x0) / (x1 - x0);
+                        clipped[size++] = boundary;
+                        clipped[size++] = y0 + t * (y1 - y0);
+                    } else {
+                        t = (boundary - y0) / (y1 - y0);
+                        clipped[size++] = x0 + t * (x1 - x0);
+                        clipped[size++] = boundary;
+                    }
+                }
+            }
+            return copy(clipped, size);
+        }
+
+        /**
+         * Determine if the coordinate is inside the clip edge
+         *
+         * @param x    tile x
+         * @param y    tile y
+         * @param edge edge: 0 left, 1 right, 2 top, 3 bottom
+         * @return true if inside
+         */
+        private boolean inside(double x, double y, int edge) {
+            boolean inside;
+            switch (edge) {
+                case 0:
+                    inside = x >= clipMin;
+                    break;
+                case 1:
+                    inside = x <= clipMax;
+                    break;
+                case 2:
+                    inside = y >= clipMin;
+                    break;
+                default:
+                    inside = y <= clipMax;
+            }
+            return inside;
+        }
+
+        /**
+         * Copy the array to a new length
+         *
+         * @param values values
+         * @param length new length
+         * @return copied values
+         */
+        private double[] copy(double[] values, int length) {
+            double[] copy = new double[length];
+            System.arraycopy(values, 0, copy, 0, Math.min(length,
+                    values.length));
+            return copy;
+        }
+
+    }
+
+}
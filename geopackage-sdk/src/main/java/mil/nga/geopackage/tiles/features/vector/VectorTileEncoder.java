@@ -0,0 +1,588 @@
+package mil.nga.geopackage.tiles.features.vector;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mil.nga.geopackage.GeoPackageException;
+
+/**
+ * Mapbox Vector Tile (version 2.1) encoder. Features are added to named layers
+ * with geometries already clipped and quantized to the tile extent, and the
+ * tile is encoded as protocol buffer bytes.
+ *
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class VectorTileEncoder {
+
+    /**
+     * Vector tile specification version
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Default tile extent
+     */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    /**
+     * Point geometry type
+     */
+    public static final int GEOMETRY_TYPE_POINT = 1;
+
+    /**
+     * Line string geometry type
+     */
+    public static final int GEOMETRY_TYPE_LINESTRING = 2;
+
+    /**
+     * Polygon geometry type
+     */
+    public static final int GEOMETRY_TYPE_POLYGON = 3;
+
+    /**
+     * Move to command id
+     */
+    private static final int COMMAND_MOVE_TO = 1;
+
+    /**
+     * Line to command id
+     */
+    private static final int COMMAND_LINE_TO = 2;
+
+    /**
+     * Close path command id
+     */
+    private static final int COMMAND_CLOSE_PATH = 7;
+
+    /**
+     * UTF-8 charset
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Tile extent
+     */
+    private final int extent;
+
+    /**
+     * Layers by name, in insertion order
+     */
+    private final Map<String, Layer> layers = new LinkedHashMap<>();
+
+    /**
+     * Constructor, with the {@link #DEFAULT_EXTENT}
+     */
+    public VectorTileEncoder() {
+        this(DEFAULT_EXTENT);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param extent tile extent
+     */
+    public VectorTileEncoder(int extent) {
+        this.extent = extent;
+    }
+
+    /**
+     * Get the tile extent
+     *
+     * @return extent
+     */
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * Determine if no features have been added
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        boolean empty = true;
+        for (Layer layer : layers.values()) {
+            if (!layer.features.isEmpty()) {
+                empty = false;
+                break;
+            }
+        }
+        return empty;
+    }
+
+    /**
+     * Add a feature to the layer
+     *
+     * @param layerName    layer name
+     * @param id           feature id or null
+     * @param attributes   attribute values by name, null values are skipped
+     * @param geometryType geometry type: {@link #GEOMETRY_TYPE_POINT},
+     *                     {@link #GEOMETRY_TYPE_LINESTRING}, or
+     *                     {@link #GEOMETRY_TYPE_POLYGON}
+     * @param parts        geometry parts of alternating x and y extent
+     *                     coordinates. Points are all parts combined, line
+     *                     strings are one part per line, and polygons are one
+     *                     part per ring without a repeated closing coordinate,
+     *                     exterior rings oriented with a positive area
+     * @return true if added, false if no geometry commands were encoded
+     */
+    public boolean addFeature(String layerName, Long id,
+                              Map<String, Object> attributes, int geometryType,
+                              List<int[]> parts) {
+
+        IntArray geometry = encodeGeometry(geometryType, parts);
+
+        boolean added = geometry.size > 0;
+        if (added) {
+
+            Layer layer = layers.get(layerName);
+            if (layer == null) {
+                layer = new Layer(layerName);
+                layers.put(layerName, layer);
+            }
+
+            IntArray tags = new IntArray();
+            if (attributes != null) {
+                for (Map.Entry<String, Object> attribute : attributes
+                        .entrySet()) {
+                    Object value = normalizeValue(attribute.getValue());
+                    if (value != null) {
+                        tags.add(layer.keyIndex(attribute.getKey()));
+                        tags.add(layer.valueIndex(value));
+                    }
+                }
+            }
+
+            ProtobufWriter feature = new ProtobufWriter();
+            if (id != null) {
+                feature.writeTag(1, ProtobufWriter.WIRE_VARINT);
+                feature.writeVarint(id);
+            }
+            feature.writePacked(2, tags);
+            feature.writeTag(3, ProtobufWriter.WIRE_VARINT);
+            feature.writeVarint(geometryType);
+            feature.writePacked(4, geometry);
+
+            layer.features.add(feature.toByteArray());
+        }
+
+        return added;
+    }
+
+    /**
+     * Encode the tile
+     *
+     * @return vector tile bytes
+     */
+    public byte[] encode() {
+
+        ProtobufWriter tile = new ProtobufWriter();
+
+        for (Layer layer : layers.values()) {
+
+            if (layer.features.isEmpty()) {
+                continue;
+            }
+
+            ProtobufWriter layerWriter = new ProtobufWriter();
+
+            layerWriter.writeTag(15, ProtobufWriter.WIRE_VARINT);
+            layerWriter.writeVarint(VERSION);
+
+            layerWriter.writeString(1, layer.name);
+
+            for (byte[] feature : layer.features) {
+                layerWriter.writeBytes(2, feature);
+            }
+
+            for (String key : layer.keys.keySet()) {
+                layerWriter.writeString(3, key);
+            }
+
+            for (Object value : layer.values.keySet()) {
+                layerWriter.writeBytes(4, encodeValue(value));
+            }
+
+            layerWriter.writeTag(5, ProtobufWriter.WIRE_VARINT);
+            layerWriter.writeVarint(extent);
+
+            tile.writeBytes(3, layerWriter.toByteArray());
+        }
+
+        return tile.toByteArray();
+    }
+
+    /**
+     * Encode the geometry parts as geometry commands
+     *
+     * @param geometryType geometry type
+     * @param parts        geometry parts
+     * @return geometry commands
+     */
+    private static IntArray encodeGeometry(int geometryType, List<int[]> parts) {
+
+        IntArray commands = new IntArray();
+
+        int cursorX = 0;
+        int cursorY = 0;
+
+        switch (geometryType) {
+
+            case GEOMETRY_TYPE_POINT:
+                int count = 0;
+                for (int[] part : parts) {
+                    count += part.length / 2;
+                }
+                if (count > 0) {
+                    commands.add(command(COMMAND_MOVE_TO, count));
+                    for (int[] part : parts) {
+                        for (int i = 0; i + 1 < part.length; i += 2) {
+                            commands.add(zigZag(part[i] - cursorX));
+                            commands.add(zigZag(part[i + 1] - cursorY));
+                            cursorX = part[i];
+                            cursorY = part[i + 1];
+                        }
+                    }
+                }
+                break;
+
+            case GEOMETRY_TYPE_LINESTRING:
+            case GEOMETRY_TYPE_POLYGON:
+                boolean polygon = geometryType == GEOMETRY_TYPE_POLYGON;
+                int minPoints = polygon ? 3 : 2;
+                for (int[] part : parts) {
+                    int points = part.length / 2;
+                    if (points < minPoints) {
+                        continue;
+                    }
+                    commands.add(command(COMMAND_MOVE_TO, 1));
+                    commands.add(zigZag(part[0] - cursorX));
+                    commands.add(zigZag(part[1] - cursorY));
+                    cursorX = part[0];
+                    cursorY = part[1];
+                    commands.add(command(COMMAND_LINE_TO, points - 1));
+                    for (int i = 2; i + 1 < part.length; i += 2) {
+                        commands.add(zigZag(part[i] - cursorX));
+                        commands.add(zigZag(part[i + 1] - cursorY));
+                        cursorX = part[i];
+                        cursorY = part[i + 1];
+                    }
+                    if (polygon) {
+                        commands.add(command(COMMAND_CLOSE_PATH, 1));
+                    }
+                }
+                break;
+
+            default:
+                throw new GeoPackageException(
+                        "Unsupported vector tile geometry type: "
+                                + geometryType);
+        }
+
+        return commands;
+    }
+
+    /**
+     * Build a command integer
+     *
+     * @param id    command id
+     * @param count command count
+     * @return command integer
+     */
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    /**
+     * Zig zag encode a signed value
+     *
+     * @param value value
+     * @return zig zag value
+     */
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Normalize an attribute value to a supported vector tile value type
+     *
+     * @param value attribute value
+     * @return normalized value or null if not supported
+     */
+    private static Object normalizeValue(Object value) {
+        Object normalized;
+        if (value == null || value instanceof byte[]) {
+            normalized = null;
+        } else if (value instanceof String || value instanceof Boolean
+                || value instanceof Double || value instanceof Float) {
+            normalized = value;
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            normalized = ((Number) value).longValue();
+        } else if (value instanceof Number) {
+            normalized = ((Number) value).doubleValue();
+        } else {
+            normalized = value.toString();
+        }
+        return normalized;
+    }
+
+    /**
+     * Encode a normalized attribute value
+     *
+     * @param value normalized value
+     * @return encoded value message bytes
+     */
+    private static byte[] encodeValue(Object value) {
+        ProtobufWriter writer = new ProtobufWriter();
+        if (value instanceof String) {
+            writer.writeString(1, (String) value);
+        } else if (value instanceof Float) {
+            writer.writeTag(2, ProtobufWriter.WIRE_FIXED32);
+            writer.writeFixed32(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Double) {
+            writer.writeTag(3, ProtobufWriter.WIRE_FIXED64);
+            writer.writeFixed64(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Long) {
+            long longValue = (Long) value;
+            if (longValue >= 0) {
+                writer.writeTag(5, ProtobufWriter.WIRE_VARINT);
+                writer.writeVarint(longValue);
+            } else {
+                writer.writeTag(6, ProtobufWriter.WIRE_VARINT);
+                writer.writeVarint((longValue << 1) ^ (longValue >> 63));
+            }
+        } else if (value instanceof Boolean) {
+            writer.writeTag(7, ProtobufWriter.WIRE_VARINT);
+            writer.writeVarint((Boolean) value ? 1 : 0);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Vector tile layer being built
+     */
+    private static class Layer {
+
+        /**
+         * Layer name
+         */
+        private final String name;
+
+        /**
+         * Encoded features
+         */
+        private final List<byte[]> features = new ArrayList<>();
+
+        /**
+         * Key indices
+         */
+        private final Map<String, Integer> keys = new LinkedHashMap<>();
+
+        /**
+         * Value indices
+         */
+        private final Map<Object, Integer> values = new LinkedHashMap<>();
+
+        /**
+         * Constructor
+         *
+         * @param name layer name
+         */
+        Layer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Get or create the key index
+         *
+         * @param key key
+         * @return key index
+         */
+        int keyIndex(String key) {
+            Integer index = keys.get(key);
+            if (index == null) {
+                index = keys.size();
+                keys.put(key, index);
+            }
+            return index;
+        }
+
+        /**
+         * Get or create the value index
+         *
+         * @param value normalized value
+         * @return value index
+         */
+        int valueIndex(Object value) {
+            Integer index = values.get(value);
+            if (index == null) {
+                index = values.size();
+                values.put(value, index);
+            }
+            return index;
+        }
+
+    }
+
+    /**
+     * Growable primitive int array
+     */
+    private static class IntArray {
+
+        /**
+         * Values
+         */
+        private int[] values = new int[16];
+
+        /**
+         * Number of values
+         */
+        private int size;
+
+        /**
+         * Add a value
+         *
+         * @param value value
+         */
+        void add(int value) {
+            if (size == values.length) {
+                int[] expanded = new int[values.length * 2];
+                System.arraycopy(values, 0, expanded, 0, size);
+                values = expanded;
+            }
+            values[size++] = value;
+        }
+
+    }
+
+    /**
+     * Minimal protocol buffer message writer
+     */
+    private static class ProtobufWriter {
+
+        /**
+         * Varint wire type
+         */
+        static final int WIRE_VARINT = 0;
+
+        /**
+         * 64 bit wire type
+         */
+        static final int WIRE_FIXED64 = 1;
+
+        /**
+         * Length delimited wire type
+         */
+        static final int WIRE_LENGTH_DELIMITED = 2;
+
+        /**
+         * 32 bit wire type
+         */
+        static final int WIRE_FIXED32 = 5;
+
+        /**
+         * Output bytes
+         */
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        /**
+         * Write a field tag
+         *
+         * @param field    field number
+         * @param wireType wire type
+         */
+        void writeTag(int field, int wireType) {
+            writeVarint((field << 3) | wireType);
+        }
+
+        /**
+         * Write an unsigned varint
+         *
+         * @param value value
+         */
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                output.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            output.write((int) value);
+        }
+
+        /**
+         * Write a little endian 32 bit value
+         *
+         * @param value value
+         */
+        void writeFixed32(int value) {
+            for (int i = 0; i < 4; i++) {
+                output.write((value >>> (i * 8)) & 0xFF);
+            }
+        }
+
+        /**
+         * Write a little endian 64 bit value
+         *
+         * @param value value
+         */
+        void writeFixed64(long value) {
+            for (int i = 0; i < 8; i++) {
+                output.write((int) ((value >>> (i * 8)) & 0xFF));
+            }
+        }
+
+        /**
+         * Write a length delimited bytes field
+         *
+         * @param field field number
+         * @param bytes bytes
+         */
+        void writeBytes(int field, byte[] bytes) {
+            writeTag(field, WIRE_LENGTH_DELIMITED);
+            writeVarint(bytes.length);
+            output.write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Write a string field
+         *
+         * @param field field number
+         * @param value string value
+         */
+        void writeString(int field, String value) {
+            writeBytes(field, value.getBytes(UTF8));
+        }
+
+        /**
+         * Write a packed unsigned int field, skipped when empty
+         *
+         * @param field  field number
+         * @param values values
+         */
+        void writePacked(int field, IntArray values) {
+            if (values.size > 0) {
+                ProtobufWriter packed = new ProtobufWriter();
+                for (int i = 0; i < values.size; i++) {
+                    packed.writeVarint(values.values[i] & 0xFFFFFFFFL);
+                }
+                writeBytes(field, packed.toByteArray());
+            }
+        }
+
+        /**
+         * Get the written bytes
+         *
+         * @return bytes
+         */
+        byte[] toByteArray() {
+            return output.toByteArray();
+        }
+
+    }
+
+}
@@ -4,6 +4,7 @@ import android.database.Cursor;
 
 import java.util.List;
 
+import mil.nga.geopackage.extension.dedup.TileDedup;
 import mil.nga.geopackage.user.UserCursor;
 import mil.nga.geopackage.user.UserDao;
 import mil.nga.geopackage.user.UserInvalidCursor;
@@ -15,6 +16,11 @@ import mil.nga.geopackage.user.UserInvalidCursor;
  */
 public class TileCursor extends UserCursor<TileColumn, TileTable, TileRow> {
 
+    /**
+     * Tile dedup extension used to resolve tile data blob references
+     */
+    private TileDedup dedup;
+
     /**
      * Constructor
      *
@@ -42,7 +48,30 @@ public class TileCursor extends UserCursor<TileColumn, TileTable, TileRow> {
      */
     @Override
     public TileRow getRow(int[] columnTypes, Object[] values) {
-        return new TileRow(getTable(), getColumns(), columnTypes, values);
+        TileRow row = new TileRow(getTable(), getColumns(), columnTypes, values);
+        row.setDedup(dedup);
+        return row;
+    }
+
+    /**
+     * Get the tile dedup extension set on read rows
+     *
+     * @return tile dedup or null
+     * @since 3.5.1
+     */
+    public TileDedup getDedup() {
+        return dedup;
+    }
+
+    /**
+     * Set the tile dedup extension set on read rows to resolve tile data blob
+     * references
+     *
+     * @param dedup tile dedup
+     * @since 3.5.1
+     */
+    public void setDedup(TileDedup dedup) {
+        this.dedup = dedup;
     }
 
     /**
@@ -11,6 +11,7 @@ import mil.nga.geopackage.GeoPackageException;
 import mil.nga.geopackage.core.contents.Contents;
 import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
 import mil.nga.geopackage.db.GeoPackageConnection;
+import mil.nga.geopackage.extension.dedup.TileDedup;
 import mil.nga.geopackage.tiles.TileBoundingBoxUtils;
 import mil.nga.geopackage.tiles.TileGrid;
 import mil.nga.geopackage.tiles.matrix.TileMatrix;
@@ -66,6 +67,11 @@ public class TileDao extends UserDao<TileColumn, TileTable, TileRow, TileCursor>
      */
     private final double[] heights;
 
+    /**
+     * Tile dedup extension used to resolve tile data blob references
+     */
+    private TileDedup dedup;
+
     /**
      * Constructor
      *
@@ -192,6 +198,39 @@ public class TileDao extends UserDao<TileColumn, TileTable, TileRow, TileCursor>
         return new TileRow(getTable());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected TileCursor prepareResult(TileCursor result) {
+        result = super.prepareResult(result);
+        if (dedup != null) {
+            result.setDedup(dedup);
+        }
+        return result;
+    }
+
+    /**
+     * Get the tile dedup extension used to resolve tile data blob references
+     *
+     * @return tile dedup or null
+     * @since 3.5.1
+     */
+    public TileDedup getDedup() {
+        return dedup;
+    }
+
+    /**
+     * Set the tile dedup extension used to resolve tile data blob references
+     * of queried tile rows
+     *
+     * @param dedup tile dedup
+     * @since 3.5.1
+     */
+    public void setDedup(TileDedup dedup) {
+        this.dedup = dedup;
+    }
+
     /**
      * Get the Tile connection
      *
@@ -6,6 +6,7 @@ import android.graphics.BitmapFactory.Options;
 
 import java.io.IOException;
 
+import mil.nga.geopackage.extension.dedup.TileDedup;
 import mil.nga.geopackage.io.BitmapConverter;
 import mil.nga.geopackage.user.UserRow;
 
@@ -16,6 +17,11 @@ import mil.nga.geopackage.user.UserRow;
  */
 public class TileRow extends UserRow<TileColumn, TileTable> {
 
+    /**
+     * Tile dedup extension used to resolve tile data blob references
+     */
+    private TileDedup dedup;
+
     /**
      * Constructor
      *
@@ -46,6 +52,27 @@ public class TileRow extends UserRow<TileColumn, TileTable> {
      */
     public TileRow(TileRow tileRow) {
         super(tileRow);
+        this.dedup = tileRow.dedup;
+    }
+
+    /**
+     * Get the tile dedup extension used to resolve tile data blob references
+     *
+     * @return tile dedup or null
+     * @since 3.5.1
+     */
+    public TileDedup getDedup() {
+        return dedup;
+    }
+
+    /**
+     * Set the tile dedup extension used to resolve tile data blob references
+     *
+     * @param dedup tile dedup
+     * @since 3.5.1
+     */
+    public void setDedup(TileDedup dedup) {
+        this.dedup = dedup;
     }
 
     /**
@@ -183,12 +210,17 @@ public class TileRow extends UserRow<TileColumn, TileTable> {
     }
 
     /**
-     * Get the tile data
+     * Get the tile data, resolving blob references when the row has a tile
+     * dedup extension
      *
      * @return tile data bytes
      */
     public byte[] getTileData() {
-        return (byte[]) getValue(getTileDataColumnIndex());
+        byte[] tileData = (byte[]) getValue(getTileDataColumnIndex());
+        if (dedup != null) {
+            tileData = dedup.resolve(tileData);
+        }
+        return tileData;
     }
 
     /**
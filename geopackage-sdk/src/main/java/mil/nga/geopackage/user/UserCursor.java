@@ -48,6 +48,11 @@ public abstract class UserCursor<TColumn extends UserColumn, TTable extends User
      */
     private UserDao<TColumn, TTable, TRow, ? extends UserCursor<TColumn, TTable, TRow>> dao;
 
+    /**
+     * Reusable row view of the current row
+     */
+    private UserRowView<TColumn, TTable, TRow> rowView;
+
     /**
      * User invalid cursor for iterating through the invalid requeried rows
      */
@@ -143,6 +148,13 @@ public abstract class UserCursor<TColumn extends UserColumn, TTable extends User
             throw new GeoPackageException(error.toString());
         }
 
+        if (invalidCursor == null) {
+            int index = columns.getColumnIndex(pkColumn.getName());
+            if (getType(index) == FIELD_TYPE_INTEGER) {
+                return getLong(index);
+            }
+        }
+
         Object objectValue = getValue(pkColumn);
         if (objectValue instanceof Number) {
             id = ((Number) objectValue).longValue();
@@ -249,6 +261,66 @@ public abstract class UserCursor<TColumn extends UserColumn, TTable extends User
         return row;
     }
 
+    /**
+     * Get the reusable row view of the current row, providing typed column
+     * access without building a row
+     *
+     * @return row view
+     * @since 3.5.1
+     */
+    public UserRowView<TColumn, TTable, TRow> getRowView() {
+        if (rowView == null) {
+            rowView = createRowView();
+        }
+        return rowView;
+    }
+
+    /**
+     * Create the row view for the cursor
+     *
+     * @return row view
+     * @since 3.5.1
+     */
+    protected UserRowView<TColumn, TTable, TRow> createRowView() {
+        return new UserRowView<>(this);
+    }
+
+    /**
+     * Determine if invalid requery is enabled, invalid positions are
+     * requeried when the cursor moves past the last row
+     *
+     * @return true if invalid requery is enabled
+     * @since 3.5.1
+     */
+    public boolean isInvalidRequery() {
+        return dao != null;
+    }
+
+    /**
+     * Determine if the cursor is iterating through invalid requeried rows
+     *
+     * @return true if iterating over requeried rows
+     */
+    boolean isInvalidRequeryActive() {
+        return invalidCursor != null;
+    }
+
+    /**
+     * Get the position within the invalid requeried rows
+     *
+     * @return invalid requery position
+     */
+    int getInvalidRequeryPosition() {
+        return invalidCursor.getPosition();
+    }
+
+    /**
+     * Record the current cursor position as invalid
+     */
+    void addInvalidPosition() {
+        invalidPositions.add(getPosition());
+    }
+
     /**
      * Get the current row
      *
@@ -2,7 +2,14 @@ package mil.nga.geopackage.user;
 
 import android.content.ContentValues;
 
+import androidx.collection.LongSparseArray;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import mil.nga.geopackage.db.AlterTable;
+import mil.nga.geopackage.db.CoreSQLUtils;
 import mil.nga.geopackage.db.GeoPackageConnection;
 import mil.nga.geopackage.db.GeoPackageDatabase;
 import mil.nga.geopackage.db.TableMapping;
@@ -19,6 +26,14 @@ import mil.nga.geopackage.db.TableMapping;
 public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTable<TColumn>, TRow extends UserRow<TColumn, TTable>, TResult extends UserCursor<TColumn, TTable, TRow>>
         extends UserCoreDao<TColumn, TTable, TRow, TResult> {
 
+    /**
+     * Maximum number of ids bound in a single IN clause query, below the
+     * default SQLite host parameter limit
+     *
+     * @since 3.5.1
+     */
+    public static final int IN_CHUNK_SIZE = 500;
+
     /**
      * Database connection
      */
@@ -163,6 +178,87 @@ public abstract class UserDao<TColumn extends UserColumn, TTable extends UserTab
         return row;
     }
 
+    /**
+     * Query for the rows of the ids, querying in chunks of at most
+     * {@link #IN_CHUNK_SIZE} ids
+     *
+     * @param ids ids
+     * @return rows by id, excluding ids without a row
+     * @since 3.5.1
+     */
+    public LongSparseArray<TRow> queryForIdRows(Collection<Long> ids) {
+        LongSparseArray<TRow> rows = new LongSparseArray<>(ids.size());
+        String idColumn = CoreSQLUtils.quoteWrap(getTable().getPkColumnName());
+        for (List<Long> chunk : chunk(ids)) {
+            TResult cursor = query(idColumn + " IN (" + placeholders(chunk.size())
+                    + ")", whereArgs(chunk));
+            try {
+                while (cursor.moveToNext()) {
+                    TRow row = cursor.getRow();
+                    if (row.isValid()) {
+                        rows.put(row.getId(), row);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Split the ids into chunks of at most {@link #IN_CHUNK_SIZE} ids
+     *
+     * @param ids ids
+     * @return id chunks
+     * @since 3.5.1
+     */
+    public static List<List<Long>> chunk(Collection<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> chunk = null;
+        for (Long id : ids) {
+            if (chunk == null || chunk.size() >= IN_CHUNK_SIZE) {
+                chunk = new ArrayList<>(Math.min(IN_CHUNK_SIZE, ids.size()));
+                chunks.add(chunk);
+            }
+            chunk.add(id);
+        }
+        return chunks;
+    }
+
+    /**
+     * Build the comma separated IN clause placeholders
+     *
+     * @param count placeholder count
+     * @return placeholders
+     * @since 3.5.1
+     */
+    public static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                placeholders.append(",");
+            }
+            placeholders.append("?");
+        }
+        return placeholders.toString();
+    }
+
+    /**
+     * Build the where arguments of the ids
+     *
+     * @param ids ids
+     * @return where arguments
+     * @since 3.5.1
+     */
+    public static String[] whereArgs(List<Long> ids) {
+        String[] args = new String[ids.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = String.valueOf(ids.get(i));
+        }
+        return args;
+    }
+
     /**
      * Query using the previous result query arguments
      *
@@ -0,0 +1,371 @@
+package mil.nga.geopackage.user;
+
+import android.database.Cursor;
+
+import mil.nga.geopackage.GeoPackageException;
+
+/**
+ * Reusable view of the current row of a user cursor. Provides typed column
+ * accessors read directly from the cursor without building a row or boxing
+ * values. A single view instance is retrieved from
+ * {@link UserCursor#getRowView()} and reflects each row as the cursor moves.
+ *
+ * @param <TColumn> column type
+ * @param <TTable>  table type
+ * @param <TRow>    row type
+ * @author osbornb
+ * @since 3.5.1
+ */
+public class UserRowView<TColumn extends UserColumn, TTable extends UserTable<TColumn>, TRow extends UserRow<TColumn, TTable>> {
+
+    /**
+     * User cursor
+     */
+    private final UserCursor<TColumn, TTable, TRow> cursor;
+
+    /**
+     * Primary key column cursor index, -1 when not yet determined
+     */
+    private int pkIndex = -1;
+
+    /**
+     * Requeried row when the cursor is iterating over invalid rows
+     */
+    private TRow requeryRow;
+
+    /**
+     * Cursor position of the requeried row
+     */
+    private int requeryRowPosition = -1;
+
+    /**
+     * Last cursor position recorded as invalid, recorded once per position
+     */
+    private int invalidPosition = -1;
+
+    /**
+     * Constructor
+     *
+     * @param cursor user cursor
+     */
+    protected UserRowView(UserCursor<TColumn, TTable, TRow> cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Get the cursor
+     *
+     * @return cursor
+     */
+    public UserCursor<TColumn, TTable, TRow> getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Get the columns
+     *
+     * @return columns
+     */
+    public UserColumns<TColumn> getColumns() {
+        return cursor.getColumns();
+    }
+
+    /**
+     * Get the cursor column index of the column name
+     *
+     * @param columnName column name
+     * @return column index
+     */
+    public int getColumnIndex(String columnName) {
+        return cursor.getColumns().getColumnIndex(columnName);
+    }
+
+    /**
+     * Determine if the current row is valid, rows are invalid when the
+     * primary key can not be read due to large sized blobs. Invalid rows are
+     * recorded in the cursor for invalid requery.
+     *
+     * @return true if valid
+     */
+    public boolean isValid() {
+        boolean valid;
+        TRow row = getRequeryRow();
+        if (row != null) {
+            valid = row.isValid() && row.hasId();
+        } else {
+            valid = cursor.getType(getPkIndex()) != Cursor.FIELD_TYPE_NULL;
+            if (!valid) {
+                int position = cursor.getPosition();
+                if (position != invalidPosition) {
+                    cursor.addInvalidPosition();
+                    invalidPosition = position;
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Get the primary key id of the current row
+     *
+     * @return id
+     */
+    public long getId() {
+        long id;
+        TRow row = getRequeryRow();
+        if (row != null) {
+            id = row.getId();
+        } else {
+            int index = getPkIndex();
+            if (cursor.getType(index) != Cursor.FIELD_TYPE_INTEGER) {
+                throw new GeoPackageException(
+                        "Primary Key value was not an integer. table: "
+                                + cursor.getTableName() + ", index: " + index
+                                + ", value: " + cursor.getValue(index));
+            }
+            id = cursor.getLong(index);
+        }
+        return id;
+    }
+
+    /**
+     * Determine if the column value is null
+     *
+     * @param index column index
+     * @return true if null
+     */
+    public boolean isNull(int index) {
+        boolean isNull;
+        TRow row = getRequeryRow();
+        if (row != null) {
+            isNull = row.getValue(index) == null;
+        } else {
+            isNull = cursor.getType(index) == Cursor.FIELD_TYPE_NULL;
+        }
+        return isNull;
+    }
+
+    /**
+     * Determine if the column value is null
+     *
+     * @param columnName column name
+     * @return true if null
+     */
+    public boolean isNull(String columnName) {
+        return isNull(getColumnIndex(columnName));
+    }
+
+    /**
+     * Get the long column value, 0 when null
+     *
+     * @param index column index
+     * @return long value
+     */
+    public long getLong(int index) {
+        long value;
+        TRow row = getRequeryRow();
+        if (row != null) {
+            Object objectValue = row.getValue(index);
+            value = objectValue != null ? ((Number) objectValue).longValue() : 0;
+        } else {
+            value = cursor.getLong(index);
+        }
+        return value;
+    }
+
+    /**
+     * Get the long column value, 0 when null
+     *
+     * @param columnName column name
+     * @return long value
+     */
+    public long getLong(String columnName) {
+        return getLong(getColumnIndex(columnName));
+    }
+
+    /**
+     * Get the int column value, 0 when null
+     *
+     * @param index column index
+     * @return int value
+     */
+    public int getInt(int index) {
+        return (int) getLong(index);
+    }
+
+    /**
+     * Get the int column value, 0 when null
+     *
+     * @param columnName column name
+     * @return int value
+     */
+    public int getInt(String columnName) {
+        return getInt(getColumnIndex(columnName));
+    }
+
+    /**
+     * Get the double column value, 0 when null
+     *
+     * @param index column index
+     * @return double value
+     */
+    public double getDouble(int index) {
+        double value;
+        TRow row = getRequeryRow();
+        if (row != null) {
+            Object objectValue = row.getValue(index);
+            value = objectValue != null ? ((Number) objectValue).doubleValue() : 0;
+        } else {
+            value = cursor.getDouble(index);
+        }
+        return value;
+    }
+
+    /**
+     * Get the double column value, 0 when null
+     *
+     * @param columnName column name
+     * @return double value
+     */
+    public double getDouble(String columnName) {
+        return getDouble(getColumnIndex(columnName));
+    }
+
+    /**
+     * Get the string column value
+     *
+     * @param index column index
+     * @return string value or null
+     */
+    public String getString(int index) {
+        String value;
+        TRow row = getRequeryRow();
+        if (row != null) {
+            Object objectValue = row.getValue(index);
+            value = objectValue != null ? objectValue.toString() : null;
+        } else {
+            value = cursor.getString(index);
+        }
+        return value;
+    }
+
+    /**
+     * Get the string column value
+     *
+     * @param columnName column name
+     * @return string value or null
+     */
+    public String getString(String columnName) {
+        return getString(getColumnIndex(columnName));
+    }
+
+    /**
+     * Get the blob column value
+     *
+     * @param index column index
+     * @return blob bytes or null
+     */
+    public byte[] getBlob(int index) {
+        byte[] value;
+        TRow row = getRequeryRow();
+        if (row != null) {
+            Object objectValue = row.getValue(index);
+            value = objectValue instanceof byte[] ? (byte[]) objectValue : null;
+        } else if (cursor.getType(index) == Cursor.FIELD_TYPE_NULL) {
+            value = null;
+        } else {
+            value = cursor.getBlob(index);
+        }
+        return value;
+    }
+
+    /**
+     * Get the blob column value
+     *
+     * @param columnName column name
+     * @return blob bytes or null
+     */
+    public byte[] getBlob(String columnName) {
+        return getBlob(getColumnIndex(columnName));
+    }
+
+    /**
+     * Get the column value as the column data type object
+     *
+     * @param index column index
+     * @return value
+     */
+    public Object getValue(int index) {
+        Object value;
+        TRow row = getRequeryRow();
+        if (row != null) {
+            value = row.getValue(index);
+        } else {
+            value = cursor.getValue(index);
+        }
+        return value;
+    }
+
+    /**
+     * Get the column value as the column data type object
+     *
+     * @param columnName column name
+     * @return value
+     */
+    public Object getValue(String columnName) {
+        return getValue(getColumnIndex(columnName));
+    }
+
+    /**
+     * Build a full row from the current cursor position
+     *
+     * @return row
+     */
+    public TRow toRow() {
+        TRow row = getRequeryRow();
+        if (row == null) {
+            row = cursor.getRow();
+        }
+        return row;
+    }
+
+    /**
+     * Get the primary key cursor index
+     *
+     * @return primary key index
+     */
+    private int getPkIndex() {
+        if (pkIndex < 0) {
+            UserColumns<TColumn> columns = cursor.getColumns();
+            TColumn pkColumn = columns.getPkColumn();
+            if (pkColumn == null) {
+                throw new GeoPackageException(
+                        "No primary key column in table: "
+                                + columns.getTableName() + ", columns: "
+                                + columns.getColumnNames());
+            }
+            pkIndex = columns.getColumnIndex(pkColumn.getName());
+        }
+        return pkIndex;
+    }
+
+    /**
+     * Get the requeried row when the cursor is iterating over invalid rows,
+     * reading the row once per position
+     *
+     * @return requeried row or null when iterating over the original rows
+     */
+    protected TRow getRequeryRow() {
+        TRow row = null;
+        if (cursor.isInvalidRequeryActive()) {
+            int position = cursor.getInvalidRequeryPosition();
+            if (requeryRow == null || requeryRowPosition != position) {
+                requeryRow = cursor.getRow();
+                requeryRowPosition = position;
+            }
+            row = requeryRow;
+        }
+        return row;
+    }
+
+}
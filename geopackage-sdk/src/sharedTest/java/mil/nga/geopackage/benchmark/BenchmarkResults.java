@@ -0,0 +1,226 @@
+package mil.nga.geopackage.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmark results of timed operations, written as JSON for comparison
+ * across builds
+ *
+ * @author osbornb
+ */
+public class BenchmarkResults {
+
+    /**
+     * System property of the JSON output file path
+     */
+    public static final String OUTPUT_PROPERTY = "geopackage.benchmark.output";
+
+    /**
+     * Benchmark result
+     */
+    public static class Result {
+
+        /**
+         * Benchmark name
+         */
+        private final String name;
+
+        /**
+         * Operations performed
+         */
+        private final long operations;
+
+        /**
+         * Elapsed nanoseconds
+         */
+        private final long nanos;
+
+        /**
+         * Constructor
+         *
+         * @param name       benchmark name
+         * @param operations operations performed
+         * @param nanos      elapsed nanoseconds
+         */
+        public Result(String name, long operations, long nanos) {
+            this.name = name;
+            this.operations = operations;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Get the benchmark name
+         *
+         * @return name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the operations performed
+         *
+         * @return operations
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * Get the elapsed nanoseconds
+         *
+         * @return nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Get the elapsed milliseconds
+         *
+         * @return milliseconds
+         */
+        public double getMillis() {
+            return nanos / 1000000.0;
+        }
+
+        /**
+         * Get the operations per second
+         *
+         * @return operations per second
+         */
+        public double getOperationsPerSecond() {
+            return operations * 1000000000.0 / Math.max(nanos, 1);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: %d operations, %.3f ms, %.1f per second", name,
+                    operations, getMillis(), getOperationsPerSecond());
+        }
+
+    }
+
+    /**
+     * Suite name
+     */
+    private final String suite;
+
+    /**
+     * Results in recorded order
+     */
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param suite suite name
+     */
+    public BenchmarkResults(String suite) {
+        this.suite = suite;
+    }
+
+    /**
+     * Get the suite name
+     *
+     * @return suite name
+     */
+    public String getSuite() {
+        return suite;
+    }
+
+    /**
+     * Record a result
+     *
+     * @param name       benchmark name
+     * @param operations operations performed
+     * @param startNanos start time from {@link System#nanoTime()}
+     * @return result
+     */
+    public Result record(String name, long operations, long startNanos) {
+        Result result = new Result(name, operations,
+                System.nanoTime() - startNanos);
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * Get the results
+     *
+     * @return results
+     */
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Build the JSON document of the results
+     *
+     * @return JSON
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"suite\":").append(quote(suite));
+        json.append(",\"timestamp\":").append(System.currentTimeMillis());
+        json.append(",\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append("\n{\"name\":").append(quote(result.getName()));
+            json.append(",\"operations\":").append(result.getOperations());
+            json.append(",\"nanos\":").append(result.getNanos());
+            json.append(",\"operations_per_second\":").append(String.format(
+                    Locale.US, "%.3f", result.getOperationsPerSecond()));
+            json.append("}");
+        }
+        json.append("\n]}\n");
+        return json.toString();
+    }
+
+    /**
+     * Write the JSON results to the file, creating parent directories
+     *
+     * @param file output file
+     * @throws IOException upon failure
+     */
+    public void write(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                Charset.forName("UTF-8"));
+        try {
+            writer.write(toJson());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Quote the JSON string
+     *
+     * @param value value
+     * @return quoted value
+     */
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"")
+                + "\"";
+    }
+
+}
@@ -0,0 +1,436 @@
+package mil.nga.geopackage.benchmark;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Random;
+
+import mil.nga.geopackage.BoundingBox;
+import mil.nga.geopackage.GeoPackage;
+import mil.nga.geopackage.GeoPackageManager;
+import mil.nga.geopackage.core.srs.SpatialReferenceSystem;
+import mil.nga.geopackage.extension.coverage.CoverageDataTiff;
+import mil.nga.geopackage.extension.coverage.GriddedCoverage;
+import mil.nga.geopackage.extension.coverage.GriddedCoverageDataType;
+import mil.nga.geopackage.extension.coverage.GriddedTile;
+import mil.nga.geopackage.extension.style.FeatureStyle;
+import mil.nga.geopackage.extension.style.FeatureTableStyles;
+import mil.nga.geopackage.extension.style.StyleRow;
+import mil.nga.geopackage.factory.GeoPackageFactory;
+import mil.nga.geopackage.features.columns.GeometryColumns;
+import mil.nga.geopackage.features.index.FeatureIndexManager;
+import mil.nga.geopackage.features.index.FeatureIndexResults;
+import mil.nga.geopackage.features.index.FeatureIndexType;
+import mil.nga.geopackage.features.user.FeatureCursor;
+import mil.nga.geopackage.features.user.FeatureDao;
+import mil.nga.geopackage.features.user.FeatureRow;
+import mil.nga.geopackage.geom.GeoPackageGeometryData;
+import mil.nga.geopackage.schema.TableColumnKey;
+import mil.nga.geopackage.style.Color;
+import mil.nga.geopackage.tiles.matrix.TileMatrix;
+import mil.nga.geopackage.tiles.matrixset.TileMatrixSet;
+import mil.nga.geopackage.tiles.user.TileDao;
+import mil.nga.geopackage.tiles.user.TileRow;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.GeometryType;
+import mil.nga.sf.Point;
+import mil.nga.sf.proj.ProjectionConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM benchmarks of the SQLite bound hot paths: feature inserts and updates,
+ * index builds, bounding box queries, style resolution, and coverage value
+ * lookups. Runs under Robolectric on a desktop JVM and writes JSON results to
+ * the {@link BenchmarkResults#OUTPUT_PROPERTY} file. RTree index builds and
+ * tile drawing need the native SQLite bindings and Android graphics, and are
+ * measured by the instrumented render benchmark.
+ *
+ * @author osbornb
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class GeoPackageBenchmark {
+
+    private static final String LOG_NAME = GeoPackageBenchmark.class.getSimpleName();
+    private static final String GEOPACKAGE_NAME = "benchmark";
+    private static final String FEATURE_TABLE = "features";
+    private static final String COVERAGE_TABLE = "coverage";
+    private static final int FEATURES = 10000;
+    private static final int QUERIES = 200;
+    private static final int COVERAGE_TILE_SIZE = 256;
+    private static final int COVERAGE_LOOKUPS = 10000;
+
+    /**
+     * Context
+     */
+    private Context context;
+
+    /**
+     * GeoPackage manager
+     */
+    private GeoPackageManager manager;
+
+    /**
+     * GeoPackage
+     */
+    private GeoPackage geoPackage;
+
+    /**
+     * Create the GeoPackage
+     */
+    @Before
+    public void createGeoPackage() {
+        context = ApplicationProvider.getApplicationContext();
+        manager = GeoPackageFactory.getManager(context);
+        manager.delete(GEOPACKAGE_NAME);
+        manager.create(GEOPACKAGE_NAME);
+        geoPackage = manager.open(GEOPACKAGE_NAME);
+    }
+
+    /**
+     * Close and delete the GeoPackage
+     */
+    @After
+    public void deleteGeoPackage() {
+        if (geoPackage != null) {
+            geoPackage.close();
+        }
+        manager.delete(GEOPACKAGE_NAME);
+    }
+
+    /**
+     * Run the benchmarks and write the results
+     *
+     * @throws Exception upon error
+     */
+    @Test
+    public void testBenchmarks() throws Exception {
+
+        BenchmarkResults results = new BenchmarkResults("jvm");
+        Random random = new Random(FEATURES);
+
+        SpatialReferenceSystem srs = geoPackage.getSpatialReferenceSystemDao()
+                .getOrCreateCode(ProjectionConstants.AUTHORITY_EPSG,
+                        ProjectionConstants.EPSG_WORLD_GEODETIC_SYSTEM);
+
+        FeatureDao featureDao = benchmarkFeatures(results, random, srs);
+        benchmarkIndexes(results, random, featureDao);
+        benchmarkStyles(results, random, featureDao);
+        benchmarkCoverageData(results, random, srs);
+
+        assertFalse(results.getResults().isEmpty());
+        for (BenchmarkResults.Result result : results.getResults()) {
+            assertTrue(result.getOperations() > 0);
+            assertTrue(result.getNanos() > 0);
+            Log.i(LOG_NAME, result.toString());
+        }
+
+        String output = System.getProperty(BenchmarkResults.OUTPUT_PROPERTY);
+        if (output != null) {
+            results.write(new File(output));
+        }
+    }
+
+    /**
+     * Benchmark feature inserts and updates
+     *
+     * @param results benchmark results
+     * @param random  random
+     * @param srs     spatial reference system
+     * @return feature DAO
+     * @throws Exception upon error
+     */
+    private FeatureDao benchmarkFeatures(BenchmarkResults results,
+                                         Random random, SpatialReferenceSystem srs) throws Exception {
+
+        GeometryColumns geometryColumns = new GeometryColumns();
+        geometryColumns.setId(new TableColumnKey(FEATURE_TABLE, "geom"));
+        geometryColumns.setGeometryType(GeometryType.POINT);
+        geometryColumns.setZ((byte) 0);
+        geometryColumns.setM((byte) 0);
+        geometryColumns = geoPackage.createFeatureTableWithMetadata(
+                geometryColumns, new BoundingBox(-180, -90, 180, 90),
+                srs.getId());
+        FeatureDao featureDao = geoPackage.getFeatureDao(geometryColumns);
+
+        long start = System.nanoTime();
+        featureDao.beginTransaction();
+        try {
+            for (int i = 0; i < FEATURES; i++) {
+                FeatureRow row = featureDao.newRow();
+                row.setGeometry(point(srs, random));
+                featureDao.create(row);
+            }
+            featureDao.endTransaction(true);
+        } catch (RuntimeException e) {
+            featureDao.endTransaction(false);
+            throw e;
+        }
+        results.record("feature_insert", FEATURES, start);
+        assertEquals(FEATURES, featureDao.count());
+
+        start = System.nanoTime();
+        int updated = 0;
+        featureDao.beginTransaction();
+        try {
+            FeatureCursor cursor = featureDao.queryForAll();
+            try {
+                while (cursor.moveToNext()) {
+                    FeatureRow row = cursor.getRow();
+                    row.setGeometry(point(srs, random));
+                    updated += featureDao.update(row);
+                }
+            } finally {
+                cursor.close();
+            }
+            featureDao.endTransaction(true);
+        } catch (RuntimeException e) {
+            featureDao.endTransaction(false);
+            throw e;
+        }
+        results.record("feature_update", updated, start);
+        assertEquals(FEATURES, updated);
+
+        return featureDao;
+    }
+
+    /**
+     * Benchmark index builds and bounding box queries per index type
+     *
+     * @param results    benchmark results
+     * @param random     random
+     * @param featureDao feature DAO
+     */
+    private void benchmarkIndexes(BenchmarkResults results, Random random,
+                                  FeatureDao featureDao) {
+
+        FeatureIndexManager indexManager = new FeatureIndexManager(context,
+                geoPackage, featureDao);
+        indexManager.setContinueOnError(false);
+        try {
+
+            BoundingBox[] boxes = new BoundingBox[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                double minLongitude = -180 + random.nextDouble() * 340;
+                double minLatitude = -90 + random.nextDouble() * 170;
+                boxes[i] = new BoundingBox(minLongitude, minLatitude,
+                        minLongitude + 20, minLatitude + 10);
+            }
+
+            long[] manualCounts = new long[QUERIES];
+            indexManager.setIndexLocationOrder(FeatureIndexType.NONE);
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                manualCounts[i] = query(indexManager, boxes[i]);
+            }
+            results.record("bounding_box_query_none", QUERIES, start);
+
+            for (FeatureIndexType type : new FeatureIndexType[]{
+                    FeatureIndexType.GEOPACKAGE, FeatureIndexType.METADATA}) {
+
+                String name = type.name().toLowerCase();
+
+                start = System.nanoTime();
+                int indexed = indexManager.index(type, true);
+                results.record("index_build_" + name, indexed, start);
+                assertEquals(FEATURES, indexed);
+
+                indexManager.setIndexLocationOrder(type);
+                start = System.nanoTime();
+                for (int i = 0; i < QUERIES; i++) {
+                    assertEquals(manualCounts[i],
+                            query(indexManager, boxes[i]));
+                }
+                results.record("bounding_box_query_" + name, QUERIES, start);
+            }
+
+        } finally {
+            indexManager.close();
+        }
+    }
+
+    /**
+     * Benchmark feature style resolution
+     *
+     * @param results    benchmark results
+     * @param random     random
+     * @param featureDao feature DAO
+     */
+    private void benchmarkStyles(BenchmarkResults results, Random random,
+                                 FeatureDao featureDao) {
+
+        FeatureTableStyles featureTableStyles = new FeatureTableStyles(
+                geoPackage, featureDao.getTable());
+        featureTableStyles.setTableStyleDefault(style(random));
+
+        StyleRow[] styles = new StyleRow[10];
+        for (int i = 0; i < styles.length; i++) {
+            styles[i] = style(random);
+        }
+
+        FeatureCursor cursor = featureDao.queryForAll();
+        try {
+            int index = 0;
+            while (cursor.moveToNext()) {
+                if (index % 4 == 0) {
+                    featureTableStyles.setStyleDefault(cursor.getRow(),
+                            styles[index % styles.length]);
+                }
+                index++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        long start = System.nanoTime();
+        int resolved = 0;
+        cursor = featureDao.queryForAll();
+        try {
+            while (cursor.moveToNext()) {
+                FeatureStyle featureStyle = featureTableStyles
+                        .getFeatureStyle(cursor.getRow());
+                if (featureStyle != null && featureStyle.hasStyle()) {
+                    resolved++;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        results.record("style_resolution", FEATURES, start);
+        assertEquals(FEATURES, resolved);
+    }
+
+    /**
+     * Benchmark coverage data value lookups
+     *
+     * @param results benchmark results
+     * @param random  random
+     * @param srs     spatial reference system
+     */
+    private void benchmarkCoverageData(BenchmarkResults results,
+                                       Random random, SpatialReferenceSystem srs) {
+
+        BoundingBox boundingBox = new BoundingBox(-10, -10, 10, 10);
+        CoverageDataTiff coverageData = CoverageDataTiff
+                .createTileTableWithMetadata(geoPackage, COVERAGE_TABLE,
+                        boundingBox, srs.getId(), boundingBox, srs.getId());
+        TileMatrixSet tileMatrixSet = coverageData.getTileMatrixSet();
+
+        GriddedCoverage griddedCoverage = new GriddedCoverage();
+        griddedCoverage.setTileMatrixSet(tileMatrixSet);
+        griddedCoverage.setDataType(GriddedCoverageDataType.FLOAT);
+        coverageData.getGriddedCoverageDao().create(griddedCoverage);
+
+        TileMatrix tileMatrix = new TileMatrix();
+        tileMatrix.setContents(tileMatrixSet.getContents());
+        tileMatrix.setMatrixWidth(1);
+        tileMatrix.setMatrixHeight(1);
+        tileMatrix.setTileWidth(COVERAGE_TILE_SIZE);
+        tileMatrix.setTileHeight(COVERAGE_TILE_SIZE);
+        tileMatrix.setPixelXSize(boundingBox.getLongitudeRange()
+                / COVERAGE_TILE_SIZE);
+        tileMatrix.setPixelYSize(boundingBox.getLatitudeRange()
+                / COVERAGE_TILE_SIZE);
+        tileMatrix.setZoomLevel(0);
+        geoPackage.getTileMatrixDao().create(tileMatrix);
+
+        float[][] pixels = new float[COVERAGE_TILE_SIZE][COVERAGE_TILE_SIZE];
+        for (int y = 0; y < COVERAGE_TILE_SIZE; y++) {
+            for (int x = 0; x < COVERAGE_TILE_SIZE; x++) {
+                pixels[y][x] = x + y;
+            }
+        }
+
+        TileDao tileDao = coverageData.getTileDao();
+        TileRow tileRow = tileDao.newRow();
+        tileRow.setTileColumn(0);
+        tileRow.setTileRow(0);
+        tileRow.setZoomLevel(0);
+        tileRow.setTileData(coverageData.drawTileData(pixels));
+        long tileId = tileDao.create(tileRow);
+
+        GriddedTile griddedTile = new GriddedTile();
+        griddedTile.setContents(tileMatrixSet.getContents());
+        griddedTile.setTableId(tileId);
+        coverageData.getGriddedTileDao().create(griddedTile);
+
+        coverageData = new CoverageDataTiff(geoPackage, tileDao);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < COVERAGE_LOOKUPS; i++) {
+            double latitude = -9.5 + random.nextDouble() * 19;
+            double longitude = -9.5 + random.nextDouble() * 19;
+            assertNotNull(coverageData.getValue(latitude, longitude));
+        }
+        results.record("coverage_value_lookup", COVERAGE_LOOKUPS, start);
+    }
+
+    /**
+     * Query and iterate the features within the bounding box
+     *
+     * @param indexManager feature index manager
+     * @param boundingBox  bounding box
+     * @return feature count
+     */
+    private static long query(FeatureIndexManager indexManager,
+                              BoundingBox boundingBox) {
+        long count = 0;
+        FeatureIndexResults results = indexManager.query(boundingBox);
+        try {
+            for (FeatureRow row : results) {
+                assertTrue(row.getId() > 0);
+                count++;
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
+
+    /**
+     * Create random point geometry data
+     *
+     * @param srs    spatial reference system
+     * @param random random
+     * @return geometry data
+     */
+    private static GeoPackageGeometryData point(SpatialReferenceSystem srs,
+                                                Random random) {
+        GeoPackageGeometryData geometryData = new GeoPackageGeometryData(
+                srs.getSrsId());
+        GeometryEnvelope envelope = new GeometryEnvelope(-180, -90, 180, 90);
+        geometryData.setGeometry(new Point(
+                envelope.getMinX() + random.nextDouble() * envelope.getXRange(),
+                envelope.getMinY() + random.nextDouble() * envelope.getYRange()));
+        return geometryData;
+    }
+
+    /**
+     * Create a random style
+     *
+     * @param random random
+     * @return style row
+     */
+    private static StyleRow style(Random random) {
+        StyleRow styleRow = new StyleRow();
+        styleRow.setColor(new Color(random.nextInt(256), random.nextInt(256),
+                random.nextInt(256)));
+        styleRow.setWidth(1.0 + random.nextDouble() * 3);
+        return styleRow;
+    }
+
+}